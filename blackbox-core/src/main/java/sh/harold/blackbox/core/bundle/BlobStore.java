@@ -0,0 +1,209 @@
+package sh.harold.blackbox.core.bundle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for bundle components shared between incidents.
+ *
+ * <p>Each blob is stored once, as {@code <dir>/<first two hex digits>/<sha-256>}, however many
+ * bundles reference it. Writing a blob that already exists only refreshes its modification time,
+ * which {@link #sweep(Set, Instant)} uses to spare blobs of a capture still being written.
+ * Leftover temporary files are swept the same way.
+ */
+public final class BlobStore {
+    public static final String DIRECTORY = "blobs";
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final Path dir;
+    private final Clock clock;
+
+    public BlobStore(Path dir, Clock clock) {
+        this.dir = Objects.requireNonNull(dir, "dir");
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    /**
+     * Stores {@code data} and returns its hash.
+     */
+    public String put(byte[] data) throws IOException {
+        Objects.requireNonNull(data, "data");
+        MessageDigest digest = sha256();
+        digest.update(data);
+        String hash = HexFormat.of().formatHex(digest.digest());
+        if (!refresh(hash)) {
+            write(hash, out -> out.write(data));
+        }
+        return hash;
+    }
+
+    /**
+     * Stores {@code length} bytes of {@code file} starting at {@code offset} and returns their hash.
+     */
+    public String put(Path file, long offset, long length) throws IOException {
+        Objects.requireNonNull(file, "file");
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            InputStream in = Channels.newInputStream(channel.position(offset));
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        if (!refresh(hash)) {
+            write(hash, out -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long position = offset;
+                    long end = offset + length;
+                    while (position < end) {
+                        long moved = channel.transferTo(position, end - position, Channels.newChannel(out));
+                        if (moved <= 0) {
+                            throw new IOException("Unexpected end of " + file);
+                        }
+                        position += moved;
+                    }
+                }
+            });
+        }
+        return hash;
+    }
+
+    public Path path(String hash) {
+        Objects.requireNonNull(hash, "hash");
+        if (hash.length() < 3) {
+            throw new IllegalArgumentException("hash is too short.");
+        }
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public boolean contains(String hash) {
+        return Files.isRegularFile(path(hash));
+    }
+
+    /**
+     * Writes the blobs in {@code hashes}, in order, to {@code out}.
+     */
+    public void copyTo(List<String> hashes, OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        for (String hash : hashes) {
+            Files.copy(path(hash), out);
+        }
+    }
+
+    /**
+     * Deletes blobs not in {@code live} that were last written before {@code olderThan}; returns
+     * the bytes freed.
+     */
+    public long sweep(Set<String> live, Instant olderThan) throws IOException {
+        Objects.requireNonNull(live, "live");
+        Objects.requireNonNull(olderThan, "olderThan");
+        if (!Files.isDirectory(dir)) {
+            return 0L;
+        }
+        long freed = 0L;
+        List<Path> blobs;
+        try (Stream<Path> stream = Files.walk(dir, 2)) {
+            blobs = stream.filter(Files::isRegularFile).toList();
+        }
+        for (Path blob : blobs) {
+            if (live.contains(blob.getFileName().toString())
+                || !Files.getLastModifiedTime(blob).toInstant().isBefore(olderThan)) {
+                continue;
+            }
+            long size = Files.size(blob);
+            if (Files.deleteIfExists(blob)) {
+                freed += size;
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Returns the bytes currently held by the store.
+     */
+    public long totalBytes() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0L;
+        }
+        try (Stream<Path> stream = Files.walk(dir, 2)) {
+            long total = 0L;
+            for (Path blob : stream.filter(Files::isRegularFile).toList()) {
+                total += Files.size(blob);
+            }
+            return total;
+        }
+    }
+
+    private boolean refresh(String hash) throws IOException {
+        Path blob = path(hash);
+        if (!Files.isRegularFile(blob)) {
+            return false;
+        }
+        Files.setLastModifiedTime(blob, FileTime.from(clock.instant()));
+        return true;
+    }
+
+    /**
+     * Writes a blob through a synced temporary file, so a blob that exists is always complete.
+     */
+    private void write(String hash, BlobWriter writer) throws IOException {
+        Path blob = path(hash);
+        Files.createDirectories(blob.getParent());
+        Path temp = Files.createTempFile(blob.getParent(), hash, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writer.write(Channels.newOutputStream(channel));
+                channel.force(true);
+            }
+            Files.setLastModifiedTime(temp, FileTime.from(clock.instant()));
+            Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another capture stored the same content first.
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable.", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlobWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -3,37 +3,109 @@ package sh.harold.blackbox.core.bundle;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import sh.harold.blackbox.core.env.EnvCollector;
 import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.index.StorageTier;
+import sh.harold.blackbox.core.jfr.JfrChunk;
+import sh.harold.blackbox.core.jfr.JfrChunks;
 import sh.harold.blackbox.core.json.IncidentJson;
 import sh.harold.blackbox.core.report.ReportHtml;
 
 /**
  * Builds deterministic incident bundles.
+ *
+ * <p>With deduplication on, the recording's JFR chunks and every attachment of at least
+ * {@value #MIN_BLOB_BYTES} bytes are stored once in a {@link BlobStore} and the bundle lists their hashes in
+ * {@value #BLOB_MANIFEST} instead of holding the bytes. incident.json and report.html always stay
+ * in the zip, so such bundles can still be indexed and read; {@link #materialize(Path)} turns
+ * one back into a self-contained bundle.
+ *
+ * <p>A report naming a parent incident in {@value DeltaRecordings#PARENT_ATTR} is a delta capture:
+ * its recording is stored as {@value #DELTA_RECORDING} and only holds the chunks recorded since the
+ * parent's dump. {@link #replaceRecording(Path, Path)} swaps in the reconstructed full recording.
  */
 public final class BundleBuilder {
+    /**
+     * Lists entries stored in the blob store, one per line as {@code <path in zip>\t<hash>,<hash>...}.
+     */
+    public static final String BLOB_MANIFEST = "blobs.txt";
+    public static final String DELTA_RECORDING = "recording-delta.jfr";
+    /**
+     * Suffix of a bundle being written by {@link #build}; it only gets its final name once complete.
+     */
+    public static final String STAGING_SUFFIX = ".partial";
+
+    private static final String RECORDING = "recording.jfr";
+    private static final String WINDOW_RECORDING = "recording-window.jfr";
+    private static final int MIN_BLOB_BYTES = 1024;
+    private static final String REWRITE_SUFFIX = ".rewrite";
+    private static final String MATERIALIZE_SUFFIX = ".materialize";
+    private static final String DOWNSAMPLE_SUFFIX = ".downsample";
+    private static final String RECORDING_SUFFIX = ".jfr.tmp";
+
+    /**
+     * Suffixes of the sibling files a bundle is rewritten through before being moved over it.
+     */
+    public static final List<String> REWRITE_SUFFIXES =
+        List.of(REWRITE_SUFFIX, MATERIALIZE_SUFFIX, DOWNSAMPLE_SUFFIX, RECORDING_SUFFIX);
+
     private final Clock clock;
     private final System.Logger logger;
+    private final BlobStore blobs;
+    private final boolean dedup;
 
     public BundleBuilder(Clock clock) {
         this(clock, System.getLogger(BundleBuilder.class.getName()));
     }
 
     public BundleBuilder(Clock clock, System.Logger logger) {
+        this(clock, logger, null, false);
+    }
+
+    /**
+     * Creates a builder that resolves blob references of existing bundles through {@code blobs}
+     * and, if {@code dedup} is set, stores the components of new bundles there too.
+     */
+    public BundleBuilder(Clock clock, System.Logger logger, BlobStore blobs, boolean dedup) {
         this.clock = Objects.requireNonNull(clock, "clock");
         this.logger = Objects.requireNonNull(logger, "logger");
+        if (dedup && blobs == null) {
+            throw new IllegalArgumentException("dedup requires a blob store.");
+        }
+        this.blobs = blobs;
+        this.dedup = dedup;
     }
 
+    /**
+     * Writes a bundle to {@code outputZip} and syncs it to disk before returning, so callers can
+     * announce it. {@code recordingJfr} may be {@code null} to write a bundle without a
+     * recording, e.g. when disk space is too low to keep one.
+     *
+     * <p>The bundle is written under {@value #STAGING_SUFFIX} and atomically renamed once synced,
+     * so {@code outputZip} never exists half-written.
+     */
     public Path build(
         IncidentReport report,
         Path recordingJfr,
@@ -41,7 +113,6 @@ public final class BundleBuilder {
         List<BundleAttachment> extras
     ) throws IOException {
         Objects.requireNonNull(report, "report");
-        Objects.requireNonNull(recordingJfr, "recordingJfr");
         Objects.requireNonNull(outputZip, "outputZip");
 
         List<BundleAttachment> sortedExtras = new ArrayList<>(extras == null ? List.of() : extras);
@@ -52,17 +123,350 @@ public final class BundleBuilder {
             Files.createDirectories(parent);
         }
 
-        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(outputZip))) {
+        Path staging = outputZip.resolveSibling(outputZip.getFileName() + STAGING_SUFFIX);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(staging))) {
             writeIncidentJson(report, zip);
             writeReportHtml(report, zip);
-            writeRecording(recordingJfr, zip);
-            writeEnvFiles(zip);
-            writeExtras(sortedExtras, zip);
+            if (!dedup) {
+                if (recordingJfr != null) {
+                    writeRecording(recordingJfr, recordingEntry(report), zip);
+                }
+                writeExtras(envFiles(), zip);
+                writeExtras(sortedExtras, zip);
+            } else {
+                Map<String, List<String>> manifest = new LinkedHashMap<>();
+                if (recordingJfr != null) {
+                    manifest.put(recordingEntry(report), storeRecording(recordingJfr));
+                }
+                List<BundleAttachment> attachments = new ArrayList<>(envFiles());
+                attachments.addAll(sortedExtras);
+                List<BundleAttachment> inline = new ArrayList<>();
+                for (BundleAttachment attachment : attachments) {
+                    if (attachment.data().length >= MIN_BLOB_BYTES) {
+                        manifest.put(attachment.pathInZip(), List.of(blobs.put(attachment.data())));
+                    } else {
+                        inline.add(attachment);
+                    }
+                }
+                writeManifest(manifest, zip);
+                writeExtras(inline, zip);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(staging);
+            throw e;
         }
+        sync(staging);
+        Files.move(staging, outputZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(outputZip.getParent());
 
         return outputZip;
     }
 
+    public boolean deduplicates() {
+        return dedup;
+    }
+
+    /**
+     * Replaces whichever recording {@code bundleZip} holds with {@code recordingJfr}, stored as
+     * {@code recording.jfr}, keeping every other entry. Used to turn a delta capture into a
+     * self-contained bundle once its full recording has been reconstructed.
+     */
+    public Path replaceRecording(Path bundleZip, Path recordingJfr) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        Objects.requireNonNull(recordingJfr, "recordingJfr");
+
+        Path rewritten = bundleZip.resolveSibling(bundleZip.getFileName() + REWRITE_SUFFIX);
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(bundleZip));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rewritten))) {
+            boolean written = false;
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals(RECORDING) || name.equals(WINDOW_RECORDING) || name.equals(DELTA_RECORDING)) {
+                    if (!written) {
+                        writeRecording(recordingJfr, RECORDING, out);
+                        written = true;
+                    }
+                    continue;
+                }
+                out.putNextEntry(zipEntry(name));
+                in.transferTo(out);
+                out.closeEntry();
+            }
+            if (!written) {
+                writeRecording(recordingJfr, RECORDING, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(rewritten);
+            throw e;
+        }
+        sync(rewritten);
+        Files.move(rewritten, bundleZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bundleZip;
+    }
+
+    /**
+     * Rewrites a bundle that references the blob store into a self-contained one, in place.
+     * Bundles without a {@value #BLOB_MANIFEST} are left alone.
+     */
+    public Path materialize(Path bundleZip) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        Map<String, List<String>> manifest;
+        try (ZipFile zip = new ZipFile(bundleZip.toFile())) {
+            ZipEntry entry = zip.getEntry(BLOB_MANIFEST);
+            if (entry == null) {
+                return bundleZip;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                manifest = readManifest(in);
+            }
+        }
+        if (blobs == null) {
+            throw new IOException("Bundle references shared blobs but no blob store is configured: " + bundleZip);
+        }
+
+        Path rewritten = bundleZip.resolveSibling(bundleZip.getFileName() + MATERIALIZE_SUFFIX);
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(bundleZip));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rewritten))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.getName().equals(BLOB_MANIFEST)) {
+                    out.putNextEntry(zipEntry(entry.getName()));
+                    in.transferTo(out);
+                    out.closeEntry();
+                    continue;
+                }
+                for (Map.Entry<String, List<String>> component : manifest.entrySet()) {
+                    out.putNextEntry(zipEntry(component.getKey()));
+                    blobs.copyTo(component.getValue(), out);
+                    out.closeEntry();
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(rewritten);
+            throw e;
+        }
+        sync(rewritten);
+        Files.move(rewritten, bundleZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bundleZip;
+    }
+
+    /**
+     * Returns the blob hashes referenced by the bundle read from {@code bundleZip}, or none for a
+     * self-contained bundle.
+     */
+    public static Set<String> blobReferences(InputStream bundleZip) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        ZipInputStream zip = new ZipInputStream(bundleZip);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            if (entry.getName().equals(BLOB_MANIFEST)) {
+                Set<String> hashes = new HashSet<>();
+                readManifest(zip).values().forEach(hashes::addAll);
+                return hashes;
+            }
+        }
+        return Set.of();
+    }
+
+    /**
+     * Reads the report currently stored in {@code bundleZip}.
+     */
+    public static IncidentReport readReport(Path bundleZip) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        try (ZipFile zip = new ZipFile(bundleZip.toFile())) {
+            ZipEntry json = zip.getEntry("incident.json");
+            if (json == null) {
+                throw new IOException("Bundle has no incident.json: " + bundleZip);
+            }
+            try (InputStream in = zip.getInputStream(json)) {
+                return IncidentJson.read(in);
+            }
+        }
+    }
+
+    /**
+     * Replaces incident.json and report.html in an existing bundle, keeping every other entry.
+     * The bundle is rewritten to a sibling file, synced and atomically moved into place.
+     */
+    public Path rewriteReport(IncidentReport report, Path bundleZip) throws IOException {
+        Objects.requireNonNull(report, "report");
+        Objects.requireNonNull(bundleZip, "bundleZip");
+
+        Path rewritten = bundleZip.resolveSibling(bundleZip.getFileName() + REWRITE_SUFFIX);
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(bundleZip));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rewritten))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals("incident.json")) {
+                    writeIncidentJson(report, out);
+                } else if (name.equals("report.html")) {
+                    writeReportHtml(report, out);
+                } else {
+                    out.putNextEntry(zipEntry(name));
+                    in.transferTo(out);
+                    out.closeEntry();
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(rewritten);
+            throw e;
+        }
+        sync(rewritten);
+        Files.move(rewritten, bundleZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bundleZip;
+    }
+
+    /**
+     * Rewrites a bundle to {@link StorageTier#DOWNSAMPLED}: {@code recording.jfr} is replaced by
+     * {@value #WINDOW_RECORDING}, holding only the JFR chunks that overlap the stall plus
+     * {@code padding} on each side, and the report records the new tier. The rewrite is synced
+     * and atomically moved over the original, so a crash leaves either the old or the new bundle.
+     * Returns the report now stored in the bundle.
+     *
+     * <p>Delta captures are returned unchanged and stay {@link StorageTier#FULL}: their
+     * {@value #DELTA_RECORDING} only holds the chunks since the parent, so it cannot be windowed on
+     * its own.
+     */
+    public IncidentReport downsample(Path bundleZip, Duration padding) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        Objects.requireNonNull(padding, "padding");
+
+        IncidentReport report;
+        Map<String, List<String>> manifest = null;
+        try (ZipFile zip = new ZipFile(bundleZip.toFile())) {
+            ZipEntry json = zip.getEntry("incident.json");
+            if (json == null) {
+                throw new IOException("Bundle has no incident.json: " + bundleZip);
+            }
+            try (InputStream in = zip.getInputStream(json)) {
+                report = IncidentJson.read(in);
+            }
+            ZipEntry blobManifest = zip.getEntry(BLOB_MANIFEST);
+            if (blobManifest != null) {
+                try (InputStream in = zip.getInputStream(blobManifest)) {
+                    manifest = readManifest(in);
+                }
+            }
+        }
+        if (StorageTier.of(report.attrs()) != StorageTier.FULL
+            || report.attrs().containsKey(DeltaRecordings.PARENT_ATTR)) {
+            return report;
+        }
+
+        Instant createdAt = report.meta().createdAt();
+        long stallMs = parseMillis(report.attrs().get("stallMs"));
+        Instant from = createdAt.minusMillis(stallMs).minus(padding);
+        Instant to = createdAt.plus(padding);
+
+        Path recording = bundleZip.resolveSibling(bundleZip.getFileName() + RECORDING_SUFFIX);
+        Path rewritten = bundleZip.resolveSibling(bundleZip.getFileName() + DOWNSAMPLE_SUFFIX);
+        try {
+            long originalBytes = 0;
+            List<JfrChunk> kept = List.of();
+            if (manifest != null && manifest.containsKey(RECORDING)) {
+                if (blobs == null) {
+                    throw new IOException("Bundle references shared blobs but no blob store is configured: " + bundleZip);
+                }
+                List<String> window = new ArrayList<>();
+                for (String hash : manifest.remove(RECORDING)) {
+                    originalBytes += Files.size(blobs.path(hash));
+                    List<JfrChunk> chunks = JfrChunks.read(blobs.path(hash));
+                    if (!JfrChunks.overlapping(chunks, from, to).isEmpty()) {
+                        window.add(hash);
+                    }
+                }
+                if (!window.isEmpty()) {
+                    Map<String, List<String>> reordered = new LinkedHashMap<>();
+                    reordered.put(WINDOW_RECORDING, window);
+                    reordered.putAll(manifest);
+                    manifest = reordered;
+                }
+            }
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(bundleZip))) {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    if (entry.getName().equals(RECORDING)) {
+                        originalBytes = Files.copy(in, recording, StandardCopyOption.REPLACE_EXISTING);
+                        kept = JfrChunks.overlapping(JfrChunks.read(recording), from, to);
+                        break;
+                    }
+                }
+            }
+
+            Map<String, String> attrs = new TreeMap<>(report.attrs());
+            attrs.put(StorageTier.ATTR, StorageTier.DOWNSAMPLED.name());
+            attrs.put("recording.originalBytes", Long.toString(originalBytes));
+            attrs.put("recording.window", from + "/" + to);
+            IncidentReport downsampled = new IncidentReport(report.meta(), report.summary(), attrs);
+
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(bundleZip));
+                 ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rewritten))) {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    String name = entry.getName();
+                    if (name.equals("incident.json")) {
+                        writeIncidentJson(downsampled, out);
+                    } else if (name.equals("report.html")) {
+                        writeReportHtml(downsampled, out);
+                    } else if (name.equals(BLOB_MANIFEST) && manifest != null) {
+                        writeManifest(manifest, out);
+                    } else if (name.equals(RECORDING)) {
+                        if (!kept.isEmpty()) {
+                            out.putNextEntry(zipEntry(WINDOW_RECORDING));
+                            JfrChunks.copy(recording, kept, out);
+                            out.closeEntry();
+                        }
+                    } else {
+                        out.putNextEntry(zipEntry(name));
+                        in.transferTo(out);
+                        out.closeEntry();
+                    }
+                }
+            }
+            sync(rewritten);
+            Files.move(rewritten, bundleZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return downsampled;
+        } catch (IOException e) {
+            Files.deleteIfExists(rewritten);
+            throw e;
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Makes a rename durable. Not every platform can open a directory for syncing; there the
+     * rename is left to the file system.
+     */
+    private static void syncDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort.
+        }
+    }
+
+    private static long parseMillis(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
     private void writeIncidentJson(IncidentReport report, ZipOutputStream zip) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         IncidentJson.write(report, buffer);
@@ -72,8 +476,12 @@ public final class BundleBuilder {
         zip.closeEntry();
     }
 
-    private void writeRecording(Path recordingJfr, ZipOutputStream zip) throws IOException {
-        ZipEntry entry = zipEntry("recording.jfr");
+    private static String recordingEntry(IncidentReport report) {
+        return report.attrs().containsKey(DeltaRecordings.PARENT_ATTR) ? DELTA_RECORDING : RECORDING;
+    }
+
+    private void writeRecording(Path recordingJfr, String name, ZipOutputStream zip) throws IOException {
+        ZipEntry entry = zipEntry(name);
         zip.putNextEntry(entry);
         try (InputStream in = Files.newInputStream(recordingJfr)) {
             in.transferTo(zip);
@@ -90,18 +498,54 @@ public final class BundleBuilder {
         zip.closeEntry();
     }
 
-    private void writeEnvFiles(ZipOutputStream zip) throws IOException {
-        ZipEntry jvm = zipEntry("env/jvm.txt");
-        zip.putNextEntry(jvm);
-        zip.write(EnvCollector.jvmInfo().getBytes(StandardCharsets.UTF_8));
-        zip.closeEntry();
+    private static List<BundleAttachment> envFiles() {
+        return List.of(
+            new BundleAttachment("env/jvm.txt", EnvCollector.jvmInfo().getBytes(StandardCharsets.UTF_8)),
+            new BundleAttachment("env/os.txt", EnvCollector.osInfo().getBytes(StandardCharsets.UTF_8))
+        );
+    }
 
-        ZipEntry os = zipEntry("env/os.txt");
-        zip.putNextEntry(os);
-        zip.write(EnvCollector.osInfo().getBytes(StandardCharsets.UTF_8));
+    /**
+     * Stores each complete chunk of {@code recordingJfr} as a blob, plus any unfinished tail as one
+     * more, so consecutive dumps share the chunks they have in common.
+     */
+    private List<String> storeRecording(Path recordingJfr) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        long covered = 0;
+        for (JfrChunk chunk : JfrChunks.read(recordingJfr)) {
+            hashes.add(blobs.put(recordingJfr, chunk.offset(), chunk.size()));
+            covered = chunk.offset() + chunk.size();
+        }
+        long size = Files.size(recordingJfr);
+        if (covered < size) {
+            hashes.add(blobs.put(recordingJfr, covered, size - covered));
+        }
+        return hashes;
+    }
+
+    private static void writeManifest(Map<String, List<String>> manifest, ZipOutputStream zip) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, List<String>> entry : manifest.entrySet()) {
+            text.append(entry.getKey()).append('\t').append(String.join(",", entry.getValue())).append('\n');
+        }
+        zip.putNextEntry(zipEntry(BLOB_MANIFEST));
+        zip.write(text.toString().getBytes(StandardCharsets.UTF_8));
         zip.closeEntry();
     }
 
+    private static Map<String, List<String>> readManifest(InputStream in) throws IOException {
+        Map<String, List<String>> manifest = new LinkedHashMap<>();
+        for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab <= 0) {
+                continue;
+            }
+            String hashes = line.substring(tab + 1).trim();
+            manifest.put(line.substring(0, tab), hashes.isEmpty() ? List.of() : List.of(hashes.split(",")));
+        }
+        return manifest;
+    }
+
     private void writeExtras(List<BundleAttachment> extras, ZipOutputStream zip) throws IOException {
         for (BundleAttachment extra : extras) {
             ZipEntry entry = zipEntry(extra.pathInZip());
@@ -0,0 +1,268 @@
+package sh.harold.blackbox.core.bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import sh.harold.blackbox.core.index.IncidentCatalog;
+import sh.harold.blackbox.core.json.IncidentJson;
+
+/**
+ * Cleans up after a process that died while writing bundles. Run it before the incident index
+ * is loaded, while nothing else writes to the incident or temp directory.
+ *
+ * <p>For every bundle left behind:
+ * <ul>
+ *   <li>a complete {@value BundleBuilder#STAGING_SUFFIX} file is finished, i.e. moved into place;</li>
+ *   <li>a truncated bundle, staged or final, is salvaged down to its readable entries if
+ *   incident.json is among them and removed otherwise. Final bundles are only opened if they were
+ *   modified since the {@link IncidentCatalog} was last written, or if there is no catalog, as
+ *   those it recorded were complete when it did;</li>
+ *   <li>rewrite siblings and staged sidecars are removed, since both only replace their target
+ *   once complete;</li>
+ *   <li>every file in the temp directory is removed, as no capture is in flight yet.</li>
+ * </ul>
+ * Files are checked in parallel, as a directory of large bundles is mostly waiting on I/O; on a
+ * clean restart only the bundles captured since the last catalog write are read.
+ */
+public final class BundleRecovery {
+    private static final String SALVAGE_SUFFIX = ".salvage";
+
+    private final Path incidentDir;
+    private final Path tempDir;
+    private final System.Logger logger;
+
+    public BundleRecovery(Path incidentDir, Path tempDir, System.Logger logger) {
+        this.incidentDir = Objects.requireNonNull(incidentDir, "incidentDir");
+        this.tempDir = Objects.requireNonNull(tempDir, "tempDir");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    /**
+     * What a recovery pass did.
+     */
+    public record Result(int finished, int salvaged, int removed) {
+        public boolean isEmpty() {
+            return finished == 0 && salvaged == 0 && removed == 0;
+        }
+
+        private Result plus(Result other) {
+            return new Result(finished + other.finished, salvaged + other.salvaged, removed + other.removed);
+        }
+    }
+
+    private static final Result FINISHED = new Result(1, 0, 0);
+    private static final Result SALVAGED = new Result(0, 1, 0);
+    private static final Result REMOVED = new Result(0, 0, 1);
+    private static final Result NOTHING = new Result(0, 0, 0);
+
+    /**
+     * Recovers both directories using up to {@code parallelism} threads.
+     */
+    public Result recover(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0.");
+        }
+        List<Path> files = new ArrayList<>(list(incidentDir));
+        files.addAll(list(tempDir));
+        if (files.isEmpty()) {
+            return NOTHING;
+        }
+        FileTime cataloged = catalogWritten();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()), runnable -> {
+            Thread thread = new Thread(runnable, "blackbox-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Result>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> recoverFile(file, cataloged)));
+            }
+            Result total = NOTHING;
+            for (Future<Result> future : futures) {
+                try {
+                    total = total.plus(future.get());
+                } catch (ExecutionException e) {
+                    logger.log(System.Logger.Level.WARNING, "Bundle recovery failed.", e.getCause());
+                }
+            }
+            if (!total.isEmpty()) {
+                logger.log(System.Logger.Level.INFO, "Recovered incident files: " + total.finished() + " finished, "
+                    + total.salvaged() + " salvaged, " + total.removed() + " removed.");
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return NOTHING;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result recoverFile(Path file, FileTime cataloged) {
+        String name = file.getFileName().toString();
+        try {
+            if (file.getParent().equals(tempDir)) {
+                return Files.deleteIfExists(file) ? REMOVED : NOTHING;
+            }
+            if (BundleSidecars.isStaged(name)) {
+                return Files.deleteIfExists(file) ? REMOVED : NOTHING;
+            }
+            if (name.endsWith(BundleBuilder.STAGING_SUFFIX)) {
+                Path target = incidentDir.resolve(name.substring(0, name.length() - BundleBuilder.STAGING_SUFFIX.length()));
+                return recoverStaged(file, target);
+            }
+            if (name.contains(SALVAGE_SUFFIX)) {
+                return Files.deleteIfExists(file) ? REMOVED : NOTHING;
+            }
+            for (String suffix : BundleBuilder.REWRITE_SUFFIXES) {
+                if (name.startsWith("incident-") && name.endsWith(suffix)) {
+                    return Files.deleteIfExists(file) ? REMOVED : NOTHING;
+                }
+            }
+            if (name.startsWith("incident-") && name.endsWith(".zip")
+                && (cataloged == null || Files.getLastModifiedTime(file).compareTo(cataloged) >= 0)
+                && !isComplete(file)) {
+                if (salvage(file, file)) {
+                    return SALVAGED;
+                }
+                return Files.deleteIfExists(file) ? REMOVED : NOTHING;
+            }
+            return NOTHING;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to recover incident file " + file, e);
+            return NOTHING;
+        }
+    }
+
+    private Result recoverStaged(Path staged, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return Files.deleteIfExists(staged) ? REMOVED : NOTHING;
+        }
+        if (isComplete(staged)) {
+            sync(staged);
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+            return FINISHED;
+        }
+        if (salvage(staged, target)) {
+            Files.deleteIfExists(staged);
+            return SALVAGED;
+        }
+        return Files.deleteIfExists(staged) ? REMOVED : NOTHING;
+    }
+
+    /**
+     * Returns whether the zip is whole and carries a readable incident.json.
+     */
+    private static boolean isComplete(Path bundle) {
+        try (ZipFile zip = new ZipFile(bundle.toFile())) {
+            ZipEntry json = zip.getEntry("incident.json");
+            if (json == null) {
+                return false;
+            }
+            IncidentJson.read(zip.getInputStream(json));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies every entry of {@code source} that reads back in full into {@code target}, stopping
+     * at the first damaged one. Returns {@code false}, writing nothing, if incident.json is not
+     * among them.
+     */
+    private boolean salvage(Path source, Path target) throws IOException {
+        Path rewritten = target.resolveSibling(target.getFileName() + SALVAGE_SUFFIX);
+        Path entryFile = target.resolveSibling(target.getFileName() + SALVAGE_SUFFIX + ".entry");
+        boolean hasReport = false;
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(source));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rewritten))) {
+            while (true) {
+                ZipEntry entry;
+                try {
+                    entry = in.getNextEntry();
+                    if (entry == null) {
+                        break;
+                    }
+                    Files.copy(in, entryFile, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    break;
+                }
+                if (entry.getName().equals("incident.json")) {
+                    try {
+                        IncidentJson.read(new ByteArrayInputStream(Files.readAllBytes(entryFile)));
+                    } catch (IOException | RuntimeException e) {
+                        break;
+                    }
+                    hasReport = true;
+                }
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(0L);
+                out.putNextEntry(copy);
+                Files.copy(entryFile, out);
+                out.closeEntry();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(rewritten);
+            throw e;
+        } finally {
+            Files.deleteIfExists(entryFile);
+        }
+        if (!hasReport) {
+            Files.deleteIfExists(rewritten);
+            return false;
+        }
+        sync(rewritten);
+        Files.move(rewritten, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.log(System.Logger.Level.WARNING, "Salvaged truncated incident bundle " + target);
+        return true;
+    }
+
+    /**
+     * When the catalog was last appended to or rewritten, or {@code null} if there is none.
+     */
+    private FileTime catalogWritten() {
+        try {
+            return Files.getLastModifiedTime(incidentDir.resolve(IncidentCatalog.FILE_NAME));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private List<Path> list(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to list " + dir + " for recovery.", e);
+            return List.of();
+        }
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
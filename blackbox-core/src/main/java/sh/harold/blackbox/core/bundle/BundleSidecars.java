@@ -0,0 +1,80 @@
+package sh.harold.blackbox.core.bundle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Files kept next to an incident's bundle rather than inside it, such as a heap dump too large to
+ * zip again or a class histogram taken after the bundle was written. They are named after the incident, not the bundle path, so they stay put when the
+ * bundle is packed, and retention counts and deletes them together with the bundle.
+ */
+public final class BundleSidecars {
+    public static final String HEAP_DUMP_SUFFIX = ".hprof.gz";
+    public static final String HEAP_HISTOGRAM_SUFFIX = ".heap-histo.txt";
+
+    private static final List<String> SUFFIXES = List.of(HEAP_DUMP_SUFFIX, HEAP_HISTOGRAM_SUFFIX);
+
+    private BundleSidecars() {
+    }
+
+    public static Path heapDump(Path incidentDir, String id) {
+        Objects.requireNonNull(incidentDir, "incidentDir");
+        Objects.requireNonNull(id, "id");
+        return incidentDir.resolve("incident-" + id + HEAP_DUMP_SUFFIX);
+    }
+
+    public static Path heapHistogram(Path incidentDir, String id) {
+        Objects.requireNonNull(incidentDir, "incidentDir");
+        Objects.requireNonNull(id, "id");
+        return incidentDir.resolve("incident-" + id + HEAP_HISTOGRAM_SUFFIX);
+    }
+
+    /**
+     * Sidecar bytes per incident id for everything in {@code incidentDir}, from one listing.
+     */
+    public static Map<String, Long> sizes(Path incidentDir) {
+        Map<String, Long> sizes = new HashMap<>();
+        if (!Files.isDirectory(incidentDir)) {
+            return sizes;
+        }
+        try (Stream<Path> stream = Files.list(incidentDir)) {
+            stream.forEach(path -> {
+                String name = path.getFileName().toString();
+                for (String suffix : SUFFIXES) {
+                    if (name.startsWith("incident-") && name.endsWith(suffix)) {
+                        String id = name.substring("incident-".length(), name.length() - suffix.length());
+                        try {
+                            sizes.merge(id, Files.size(path), Long::sum);
+                        } catch (IOException e) {
+                            // deleted meanwhile
+                        }
+                    }
+                }
+            });
+        } catch (IOException e) {
+            // treated as no sidecars
+        }
+        return sizes;
+    }
+
+    public static void delete(Path incidentDir, String id) throws IOException {
+        for (String suffix : SUFFIXES) {
+            Files.deleteIfExists(incidentDir.resolve("incident-" + id + suffix));
+        }
+    }
+
+    static boolean isStaged(String fileName) {
+        for (String suffix : SUFFIXES) {
+            if (fileName.endsWith(suffix + BundleBuilder.STAGING_SUFFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
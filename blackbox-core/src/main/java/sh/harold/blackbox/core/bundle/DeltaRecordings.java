@@ -0,0 +1,179 @@
+package sh.harold.blackbox.core.bundle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.jfr.JfrChunk;
+import sh.harold.blackbox.core.jfr.JfrChunks;
+import sh.harold.blackbox.core.json.IncidentJson;
+
+/**
+ * Splits recordings into deltas against an earlier capture and reassembles them.
+ *
+ * <p>A delta bundle stores, as {@value BundleBuilder#DELTA_RECORDING}, only the JFR chunks that
+ * follow the last chunk of its parent's recording. Its report names the parent in
+ * {@value #PARENT_ATTR} and the start of its full recording window in {@value #FROM_ATTR}, so the
+ * window can be rebuilt by walking the parent chain and keeping the chunks from that point on.
+ */
+public final class DeltaRecordings {
+    public static final String PARENT_ATTR = IncidentEntry.PARENT_ATTR;
+    public static final String FROM_ATTR = "recording.deltaFrom";
+
+    private static final int MAX_CHAIN = 64;
+    private static final List<String> RECORDING_NAMES = List.of(
+        "recording.jfr",
+        "recording-window.jfr",
+        BundleBuilder.DELTA_RECORDING
+    );
+
+    private DeltaRecordings() {
+    }
+
+    /**
+     * Reads bundles for {@link #reconstruct}, wherever they are stored.
+     */
+    @FunctionalInterface
+    public interface BundleSource {
+        InputStream open(Path bundle) throws IOException;
+
+        static BundleSource files() {
+            return Files::newInputStream;
+        }
+    }
+
+    /**
+     * A rebuilt recording, the incidents it was assembled from (newest first), and whether the
+     * chain ended in a full recording rather than a missing or reduced ancestor.
+     */
+    public record Reconstruction(Path recording, List<String> chain, boolean complete) {
+        public Reconstruction {
+            Objects.requireNonNull(recording, "recording");
+            chain = List.copyOf(chain);
+        }
+    }
+
+    /**
+     * Returns whether the bundle at {@code bundleZip} holds a delta recording.
+     */
+    public static boolean isDelta(Path bundleZip) throws IOException {
+        Objects.requireNonNull(bundleZip, "bundleZip");
+        try (ZipFile zip = new ZipFile(bundleZip.toFile())) {
+            return zip.getEntry(BundleBuilder.DELTA_RECORDING) != null;
+        }
+    }
+
+    /**
+     * Returns the chunks of {@code chunks} after the one starting at {@code parentLastChunkStart},
+     * or {@code null} if no chunk starts there, in which case the recordings do not overlap and a
+     * delta cannot be taken.
+     */
+    public static List<JfrChunk> after(List<JfrChunk> chunks, Instant parentLastChunkStart) {
+        Objects.requireNonNull(chunks, "chunks");
+        Objects.requireNonNull(parentLastChunkStart, "parentLastChunkStart");
+        for (int i = 0; i < chunks.size(); i++) {
+            if (chunks.get(i).start().equals(parentLastChunkStart)) {
+                return List.copyOf(chunks.subList(i + 1, chunks.size()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the full recording window of incident {@code id} to {@code target}, following its
+     * parent chain through {@code index}.
+     */
+    public static Reconstruction reconstruct(IncidentIndex index, String id, BundleSource source, Path target)
+        throws IOException {
+        Objects.requireNonNull(index, "index");
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(target, "target");
+        IncidentEntry entry = index.find(id).orElseThrow(() -> new NoSuchFileException("No incident " + id));
+
+        Path work = Files.createTempDirectory(target.toAbsolutePath().getParent(), "reconstruct");
+        try {
+            List<String> chain = new ArrayList<>();
+            Deque<Path> pieces = new ArrayDeque<>();
+            Instant from = null;
+            boolean complete = false;
+            while (entry != null && chain.size() < MAX_CHAIN) {
+                chain.add(entry.id());
+                Path piece = work.resolve(chain.size() + ".jfr");
+                Map<String, String> attrs;
+                String recordingName;
+                try (ZipInputStream zip = new ZipInputStream(source.open(entry.path()))) {
+                    attrs = Map.of();
+                    recordingName = null;
+                    for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+                        if (zipEntry.getName().equals("incident.json")) {
+                            attrs = IncidentJson.read(zip).attrs();
+                        } else if (RECORDING_NAMES.contains(zipEntry.getName())) {
+                            Files.copy(zip, piece, StandardCopyOption.REPLACE_EXISTING);
+                            recordingName = zipEntry.getName();
+                        }
+                    }
+                }
+                if (recordingName != null) {
+                    pieces.addFirst(piece);
+                }
+                if (chain.size() == 1) {
+                    from = parseInstant(attrs.get(FROM_ATTR));
+                }
+                String parent = attrs.get(PARENT_ATTR);
+                if (parent == null) {
+                    complete = "recording.jfr".equals(recordingName);
+                    break;
+                }
+                entry = index.find(parent).orElse(null);
+            }
+
+            try (OutputStream out = Files.newOutputStream(target)) {
+                for (Path piece : pieces) {
+                    List<JfrChunk> chunks = new ArrayList<>();
+                    for (JfrChunk chunk : JfrChunks.read(piece)) {
+                        if (from == null || !chunk.start().isBefore(from)) {
+                            chunks.add(chunk);
+                        }
+                    }
+                    JfrChunks.copy(piece, chunks, out);
+                }
+            }
+            return new Reconstruction(target, chain, complete);
+        } finally {
+            try (var files = Files.list(work)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(work);
+        }
+    }
+
+    private static Instant parseInstant(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
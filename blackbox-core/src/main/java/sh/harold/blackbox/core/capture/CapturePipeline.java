@@ -1,111 +1,281 @@
 package sh.harold.blackbox.core.capture;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 import sh.harold.blackbox.core.bundle.BundleAttachment;
 import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.DeltaRecordings;
+import sh.harold.blackbox.core.disk.DiskPressureMonitor;
+import sh.harold.blackbox.core.disk.DiskPressureStage;
 import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.index.IncidentIndex;
 import sh.harold.blackbox.core.incident.IncidentIds;
 import sh.harold.blackbox.core.incident.IncidentMetadata;
 import sh.harold.blackbox.core.incident.IncidentReport;
 import sh.harold.blackbox.core.incident.IncidentSummary;
 import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.jfr.JfrChunk;
+import sh.harold.blackbox.core.jfr.JfrChunks;
 import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionScheduler;
+import sh.harold.blackbox.core.retention.RetentionStats;
 import sh.harold.blackbox.core.trigger.TriggerDecision;
 import sh.harold.blackbox.core.trigger.TriggerEngine;
 import sh.harold.blackbox.core.trigger.TriggerEvent;
 import sh.harold.blackbox.core.trigger.TriggerResult;
+import sh.harold.blackbox.core.trigger.heartbeat.HeartbeatStallDetector;
+import sh.harold.blackbox.core.trigger.heartbeat.StallEpisode;
 
 /**
  * Orchestrates trigger evaluation through capture and retention.
+ *
+ * <p>With {@link CapturePolicy#deltaWithin()} set, a capture that follows the previous one within
+ * that time only bundles the JFR chunks recorded since the previous dump and names it as parent;
+ * see {@link DeltaRecordings}. Every {@value #MAX_DELTA_CHAIN}th capture in a row is taken in full
+ * again, so no recording depends on a long chain of older bundles.
  */
 public final class CapturePipeline {
+    private static final int MAX_OPEN_STALLS = 64;
+    private static final int MAX_DELTA_CHAIN = 4;
+
     private final Clock clock;
     private final TriggerEngine triggerEngine;
     private final RecordingDumper dumper;
     private final BundleBuilder bundleBuilder;
-    private final RetentionManager retentionManager;
+    private final RetentionScheduler retention;
     private final IncidentNotifier notifier;
     private final BundleExtrasProvider extrasProvider;
     private final Path incidentDir;
+    private final IncidentIndex index;
     private final Path tempDir;
     private final CapturePolicy policy;
+    private final DiskPressureMonitor diskPressure;
     private final System.Logger logger;
+    private final Map<String, List<String>> incidentsByStall = new LinkedHashMap<>();
+    private final AtomicReference<DeltaBase> lastCapture = new AtomicReference<>();
 
-    public CapturePipeline(
-        Clock clock,
-        TriggerEngine triggerEngine,
-        RecordingDumper dumper,
-        BundleBuilder bundleBuilder,
-        RetentionManager retentionManager,
-        IncidentNotifier notifier,
-        Path incidentDir,
-        Path tempDir,
-        CapturePolicy policy,
-        System.Logger logger
-    ) {
-        this(
-            clock,
-            triggerEngine,
-            dumper,
-            bundleBuilder,
-            retentionManager,
-            notifier,
-            BundleExtrasProvider.none(),
-            incidentDir,
-            tempDir,
-            policy,
-            logger
-        );
+    private CapturePipeline(Builder builder) {
+        this.clock = Objects.requireNonNull(builder.clock, "clock");
+        this.triggerEngine = Objects.requireNonNull(builder.triggerEngine, "triggerEngine");
+        this.dumper = Objects.requireNonNull(builder.dumper, "dumper");
+        this.bundleBuilder = Objects.requireNonNull(builder.bundleBuilder, "bundleBuilder");
+        this.index = Objects.requireNonNull(builder.index, "index");
+        this.incidentDir = index.incidentDir();
+        this.tempDir = Objects.requireNonNull(builder.tempDir, "tempDir");
+        this.policy = Objects.requireNonNull(builder.policy, "policy");
+        this.logger = Objects.requireNonNull(builder.logger, "logger");
+        this.notifier = builder.notifier;
+        this.extrasProvider = builder.extrasProvider;
+        this.diskPressure = builder.diskPressure == null ? DiskPressureMonitor.disabled(clock) : builder.diskPressure;
+        if (builder.retention != null) {
+            this.retention = builder.retention;
+        } else {
+            this.retention = RetentionScheduler.inline(
+                clock,
+                Objects.requireNonNull(builder.retentionManager, "retention"),
+                index,
+                policy.retention(),
+                logger
+            );
+        }
     }
 
-    public CapturePipeline(
-        Clock clock,
-        TriggerEngine triggerEngine,
-        RecordingDumper dumper,
-        BundleBuilder bundleBuilder,
-        RetentionManager retentionManager,
-        IncidentNotifier notifier,
-        BundleExtrasProvider extrasProvider,
-        Path incidentDir,
-        Path tempDir,
-        CapturePolicy policy,
-        System.Logger logger
-    ) {
-        this.clock = Objects.requireNonNull(clock, "clock");
-        this.triggerEngine = Objects.requireNonNull(triggerEngine, "triggerEngine");
-        this.dumper = Objects.requireNonNull(dumper, "dumper");
-        this.bundleBuilder = Objects.requireNonNull(bundleBuilder, "bundleBuilder");
-        this.retentionManager = Objects.requireNonNull(retentionManager, "retentionManager");
-        this.notifier = Objects.requireNonNull(notifier, "notifier");
-        this.extrasProvider = Objects.requireNonNull(extrasProvider, "extrasProvider");
-        this.incidentDir = Objects.requireNonNull(incidentDir, "incidentDir");
-        this.tempDir = Objects.requireNonNull(tempDir, "tempDir");
-        this.policy = Objects.requireNonNull(policy, "policy");
-        this.logger = Objects.requireNonNull(logger, "logger");
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Assembles a {@link CapturePipeline}. Everything except the notifier, extras provider and disk
+     * pressure monitor is required, and retention is given either as a {@link RetentionManager} or
+     * as a {@link RetentionScheduler}.
+     *
+     * <p>After a capture is indexed and announced the pipeline requests a retention pass. A
+     * {@link RetentionManager} is wrapped in {@link RetentionScheduler#inline}, so that pass runs on
+     * the capturing thread before {@link CapturePipeline#handle(TriggerEvent)} returns. A scheduler must manage the
+     * same index; a {@link RetentionScheduler#background background} one runs the pass on its own
+     * executor, coalescing captures that arrive close together.
+     */
+    public static final class Builder {
+        private Clock clock;
+        private TriggerEngine triggerEngine;
+        private RecordingDumper dumper;
+        private BundleBuilder bundleBuilder;
+        private RetentionManager retentionManager;
+        private RetentionScheduler retention;
+        private IncidentNotifier notifier = IncidentNotifier.noop();
+        private BundleExtrasProvider extrasProvider = BundleExtrasProvider.none();
+        private IncidentIndex index;
+        private Path tempDir;
+        private CapturePolicy policy;
+        private DiskPressureMonitor diskPressure;
+        private System.Logger logger;
+
+        private Builder() {
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        public Builder triggerEngine(TriggerEngine triggerEngine) {
+            this.triggerEngine = Objects.requireNonNull(triggerEngine, "triggerEngine");
+            return this;
+        }
+
+        public Builder dumper(RecordingDumper dumper) {
+            this.dumper = Objects.requireNonNull(dumper, "dumper");
+            return this;
+        }
+
+        public Builder bundleBuilder(BundleBuilder bundleBuilder) {
+            this.bundleBuilder = Objects.requireNonNull(bundleBuilder, "bundleBuilder");
+            return this;
+        }
+
+        public Builder retention(RetentionManager retentionManager) {
+            this.retentionManager = Objects.requireNonNull(retentionManager, "retentionManager");
+            this.retention = null;
+            return this;
+        }
+
+        public Builder retention(RetentionScheduler retention) {
+            this.retention = Objects.requireNonNull(retention, "retention");
+            this.retentionManager = null;
+            return this;
+        }
+
+        public Builder notifier(IncidentNotifier notifier) {
+            this.notifier = Objects.requireNonNull(notifier, "notifier");
+            return this;
+        }
+
+        public Builder extrasProvider(BundleExtrasProvider extrasProvider) {
+            this.extrasProvider = Objects.requireNonNull(extrasProvider, "extrasProvider");
+            return this;
+        }
+
+        /**
+         * The record of bundles in {@link IncidentIndex#incidentDir()}, which is where they are written.
+         */
+        public Builder index(IncidentIndex index) {
+            this.index = Objects.requireNonNull(index, "index");
+            return this;
+        }
+
+        public Builder tempDir(Path tempDir) {
+            this.tempDir = Objects.requireNonNull(tempDir, "tempDir");
+            return this;
+        }
+
+        public Builder policy(CapturePolicy policy) {
+            this.policy = Objects.requireNonNull(policy, "policy");
+            return this;
+        }
+
+        /**
+         * Consulted before each capture to shrink, strip or skip the bundle; disabled by default.
+         */
+        public Builder diskPressure(DiskPressureMonitor diskPressure) {
+            this.diskPressure = Objects.requireNonNull(diskPressure, "diskPressure");
+            return this;
+        }
+
+        public Builder logger(System.Logger logger) {
+            this.logger = Objects.requireNonNull(logger, "logger");
+            return this;
+        }
+
+        public CapturePipeline build() {
+            return new CapturePipeline(this);
+        }
     }
 
     public Optional<IncidentId> handle(TriggerEvent event) {
+        Path dumpedRecording = null;
+        Path bundledRecording = null;
+        boolean admitted = false;
         try {
             TriggerResult result = triggerEngine.evaluate(event);
             if (result.decision() != TriggerDecision.ACCEPT) {
                 return Optional.empty();
             }
+            admitted = true;
+
+            DiskPressureStage pressure = diskPressure.sample();
+            if (pressure == DiskPressureStage.SKIP_CAPTURE) {
+                diskPressure.recordSkipped(event.kind().name(), event.scope());
+                logger.log(System.Logger.Level.WARNING, "Skipping " + event.kind() + " capture for " + event.scope()
+                    + ": only " + diskPressure.usableBytes() + " bytes of disk space usable.");
+                triggerEngine.abandon(event);
+                return Optional.empty();
+            }
 
             IncidentId id = IncidentIds.next(clock);
             Instant createdAt = event.at();
             IncidentReport report = buildReport(id, createdAt, result, event);
+            if (pressure != DiskPressureStage.NORMAL) {
+                report = withDiskPressure(report, pressure, diskPressure.usableBytes(),
+                    diskPressure.policy().shrunkWindow().toString());
+            }
 
             Files.createDirectories(tempDir);
             Files.createDirectories(incidentDir);
 
-            Path tempRecording = tempDir.resolve(id.value() + ".jfr");
-            Path dumpedRecording = dumper.dump(tempRecording);
+            if (!pressure.atLeast(DiskPressureStage.DROP_RECORDING)) {
+                dumpedRecording = dumper.dump(tempDir.resolve(id.value() + ".jfr"));
+                if (pressure == DiskPressureStage.SHRINK_WINDOW) {
+                    try {
+                        JfrChunks.trim(dumpedRecording, clock.instant().minus(diskPressure.policy().shrunkWindow()), Instant.MAX);
+                    } catch (Exception e) {
+                        logger.log(System.Logger.Level.WARNING, "Failed to shrink recording under disk pressure.", e);
+                    }
+                }
+            }
+
+            List<JfrChunk> chunks = null;
+            bundledRecording = dumpedRecording;
+            DeltaBase base = null;
+            if (dumpedRecording != null) {
+                try {
+                    chunks = JfrChunks.read(dumpedRecording);
+                } catch (Exception e) {
+                    logger.log(System.Logger.Level.WARNING, "Failed to read chunks of " + dumpedRecording, e);
+                }
+                base = deltaBase(chunks);
+                if (base != null) {
+                    List<JfrChunk> delta = DeltaRecordings.after(chunks, base.lastChunkStart());
+                    if (delta == null) {
+                        base = null;
+                    } else {
+                        Path deltaRecording = tempDir.resolve(id.value() + ".delta.jfr");
+                        try (OutputStream out = Files.newOutputStream(deltaRecording)) {
+                            JfrChunks.copy(dumpedRecording, delta, out);
+                            bundledRecording = deltaRecording;
+                            report = withDelta(report, base.id(), chunks.get(0).start(), delta.size());
+                        } catch (Exception e) {
+                            logger.log(System.Logger.Level.WARNING, "Failed to write delta recording; capturing in full.", e);
+                            Files.deleteIfExists(deltaRecording);
+                            bundledRecording = dumpedRecording;
+                            base = null;
+                        }
+                    }
+                }
+            }
 
             Path outputZip = incidentDir.resolve("incident-" + id.value() + ".zip");
 
@@ -116,31 +286,240 @@ public final class CapturePipeline {
                 logger.log(System.Logger.Level.WARNING, "Bundle extras provider failed.", e);
             }
 
-            bundleBuilder.build(report, dumpedRecording, outputZip, extras);
+            bundleBuilder.build(report, bundledRecording, outputZip, extras);
+            admitted = false;
+            lastCapture.set(chunks == null || chunks.isEmpty()
+                ? null
+                : new DeltaBase(id.value(), clock.instant(), chunks.get(chunks.size() - 1).start(),
+                    base == null ? 0 : base.chainLength() + 1));
+            trackStall(event, report);
+            publish(report, outputZip);
 
-            try {
-                retentionManager.enforce(incidentDir, policy.retention());
-            } catch (Exception e) {
-                logger.log(System.Logger.Level.WARNING, "Retention enforcement failed.", e);
+            return Optional.of(id);
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Capture pipeline failed.", e);
+            if (admitted) {
+                triggerEngine.abandon(event);
             }
-
+            return Optional.empty();
+        } finally {
+            // Also runs when the capture failed, so temp recordings never outlive their capture.
             try {
-                notifier.onIncident(report, outputZip);
+                if (dumpedRecording != null) {
+                    Files.deleteIfExists(dumpedRecording);
+                }
+                if (bundledRecording != null && !bundledRecording.equals(dumpedRecording)) {
+                    Files.deleteIfExists(bundledRecording);
+                }
             } catch (Exception e) {
-                logger.log(System.Logger.Level.WARNING, "Incident notification failed.", e);
+                logger.log(System.Logger.Level.WARNING, "Failed to clean up temp recording.", e);
             }
+        }
+    }
 
+    /**
+     * Bundles an incident that did not come from a trigger, such as one recovered after a crash,
+     * then indexes and announces it like a capture. {@code recording} may be {@code null}; it is
+     * left for the caller to delete, so it is bundled whole even when the window would be shrunk.
+     * Disk pressure applies as for captures otherwise: the recording is left out from
+     * {@link DiskPressureStage#DROP_RECORDING}, and at {@link DiskPressureStage#SKIP_CAPTURE}
+     * nothing is written and an {@link IOException} is thrown, so the caller keeps its inputs.
+     */
+    public Path record(IncidentReport report, Path recording, List<BundleAttachment> attachments) throws IOException {
+        Objects.requireNonNull(report, "report");
+        DiskPressureStage pressure = diskPressure.sample();
+        if (pressure == DiskPressureStage.SKIP_CAPTURE) {
+            diskPressure.recordSkipped(report.meta().trigger(), report.meta().world());
+            throw new IOException("Not writing incident " + report.meta().id().value() + ": only "
+                + diskPressure.usableBytes() + " bytes of disk space usable.");
+        }
+        if (pressure.atLeast(DiskPressureStage.DROP_RECORDING)) {
+            report = withDiskPressure(report, pressure, diskPressure.usableBytes(),
+                diskPressure.policy().shrunkWindow().toString());
+            recording = null;
+        }
+        Files.createDirectories(incidentDir);
+        Path outputZip = incidentDir.resolve("incident-" + report.meta().id().value() + ".zip");
+        bundleBuilder.build(report, recording, outputZip, attachments);
+        publish(report, outputZip);
+        return outputZip;
+    }
+
+    public IncidentIndex index() {
+        return index;
+    }
+
+    public DiskPressureMonitor diskPressure() {
+        return diskPressure;
+    }
+
+    public RetentionScheduler retention() {
+        return retention;
+    }
+
+    /**
+     * Runs retention outside a capture, so age-based downsampling and deletion progress while idle.
+     */
+    public RetentionStats enforceRetention() {
+        return retention.runNow();
+    }
+
+    /**
+     * Writes the final duration and peak of a resolved stall into every bundle captured for it,
+     * upgrading the severity to CRITICAL when the stall escalated. Returns the bundles updated.
+     */
+    public int resolveStall(StallEpisode episode) {
+        Objects.requireNonNull(episode, "episode");
+        List<String> open;
+        synchronized (incidentsByStall) {
+            open = incidentsByStall.remove(episode.id());
+        }
+        if (open == null) {
+            return 0;
+        }
+        int updated = 0;
+        for (String id : open) {
+            // Under the retention lock, so a pass cannot downsample or delete the bundle mid-rewrite.
+            // The report is re-read each time: merged incidents add every resolved scope to the last
+            // rewrite, and a downsample since the capture has recorded its tier there.
             try {
-                Files.deleteIfExists(dumpedRecording);
+                boolean rewritten = retention.rewrite(id, bundle -> {
+                    IncidentReport resolved = withResolution(BundleBuilder.readReport(bundle), episode);
+                    bundleBuilder.rewriteReport(resolved, bundle);
+                    index.add(resolved, bundle);
+                });
+                if (rewritten) {
+                    updated++;
+                }
             } catch (Exception e) {
-                logger.log(System.Logger.Level.WARNING, "Failed to clean up temp recording.", e);
+                logger.log(System.Logger.Level.WARNING, "Failed to record stall resolution in incident " + id, e);
             }
+        }
+        return updated;
+    }
 
-            return Optional.of(id);
+    /**
+     * Returns the previous capture if this one may be stored as a delta against it.
+     */
+    private DeltaBase deltaBase(List<JfrChunk> chunks) {
+        Duration within = policy.deltaWithin();
+        DeltaBase base = lastCapture.get();
+        if (within == null || bundleBuilder.deduplicates() || base == null || chunks == null || chunks.isEmpty()) {
+            return null;
+        }
+        if (base.chainLength() + 1 >= MAX_DELTA_CHAIN
+            || base.capturedAt().plus(within).isBefore(clock.instant())
+            || index.find(base.id()).isEmpty()) {
+            return null;
+        }
+        return base;
+    }
+
+    private void publish(IncidentReport report, Path bundle) {
+        try {
+            index.add(report, bundle);
         } catch (Exception e) {
-            logger.log(System.Logger.Level.WARNING, "Capture pipeline failed.", e);
-            return Optional.empty();
+            logger.log(System.Logger.Level.WARNING, "Failed to index incident bundle.", e);
+        }
+
+        try {
+            notifier.onIncident(report, bundle);
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Incident notification failed.", e);
+        }
+
+        try {
+            retention.request();
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Retention enforcement failed.", e);
+        }
+    }
+
+    private void trackStall(TriggerEvent event, IncidentReport report) {
+        List<String> ids = event.stallIds();
+        if (ids.isEmpty()) {
+            String id = event.attrs().get(HeartbeatStallDetector.ATTR_STALL_ID);
+            if (id == null || id.isBlank()) {
+                return;
+            }
+            ids = List.of(id);
+        }
+        String incident = report.meta().id().value();
+        synchronized (incidentsByStall) {
+            for (String stallId : ids) {
+                incidentsByStall.computeIfAbsent(stallId, ignored -> new ArrayList<>()).add(incident);
+            }
+            Iterator<String> oldest = incidentsByStall.keySet().iterator();
+            while (incidentsByStall.size() > MAX_OPEN_STALLS && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+
+    private static IncidentReport withResolution(IncidentReport report, StallEpisode episode) {
+        Map<String, String> attrs = new TreeMap<>(report.attrs());
+        String prefix = "stall." + episode.scope() + ".";
+        attrs.put(prefix + "durationMs", Long.toString(episode.durationMs()));
+        attrs.put(prefix + "peakMs", Long.toString(episode.peakMs()));
+        attrs.put(prefix + "endedAt", episode.endedAt().toString());
+
+        List<String> whatHappened = new ArrayList<>(report.summary().whatHappened());
+        whatHappened.add("Stall on " + episode.scope() + " resolved after " + episode.durationMs() + "ms");
+        IncidentSummary summary = new IncidentSummary(
+            report.summary().likelyCause(),
+            whatHappened,
+            report.summary().nextSteps()
+        );
+
+        IncidentMetadata meta = report.meta();
+        if (episode.escalated() && meta.severity() != Severity.CRITICAL) {
+            meta = new IncidentMetadata(
+                meta.id(),
+                meta.createdAt(),
+                Severity.CRITICAL,
+                meta.trigger(),
+                meta.world(),
+                meta.headline()
+            );
         }
+        return new IncidentReport(meta, summary, attrs);
+    }
+
+    private static IncidentReport withDiskPressure(
+        IncidentReport report,
+        DiskPressureStage stage,
+        long usableBytes,
+        String shrunkWindow
+    ) {
+        Map<String, String> attrs = new TreeMap<>(report.attrs());
+        attrs.put("diskPressure.stage", stage.name());
+        attrs.put("diskPressure.usableBytes", Long.toString(usableBytes));
+        List<String> whatHappened = new ArrayList<>(report.summary().whatHappened());
+        whatHappened.add(stage == DiskPressureStage.SHRINK_WINDOW
+            ? "Disk space low (" + usableBytes + " bytes usable): recording limited to the last " + shrunkWindow
+            : "Disk space low (" + usableBytes + " bytes usable): recording omitted");
+        IncidentSummary summary = new IncidentSummary(
+            report.summary().likelyCause(),
+            whatHappened,
+            report.summary().nextSteps()
+        );
+        return new IncidentReport(report.meta(), summary, attrs);
+    }
+
+    private static IncidentReport withDelta(IncidentReport report, String parent, Instant from, int deltaChunks) {
+        Map<String, String> attrs = new TreeMap<>(report.attrs());
+        attrs.put(DeltaRecordings.PARENT_ATTR, parent);
+        attrs.put(DeltaRecordings.FROM_ATTR, from.toString());
+        attrs.put("recording.deltaChunks", Integer.toString(deltaChunks));
+        List<String> whatHappened = new ArrayList<>(report.summary().whatHappened());
+        whatHappened.add("Recording stored as " + deltaChunks + " new chunk(s) on top of incident " + parent);
+        IncidentSummary summary = new IncidentSummary(
+            report.summary().likelyCause(),
+            whatHappened,
+            report.summary().nextSteps()
+        );
+        return new IncidentReport(report.meta(), summary, attrs);
     }
 
     private static IncidentReport buildReport(
@@ -158,12 +537,21 @@ public final class CapturePipeline {
             result.headline()
         );
 
-        String summaryLine = "Triggered by " + event.kind().name();
+        List<String> whatHappened = new ArrayList<>();
+        whatHappened.add("Triggered by " + event.kind().name());
+        String scopes = event.attrs().get("scopes");
+        if (scopes != null && !scopes.isBlank()) {
+            whatHappened.add("Affected scopes: " + scopes);
+        }
+        String likelyCause = event.attrs().get("likelyCause");
         IncidentSummary summary = new IncidentSummary(
-            "Unknown",
-            List.of(summaryLine),
+            likelyCause == null || likelyCause.isBlank() ? "Unknown" : likelyCause,
+            whatHappened,
             List.of("Review the incident report and recording.")
         );
-        return new IncidentReport(meta, summary);
+        return new IncidentReport(meta, summary, event.attrs());
+    }
+
+    private record DeltaBase(String id, Instant capturedAt, Instant lastChunkStart, int chainLength) {
     }
 }
@@ -1,13 +1,43 @@
 package sh.harold.blackbox.core.capture;
 
+import java.time.Duration;
 import java.util.Objects;
+import sh.harold.blackbox.core.disk.DiskPressurePolicy;
 import sh.harold.blackbox.core.retention.RetentionPolicy;
 
 /**
  * Capture policy container.
+ *
+ * <p>{@code dedupBlobs} stores recording chunks and attachments shared between bundles once, in a
+ * content-addressed blob store, instead of in every bundle.
+ *
+ * <p>{@code deltaWithin}, when set, lets a capture that follows the previous one within that time
+ * store only the recording chunks written since it, plus a reference to it; {@code null} always
+ * stores the full recording.
  */
-public record CapturePolicy(RetentionPolicy retention) {
+public record CapturePolicy(
+    RetentionPolicy retention,
+    DiskPressurePolicy diskPressure,
+    boolean dedupBlobs,
+    Duration deltaWithin
+) {
     public CapturePolicy {
         Objects.requireNonNull(retention, "retention");
+        Objects.requireNonNull(diskPressure, "diskPressure");
+        if (deltaWithin != null && (deltaWithin.isNegative() || deltaWithin.isZero())) {
+            throw new IllegalArgumentException("deltaWithin must be positive.");
+        }
+    }
+
+    public CapturePolicy(RetentionPolicy retention, DiskPressurePolicy diskPressure, boolean dedupBlobs) {
+        this(retention, diskPressure, dedupBlobs, null);
+    }
+
+    public CapturePolicy(RetentionPolicy retention, DiskPressurePolicy diskPressure) {
+        this(retention, diskPressure, false);
+    }
+
+    public CapturePolicy(RetentionPolicy retention) {
+        this(retention, DiskPressurePolicy.disabled());
     }
 }
@@ -0,0 +1,280 @@
+package sh.harold.blackbox.core.capture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import sh.harold.blackbox.core.bundle.BundleAttachment;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentIds;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.jfr.JfrChunk;
+import sh.harold.blackbox.core.jfr.JfrChunks;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+/**
+ * Turns what a hard-killed process left in the JFR repository into {@link TriggerKind#PREVIOUS_CRASH}
+ * incidents.
+ *
+ * <p>Every process subdirectory of the repository root other than the current one belongs to a
+ * process that never shut down cleanly. Its complete chunks become the bundle's recording, and the
+ * JVM's {@code hs_err_pid<pid>.log}, if one of the searched directories has it, is attached. The
+ * subdirectory is deleted once its bundle is written. Chunks {@link FinalCapture} kept during an
+ * abnormal stop are bundled the same way, as {@link TriggerKind#SHUTDOWN}. This reads whole
+ * recordings, so run it off the startup path.
+ */
+public final class CrashRecovery {
+    public static final String REPOSITORY_DIRECTORY = "jfr-repository";
+
+    private static final Pattern PROCESS_DIRECTORY = Pattern.compile(".*_(\\d+)$");
+    private static final long MAX_ERROR_LOG_BYTES = 4L * 1024 * 1024;
+
+    private final Clock clock;
+    private final Path repositoryRoot;
+    private final List<Path> errorLogDirs;
+    private final CapturePipeline pipeline;
+    private final Path tempDir;
+    private final System.Logger logger;
+
+    public CrashRecovery(
+        Clock clock,
+        Path repositoryRoot,
+        List<Path> errorLogDirs,
+        CapturePipeline pipeline,
+        Path tempDir,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.repositoryRoot = Objects.requireNonNull(repositoryRoot, "repositoryRoot");
+        this.errorLogDirs = List.copyOf(errorLogDirs);
+        this.pipeline = Objects.requireNonNull(pipeline, "pipeline");
+        this.tempDir = Objects.requireNonNull(tempDir, "tempDir");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    /**
+     * Bundles every leftover repository except {@code currentRepository}, which may be
+     * {@code null}, and returns the incidents created.
+     */
+    public List<IncidentId> recover(Path currentRepository) {
+        if (!Files.isDirectory(repositoryRoot)) {
+            return List.of();
+        }
+        List<Path> leftovers;
+        try (Stream<Path> stream = Files.list(repositoryRoot)) {
+            leftovers = stream
+                .filter(Files::isDirectory)
+                .filter(dir -> currentRepository == null || !isSameFile(dir, currentRepository))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to list JFR repository " + repositoryRoot, e);
+            return List.of();
+        }
+
+        List<IncidentId> recovered = new ArrayList<>();
+        for (Path leftover : leftovers) {
+            try {
+                IncidentId id = recoverProcess(leftover);
+                if (id != null) {
+                    recovered.add(id);
+                }
+                deleteRecursively(leftover);
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to recover crashed process recording " + leftover, e);
+            }
+        }
+        return recovered;
+    }
+
+    private IncidentId recoverProcess(Path leftover) throws IOException {
+        List<Path> chunkFiles;
+        try (Stream<Path> stream = Files.list(leftover)) {
+            chunkFiles = stream
+                .filter(path -> path.getFileName().toString().endsWith(".jfr"))
+                .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                .toList();
+        }
+        Matcher matcher = PROCESS_DIRECTORY.matcher(leftover.getFileName().toString());
+        String pid = matcher.matches() ? matcher.group(1) : null;
+        Path errorLog = pid == null ? null : findErrorLog(pid);
+        Path note = leftover.resolve(FinalCapture.SHUTDOWN_NOTE);
+        String shutdownReason = Files.isRegularFile(note) ? Files.readString(note, StandardCharsets.UTF_8).strip() : null;
+
+        IncidentId id = IncidentIds.next(clock);
+        Files.createDirectories(tempDir);
+        Path recording = tempDir.resolve(id.value() + ".crash.jfr");
+        try {
+            int chunkCount = 0;
+            Instant first = null;
+            Instant last = null;
+            try (OutputStream out = Files.newOutputStream(recording)) {
+                for (Path chunkFile : chunkFiles) {
+                    List<JfrChunk> chunks = JfrChunks.read(chunkFile);
+                    JfrChunks.copy(chunkFile, chunks, out);
+                    for (JfrChunk chunk : chunks) {
+                        chunkCount++;
+                        first = first == null || chunk.start().isBefore(first) ? chunk.start() : first;
+                        last = last == null || chunk.end().isAfter(last) ? chunk.end() : last;
+                    }
+                }
+            }
+            if (chunkCount == 0 && errorLog == null) {
+                return null;
+            }
+
+            List<BundleAttachment> attachments = new ArrayList<>();
+            if (errorLog != null) {
+                attachments.add(new BundleAttachment("crash/" + errorLog.getFileName(), readErrorLog(errorLog)));
+            }
+            Instant createdAt = last != null ? last
+                : errorLog != null ? Files.getLastModifiedTime(errorLog).toInstant()
+                : Files.getLastModifiedTime(leftover).toInstant();
+            IncidentReport report = shutdownReason != null
+                ? shutdownReport(id, createdAt, shutdownReason, chunkCount, first, last)
+                : report(id, createdAt, pid, chunkCount, first, last, errorLog);
+            pipeline.record(report, chunkCount == 0 ? null : recording, attachments);
+            logger.log(System.Logger.Level.WARNING, "Previous process" + (pid == null ? "" : " (pid " + pid + ")")
+                + (shutdownReason != null ? " stopped abnormally" : " did not shut down cleanly")
+                + "; recovered it as incident " + id.value() + ".");
+            return id;
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+    }
+
+    private static IncidentReport report(
+        IncidentId id,
+        Instant createdAt,
+        String pid,
+        int chunkCount,
+        Instant first,
+        Instant last,
+        Path errorLog
+    ) {
+        Map<String, String> attrs = new TreeMap<>();
+        attrs.put("crash.chunks", Integer.toString(chunkCount));
+        if (pid != null) {
+            attrs.put("crash.pid", pid);
+        }
+        if (last != null) {
+            attrs.put("crash.lastEventAt", last.toString());
+        }
+        if (errorLog != null) {
+            attrs.put("crash.errorLog", errorLog.getFileName().toString());
+        }
+
+        List<String> whatHappened = new ArrayList<>();
+        whatHappened.add("The previous server process" + (pid == null ? "" : " (pid " + pid + ")")
+            + " ended without shutting down");
+        whatHappened.add(chunkCount == 0
+            ? "No complete JFR chunks were left in its repository"
+            : "Recovered " + chunkCount + " JFR chunk(s) covering " + first + " to " + last);
+        List<String> nextSteps = new ArrayList<>();
+        if (errorLog != null) {
+            whatHappened.add("JVM error log " + errorLog.getFileName() + " attached");
+            nextSteps.add("Review the attached JVM error log.");
+        } else {
+            nextSteps.add("Check the system log for the OOM killer or a kill signal around the last event.");
+        }
+        nextSteps.add("Review the recording leading up to the last event.");
+        IncidentSummary summary = new IncidentSummary(
+            errorLog != null ? "JVM crash" : "Process killed (no JVM error log found)",
+            whatHappened,
+            nextSteps
+        );
+        IncidentMetadata meta = new IncidentMetadata(
+            id,
+            createdAt,
+            Severity.CRITICAL,
+            TriggerKind.PREVIOUS_CRASH.name(),
+            null,
+            "Previous server process ended without a clean shutdown"
+        );
+        return new IncidentReport(meta, summary, attrs);
+    }
+
+    /**
+     * For chunks {@link FinalCapture} kept when its capture ran out of time during an abnormal stop.
+     */
+    private static IncidentReport shutdownReport(
+        IncidentId id,
+        Instant createdAt,
+        String reason,
+        int chunkCount,
+        Instant first,
+        Instant last
+    ) {
+        Map<String, String> attrs = new TreeMap<>();
+        attrs.put("shutdown.reason", reason);
+        attrs.put("shutdown.rawChunks", Integer.toString(chunkCount));
+        IncidentSummary summary = new IncidentSummary(
+            "Abnormal shutdown",
+            List.of(
+                "The stop looked abnormal: " + reason,
+                chunkCount == 0
+                    ? "The final capture ran out of time and no complete JFR chunks were kept"
+                    : "The final capture ran out of time; bundled " + chunkCount + " kept JFR chunk(s) covering "
+                        + first + " to " + last + " on the next startup"
+            ),
+            List.of("Review the recording leading up to the shutdown.")
+        );
+        IncidentMetadata meta = new IncidentMetadata(
+            id,
+            createdAt,
+            Severity.CRITICAL,
+            TriggerKind.SHUTDOWN.name(),
+            null,
+            "Server stopped abnormally: " + reason
+        );
+        return new IncidentReport(meta, summary, attrs);
+    }
+
+    private Path findErrorLog(String pid) {
+        for (Path dir : errorLogDirs) {
+            Path candidate = dir.resolve("hs_err_pid" + pid + ".log");
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readErrorLog(Path errorLog) throws IOException {
+        try (InputStream in = Files.newInputStream(errorLog)) {
+            return in.readNBytes((int) MAX_ERROR_LOG_BYTES);
+        }
+    }
+
+    private static boolean isSameFile(Path dir, Path other) {
+        try {
+            return Files.exists(other) && Files.isSameFile(dir, other);
+        } catch (IOException e) {
+            return dir.toAbsolutePath().normalize().equals(other.toAbsolutePath().normalize());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
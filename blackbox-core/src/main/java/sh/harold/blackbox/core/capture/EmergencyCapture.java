@@ -0,0 +1,154 @@
+package sh.harold.blackbox.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Objects;
+
+/**
+ * Low-allocation capture path used when the regular pipeline cannot be trusted to run.
+ *
+ * <p>Writes a lean JFR dump plus a short text note next to it. The note is encoded into a
+ * buffer allocated up front, and the directory and every target path are set up at construction:
+ * captures rotate through {@code maxCaptures} fixed slots, {@code emergency-<slot>.jfr} and
+ * {@code .txt}, each overwriting the oldest, so the newest {@code maxCaptures} pairs are kept
+ * without listing or pruning the directory. The note records when its capture was taken.
+ */
+public final class EmergencyCapture {
+    private static final int NOTE_CAPACITY = 4096;
+
+    private final Clock clock;
+    private final Path directory;
+    private final RecordingDumper leanDumper;
+    private final System.Logger logger;
+    private final ByteBuffer note = ByteBuffer.allocateDirect(NOTE_CAPACITY);
+    private final Path[] recordings;
+    private final Path[] notes;
+    private int next;
+
+    public EmergencyCapture(
+        Clock clock,
+        Path directory,
+        RecordingDumper leanDumper,
+        int maxCaptures,
+        System.Logger logger
+    ) throws IOException {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.leanDumper = Objects.requireNonNull(leanDumper, "leanDumper");
+        this.logger = Objects.requireNonNull(logger, "logger");
+        if (maxCaptures <= 0) {
+            throw new IllegalArgumentException("maxCaptures must be > 0.");
+        }
+        Files.createDirectories(directory);
+        this.recordings = new Path[maxCaptures];
+        this.notes = new Path[maxCaptures];
+        long oldest = Long.MAX_VALUE;
+        for (int slot = 0; slot < maxCaptures; slot++) {
+            recordings[slot] = directory.resolve("emergency-" + slot + ".jfr");
+            notes[slot] = directory.resolve("emergency-" + slot + ".txt");
+            // Resume after a restart by overwriting an empty slot, else the oldest one.
+            long modified = Files.exists(recordings[slot])
+                ? Files.getLastModifiedTime(recordings[slot]).toMillis()
+                : Long.MIN_VALUE;
+            if (modified < oldest) {
+                oldest = modified;
+                next = slot;
+            }
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Dumps the lean recording and writes a note describing why. Returns the recording path, or
+     * {@code null} if the dump failed.
+     */
+    public synchronized Path capture(String reason, String probe, long stalledMs) {
+        long at = clock.millis();
+        Path recording = recordings[next];
+        Path notePath = notes[next];
+        next = (next + 1) % recordings.length;
+        try {
+            // Cleared first, so a failed dump cannot leave this note beside an older recording.
+            Files.deleteIfExists(recording);
+            writeNote(notePath, at, reason, probe, stalledMs);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to write emergency note.", e);
+        }
+        try {
+            leanDumper.dump(recording);
+        } catch (Throwable t) {
+            logger.log(System.Logger.Level.WARNING, "Emergency recording dump failed.", t);
+            return null;
+        }
+        return recording;
+    }
+
+    private void writeNote(Path target, long at, String reason, String probe, long stalledMs) throws IOException {
+        note.clear();
+        putAscii("reason=").putAscii(reason).putAscii("\n");
+        putAscii("probe=").putAscii(probe).putAscii("\n");
+        putAscii("stalledMs=").putLong(stalledMs).putAscii("\n");
+        putAscii("epochMillis=").putLong(at).putAscii("\n");
+        putAscii("liveThreads=").putLong(Thread.activeCount()).putAscii("\n");
+        note.flip();
+        try (FileChannel channel = FileChannel.open(
+            target,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            while (note.hasRemaining()) {
+                channel.write(note);
+            }
+        }
+    }
+
+    private EmergencyCapture putAscii(String value) {
+        String text = value == null ? "null" : value;
+        for (int i = 0; i < text.length() && note.hasRemaining(); i++) {
+            char c = text.charAt(i);
+            note.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        return this;
+    }
+
+    private EmergencyCapture putLong(long value) {
+        if (value == 0L) {
+            return putDigit(0);
+        }
+        if (value < 0L) {
+            if (note.hasRemaining()) {
+                note.put((byte) '-');
+            }
+            if (value == Long.MIN_VALUE) {
+                return putAscii("9223372036854775808");
+            }
+            value = -value;
+        }
+        long divisor = 1L;
+        while (value / divisor >= 10L) {
+            divisor *= 10L;
+        }
+        while (divisor > 0L) {
+            putDigit((int) (value / divisor));
+            value %= divisor;
+            divisor /= 10L;
+        }
+        return this;
+    }
+
+    private EmergencyCapture putDigit(int digit) {
+        if (note.hasRemaining()) {
+            note.put((byte) ('0' + digit));
+        }
+        return this;
+    }
+}
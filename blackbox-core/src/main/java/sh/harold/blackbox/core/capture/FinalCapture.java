@@ -0,0 +1,194 @@
+package sh.harold.blackbox.core.capture;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentIds;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+/**
+ * Takes one last {@link TriggerKind#SHUTDOWN} capture while an abnormal stop is in progress.
+ *
+ * <p>The capture runs on its own daemon thread and gets a hard time budget; shutdown does not wait
+ * past it. If it has not finished by then, or failed, the chunk files of the current JFR repository
+ * are hard-linked (or copied) into a sibling directory of the repository root with a
+ * {@link #SHUTDOWN_NOTE}, which outlives JFR deleting its repository on exit. {@link CrashRecovery}
+ * bundles that directory on the next startup.
+ *
+ * <p>A capture that is already writing its bundle when the budget runs out gets the budget once
+ * more, as the capture thread is a daemon and the JVM would exit under it. Whatever has not
+ * finished after that, or failed, gets the raw-chunk fallback; a dumped recording that was not yet
+ * claimed for bundling is then discarded. A bundle that still completes after the fallback was
+ * taken leaves the incident twice, which beats losing it.
+ */
+public final class FinalCapture {
+    public static final String SHUTDOWN_NOTE = "shutdown.txt";
+
+    private final Clock clock;
+    private final CapturePipeline pipeline;
+    private final RecordingDumper dumper;
+    private final Path repositoryRoot;
+    private final Path tempDir;
+    private final System.Logger logger;
+
+    public enum Outcome {
+        CAPTURED,
+        RAW_CHUNKS,
+        FAILED
+    }
+
+    public FinalCapture(
+        Clock clock,
+        CapturePipeline pipeline,
+        RecordingDumper dumper,
+        Path repositoryRoot,
+        Path tempDir,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.pipeline = Objects.requireNonNull(pipeline, "pipeline");
+        this.dumper = Objects.requireNonNull(dumper, "dumper");
+        this.repositoryRoot = Objects.requireNonNull(repositoryRoot, "repositoryRoot");
+        this.tempDir = Objects.requireNonNull(tempDir, "tempDir");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    /**
+     * Captures within {@code budget}, or twice that if the bundle is being written when it runs out,
+     * falling back to the raw chunks of {@code currentRepository}, which may be {@code null} if JFR
+     * never published one.
+     */
+    public Outcome run(String reason, Duration budget, Path currentRepository) {
+        Objects.requireNonNull(reason, "reason");
+        Objects.requireNonNull(budget, "budget");
+        IncidentId id = IncidentIds.next(clock);
+        Attempt attempt = new Attempt(id, reason);
+        Thread thread = new Thread(attempt, "blackbox-final-capture");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            thread.join(Math.max(1L, budget.toMillis()));
+            if (thread.isAlive() && attempt.state.get() == Attempt.RECORDING) {
+                logger.log(System.Logger.Level.WARNING, "Abnormal shutdown (" + reason + "); final capture is still writing incident "
+                    + id.value() + " after " + budget.toMillis() + "ms, waiting as long again.");
+                thread.join(Math.max(1L, budget.toMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int previous = attempt.state.getAndUpdate(state -> state == Attempt.DONE ? Attempt.DONE : Attempt.ABANDONED);
+        if (previous == Attempt.DONE) {
+            logger.log(System.Logger.Level.WARNING, "Abnormal shutdown (" + reason + "); captured incident " + id.value() + ".");
+            return Outcome.CAPTURED;
+        }
+        if (previous == Attempt.RUNNING) {
+            thread.interrupt();
+        }
+
+        if (currentRepository == null) {
+            logger.log(System.Logger.Level.WARNING, "Abnormal shutdown (" + reason + "); final capture did not finish and no JFR repository is known.");
+            return Outcome.FAILED;
+        }
+        try {
+            Path kept = keepChunks(reason, currentRepository);
+            logger.log(System.Logger.Level.WARNING, "Abnormal shutdown (" + reason + "); final capture did not finish within "
+                + budget.toMillis() + "ms, kept raw chunks in " + kept + " for the next startup.");
+            return Outcome.RAW_CHUNKS;
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to keep JFR chunks from " + currentRepository, e);
+            return Outcome.FAILED;
+        }
+    }
+
+    private Path keepChunks(String reason, Path currentRepository) throws IOException {
+        Path target = repositoryRoot.resolve("shutdown-" + clock.millis() + "_" + ProcessHandle.current().pid());
+        Files.createDirectories(target);
+        List<Path> chunkFiles;
+        try (Stream<Path> stream = Files.list(currentRepository)) {
+            chunkFiles = stream.filter(path -> path.getFileName().toString().endsWith(".jfr")).toList();
+        }
+        for (Path chunkFile : chunkFiles) {
+            Path link = target.resolve(chunkFile.getFileName().toString());
+            try {
+                Files.createLink(link, chunkFile);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(chunkFile, link);
+            }
+        }
+        Files.writeString(target.resolve(SHUTDOWN_NOTE), reason, StandardCharsets.UTF_8);
+        return target;
+    }
+
+    private final class Attempt implements Runnable {
+        private static final int RUNNING = 0;
+        private static final int RECORDING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+
+        private final IncidentId id;
+        private final String reason;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        private Attempt(IncidentId id, String reason) {
+            this.id = id;
+            this.reason = reason;
+        }
+
+        @Override
+        public void run() {
+            Path recording = tempDir.resolve(id.value() + ".shutdown.jfr");
+            try {
+                Files.createDirectories(tempDir);
+                Path dumped = dumper.dump(recording);
+                if (!state.compareAndSet(RUNNING, RECORDING)) {
+                    return;
+                }
+                pipeline.record(report(id, clock.instant(), reason), dumped, List.of());
+                if (!state.compareAndSet(RECORDING, DONE)) {
+                    logger.log(System.Logger.Level.INFO, "Final capture wrote incident " + id.value()
+                        + " after its raw chunks were already kept.");
+                }
+            } catch (Exception e) {
+                // Never reaches DONE, so the waiting thread keeps the raw chunks instead.
+                logger.log(System.Logger.Level.WARNING, "Final capture failed.", e);
+            } finally {
+                try {
+                    Files.deleteIfExists(recording);
+                } catch (IOException e) {
+                    logger.log(System.Logger.Level.WARNING, "Failed to clean up temp recording.", e);
+                }
+            }
+        }
+    }
+
+    static IncidentReport report(IncidentId id, Instant createdAt, String reason) {
+        IncidentSummary summary = new IncidentSummary(
+            "Abnormal shutdown",
+            List.of("The stop looked abnormal: " + reason, "Recording captured while shutting down"),
+            List.of("Review the recording leading up to the shutdown.")
+        );
+        IncidentMetadata meta = new IncidentMetadata(
+            id,
+            createdAt,
+            Severity.CRITICAL,
+            TriggerKind.SHUTDOWN.name(),
+            null,
+            "Server stopped abnormally: " + reason
+        );
+        return new IncidentReport(meta, summary, Map.of("shutdown.reason", reason));
+    }
+}
@@ -0,0 +1,464 @@
+package sh.harold.blackbox.core.capture;
+
+import java.io.IOException;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import sh.harold.blackbox.core.bundle.BundleAttachment;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentIds;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+/**
+ * Captures the JFR window when the heap runs out, or is about to.
+ *
+ * <p>Two sources feed it: heap pools still above {@link OomPolicy#heapThresholdPercent()} of their
+ * maximum right after a collection, and {@link OutOfMemoryError}s that reach the default uncaught
+ * exception handler. Either way the capture first drops a reserve allocated at
+ * {@link #install(Runnable)}, so it has room to run, then dumps the recording and writes the heap
+ * pool figures with a buffer allocated up front, like {@link EmergencyCapture}.
+ * {@link #uninstall()} puts back the pool thresholds it replaced, and the previous uncaught
+ * exception handler unless something else has been installed on top of this one since.
+ *
+ * <p>No bundle is built at that point: report rendering and zipping allocate too much to trust
+ * while the heap is full. {@link #bundlePending(CapturePipeline)} turns the captures into
+ * {@link TriggerKind#OUT_OF_MEMORY} incidents once memory is back, that is once every heap pool is
+ * below the threshold again after a collection, or on the next startup if the process did not
+ * survive. Until then it leaves them, and the reserve stays released.
+ */
+public final class OomCapture {
+    public static final String DIRECTORY = "oom";
+
+    private static final int NOTE_CAPACITY = 8192;
+    private static final String PREFIX = "oom-";
+
+    private final Clock clock;
+    private final Path directory;
+    private final RecordingDumper dumper;
+    private final OomPolicy policy;
+    private final System.Logger logger;
+    private final ByteBuffer note = ByteBuffer.allocateDirect(NOTE_CAPACITY);
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final Map<MemoryPoolMXBean, Long> previousThresholds = new IdentityHashMap<>();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final AtomicLong lastCaptureMillis = new AtomicLong(Long.MIN_VALUE);
+    private final BooleanSupplier memoryRecovered;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final NotificationListener listener = (notification, handback) -> {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            capture("heap above threshold after collection");
+        }
+    };
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())
+            && pending.get()) {
+            bundleIfRecovered();
+        }
+    };
+    private volatile byte[] reserve;
+    private volatile Runnable onRecovered = () -> { };
+    private Thread.UncaughtExceptionHandler previousHandler;
+    private Thread.UncaughtExceptionHandler handler;
+    private volatile boolean installed;
+
+    public OomCapture(Clock clock, Path directory, RecordingDumper dumper, OomPolicy policy, System.Logger logger)
+        throws IOException {
+        this(clock, directory, dumper, policy, null, logger);
+    }
+
+    /**
+     * Creates a capture that asks {@code memoryRecovered} whether memory is back instead of the heap
+     * pools; {@code null} reads the pools.
+     */
+    OomCapture(
+        Clock clock,
+        Path directory,
+        RecordingDumper dumper,
+        OomPolicy policy,
+        BooleanSupplier memoryRecovered,
+        System.Logger logger
+    ) throws IOException {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.dumper = Objects.requireNonNull(dumper, "dumper");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.logger = Objects.requireNonNull(logger, "logger");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        this.memoryRecovered = memoryRecovered == null ? this::heapPoolsRecovered : memoryRecovered;
+        Files.createDirectories(directory);
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Allocates the reserve and starts listening for heap exhaustion. {@code onRecovered} runs on a
+     * collector notification thread once memory is back after a capture, e.g. to schedule
+     * {@link #bundlePending(CapturePipeline)}.
+     */
+    public synchronized void install(Runnable onRecovered) {
+        this.onRecovered = Objects.requireNonNull(onRecovered, "onRecovered");
+        if (installed) {
+            return;
+        }
+        rearm();
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (!pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            long max = pool.getUsage().getMax();
+            if (max > 0) {
+                previousThresholds.put(pool, pool.getCollectionUsageThreshold());
+                pool.setCollectionUsageThreshold(max / 100 * policy.heapThresholdPercent());
+            }
+        }
+        ((NotificationEmitter) memory).addNotificationListener(listener, null, null);
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(gcListener, null, null);
+            }
+        }
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.UncaughtExceptionHandler previous = previousHandler;
+        handler = (thread, error) -> {
+            // Stays in the chain of any handler installed on top of it, so only capture while installed.
+            if (installed && isOutOfMemory(error)) {
+                capture("uncaught OutOfMemoryError");
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, error);
+            } else {
+                System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+                error.printStackTrace(System.err);
+            }
+        };
+        Thread.setDefaultUncaughtExceptionHandler(handler);
+        installed = true;
+    }
+
+    public synchronized void uninstall() {
+        if (!installed) {
+            return;
+        }
+        try {
+            ((NotificationEmitter) memory).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException e) {
+            // Already gone.
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                try {
+                    emitter.removeNotificationListener(gcListener);
+                } catch (ListenerNotFoundException e) {
+                    // Already gone.
+                }
+            }
+        }
+        previousThresholds.forEach(MemoryPoolMXBean::setCollectionUsageThreshold);
+        previousThresholds.clear();
+        if (Thread.getDefaultUncaughtExceptionHandler() == handler) {
+            Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+        }
+        handler = null;
+        reserve = null;
+        installed = false;
+    }
+
+    /**
+     * Releases the reserve, dumps the recording and writes the heap pool figures next to it.
+     * Returns the recording, or {@code null} if a capture ran within the cooldown or the dump
+     * failed.
+     */
+    public Path capture(String reason) {
+        long at = clock.millis();
+        long last = lastCaptureMillis.get();
+        if (last != Long.MIN_VALUE && at - last < policy.cooldown().toMillis()) {
+            return null;
+        }
+        if (!lastCaptureMillis.compareAndSet(last, at)) {
+            return null;
+        }
+        reserve = null;
+        synchronized (note) {
+            Path recording = directory.resolve(PREFIX + at + ".jfr");
+            try {
+                writeNote(directory.resolve(PREFIX + at + ".txt"), at, reason);
+            } catch (Throwable t) {
+                logger.log(System.Logger.Level.WARNING, "Failed to write OOM note.", t);
+            }
+            try {
+                dumper.dump(recording);
+            } catch (Throwable t) {
+                logger.log(System.Logger.Level.WARNING, "OOM recording dump failed.", t);
+                recording = null;
+            }
+            pending.set(true);
+            return recording;
+        }
+    }
+
+    /**
+     * Bundles every capture in the directory into an incident through {@code pipeline}, then
+     * re-allocates the reserve. Does nothing while memory is still short; the captures then stay
+     * until memory is back. Returns the incidents created.
+     */
+    public List<IncidentId> bundlePending(CapturePipeline pipeline) {
+        Objects.requireNonNull(pipeline, "pipeline");
+        if (!memoryRecovered.getAsBoolean()) {
+            pending.set(true);
+            logger.log(System.Logger.Level.DEBUG, "Heap still above the OOM threshold; not bundling captures yet.");
+            return List.of();
+        }
+        List<Path> notes;
+        try (Stream<Path> stream = Files.list(directory)) {
+            notes = stream
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                .filter(path -> path.getFileName().toString().endsWith(".txt"))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to list OOM captures in " + directory, e);
+            return List.of();
+        }
+
+        List<IncidentId> bundled = new ArrayList<>();
+        for (Path notePath : notes) {
+            String name = notePath.getFileName().toString();
+            Path recording = notePath.resolveSibling(name.substring(0, name.length() - ".txt".length()) + ".jfr");
+            try {
+                byte[] text = Files.readAllBytes(notePath);
+                IncidentReport report = report(parse(text));
+                boolean hasRecording = Files.isRegularFile(recording) && Files.size(recording) > 0;
+                pipeline.record(report, hasRecording ? recording : null,
+                    List.of(new BundleAttachment("oom/heap-pools.txt", text)));
+                Files.deleteIfExists(recording);
+                Files.deleteIfExists(notePath);
+                bundled.add(report.meta().id());
+            } catch (OutOfMemoryError e) {
+                pending.set(true);
+                logger.log(System.Logger.Level.WARNING, "Still short of memory; leaving OOM capture " + notePath
+                    + " for later.");
+                return bundled;
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to bundle OOM capture " + notePath, e);
+            }
+        }
+        if (installed) {
+            rearm();
+        }
+        return bundled;
+    }
+
+    private void bundleIfRecovered() {
+        if (!memoryRecovered.getAsBoolean() || !pending.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            onRecovered.run();
+        } catch (Throwable t) {
+            logger.log(System.Logger.Level.WARNING, "OOM follow-up failed.", t);
+        }
+    }
+
+    /**
+     * Whether every heap pool is below the threshold after its last collection.
+     */
+    private boolean heapPoolsRecovered() {
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            long max = pool.getUsage().getMax();
+            if (afterGc != null && max > 0 && afterGc.getUsed() >= max / 100 * policy.heapThresholdPercent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean armed() {
+        return reserve != null;
+    }
+
+    private void rearm() {
+        if (reserve != null || policy.reserveBytes() == 0) {
+            return;
+        }
+        try {
+            reserve = new byte[(int) policy.reserveBytes()];
+        } catch (OutOfMemoryError e) {
+            logger.log(System.Logger.Level.WARNING, "Could not allocate the OOM capture reserve yet.");
+        }
+    }
+
+    private IncidentReport report(Map<String, String> values) {
+        Instant createdAt = clock.instant();
+        try {
+            createdAt = Instant.ofEpochMilli(Long.parseLong(values.getOrDefault("epochMillis", "")));
+        } catch (NumberFormatException e) {
+            // Keep the bundling time.
+        }
+        IncidentId id = IncidentIds.next(Clock.fixed(createdAt, clock.getZone()));
+        Map<String, String> attrs = new TreeMap<>();
+        values.forEach((key, value) -> attrs.put("oom." + key, value));
+        String reason = values.getOrDefault("reason", "out of memory");
+
+        List<String> whatHappened = new ArrayList<>();
+        whatHappened.add("Heap exhaustion detected: " + reason);
+        String used = values.get("heap.used");
+        String max = values.get("heap.max");
+        if (used != null && max != null) {
+            whatHappened.add("Heap in use: " + used + " of " + max + " bytes");
+        }
+        IncidentSummary summary = new IncidentSummary(
+            "Out of memory",
+            whatHappened,
+            List.of(
+                "Check oom/heap-pools.txt for the pool that filled up.",
+                "Review allocation events in the recording leading up to the capture."
+            )
+        );
+        IncidentMetadata meta = new IncidentMetadata(
+            id,
+            createdAt,
+            Severity.CRITICAL,
+            TriggerKind.OUT_OF_MEMORY.name(),
+            null,
+            "Heap exhausted: " + reason
+        );
+        return new IncidentReport(meta, summary, attrs);
+    }
+
+    private static Map<String, String> parse(byte[] text) {
+        Map<String, String> values = new TreeMap<>();
+        for (String line : new String(text, StandardCharsets.US_ASCII).split("\n")) {
+            int separator = line.indexOf('=');
+            if (separator > 0) {
+                values.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return values;
+    }
+
+    private static boolean isOutOfMemory(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutOfMemoryError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeNote(Path target, long at, String reason) throws IOException {
+        note.clear();
+        putAscii("reason=").putAscii(reason).putAscii("\n");
+        putAscii("epochMillis=").putLong(at).putAscii("\n");
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        putAscii("heap.used=").putLong(heap.getUsed()).putAscii("\n");
+        putAscii("heap.committed=").putLong(heap.getCommitted()).putAscii("\n");
+        putAscii("heap.max=").putLong(heap.getMax()).putAscii("\n");
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getUsage();
+            putAscii("pool.").putKey(pool.getName()).putAscii(".used=").putLong(usage.getUsed()).putAscii("\n");
+            putAscii("pool.").putKey(pool.getName()).putAscii(".max=").putLong(usage.getMax()).putAscii("\n");
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (afterGc != null) {
+                putAscii("pool.").putKey(pool.getName()).putAscii(".usedAfterGc=").putLong(afterGc.getUsed())
+                    .putAscii("\n");
+            }
+        }
+        note.flip();
+        try (FileChannel channel = FileChannel.open(
+            target,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            while (note.hasRemaining()) {
+                channel.write(note);
+            }
+        }
+    }
+
+    private OomCapture putKey(String value) {
+        for (int i = 0; i < value.length() && note.hasRemaining(); i++) {
+            char c = value.charAt(i);
+            note.put(c == ' ' || c == '=' || c >= 0x80 ? (byte) '_' : (byte) c);
+        }
+        return this;
+    }
+
+    private OomCapture putAscii(String value) {
+        String text = value == null ? "null" : value;
+        for (int i = 0; i < text.length() && note.hasRemaining(); i++) {
+            char c = text.charAt(i);
+            note.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        return this;
+    }
+
+    private OomCapture putLong(long value) {
+        if (value == 0L) {
+            return putDigit(0);
+        }
+        if (value < 0L) {
+            if (note.hasRemaining()) {
+                note.put((byte) '-');
+            }
+            if (value == Long.MIN_VALUE) {
+                return putAscii("9223372036854775808");
+            }
+            value = -value;
+        }
+        long divisor = 1L;
+        while (value / divisor >= 10L) {
+            divisor *= 10L;
+        }
+        while (divisor > 0L) {
+            putDigit((int) (value / divisor));
+            value %= divisor;
+            divisor /= 10L;
+        }
+        return this;
+    }
+
+    private OomCapture putDigit(int digit) {
+        if (note.hasRemaining()) {
+            note.put((byte) ('0' + digit));
+        }
+        return this;
+    }
+}
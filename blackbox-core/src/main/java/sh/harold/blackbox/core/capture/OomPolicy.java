@@ -0,0 +1,41 @@
+package sh.harold.blackbox.core.capture;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures {@link OomCapture}: the memory held back for the capture itself, the share of a heap
+ * pool still in use after a collection that counts as about to run out, and the minimum time
+ * between captures.
+ */
+public record OomPolicy(
+    boolean enabled,
+    long reserveBytes,
+    int heapThresholdPercent,
+    Duration cooldown
+) {
+    public static final long DEFAULT_RESERVE_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_HEAP_THRESHOLD_PERCENT = 95;
+    public static final Duration DEFAULT_COOLDOWN = Duration.ofMinutes(5);
+
+    public OomPolicy {
+        Objects.requireNonNull(cooldown, "cooldown");
+        if (reserveBytes < 0 || reserveBytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("reserveBytes must be between 0 and 2 GiB.");
+        }
+        if (heapThresholdPercent <= 0 || heapThresholdPercent > 100) {
+            throw new IllegalArgumentException("heapThresholdPercent must be in (0, 100].");
+        }
+        if (cooldown.isNegative()) {
+            throw new IllegalArgumentException("cooldown must be non-negative.");
+        }
+    }
+
+    public static OomPolicy defaults() {
+        return new OomPolicy(true, DEFAULT_RESERVE_BYTES, DEFAULT_HEAP_THRESHOLD_PERCENT, DEFAULT_COOLDOWN);
+    }
+
+    public static OomPolicy disabled() {
+        return new OomPolicy(false, 0L, DEFAULT_HEAP_THRESHOLD_PERCENT, DEFAULT_COOLDOWN);
+    }
+}
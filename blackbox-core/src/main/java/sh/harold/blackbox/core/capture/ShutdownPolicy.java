@@ -0,0 +1,42 @@
+package sh.harold.blackbox.core.capture;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures the final capture taken when the server stops abnormally: how far back a stall or a
+ * burst of {@code errorThreshold} errors still counts, and the time budget for the capture, which
+ * a capture already writing its bundle gets twice.
+ */
+public record ShutdownPolicy(
+    boolean enabled,
+    Duration lookback,
+    int errorThreshold,
+    Duration budget
+) {
+    public static final Duration DEFAULT_LOOKBACK = Duration.ofMinutes(2);
+    public static final int DEFAULT_ERROR_THRESHOLD = 50;
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(3);
+
+    public ShutdownPolicy {
+        Objects.requireNonNull(lookback, "lookback");
+        Objects.requireNonNull(budget, "budget");
+        if (lookback.isNegative() || lookback.isZero()) {
+            throw new IllegalArgumentException("lookback must be > 0.");
+        }
+        if (errorThreshold <= 0) {
+            throw new IllegalArgumentException("errorThreshold must be > 0.");
+        }
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("budget must be > 0.");
+        }
+    }
+
+    public static ShutdownPolicy defaults() {
+        return new ShutdownPolicy(true, DEFAULT_LOOKBACK, DEFAULT_ERROR_THRESHOLD, DEFAULT_BUDGET);
+    }
+
+    public static ShutdownPolicy disabled() {
+        return new ShutdownPolicy(false, DEFAULT_LOOKBACK, DEFAULT_ERROR_THRESHOLD, DEFAULT_BUDGET);
+    }
+}
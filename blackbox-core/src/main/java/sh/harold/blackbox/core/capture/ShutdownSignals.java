@@ -0,0 +1,66 @@
+package sh.harold.blackbox.core.capture;
+
+import java.time.Clock;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Collects what makes a server stop look abnormal: a stall within the lookback, at least
+ * {@link ShutdownPolicy#errorThreshold()} errors within the lookback, or a shutdown that started
+ * from a signal rather than the server's own stop path.
+ *
+ * <p>Errors are kept as a ring of the last {@code errorThreshold} timestamps, so the rate check is
+ * a single comparison against the oldest one.
+ */
+public final class ShutdownSignals {
+    private final Clock clock;
+    private final ShutdownPolicy policy;
+    private final long[] errorMillis;
+    private int nextError;
+    private int errorCount;
+    private volatile long lastStallMillis = Long.MIN_VALUE;
+    private volatile boolean signalled;
+
+    public ShutdownSignals(Clock clock, ShutdownPolicy policy) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.errorMillis = new long[policy.errorThreshold()];
+    }
+
+    public void stall() {
+        lastStallMillis = clock.millis();
+    }
+
+    public synchronized void error() {
+        errorMillis[nextError] = clock.millis();
+        nextError = (nextError + 1) % errorMillis.length;
+        errorCount = Math.min(errorCount + 1, errorMillis.length);
+    }
+
+    public void signal() {
+        signalled = true;
+    }
+
+    public ShutdownPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Why the stop looks abnormal, or empty for a clean stop.
+     */
+    public Optional<String> abnormalReason() {
+        long since = clock.millis() - policy.lookback().toMillis();
+        if (signalled) {
+            return Optional.of("shutdown signal before the server stopped");
+        }
+        if (lastStallMillis >= since) {
+            return Optional.of("stall within the last " + policy.lookback().toSeconds() + "s");
+        }
+        synchronized (this) {
+            if (errorCount == errorMillis.length && errorMillis[nextError] >= since) {
+                return Optional.of(errorCount + " errors within the last " + policy.lookback().toSeconds() + "s");
+            }
+        }
+        return Optional.empty();
+    }
+}
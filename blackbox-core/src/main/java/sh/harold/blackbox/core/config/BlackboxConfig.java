@@ -3,8 +3,15 @@ package sh.harold.blackbox.core.config;
 import java.time.Duration;
 import java.util.Objects;
 import sh.harold.blackbox.core.capture.CapturePolicy;
+import sh.harold.blackbox.core.capture.OomPolicy;
+import sh.harold.blackbox.core.capture.ShutdownPolicy;
+import sh.harold.blackbox.core.memory.HeapDumpPolicy;
+import sh.harold.blackbox.core.memory.HeapHistogramPolicy;
+import sh.harold.blackbox.core.memory.NativeMemoryPolicy;
 import sh.harold.blackbox.core.notify.discord.DiscordWebhookConfig;
 import sh.harold.blackbox.core.trigger.TriggerPolicy;
+import sh.harold.blackbox.core.warmup.WarmupPolicy;
+import sh.harold.blackbox.core.watchdog.WatchdogPolicy;
 
 /**
  * Parsed configuration for Blackbox.
@@ -16,7 +23,14 @@ public record BlackboxConfig(
     TriggerPolicy triggerPolicy,
     CapturePolicy capturePolicy,
     DiscordWebhookConfig discordWebhook,
-    boolean webEnabled
+    WatchdogPolicy watchdog,
+    WarmupPolicy warmup,
+    boolean webEnabled,
+    OomPolicy oom,
+    ShutdownPolicy shutdown,
+    HeapHistogramPolicy heapHistogram,
+    HeapDumpPolicy heapDump,
+    NativeMemoryPolicy nativeMemory
 ) {
     public BlackboxConfig {
         Objects.requireNonNull(jfrMaxAge, "jfrMaxAge");
@@ -24,6 +38,13 @@ public record BlackboxConfig(
         Objects.requireNonNull(triggerPolicy, "triggerPolicy");
         Objects.requireNonNull(capturePolicy, "capturePolicy");
         Objects.requireNonNull(discordWebhook, "discordWebhook");
+        Objects.requireNonNull(watchdog, "watchdog");
+        Objects.requireNonNull(warmup, "warmup");
+        Objects.requireNonNull(oom, "oom");
+        Objects.requireNonNull(shutdown, "shutdown");
+        Objects.requireNonNull(heapHistogram, "heapHistogram");
+        Objects.requireNonNull(heapDump, "heapDump");
+        Objects.requireNonNull(nativeMemory, "nativeMemory");
         if (jfrMaxAge.isNegative() || jfrMaxAge.isZero()) {
             throw new IllegalArgumentException("jfrMaxAge must be > 0.");
         }
@@ -34,4 +55,149 @@ public record BlackboxConfig(
             throw new IllegalArgumentException("jfrRecordingName must be non-blank.");
         }
     }
+
+    public BlackboxConfig(
+        Duration jfrMaxAge,
+        long jfrMaxSizeBytes,
+        String jfrRecordingName,
+        TriggerPolicy triggerPolicy,
+        CapturePolicy capturePolicy,
+        DiscordWebhookConfig discordWebhook,
+        WatchdogPolicy watchdog,
+        WarmupPolicy warmup,
+        boolean webEnabled
+    ) {
+        this(
+            jfrMaxAge,
+            jfrMaxSizeBytes,
+            jfrRecordingName,
+            triggerPolicy,
+            capturePolicy,
+            discordWebhook,
+            watchdog,
+            warmup,
+            webEnabled,
+            OomPolicy.defaults()
+        );
+    }
+
+    public BlackboxConfig(
+        Duration jfrMaxAge,
+        long jfrMaxSizeBytes,
+        String jfrRecordingName,
+        TriggerPolicy triggerPolicy,
+        CapturePolicy capturePolicy,
+        DiscordWebhookConfig discordWebhook,
+        WatchdogPolicy watchdog,
+        WarmupPolicy warmup,
+        boolean webEnabled,
+        OomPolicy oom
+    ) {
+        this(
+            jfrMaxAge,
+            jfrMaxSizeBytes,
+            jfrRecordingName,
+            triggerPolicy,
+            capturePolicy,
+            discordWebhook,
+            watchdog,
+            warmup,
+            webEnabled,
+            oom,
+            ShutdownPolicy.defaults()
+        );
+    }
+
+    public BlackboxConfig(
+        Duration jfrMaxAge,
+        long jfrMaxSizeBytes,
+        String jfrRecordingName,
+        TriggerPolicy triggerPolicy,
+        CapturePolicy capturePolicy,
+        DiscordWebhookConfig discordWebhook,
+        WatchdogPolicy watchdog,
+        WarmupPolicy warmup,
+        boolean webEnabled,
+        OomPolicy oom,
+        ShutdownPolicy shutdown
+    ) {
+        this(
+            jfrMaxAge,
+            jfrMaxSizeBytes,
+            jfrRecordingName,
+            triggerPolicy,
+            capturePolicy,
+            discordWebhook,
+            watchdog,
+            warmup,
+            webEnabled,
+            oom,
+            shutdown,
+            HeapHistogramPolicy.defaults()
+        );
+    }
+
+    public BlackboxConfig(
+        Duration jfrMaxAge,
+        long jfrMaxSizeBytes,
+        String jfrRecordingName,
+        TriggerPolicy triggerPolicy,
+        CapturePolicy capturePolicy,
+        DiscordWebhookConfig discordWebhook,
+        WatchdogPolicy watchdog,
+        WarmupPolicy warmup,
+        boolean webEnabled,
+        OomPolicy oom,
+        ShutdownPolicy shutdown,
+        HeapHistogramPolicy heapHistogram
+    ) {
+        this(
+            jfrMaxAge,
+            jfrMaxSizeBytes,
+            jfrRecordingName,
+            triggerPolicy,
+            capturePolicy,
+            discordWebhook,
+            watchdog,
+            warmup,
+            webEnabled,
+            oom,
+            shutdown,
+            heapHistogram,
+            HeapDumpPolicy.disabled()
+        );
+    }
+
+    public BlackboxConfig(
+        Duration jfrMaxAge,
+        long jfrMaxSizeBytes,
+        String jfrRecordingName,
+        TriggerPolicy triggerPolicy,
+        CapturePolicy capturePolicy,
+        DiscordWebhookConfig discordWebhook,
+        WatchdogPolicy watchdog,
+        WarmupPolicy warmup,
+        boolean webEnabled,
+        OomPolicy oom,
+        ShutdownPolicy shutdown,
+        HeapHistogramPolicy heapHistogram,
+        HeapDumpPolicy heapDump
+    ) {
+        this(
+            jfrMaxAge,
+            jfrMaxSizeBytes,
+            jfrRecordingName,
+            triggerPolicy,
+            capturePolicy,
+            discordWebhook,
+            watchdog,
+            warmup,
+            webEnabled,
+            oom,
+            shutdown,
+            heapHistogram,
+            heapDump,
+            NativeMemoryPolicy.defaults()
+        );
+    }
 }
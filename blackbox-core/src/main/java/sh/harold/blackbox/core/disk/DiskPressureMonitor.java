@@ -0,0 +1,184 @@
+package sh.harold.blackbox.core.disk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Tracks usable space on the file stores holding the incident directory and the JFR repository,
+ * which are usually shared with world saves, and maps it to a {@link DiskPressureStage}.
+ *
+ * <p>The fullest watched store decides the stage. Stage changes and skipped captures are kept so
+ * status output and later bundles can show what was cut back and why.
+ */
+public final class DiskPressureMonitor {
+    private static final int RETAINED_ACTIONS = 32;
+
+    private final Clock clock;
+    private final DiskPressurePolicy policy;
+    private final List<Path> watched;
+    private final UsableSpace usableSpace;
+    private final System.Logger logger;
+    private final Deque<String> actions = new ArrayDeque<>();
+
+    private DiskPressureStage stage = DiskPressureStage.NORMAL;
+    private long usableBytes = Long.MAX_VALUE;
+    private Path fullest;
+    private Instant sampledAt;
+    private long skippedCaptures;
+
+    public DiskPressureMonitor(
+        Clock clock,
+        DiskPressurePolicy policy,
+        List<Path> watched,
+        UsableSpace usableSpace,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.watched = List.copyOf(Objects.requireNonNull(watched, "watched"));
+        this.usableSpace = Objects.requireNonNull(usableSpace, "usableSpace");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    /**
+     * Watches {@code paths} using {@link java.nio.file.FileStore#getUsableSpace()}.
+     */
+    public static DiskPressureMonitor fileStores(Clock clock, DiskPressurePolicy policy, List<Path> paths, System.Logger logger) {
+        return new DiskPressureMonitor(clock, policy, paths, UsableSpace.fileStore(), logger);
+    }
+
+    /**
+     * A monitor that never reports pressure.
+     */
+    public static DiskPressureMonitor disabled(Clock clock) {
+        return new DiskPressureMonitor(
+            clock,
+            DiskPressurePolicy.disabled(),
+            List.of(),
+            UsableSpace.fileStore(),
+            System.getLogger(DiskPressureMonitor.class.getName())
+        );
+    }
+
+    public DiskPressurePolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Re-reads usable space on every watched store and returns the resulting stage.
+     */
+    public synchronized DiskPressureStage sample() {
+        if (!policy.enabled()) {
+            return stage;
+        }
+        long lowest = Long.MAX_VALUE;
+        Path lowestPath = null;
+        for (Path path : watched) {
+            try {
+                long usable = usableSpace.usableBytes(path);
+                if (usable < lowest) {
+                    lowest = usable;
+                    lowestPath = path;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.log(System.Logger.Level.DEBUG, "Failed to read usable space for " + path, e);
+            }
+        }
+        usableBytes = lowest;
+        fullest = lowestPath;
+        sampledAt = clock.instant();
+        DiskPressureStage next = policy.stageFor(lowest);
+        if (next != stage) {
+            String line = sampledAt + " " + stage + " -> " + next + " usableBytes=" + lowest + " path=" + lowestPath;
+            record(line);
+            logger.log(
+                next.atLeast(stage) ? System.Logger.Level.WARNING : System.Logger.Level.INFO,
+                "Disk pressure " + stage + " -> " + next + ": " + lowest + " bytes usable on " + lowestPath + "."
+            );
+            stage = next;
+        }
+        return stage;
+    }
+
+    public synchronized DiskPressureStage stage() {
+        return stage;
+    }
+
+    /**
+     * Usable bytes on the fullest watched store at the last sample, or {@link Long#MAX_VALUE}
+     * if none could be read.
+     */
+    public synchronized long usableBytes() {
+        return usableBytes;
+    }
+
+    /**
+     * Notes a capture dropped because of {@link DiskPressureStage#SKIP_CAPTURE}.
+     */
+    public synchronized void recordSkipped(String kind, String scope) {
+        skippedCaptures++;
+        record(clock.instant() + " skipped " + kind + " " + scope + " usableBytes=" + usableBytes);
+    }
+
+    public synchronized long skippedCaptures() {
+        return skippedCaptures;
+    }
+
+    /**
+     * Renders the current stage and recent actions as plain text.
+     */
+    public synchronized String render() {
+        StringBuilder out = new StringBuilder(512);
+        out.append("# disk pressure\n");
+        out.append("enabled=").append(policy.enabled()).append('\n');
+        out.append("stage=").append(stage).append('\n');
+        if (sampledAt != null) {
+            out.append("usableBytes=").append(usableBytes == Long.MAX_VALUE ? "unknown" : Long.toString(usableBytes)).append('\n');
+            out.append("fullest=").append(fullest).append('\n');
+            out.append("sampledAt=").append(sampledAt).append('\n');
+        }
+        out.append("skippedCaptures=").append(skippedCaptures).append('\n');
+        for (String line : actions) {
+            out.append("  ").append(line).append('\n');
+        }
+        return out.toString();
+    }
+
+    private void record(String line) {
+        if (actions.size() == RETAINED_ACTIONS) {
+            actions.removeFirst();
+        }
+        actions.addLast(line);
+    }
+
+    /**
+     * Reads usable space for the file store holding a path.
+     */
+    @FunctionalInterface
+    public interface UsableSpace {
+        long usableBytes(Path path) throws IOException;
+
+        /**
+         * Uses the store of {@code path}, or of its nearest existing ancestor if it does not exist yet.
+         */
+        static UsableSpace fileStore() {
+            return path -> {
+                Path existing = path.toAbsolutePath();
+                while (existing != null && !Files.exists(existing)) {
+                    existing = existing.getParent();
+                }
+                if (existing == null) {
+                    throw new IOException("No existing ancestor for " + path);
+                }
+                return Files.getFileStore(existing).getUsableSpace();
+            };
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package sh.harold.blackbox.core.disk;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Free-space thresholds for {@link DiskPressureMonitor}. A stage applies once usable space on the
+ * fullest watched file store drops below its threshold; thresholds must not increase from stage
+ * to stage. {@code shrunkWindow} is how much recording is kept under {@link DiskPressureStage#SHRINK_WINDOW}.
+ */
+public record DiskPressurePolicy(
+    boolean enabled,
+    long shrinkWindowBelowBytes,
+    long dropRecordingBelowBytes,
+    long skipCaptureBelowBytes,
+    Duration shrunkWindow
+) {
+    public static final long DEFAULT_SHRINK_WINDOW_BELOW_BYTES = 5L * 1024L * 1024L * 1024L;
+    public static final long DEFAULT_DROP_RECORDING_BELOW_BYTES = 2L * 1024L * 1024L * 1024L;
+    public static final long DEFAULT_SKIP_CAPTURE_BELOW_BYTES = 512L * 1024L * 1024L;
+    public static final Duration DEFAULT_SHRUNK_WINDOW = Duration.ofMinutes(2);
+
+    public DiskPressurePolicy {
+        Objects.requireNonNull(shrunkWindow, "shrunkWindow");
+        if (skipCaptureBelowBytes < 0) {
+            throw new IllegalArgumentException("skipCaptureBelowBytes must be >= 0.");
+        }
+        if (dropRecordingBelowBytes < skipCaptureBelowBytes) {
+            throw new IllegalArgumentException("dropRecordingBelowBytes must be >= skipCaptureBelowBytes.");
+        }
+        if (shrinkWindowBelowBytes < dropRecordingBelowBytes) {
+            throw new IllegalArgumentException("shrinkWindowBelowBytes must be >= dropRecordingBelowBytes.");
+        }
+        if (shrunkWindow.isNegative() || shrunkWindow.isZero()) {
+            throw new IllegalArgumentException("shrunkWindow must be > 0.");
+        }
+    }
+
+    public static DiskPressurePolicy defaults() {
+        return new DiskPressurePolicy(
+            true,
+            DEFAULT_SHRINK_WINDOW_BELOW_BYTES,
+            DEFAULT_DROP_RECORDING_BELOW_BYTES,
+            DEFAULT_SKIP_CAPTURE_BELOW_BYTES,
+            DEFAULT_SHRUNK_WINDOW
+        );
+    }
+
+    public static DiskPressurePolicy disabled() {
+        return new DiskPressurePolicy(false, 0L, 0L, 0L, DEFAULT_SHRUNK_WINDOW);
+    }
+
+    public DiskPressureStage stageFor(long usableBytes) {
+        if (!enabled) {
+            return DiskPressureStage.NORMAL;
+        }
+        if (usableBytes < skipCaptureBelowBytes) {
+            return DiskPressureStage.SKIP_CAPTURE;
+        }
+        if (usableBytes < dropRecordingBelowBytes) {
+            return DiskPressureStage.DROP_RECORDING;
+        }
+        if (usableBytes < shrinkWindowBelowBytes) {
+            return DiskPressureStage.SHRINK_WINDOW;
+        }
+        return DiskPressureStage.NORMAL;
+    }
+}
@@ -0,0 +1,20 @@
+package sh.harold.blackbox.core.disk;
+
+/**
+ * How far captures are cut back because the disks Blackbox writes to are running out of space.
+ * Stages are ordered; each one also applies the cuts of the stages before it.
+ */
+public enum DiskPressureStage {
+    /** Enough space; captures are unchanged. */
+    NORMAL,
+    /** Only the most recent part of the recording is bundled. */
+    SHRINK_WINDOW,
+    /** Bundles are written without a recording. */
+    DROP_RECORDING,
+    /** No bundles are written at all. */
+    SKIP_CAPTURE;
+
+    public boolean atLeast(DiskPressureStage other) {
+        return compareTo(other) >= 0;
+    }
+}
@@ -1,13 +1,25 @@
 package sh.harold.blackbox.core.incident;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 /**
  * Full report data used to build an incident bundle.
+ *
+ * <p>{@code attrs} carries trigger details (affected scopes, stall lengths and similar) and is
+ * kept sorted by key so it serializes deterministically.
  */
-public record IncidentReport(IncidentMetadata meta, IncidentSummary summary) {
+public record IncidentReport(IncidentMetadata meta, IncidentSummary summary, Map<String, String> attrs) {
     public IncidentReport {
         Objects.requireNonNull(meta, "meta");
         Objects.requireNonNull(summary, "summary");
+        Objects.requireNonNull(attrs, "attrs");
+        attrs = Collections.unmodifiableSortedMap(new TreeMap<>(attrs));
+    }
+
+    public IncidentReport(IncidentMetadata meta, IncidentSummary summary) {
+        this(meta, summary, Map.of());
     }
 }
@@ -0,0 +1,513 @@
+package sh.harold.blackbox.core.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.json.IncidentJson;
+import sh.harold.blackbox.core.pack.PackFile;
+
+/**
+ * Append-only binary catalog of incident bundles, stored as {@value #FILE_NAME} in the incident
+ * directory.
+ *
+ * <p>The file is a header followed by length-prefixed, CRC-checked records, each either a put of
+ * an {@link IncidentEntry} or a removal. Records are appended as the index changes and the file
+ * is rewritten as a compacted snapshot once dead records outnumber live ones. On
+ * {@link #open(Path, System.Logger)} the catalog is memory-mapped and replayed, then reconciled
+ * with the bundle file names on disk and the entries of any {@link PackFile packs}; bundles it
+ * does not know about are read in parallel. A missing or corrupt catalog is therefore rebuilt from
+ * the bundles. Records are keyed by the bundle's path relative to the incident directory, which
+ * for loose bundles is just the file name.
+ */
+public final class IncidentCatalog implements IndexJournal {
+    public static final String FILE_NAME = "catalog.bin";
+
+    private static final int MAGIC = 0x42424354;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int MIN_RECORDS_BEFORE_REWRITE = 256;
+    private static final int MAX_REBUILD_THREADS = 4;
+
+    private final Path incidentDir;
+    private final Path file;
+    private final System.Logger logger;
+    private FileChannel channel;
+    private int records;
+
+    private IncidentCatalog(Path incidentDir, System.Logger logger) {
+        this.incidentDir = incidentDir;
+        this.file = incidentDir.resolve(FILE_NAME);
+        this.logger = logger;
+    }
+
+    /**
+     * Loads the catalog in {@code incidentDir}, rebuilding any missing entries from the bundles,
+     * and returns an index that appends every later change to it.
+     */
+    public static IncidentIndex open(Path incidentDir, System.Logger logger) {
+        Objects.requireNonNull(incidentDir, "incidentDir");
+        Objects.requireNonNull(logger, "logger");
+        IncidentCatalog catalog = new IncidentCatalog(incidentDir, logger);
+        IncidentIndex index = new IncidentIndex(incidentDir, catalog);
+        try {
+            Files.createDirectories(incidentDir);
+            catalog.load(index);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to open incident catalog " + catalog.file, e);
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized void put(IncidentEntry entry) {
+        append(encodePut(keyOf(entry.path()), entry));
+    }
+
+    @Override
+    public synchronized void remove(IncidentEntry entry) {
+        append(encodeRemove(keyOf(entry.path())));
+    }
+
+    @Override
+    public synchronized boolean shouldRewrite(int liveEntries) {
+        return records > Math.max(MIN_RECORDS_BEFORE_REWRITE, liveEntries * 2);
+    }
+
+    @Override
+    public synchronized void rewrite(Collection<IncidentEntry> live) {
+        try {
+            writeSnapshot(live);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to compact incident catalog " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to close incident catalog " + file, e);
+        }
+        channel = null;
+    }
+
+    private void load(IncidentIndex index) throws IOException {
+        Map<String, IncidentEntry> known = new HashMap<>();
+        boolean clean = Files.exists(file) && replay(known);
+
+        List<Path> bundles;
+        try (Stream<Path> stream = Files.list(incidentDir)) {
+            bundles = stream
+                .filter(IncidentIndex::isBundle)
+                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                .toList();
+        }
+
+        List<Path> unknown = new ArrayList<>();
+        for (Path bundle : bundles) {
+            IncidentEntry entry = known.remove(bundle.getFileName().toString());
+            if (entry != null && entry.sizeBytes() == Files.size(bundle)) {
+                index.restore(entry);
+            } else {
+                unknown.add(bundle);
+            }
+        }
+        for (IncidentEntry entry : rebuild(unknown)) {
+            index.restore(entry);
+        }
+        int unknownPacked = loadPacked(index, known);
+
+        if (!clean || !unknown.isEmpty() || unknownPacked > 0 || !known.isEmpty()) {
+            if (!unknown.isEmpty() || unknownPacked > 0) {
+                logger.log(System.Logger.Level.INFO,
+                    "Rebuilt " + (unknown.size() + unknownPacked) + " incident catalog entries from bundles.");
+            }
+            writeSnapshot(index.entries());
+        } else {
+            openForAppend();
+        }
+    }
+
+    /**
+     * Restores the entries of every pack, reading the reports of those the catalog does not know.
+     * Returns how many had to be read.
+     */
+    private int loadPacked(IncidentIndex index, Map<String, IncidentEntry> known) throws IOException {
+        Path packDir = incidentDir.resolve(PackFile.DIRECTORY);
+        if (!Files.isDirectory(packDir)) {
+            return 0;
+        }
+        List<Path> packs;
+        try (Stream<Path> stream = Files.list(packDir)) {
+            packs = stream
+                .filter(path -> path.getFileName().toString().endsWith(PackFile.SUFFIX))
+                .sorted()
+                .toList();
+        }
+        int unknown = 0;
+        for (Path packPath : packs) {
+            try (PackFile pack = PackFile.open(packPath)) {
+                for (Map.Entry<String, PackFile.Slot> slot : pack.entries().entrySet()) {
+                    Path bundle = packPath.resolve(slot.getKey());
+                    IncidentEntry entry = known.remove(keyOf(bundle));
+                    if (entry == null || entry.sizeBytes() != slot.getValue().length()) {
+                        entry = readPacked(pack, bundle, slot.getValue().length());
+                        unknown++;
+                    }
+                    index.restore(entry);
+                }
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to read incident pack " + packPath, e);
+            }
+        }
+        return unknown;
+    }
+
+    /**
+     * Replays the catalog into {@code known}, keyed by bundle path relative to the incident directory. Returns false if the file
+     * was unreadable or ended in a torn record.
+     */
+    private boolean replay(Map<String, IncidentEntry> known) {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_BYTES) {
+                return false;
+            }
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                logger.log(System.Logger.Level.WARNING, "Ignoring incident catalog with unknown format " + file);
+                return false;
+            }
+            if (buffer.getInt() != VERSION) {
+                logger.log(System.Logger.Level.INFO, "Rebuilding incident catalog written by another version.");
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            while (buffer.hasRemaining()) {
+                if (buffer.remaining() < 8) {
+                    return false;
+                }
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return false;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    return false;
+                }
+                decode(record, known);
+                records++;
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to read incident catalog " + file, e);
+            return false;
+        }
+    }
+
+    private void decode(ByteBuffer record, Map<String, IncidentEntry> known) {
+        byte op = record.get();
+        String key = readString(record);
+        if (op == OP_REMOVE) {
+            known.remove(key);
+            return;
+        }
+        if (op != OP_PUT) {
+            throw new IllegalStateException("Unknown catalog record type " + op);
+        }
+        String id = readString(record);
+        Instant createdAt = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        long sizeBytes = record.getLong();
+        String severity = readString(record);
+        String trigger = readString(record);
+        String world = readString(record);
+        String headline = readString(record);
+        int scopeCount = record.getInt();
+        List<String> scopes = new ArrayList<>(scopeCount);
+        for (int i = 0; i < scopeCount; i++) {
+            scopes.add(readString(record));
+        }
+        long stallMs = record.getLong();
+        String fingerprint = readString(record);
+        StorageTier tier = StorageTier.values()[record.get()];
+        String parent = readString(record);
+        known.put(key, new IncidentEntry(
+            id,
+            incidentDir.resolve(key),
+            createdAt,
+            sizeBytes,
+            severity == null ? null : Severity.valueOf(severity),
+            trigger,
+            world,
+            headline,
+            scopes,
+            stallMs,
+            fingerprint,
+            tier,
+            parent
+        ));
+    }
+
+    private List<IncidentEntry> rebuild(List<Path> bundles) {
+        if (bundles.isEmpty()) {
+            return List.of();
+        }
+        int threads = Math.max(1, Math.min(MAX_REBUILD_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "blackbox-catalog-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<IncidentEntry>> futures = new ArrayList<>(bundles.size());
+            for (Path bundle : bundles) {
+                futures.add(pool.submit(() -> readBundle(bundle)));
+            }
+            List<IncidentEntry> entries = new ArrayList<>(futures.size());
+            for (Future<IncidentEntry> future : futures) {
+                try {
+                    IncidentEntry entry = future.get();
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                } catch (Exception e) {
+                    logger.log(System.Logger.Level.WARNING, "Failed to rebuild incident catalog entry.", e);
+                }
+            }
+            return entries;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private IncidentEntry readBundle(Path bundle) {
+        try {
+            long size = Files.size(bundle);
+            try (ZipFile zip = new ZipFile(bundle.toFile())) {
+                ZipEntry json = zip.getEntry("incident.json");
+                if (json != null) {
+                    try (InputStream in = zip.getInputStream(json)) {
+                        IncidentReport report = IncidentJson.read(in);
+                        return IncidentEntry.of(report, bundle, size);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to read incident report from " + bundle, e);
+            }
+            String id = IncidentIndex.idOf(bundle);
+            Instant createdAt = IncidentIndex.parseCreatedAt(id);
+            if (createdAt == null) {
+                createdAt = Files.getLastModifiedTime(bundle, LinkOption.NOFOLLOW_LINKS).toInstant();
+            }
+            return IncidentEntry.scanned(id, bundle, createdAt, size);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to read incident bundle metadata for " + bundle, e);
+            return null;
+        }
+    }
+
+    private IncidentEntry readPacked(PackFile pack, Path bundle, long size) throws IOException {
+        String name = bundle.getFileName().toString();
+        try (ZipInputStream zip = new ZipInputStream(pack.open(name))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().equals("incident.json")) {
+                    return IncidentEntry.of(IncidentJson.read(zip), bundle, size);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to read incident report from " + bundle, e);
+        }
+        String id = IncidentIndex.idOf(bundle);
+        Instant createdAt = IncidentIndex.parseCreatedAt(id);
+        return IncidentEntry.scanned(id, bundle, createdAt == null ? Instant.EPOCH : createdAt, size);
+    }
+
+    private void writeSnapshot(Collection<IncidentEntry> live) throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Path temp = incidentDir.resolve(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            out.write(header());
+            for (IncidentEntry entry : live) {
+                ByteBuffer record = encodePut(keyOf(entry.path()), entry);
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = live.size();
+        openForAppend();
+    }
+
+    private void openForAppend() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            channel.write(header());
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            records++;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to append to incident catalog " + file, e);
+        }
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    /**
+     * Returns {@code bundle} relative to the incident directory with {@code /} separators, or its
+     * file name if it lies elsewhere.
+     */
+    private String keyOf(Path bundle) {
+        if (!bundle.startsWith(incidentDir) || bundle.equals(incidentDir)) {
+            return bundle.getFileName().toString();
+        }
+        StringBuilder key = new StringBuilder();
+        for (Path part : incidentDir.relativize(bundle)) {
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(part);
+        }
+        return key.toString();
+    }
+
+    private static ByteBuffer encodePut(String key, IncidentEntry entry) {
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(utf8(key));
+        strings.add(utf8(entry.id()));
+        strings.add(utf8(entry.severity() == null ? null : entry.severity().name()));
+        strings.add(utf8(entry.trigger()));
+        strings.add(utf8(entry.world()));
+        strings.add(utf8(entry.headline()));
+        for (String scope : entry.scopes()) {
+            strings.add(utf8(scope));
+        }
+        strings.add(utf8(entry.fingerprint()));
+        strings.add(utf8(entry.parent()));
+
+        int length = 1 + 8 + 4 + 8 + 4 + 8 + 1;
+        for (byte[] value : strings) {
+            length += 4 + (value == null ? 0 : value.length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.put(OP_PUT);
+        writeString(payload, strings.get(0));
+        writeString(payload, strings.get(1));
+        payload.putLong(entry.createdAt().getEpochSecond());
+        payload.putInt(entry.createdAt().getNano());
+        payload.putLong(entry.sizeBytes());
+        for (int i = 2; i < 6; i++) {
+            writeString(payload, strings.get(i));
+        }
+        payload.putInt(entry.scopes().size());
+        for (int i = 0; i < entry.scopes().size(); i++) {
+            writeString(payload, strings.get(6 + i));
+        }
+        payload.putLong(entry.stallMs());
+        writeString(payload, strings.get(strings.size() - 2));
+        payload.put((byte) entry.tier().ordinal());
+        writeString(payload, strings.get(strings.size() - 1));
+        return frame(payload.flip());
+    }
+
+    private static ByteBuffer encodeRemove(String key) {
+        byte[] name = utf8(key);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + name.length);
+        payload.put(OP_REMOVE);
+        writeString(payload, name);
+        return frame(payload.flip());
+    }
+
+    private static ByteBuffer frame(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer framed = ByteBuffer.allocate(8 + payload.remaining());
+        framed.putInt(payload.remaining());
+        framed.putInt((int) crc.getValue());
+        framed.put(payload);
+        return framed.flip();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(value.length);
+        out.put(value);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
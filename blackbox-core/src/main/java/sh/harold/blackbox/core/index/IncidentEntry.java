@@ -0,0 +1,197 @@
+package sh.harold.blackbox.core.index;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.Severity;
+
+/**
+ * One incident bundle as known to the {@link IncidentIndex}.
+ *
+ * <p>{@code severity}, {@code trigger}, {@code world}, {@code headline} and {@code fingerprint}
+ * are {@code null} for bundles whose report could not be read. {@code stallMs} is the longest
+ * stall recorded in the report, or 0 for non-stall incidents. {@code parent} is the incident a
+ * delta capture's recording builds on, or {@code null} for self-contained bundles.
+ */
+public record IncidentEntry(
+    String id,
+    Path path,
+    Instant createdAt,
+    long sizeBytes,
+    Severity severity,
+    String trigger,
+    String world,
+    String headline,
+    List<String> scopes,
+    long stallMs,
+    String fingerprint,
+    StorageTier tier,
+    String parent
+) {
+    /**
+     * Report attribute naming the parent of a delta capture.
+     */
+    public static final String PARENT_ATTR = "recording.parent";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public IncidentEntry {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(createdAt, "createdAt");
+        Objects.requireNonNull(scopes, "scopes");
+        Objects.requireNonNull(tier, "tier");
+        if (sizeBytes < 0) {
+            throw new IllegalArgumentException("sizeBytes must be >= 0.");
+        }
+        if (stallMs < 0) {
+            throw new IllegalArgumentException("stallMs must be >= 0.");
+        }
+        scopes = List.copyOf(scopes);
+    }
+
+    public IncidentEntry(
+        String id,
+        Path path,
+        Instant createdAt,
+        long sizeBytes,
+        Severity severity,
+        String trigger,
+        String world,
+        String headline,
+        List<String> scopes,
+        long stallMs,
+        String fingerprint,
+        StorageTier tier
+    ) {
+        this(id, path, createdAt, sizeBytes, severity, trigger, world, headline, scopes, stallMs, fingerprint, tier,
+            null);
+    }
+
+    public IncidentEntry(
+        String id,
+        Path path,
+        Instant createdAt,
+        long sizeBytes,
+        Severity severity,
+        String trigger,
+        String world,
+        String headline,
+        List<String> scopes,
+        long stallMs,
+        String fingerprint
+    ) {
+        this(id, path, createdAt, sizeBytes, severity, trigger, world, headline, scopes, stallMs, fingerprint,
+            StorageTier.FULL);
+    }
+
+    public IncidentEntry(
+        String id,
+        Path path,
+        Instant createdAt,
+        long sizeBytes,
+        Severity severity,
+        String trigger,
+        String world,
+        String headline
+    ) {
+        this(id, path, createdAt, sizeBytes, severity, trigger, world, headline,
+            world == null ? List.of() : List.of(world), 0L, null);
+    }
+
+    static IncidentEntry scanned(String id, Path path, Instant createdAt, long sizeBytes) {
+        return new IncidentEntry(id, path, createdAt, sizeBytes, null, null, null, null);
+    }
+
+    public static IncidentEntry of(IncidentReport report, Path path, long sizeBytes) {
+        Objects.requireNonNull(report, "report");
+        return new IncidentEntry(
+            report.meta().id().value(),
+            path,
+            report.meta().createdAt(),
+            sizeBytes,
+            report.meta().severity(),
+            report.meta().trigger(),
+            report.meta().world(),
+            report.meta().headline(),
+            scopesOf(report),
+            stallMsOf(report.attrs()),
+            fingerprint(report),
+            StorageTier.of(report.attrs()),
+            report.attrs().get(PARENT_ATTR)
+        );
+    }
+
+    /**
+     * Identifies incidents with the same trigger, cause and affected scopes, so repeats of one
+     * problem can be recognised without comparing bundles.
+     */
+    public static String fingerprint(IncidentReport report) {
+        Objects.requireNonNull(report, "report");
+        String key = report.meta().trigger()
+            + '\n' + report.summary().likelyCause()
+            + '\n' + String.join(",", new TreeSet<>(scopesOf(report)));
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        String hex = Long.toHexString(hash);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    /**
+     * Returns this entry for the same bundle stored at {@code path}, e.g. after it was packed.
+     */
+    public IncidentEntry withPath(Path path) {
+        return new IncidentEntry(id, path, createdAt, sizeBytes, severity, trigger, world, headline,
+            scopes, stallMs, fingerprint, tier, parent);
+    }
+
+    IncidentEntry withSize(long sizeBytes) {
+        return new IncidentEntry(id, path, createdAt, sizeBytes, severity, trigger, world, headline,
+            scopes, stallMs, fingerprint, tier, parent);
+    }
+
+    private static List<String> scopesOf(IncidentReport report) {
+        String joined = report.attrs().get("scopes");
+        if (joined == null || joined.isBlank()) {
+            return report.meta().world() == null ? List.of() : List.of(report.meta().world());
+        }
+        List<String> scopes = new ArrayList<>();
+        for (String scope : joined.split(",")) {
+            if (!scope.isBlank()) {
+                scopes.add(scope.trim());
+            }
+        }
+        return scopes;
+    }
+
+    private static long stallMsOf(Map<String, String> attrs) {
+        long stallMs = parseMillis(attrs.get("stallMs"));
+        for (Map.Entry<String, String> attr : attrs.entrySet()) {
+            if (attr.getKey().startsWith("stall.") && attr.getKey().endsWith(".durationMs")) {
+                stallMs = Math.max(stallMs, parseMillis(attr.getValue()));
+            }
+        }
+        return stallMs;
+    }
+
+    private static long parseMillis(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
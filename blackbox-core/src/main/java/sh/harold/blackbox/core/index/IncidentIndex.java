@@ -0,0 +1,324 @@
+package sh.harold.blackbox.core.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import sh.harold.blackbox.core.incident.IncidentReport;
+
+/**
+ * In-memory view of the incident directory, kept current by the writers and deleters of bundles.
+ *
+ * <p>The directory is scanned once by {@link #load(Path, System.Logger)}; afterwards the capture
+ * pipeline records new bundles and retention removes deleted ones, so count, size and listing
+ * queries never touch the filesystem.
+ */
+public final class IncidentIndex {
+    private static final DateTimeFormatter INCIDENT_TIMESTAMP = new DateTimeFormatterBuilder()
+        .appendPattern("yyyyMMdd-HHmmss.SSS")
+        .appendOffset("+HHmm", "Z")
+        .toFormatter(Locale.ROOT);
+    private static final Comparator<IncidentEntry> OLDEST_FIRST = Comparator
+        .comparing(IncidentEntry::createdAt)
+        .thenComparing(entry -> entry.path().getFileName().toString());
+
+    private final Path incidentDir;
+    private final IndexJournal journal;
+    private final TreeSet<IncidentEntry> byAge = new TreeSet<>(OLDEST_FIRST);
+    private final Map<String, IncidentEntry> byId = new HashMap<>();
+    private final Map<Path, IncidentEntry> byPath = new HashMap<>();
+    private final Map<String, TreeSet<IncidentEntry>> byScope = new HashMap<>();
+    private long totalBytes;
+
+    public IncidentIndex(Path incidentDir) {
+        this(incidentDir, IndexJournal.none());
+    }
+
+    /**
+     * Creates an empty index that reports every change to {@code journal}.
+     */
+    public IncidentIndex(Path incidentDir, IndexJournal journal) {
+        this.incidentDir = Objects.requireNonNull(incidentDir, "incidentDir");
+        this.journal = Objects.requireNonNull(journal, "journal");
+    }
+
+    /**
+     * Builds an index from the bundles currently in {@code incidentDir}, using only file names and sizes.
+     */
+    public static IncidentIndex load(Path incidentDir, System.Logger logger) {
+        Objects.requireNonNull(logger, "logger");
+        IncidentIndex index = new IncidentIndex(incidentDir);
+        if (!Files.exists(incidentDir)) {
+            return index;
+        }
+        List<Path> candidates;
+        try (Stream<Path> stream = Files.list(incidentDir)) {
+            candidates = stream
+                .filter(IncidentIndex::isBundle)
+                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                .toList();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to list incident directory " + incidentDir, e);
+            return index;
+        }
+        for (Path path : candidates) {
+            try {
+                String id = idOf(path);
+                Instant createdAt = parseCreatedAt(id);
+                if (createdAt == null) {
+                    createdAt = Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toInstant();
+                }
+                index.restore(IncidentEntry.scanned(id, path, createdAt, Files.size(path)));
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING,
+                    "Failed to read incident bundle metadata for " + path, e);
+            }
+        }
+        return index;
+    }
+
+    public Path incidentDir() {
+        return incidentDir;
+    }
+
+    /**
+     * Records a freshly written bundle.
+     */
+    public IncidentEntry add(IncidentReport report, Path bundle) throws IOException {
+        Objects.requireNonNull(report, "report");
+        Objects.requireNonNull(bundle, "bundle");
+        IncidentEntry entry = IncidentEntry.of(report, bundle, Files.size(bundle));
+        put(entry);
+        return entry;
+    }
+
+    public synchronized void put(IncidentEntry entry) {
+        Objects.requireNonNull(entry, "entry");
+        unlink(entry.path());
+        link(entry);
+        journal.put(entry);
+        maybeRewriteJournal();
+    }
+
+    /**
+     * Forgets the bundle at {@code bundle}; returns whether it was indexed.
+     */
+    public synchronized boolean remove(Path bundle) {
+        IncidentEntry entry = unlink(bundle);
+        if (entry == null) {
+            return false;
+        }
+        journal.remove(entry);
+        maybeRewriteJournal();
+        return true;
+    }
+
+    /**
+     * Re-reads the size of a bundle that was rewritten in place.
+     */
+    public void refreshSize(Path bundle) throws IOException {
+        long size = Files.size(bundle);
+        synchronized (this) {
+            IncidentEntry entry = byPath.get(bundle);
+            if (entry != null) {
+                put(entry.withSize(size));
+            }
+        }
+    }
+
+    /**
+     * Closes the journal; the index stays readable.
+     */
+    public synchronized void close() {
+        journal.close();
+    }
+
+    /**
+     * Adds entries without journaling them, for loaders replaying persisted state.
+     */
+    synchronized void restore(IncidentEntry entry) {
+        unlink(entry.path());
+        link(entry);
+    }
+
+    public synchronized Optional<IncidentEntry> find(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * Returns every indexed bundle, oldest first.
+     */
+    public synchronized List<IncidentEntry> entries() {
+        return List.copyOf(byAge);
+    }
+
+    /**
+     * Returns up to {@code limit} bundles, newest first.
+     */
+    public synchronized List<IncidentEntry> newest(int limit) {
+        List<IncidentEntry> out = new ArrayList<>(Math.max(0, Math.min(limit, byAge.size())));
+        Iterator<IncidentEntry> it = byAge.descendingIterator();
+        while (out.size() < limit && it.hasNext()) {
+            out.add(it.next());
+        }
+        return out;
+    }
+
+    /**
+     * Returns the requested page of entries matching {@code query}. The time range and scope are
+     * answered from sorted indexes, so only candidates inside them are examined.
+     */
+    public synchronized QueryPage query(IncidentQuery query) {
+        Objects.requireNonNull(query, "query");
+        List<IncidentEntry> matches = new ArrayList<>();
+        for (IncidentEntry entry : candidates(query)) {
+            if (query.matches(entry)) {
+                matches.add(entry);
+            }
+        }
+        matches.sort(query.sort().order());
+        int from = (int) Math.min(matches.size(), (long) query.page() * query.pageSize());
+        int to = Math.min(matches.size(), from + query.pageSize());
+        return new QueryPage(matches.subList(from, to), matches.size(), query.page(), query.pageSize());
+    }
+
+    /**
+     * Counts incidents and sums their stall time per scope and UTC hour for entries matching
+     * {@code query}; its sort order and page are ignored. Results are ordered by hour, then scope.
+     */
+    public synchronized List<ScopeHourStats> stallTimeByScopeHour(IncidentQuery query) {
+        Objects.requireNonNull(query, "query");
+        Map<Instant, Map<String, long[]>> buckets = new TreeMap<>();
+        for (IncidentEntry entry : candidates(query)) {
+            if (!query.matches(entry)) {
+                continue;
+            }
+            Instant hour = entry.createdAt().truncatedTo(ChronoUnit.HOURS);
+            for (String scope : entry.scopes()) {
+                if (query.scope() != null && !query.scope().equals(scope)) {
+                    continue;
+                }
+                long[] totals = buckets.computeIfAbsent(hour, ignored -> new TreeMap<>())
+                    .computeIfAbsent(scope, ignored -> new long[2]);
+                totals[0]++;
+                totals[1] += entry.stallMs();
+            }
+        }
+        List<ScopeHourStats> out = new ArrayList<>();
+        for (Map.Entry<Instant, Map<String, long[]>> hour : buckets.entrySet()) {
+            for (Map.Entry<String, long[]> scope : hour.getValue().entrySet()) {
+                out.add(new ScopeHourStats(scope.getKey(), hour.getKey(), (int) scope.getValue()[0], scope.getValue()[1]));
+            }
+        }
+        return out;
+    }
+
+    public synchronized int count() {
+        return byAge.size();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private NavigableSet<IncidentEntry> candidates(IncidentQuery query) {
+        NavigableSet<IncidentEntry> set = byAge;
+        if (query.scope() != null) {
+            set = byScope.get(query.scope());
+            if (set == null) {
+                return Collections.emptyNavigableSet();
+            }
+        }
+        if (query.from() != null) {
+            set = set.tailSet(probe(query.from()), true);
+        }
+        if (query.to() != null) {
+            set = set.headSet(probe(query.to()), false);
+        }
+        return set;
+    }
+
+    /**
+     * Sorts before every real entry created at {@code at}, since real bundles have non-empty names.
+     */
+    private IncidentEntry probe(Instant at) {
+        return IncidentEntry.scanned("", Path.of(""), at, 0L);
+    }
+
+    private void link(IncidentEntry entry) {
+        byAge.add(entry);
+        for (String scope : entry.scopes()) {
+            byScope.computeIfAbsent(scope, ignored -> new TreeSet<>(OLDEST_FIRST)).add(entry);
+        }
+        byId.put(entry.id(), entry);
+        byPath.put(entry.path(), entry);
+        totalBytes += entry.sizeBytes();
+    }
+
+    private IncidentEntry unlink(Path bundle) {
+        IncidentEntry entry = byPath.remove(bundle);
+        if (entry != null) {
+            byAge.remove(entry);
+            byId.remove(entry.id());
+            for (String scope : entry.scopes()) {
+                TreeSet<IncidentEntry> scoped = byScope.get(scope);
+                if (scoped != null) {
+                    scoped.remove(entry);
+                    if (scoped.isEmpty()) {
+                        byScope.remove(scope);
+                    }
+                }
+            }
+            totalBytes -= entry.sizeBytes();
+        }
+        return entry;
+    }
+
+    private void maybeRewriteJournal() {
+        if (journal.shouldRewrite(byAge.size())) {
+            journal.rewrite(List.copyOf(byAge));
+        }
+    }
+
+    static boolean isBundle(Path path) {
+        return path.getFileName().toString().endsWith(".zip");
+    }
+
+    static String idOf(Path bundle) {
+        String fileName = bundle.getFileName().toString();
+        String base = fileName.endsWith(".zip") ? fileName.substring(0, fileName.length() - ".zip".length()) : fileName;
+        return base.startsWith("incident-") ? base.substring("incident-".length()) : base;
+    }
+
+    static Instant parseCreatedAt(String id) {
+        int lastDash = id.lastIndexOf('-');
+        if (lastDash <= 0) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(id.substring(0, lastDash), INCIDENT_TIMESTAMP).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
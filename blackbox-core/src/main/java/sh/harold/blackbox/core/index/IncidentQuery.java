@@ -0,0 +1,81 @@
+package sh.harold.blackbox.core.index;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import sh.harold.blackbox.core.incident.Severity;
+
+/**
+ * Filter, sort order and page for {@link IncidentIndex#query(IncidentQuery)}.
+ *
+ * <p>Empty {@code severities}/{@code triggers} and {@code null} {@code scope}/{@code from}/{@code to}
+ * match everything. The time range is {@code [from, to)} on {@code createdAt}. {@code page} is
+ * zero-based.
+ */
+public record IncidentQuery(
+    Set<Severity> severities,
+    Set<String> triggers,
+    String scope,
+    Instant from,
+    Instant to,
+    Sort sort,
+    int page,
+    int pageSize
+) {
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    public IncidentQuery {
+        Objects.requireNonNull(severities, "severities");
+        Objects.requireNonNull(triggers, "triggers");
+        Objects.requireNonNull(sort, "sort");
+        severities = severities.isEmpty() ? Set.of() : Set.copyOf(EnumSet.copyOf(severities));
+        triggers = Set.copyOf(triggers);
+        if (scope != null && scope.isBlank()) {
+            scope = null;
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to.");
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("page must be >= 0.");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be > 0.");
+        }
+    }
+
+    public static IncidentQuery all() {
+        return new IncidentQuery(Set.of(), Set.of(), null, null, null, Sort.NEWEST, 0, DEFAULT_PAGE_SIZE);
+    }
+
+    boolean matches(IncidentEntry entry) {
+        if (!severities.isEmpty() && (entry.severity() == null || !severities.contains(entry.severity()))) {
+            return false;
+        }
+        if (!triggers.isEmpty() && (entry.trigger() == null || !triggers.contains(entry.trigger()))) {
+            return false;
+        }
+        return scope == null || entry.scopes().contains(scope);
+    }
+
+    public enum Sort {
+        NEWEST(Comparator.comparing(IncidentEntry::createdAt).reversed()),
+        OLDEST(Comparator.comparing(IncidentEntry::createdAt)),
+        LONGEST_STALL(Comparator.comparingLong(IncidentEntry::stallMs).reversed()
+            .thenComparing(IncidentEntry::createdAt, Comparator.reverseOrder())),
+        LARGEST(Comparator.comparingLong(IncidentEntry::sizeBytes).reversed()
+            .thenComparing(IncidentEntry::createdAt, Comparator.reverseOrder()));
+
+        private final Comparator<IncidentEntry> order;
+
+        Sort(Comparator<IncidentEntry> order) {
+            this.order = order;
+        }
+
+        Comparator<IncidentEntry> order() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package sh.harold.blackbox.core.index;
+
+import java.util.Collection;
+
+/**
+ * Persists changes made to an {@link IncidentIndex}. Implementations must not throw; failures are
+ * theirs to log, and the index stays authoritative in memory.
+ */
+public interface IndexJournal {
+    void put(IncidentEntry entry);
+
+    void remove(IncidentEntry entry);
+
+    /**
+     * Returns whether the journal has grown enough that {@link #rewrite(Collection)} should run.
+     */
+    default boolean shouldRewrite(int liveEntries) {
+        return false;
+    }
+
+    /**
+     * Replaces the journal with a snapshot of {@code live}, oldest first.
+     */
+    default void rewrite(Collection<IncidentEntry> live) {
+    }
+
+    default void close() {
+    }
+
+    static IndexJournal none() {
+        return new IndexJournal() {
+            @Override
+            public void put(IncidentEntry entry) {
+            }
+
+            @Override
+            public void remove(IncidentEntry entry) {
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package sh.harold.blackbox.core.index;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of {@link IncidentIndex#query(IncidentQuery)} results and the total number of matches.
+ */
+public record QueryPage(List<IncidentEntry> entries, int total, int page, int pageSize) {
+    public QueryPage {
+        Objects.requireNonNull(entries, "entries");
+        entries = List.copyOf(entries);
+    }
+
+    public int pages() {
+        return (total + pageSize - 1) / pageSize;
+    }
+}
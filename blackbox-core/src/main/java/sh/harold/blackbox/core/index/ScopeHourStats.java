@@ -0,0 +1,14 @@
+package sh.harold.blackbox.core.index;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Incident count and summed stall time for one scope in one clock hour (UTC).
+ */
+public record ScopeHourStats(String scope, Instant hour, int incidents, long stallMs) {
+    public ScopeHourStats {
+        Objects.requireNonNull(scope, "scope");
+        Objects.requireNonNull(hour, "hour");
+    }
+}
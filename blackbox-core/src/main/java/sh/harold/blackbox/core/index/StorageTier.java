@@ -0,0 +1,35 @@
+package sh.harold.blackbox.core.index;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How much of an incident bundle is still kept on disk.
+ */
+public enum StorageTier {
+    /**
+     * The bundle as captured, including the full recording.
+     */
+    FULL,
+    /**
+     * Report, environment and extras kept, recording reduced to the chunks around the incident.
+     */
+    DOWNSAMPLED;
+
+    /**
+     * Report attribute recording the tier of a rewritten bundle.
+     */
+    public static final String ATTR = "storageTier";
+
+    public static StorageTier of(Map<String, String> attrs) {
+        String value = attrs.get(ATTR);
+        if (value == null) {
+            return FULL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return FULL;
+        }
+    }
+}
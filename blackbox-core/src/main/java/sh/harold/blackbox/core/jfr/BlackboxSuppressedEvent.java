@@ -0,0 +1,28 @@
+package sh.harold.blackbox.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Records a trigger that was rejected, so suppressed incidents remain visible in later bundles.
+ */
+@Name("sh.harold.blackbox.suppressed")
+@Label("Blackbox Suppressed Trigger")
+@Category("Blackbox")
+@StackTrace(false)
+public final class BlackboxSuppressedEvent extends Event {
+    @Label("Kind")
+    public String kind;
+
+    @Label("Scope")
+    public String scope;
+
+    @Label("Decision")
+    public String decision;
+
+    @Label("Severity")
+    public String severity;
+}
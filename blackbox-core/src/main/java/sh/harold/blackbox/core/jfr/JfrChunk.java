@@ -0,0 +1,32 @@
+package sh.harold.blackbox.core.jfr;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Location and time span of one self-contained chunk inside a JFR file.
+ */
+public record JfrChunk(long offset, long size, Instant start, Duration duration) {
+    public JfrChunk {
+        Objects.requireNonNull(start, "start");
+        Objects.requireNonNull(duration, "duration");
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must be >= 0.");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0.");
+        }
+    }
+
+    public Instant end() {
+        return start.plus(duration);
+    }
+
+    /**
+     * Returns whether this chunk has any events in {@code [from, to]}.
+     */
+    public boolean overlaps(Instant from, Instant to) {
+        return !end().isBefore(from) && !start.isAfter(to);
+    }
+}
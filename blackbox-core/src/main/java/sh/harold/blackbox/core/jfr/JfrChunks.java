@@ -0,0 +1,131 @@
+package sh.harold.blackbox.core.jfr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads JFR chunk headers so recordings can be split and re-assembled at chunk boundaries.
+ *
+ * <p>A JFR file is a sequence of chunks, each with its own constant pools and metadata, so any
+ * subsequence of whole chunks is itself a valid recording. This works on JDK 17, where the
+ * {@code jdk.jfr} API cannot write filtered recordings.
+ */
+public final class JfrChunks {
+    private static final int MAGIC = 0x464c5200;
+    private static final int HEADER_BYTES = 68;
+    private static final int SIZE_OFFSET = 8;
+    private static final int START_NANOS_OFFSET = 32;
+    private static final int DURATION_NANOS_OFFSET = 40;
+
+    private JfrChunks() {
+    }
+
+    /**
+     * Lists the complete chunks in {@code recording}, stopping at the first truncated or
+     * unfinished one.
+     */
+    public static List<JfrChunk> read(Path recording) throws IOException {
+        Objects.requireNonNull(recording, "recording");
+        List<JfrChunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(recording, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long offset = 0;
+            while (offset + HEADER_BYTES <= fileSize) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    if (channel.read(header, offset + header.position()) < 0) {
+                        return chunks;
+                    }
+                }
+                if (header.getInt(0) != MAGIC) {
+                    break;
+                }
+                long size = header.getLong(SIZE_OFFSET);
+                if (size < HEADER_BYTES || offset + size > fileSize) {
+                    break;
+                }
+                long durationNanos = header.getLong(DURATION_NANOS_OFFSET);
+                chunks.add(new JfrChunk(
+                    offset,
+                    size,
+                    Instant.EPOCH.plusNanos(header.getLong(START_NANOS_OFFSET)),
+                    Duration.ofNanos(Math.max(0L, durationNanos))
+                ));
+                offset += size;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the chunks with events in {@code [from, to]}.
+     */
+    public static List<JfrChunk> overlapping(List<JfrChunk> chunks, Instant from, Instant to) {
+        List<JfrChunk> out = new ArrayList<>();
+        for (JfrChunk chunk : chunks) {
+            if (chunk.overlaps(from, to)) {
+                out.add(chunk);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes {@code chunks} of {@code recording}, in order, to {@code out}; returns bytes written.
+     */
+    public static long copy(Path recording, List<JfrChunk> chunks, OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        WritableByteChannel target = Channels.newChannel(out);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(recording, StandardOpenOption.READ)) {
+            for (JfrChunk chunk : chunks) {
+                long position = chunk.offset();
+                long end = chunk.offset() + chunk.size();
+                while (position < end) {
+                    long moved = channel.transferTo(position, end - position, target);
+                    if (moved <= 0) {
+                        throw new IOException("Unexpected end of recording " + recording);
+                    }
+                    position += moved;
+                }
+                written += chunk.size();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Rewrites {@code recording} in place to only the chunks overlapping {@code [from, to]} and
+     * returns its new size. The recording is left untouched if no chunk overlaps.
+     */
+    public static long trim(Path recording, Instant from, Instant to) throws IOException {
+        List<JfrChunk> chunks = read(recording);
+        List<JfrChunk> kept = overlapping(chunks, from, to);
+        if (kept.isEmpty() || kept.size() == chunks.size()) {
+            return Files.size(recording);
+        }
+        Path trimmed = recording.resolveSibling(recording.getFileName() + ".trim");
+        try (OutputStream out = Files.newOutputStream(trimmed)) {
+            copy(recording, kept, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(trimmed);
+            throw e;
+        }
+        Files.move(trimmed, recording, StandardCopyOption.REPLACE_EXISTING);
+        return Files.size(recording);
+    }
+}
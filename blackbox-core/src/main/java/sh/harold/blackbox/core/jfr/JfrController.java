@@ -1,38 +1,63 @@
 package sh.harold.blackbox.core.jfr;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.text.ParseException;
+import javax.management.ObjectName;
 import jdk.jfr.Configuration;
 import jdk.jfr.EventSettings;
 import jdk.jfr.Recording;
 
 /**
  * Controls a single rolling JFR recording and exposes a minimal API for dumping it.
+ *
+ * <p>Given a repository directory, JFR is pointed there before the recording starts, so the chunks
+ * of a process that dies without shutting down survive it. JFR keeps each process's chunks in its
+ * own {@code <timestamp>_<pid>} subdirectory and only removes it on a clean exit.
  */
 public final class JfrController implements AutoCloseable {
     private static final String DEFAULT_CONFIGURATION = "default";
     private static final String DUMP_MARKER_PREFIX = "blackbox dump:";
+    private static final Map<String, String> LEAN_SETTINGS = leanSettings();
 
     private final Duration maxAge;
     private final long maxSizeBytes;
     private final String recordingName;
+    private final Path repository;
     private Recording recording;
+    private Recording leanRecording;
     private final System.Logger logger = System.getLogger(JfrController.class.getName());
 
     public JfrController(Duration maxAge, long maxSizeBytes, String recordingName) {
+        this(maxAge, maxSizeBytes, recordingName, null);
+    }
+
+    /**
+     * Creates a controller that keeps JFR's repository under {@code repository}, or wherever the
+     * JVM put it if {@code repository} is {@code null}.
+     */
+    public JfrController(Duration maxAge, long maxSizeBytes, String recordingName, Path repository) {
         this.maxAge = Objects.requireNonNull(maxAge, "maxAge");
         this.maxSizeBytes = maxSizeBytes;
         this.recordingName = Objects.requireNonNull(recordingName, "recordingName");
+        this.repository = repository;
     }
 
     public void start() {
         if (recording != null) {
             return;
         }
+        if (repository != null) {
+            pinRepository();
+        }
         Recording created = createConfiguredRecording(DEFAULT_CONFIGURATION);
         created.setName(recordingName);
         created.setToDisk(true);
@@ -43,6 +68,46 @@ public final class JfrController implements AutoCloseable {
         this.recording = created;
     }
 
+    /**
+     * Starts a second, short recording with a small fixed event set for emergency dumps.
+     *
+     * <p>The lean recording stays small enough to dump quickly when the process is already in
+     * trouble and the main recording would take too long to copy.
+     */
+    public void startLean(Duration leanMaxAge) {
+        Objects.requireNonNull(leanMaxAge, "leanMaxAge");
+        if (leanRecording != null) {
+            return;
+        }
+        Recording created = new Recording(LEAN_SETTINGS);
+        created.setName(recordingName + "-lean");
+        created.setToDisk(true);
+        created.setMaxAge(leanMaxAge);
+        enableMarkerEvent(created);
+        created.start();
+        this.leanRecording = created;
+    }
+
+    /**
+     * Dumps the lean recording without emitting marker events or creating directories.
+     */
+    public void dumpLean(Path target) throws IOException {
+        Objects.requireNonNull(target, "target");
+        Recording lean = leanRecording;
+        if (lean == null) {
+            throw new IllegalStateException("Lean recording has not been started.");
+        }
+        lean.dump(target);
+    }
+
+    /**
+     * Returns the directory JFR is currently writing chunks to, once a recording has started.
+     */
+    public Optional<Path> currentRepository() {
+        String current = System.getProperty("jdk.jfr.repository");
+        return current == null || current.isBlank() ? Optional.empty() : Optional.of(Path.of(current));
+    }
+
     public EventSettings enableEvent(String eventName) {
         return requireRecording().enable(eventName);
     }
@@ -61,6 +126,11 @@ public final class JfrController implements AutoCloseable {
 
     @Override
     public void close() {
+        if (leanRecording != null) {
+            leanRecording.stop();
+            leanRecording.close();
+            leanRecording = null;
+        }
         if (recording == null) {
             return;
         }
@@ -93,16 +163,56 @@ public final class JfrController implements AutoCloseable {
         return new Recording();
     }
 
+    /**
+     * Moves the repository through the JFR.configure diagnostic command, the only runtime way to
+     * set it. A failure leaves JFR's default temp location, which a hard crash does not survive.
+     */
+    private void pinRepository() {
+        try {
+            Files.createDirectories(repository);
+            ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "jfrConfigure",
+                new Object[] {new String[] {"repositorypath=" + repository.toAbsolutePath()}},
+                new String[] {String[].class.getName()}
+            );
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to move the JFR repository to " + repository, e);
+        }
+    }
+
     private void enableMarkerEvent(Recording recording) {
         try {
             recording.enable(BlackboxMarkerEvent.class)
                 .withoutStackTrace()
                 .withThreshold(Duration.ZERO);
+            recording.enable(BlackboxSuppressedEvent.class)
+                .withoutStackTrace()
+                .withThreshold(Duration.ZERO);
         } catch (IllegalArgumentException e) {
-            logger.log(System.Logger.Level.WARNING, "Failed to enable marker event.", e);
+            logger.log(System.Logger.Level.WARNING, "Failed to enable Blackbox events.", e);
         }
     }
 
+    private static Map<String, String> leanSettings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("jdk.ExecutionSample#enabled", "true");
+        settings.put("jdk.ExecutionSample#period", "20 ms");
+        settings.put("jdk.ThreadPark#enabled", "true");
+        settings.put("jdk.ThreadPark#threshold", "20 ms");
+        settings.put("jdk.ThreadPark#stackTrace", "true");
+        settings.put("jdk.JavaMonitorEnter#enabled", "true");
+        settings.put("jdk.JavaMonitorEnter#threshold", "20 ms");
+        settings.put("jdk.JavaMonitorEnter#stackTrace", "true");
+        settings.put("jdk.GarbageCollection#enabled", "true");
+        settings.put("jdk.GCPhasePause#enabled", "true");
+        settings.put("jdk.SafepointBegin#enabled", "true");
+        settings.put("jdk.SafepointBegin#threshold", "10 ms");
+        settings.put("jdk.ThreadDump#enabled", "true");
+        settings.put("jdk.ThreadDump#period", "10 s");
+        return Collections.unmodifiableMap(settings);
+    }
+
     private Recording tryLoadConfiguration(String configurationName) {
         try {
             return new Recording(Configuration.getConfiguration(configurationName));
@@ -1,20 +1,30 @@
 package sh.harold.blackbox.core.json;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import sh.harold.blackbox.core.incident.IncidentId;
 import sh.harold.blackbox.core.incident.IncidentMetadata;
 import sh.harold.blackbox.core.incident.IncidentReport;
 import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
 
 /**
- * Deterministic JSON writer for incident reports.
+ * Deterministic JSON writer and reader for incident reports.
  *
  * Field order:
  * - meta: id, createdAt, severity, trigger, world, headline
  * - summary: likelyCause, whatHappened, nextSteps
+ * - attrs: keys in natural order
  */
 public final class IncidentJson {
     private IncidentJson() {
@@ -29,10 +39,75 @@ public final class IncidentJson {
         json.beginObject();
         writeMeta(json, report.meta());
         writeSummary(json, report.summary());
+        writeAttrs(json, report.attrs());
         json.endObject();
         writer.flush();
     }
 
+    /**
+     * Reads a report written by {@link #write(IncidentReport, OutputStream)}.
+     */
+    public static IncidentReport read(InputStream in) throws IOException {
+        Objects.requireNonNull(in, "in");
+        Object root = JsonReader.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        Map<?, ?> json = object(root, "root");
+        Map<?, ?> meta = object(json.get("meta"), "meta");
+        Map<?, ?> summary = object(json.get("summary"), "summary");
+
+        try {
+            IncidentMetadata metadata = new IncidentMetadata(
+                new IncidentId(string(meta, "id")),
+                Instant.parse(string(meta, "createdAt")),
+                Severity.valueOf(string(meta, "severity")),
+                string(meta, "trigger"),
+                meta.get("world") instanceof String world ? world : null,
+                string(meta, "headline")
+            );
+            IncidentSummary incidentSummary = new IncidentSummary(
+                string(summary, "likelyCause"),
+                strings(summary.get("whatHappened")),
+                strings(summary.get("nextSteps"))
+            );
+            Map<String, String> attrs = new LinkedHashMap<>();
+            if (json.get("attrs") instanceof Map<?, ?> rawAttrs) {
+                for (Map.Entry<?, ?> entry : rawAttrs.entrySet()) {
+                    if (entry.getValue() instanceof String value) {
+                        attrs.put(entry.getKey().toString(), value);
+                    }
+                }
+            }
+            return new IncidentReport(metadata, incidentSummary, attrs);
+        } catch (DateTimeParseException | IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Malformed incident.json: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<?, ?> object(Object value, String name) throws IOException {
+        if (value instanceof Map<?, ?> map) {
+            return map;
+        }
+        throw new IOException("Malformed incident.json: missing " + name + ".");
+    }
+
+    private static String string(Map<?, ?> object, String key) throws IOException {
+        if (object.get(key) instanceof String value) {
+            return value;
+        }
+        throw new IOException("Malformed incident.json: missing " + key + ".");
+    }
+
+    private static List<String> strings(Object value) {
+        List<String> out = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof String text) {
+                    out.add(text);
+                }
+            }
+        }
+        return out;
+    }
+
     private static void writeMeta(JsonWriter json, IncidentMetadata meta) throws IOException {
         json.name("meta").beginObject();
         json.name("id").value(meta.id().value());
@@ -64,4 +139,12 @@ public final class IncidentJson {
         json.endArray();
         json.endObject();
     }
+
+    private static void writeAttrs(JsonWriter json, Map<String, String> attrs) throws IOException {
+        json.name("attrs").beginObject();
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            json.name(entry.getKey()).value(entry.getValue());
+        }
+        json.endObject();
+    }
 }
@@ -0,0 +1,190 @@
+package sh.harold.blackbox.core.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Minimal JSON reader for documents produced by {@link JsonWriter}.
+ *
+ * <p>Objects become {@link Map}s in field order, arrays become {@link List}s, numbers are
+ * returned as their literal text and {@code true}/{@code false}/{@code null} as
+ * {@link Boolean}/{@code null}.
+ */
+public final class JsonReader {
+    private final String in;
+    private int pos;
+
+    private JsonReader(String in) {
+        this.in = in;
+    }
+
+    public static Object parse(String json) throws IOException {
+        Objects.requireNonNull(json, "json");
+        JsonReader reader = new JsonReader(json);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos != json.length()) {
+            throw reader.error("Trailing content");
+        }
+        return value;
+    }
+
+    private Object readValue() throws IOException {
+        skipWhitespace();
+        if (pos >= in.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = in.charAt(pos);
+        return switch (c) {
+            case '{' -> readObject();
+            case '[' -> readArray();
+            case '"' -> readString();
+            case 't' -> readLiteral("true", Boolean.TRUE);
+            case 'f' -> readLiteral("false", Boolean.FALSE);
+            case 'n' -> readLiteral("null", null);
+            default -> readNumber();
+        };
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        pos++;
+        Map<String, Object> out = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return out;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected field name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            out.put(name, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                return out;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        pos++;
+        List<Object> out = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return out;
+        }
+        while (true) {
+            out.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']') {
+                return out;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder out = new StringBuilder(32);
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return out.toString();
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char esc = next();
+            switch (esc) {
+                case '"' -> out.append('"');
+                case '\\' -> out.append('\\');
+                case '/' -> out.append('/');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'n' -> out.append('\n');
+                case 'r' -> out.append('\r');
+                case 't' -> out.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > in.length()) {
+                        throw error("Truncated unicode escape");
+                    }
+                    int codePoint = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(in.charAt(pos++), 16);
+                        if (digit < 0) {
+                            throw error("Invalid unicode escape");
+                        }
+                        codePoint = (codePoint << 4) | digit;
+                    }
+                    out.append((char) codePoint);
+                }
+                default -> throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) throws IOException {
+        if (!in.startsWith(literal, pos)) {
+            throw error("Unexpected token");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private String readNumber() throws IOException {
+        int start = pos;
+        while (pos < in.length() && "+-.eE0123456789".indexOf(in.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Unexpected character");
+        }
+        return in.substring(start, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < in.length() && Character.isWhitespace(in.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() throws IOException {
+        if (pos >= in.length()) {
+            throw error("Unexpected end of input");
+        }
+        return in.charAt(pos);
+    }
+
+    private char next() throws IOException {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (next() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at offset " + pos + ".");
+    }
+}
@@ -0,0 +1,49 @@
+package sh.harold.blackbox.core.memory;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures {@link HeapDumps}, which are off by default. An incident gets a heap dump when heap
+ * use is at least {@code heapPressurePercent} of the maximum, the used heap is no larger than
+ * {@code maxHeapBytes}, at least {@code minFreeBytes} would still be free after writing as much as
+ * the used heap, and no dump was taken within {@code cooldown}.
+ */
+public record HeapDumpPolicy(
+    boolean enabled,
+    int heapPressurePercent,
+    long maxHeapBytes,
+    long minFreeBytes,
+    Duration cooldown
+) {
+    public static final int DEFAULT_HEAP_PRESSURE_PERCENT = 90;
+    public static final long DEFAULT_MAX_HEAP_BYTES = 8L * 1024 * 1024 * 1024;
+    public static final long DEFAULT_MIN_FREE_BYTES = 2L * 1024 * 1024 * 1024;
+    public static final Duration DEFAULT_COOLDOWN = Duration.ofHours(6);
+
+    public HeapDumpPolicy {
+        Objects.requireNonNull(cooldown, "cooldown");
+        if (heapPressurePercent <= 0 || heapPressurePercent > 100) {
+            throw new IllegalArgumentException("heapPressurePercent must be in (0, 100].");
+        }
+        if (maxHeapBytes <= 0) {
+            throw new IllegalArgumentException("maxHeapBytes must be > 0.");
+        }
+        if (minFreeBytes < 0) {
+            throw new IllegalArgumentException("minFreeBytes must be >= 0.");
+        }
+        if (cooldown.isNegative()) {
+            throw new IllegalArgumentException("cooldown must be non-negative.");
+        }
+    }
+
+    public static HeapDumpPolicy disabled() {
+        return new HeapDumpPolicy(
+            false,
+            DEFAULT_HEAP_PRESSURE_PERCENT,
+            DEFAULT_MAX_HEAP_BYTES,
+            DEFAULT_MIN_FREE_BYTES,
+            DEFAULT_COOLDOWN
+        );
+    }
+}
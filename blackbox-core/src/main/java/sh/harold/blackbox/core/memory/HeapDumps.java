@@ -0,0 +1,236 @@
+package sh.harold.blackbox.core.memory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import javax.management.ObjectName;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.disk.DiskPressureMonitor;
+
+/**
+ * Writes a gzip-compressed heap dump next to an incident's bundle, as its
+ * {@link BundleSidecars#heapDump(Path, String)}, when {@link HeapDumpPolicy} allows one.
+ *
+ * <p>The platform writer has the JVM compress while it dumps ({@code GC.heap_dump -gz}), so no
+ * uncompressed copy ever reaches the disk. Where that is unavailable it falls back to
+ * {@link HotSpotDiagnosticMXBean#dumpHeap(String, boolean)} into the temp directory, streamed
+ * through gzip and deleted. Dumps run on the given executor, one at a time, and are staged then
+ * moved into place, so retention never sees a partial one. A dump whose incident was deleted while
+ * it was being written is deleted too.
+ */
+public final class HeapDumps {
+    private static final int GZIP_BUFFER = 64 * 1024;
+
+    private final Clock clock;
+    private final HeapDumpPolicy policy;
+    private final Writer writer;
+    private final Supplier<MemoryUsage> heap;
+    private final DiskPressureMonitor.UsableSpace usableSpace;
+    private final Executor executor;
+    private final System.Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong lastDumpMillis = new AtomicLong(Long.MIN_VALUE);
+
+    public HeapDumps(
+        Clock clock,
+        HeapDumpPolicy policy,
+        Writer writer,
+        Supplier<MemoryUsage> heap,
+        DiskPressureMonitor.UsableSpace usableSpace,
+        Executor executor,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.writer = Objects.requireNonNull(writer, "writer");
+        this.heap = Objects.requireNonNull(heap, "heap");
+        this.usableSpace = Objects.requireNonNull(usableSpace, "usableSpace");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    public static HeapDumps platform(
+        Clock clock,
+        HeapDumpPolicy policy,
+        Path tempDir,
+        Executor executor,
+        System.Logger logger
+    ) {
+        return new HeapDumps(
+            clock,
+            policy,
+            Writer.platform(tempDir),
+            () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage(),
+            DiskPressureMonitor.UsableSpace.fileStore(),
+            executor,
+            logger
+        );
+    }
+
+    public HeapDumpPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Starts a dump for incident {@code id} if the heap is under pressure and every gate passes,
+     * and hands it to {@code afterDump} once it is in place. Returns whether a dump was started.
+     */
+    public boolean request(Path incidentDir, String id, AfterDump afterDump) {
+        Objects.requireNonNull(incidentDir, "incidentDir");
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(afterDump, "afterDump");
+        if (!policy.enabled()) {
+            return false;
+        }
+        MemoryUsage usage = heap.get();
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        if (max <= 0 || usage.getUsed() * 100L / max < policy.heapPressurePercent()) {
+            return false;
+        }
+        if (usage.getUsed() > policy.maxHeapBytes()) {
+            logger.log(System.Logger.Level.INFO, "Skipping heap dump for " + id + ": " + usage.getUsed()
+                + " bytes of heap in use exceeds HeapDump.MaxHeapBytes.");
+            return false;
+        }
+        long now = clock.millis();
+        long last = lastDumpMillis.get();
+        if (last != Long.MIN_VALUE && now - last < policy.cooldown().toMillis()) {
+            return false;
+        }
+        long usable;
+        try {
+            usable = usableSpace.usableBytes(incidentDir);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Skipping heap dump for " + id + ": free space unknown.", e);
+            return false;
+        }
+        if (usable - usage.getUsed() < policy.minFreeBytes()) {
+            logger.log(System.Logger.Level.WARNING, "Skipping heap dump for " + id + ": only " + usable
+                + " bytes usable for " + usage.getUsed() + " bytes of heap.");
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        lastDumpMillis.set(now);
+        try {
+            executor.execute(() -> {
+                try {
+                    Path target = BundleSidecars.heapDump(incidentDir, id);
+                    if (write(target)) {
+                        keepOrDelete(target, id, afterDump);
+                    }
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean write(Path target) {
+        Path staged = target.resolveSibling(target.getFileName() + BundleBuilder.STAGING_SUFFIX);
+        long startNanos = System.nanoTime();
+        try {
+            Files.deleteIfExists(staged);
+            writer.write(staged);
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.log(System.Logger.Level.INFO, "Wrote heap dump " + target + " (" + Files.size(target) + " bytes in "
+                + (System.nanoTime() - startNanos) / 1_000_000L + "ms).");
+            return true;
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Heap dump to " + target + " failed.", e);
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException cleanup) {
+                logger.log(System.Logger.Level.WARNING, "Failed to remove partial heap dump " + staged, cleanup);
+            }
+            return false;
+        }
+    }
+
+    private void keepOrDelete(Path target, String id, AfterDump afterDump) {
+        try {
+            if (afterDump.written(id, target)) {
+                return;
+            }
+            logger.log(System.Logger.Level.INFO, "Deleting heap dump " + target + "; incident " + id
+                + " was removed while it was written.");
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to register heap dump " + target + " with retention.", e);
+            return;
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to delete heap dump " + target, e);
+        }
+    }
+
+    /**
+     * Receives a dump once it is in place, and returns {@code false} if its incident is gone and the
+     * dump should be deleted.
+     */
+    @FunctionalInterface
+    public interface AfterDump {
+        boolean written(String id, Path dump) throws Exception;
+    }
+
+    /**
+     * Writes a gzip-compressed heap dump to {@code target}, which does not exist yet.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(Path target) throws Exception;
+
+        static Writer platform(Path tempDir) {
+            Objects.requireNonNull(tempDir, "tempDir");
+            return target -> {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                        "gcHeapDump",
+                        new Object[] {new String[] {"-gz=1", target.toAbsolutePath().toString()}},
+                        new String[] {String[].class.getName()}
+                    );
+                } catch (Exception e) {
+                    // fall back below
+                }
+                if (Files.isRegularFile(target) && Files.size(target) > 0) {
+                    return;
+                }
+                Files.deleteIfExists(target);
+                Files.createDirectories(tempDir);
+                Path raw = tempDir.resolve(target.getFileName() + ".hprof");
+                Files.deleteIfExists(raw);
+                try {
+                    ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).dumpHeap(raw.toString(), true);
+                    try (InputStream in = Files.newInputStream(raw);
+                         OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), GZIP_BUFFER)) {
+                        in.transferTo(out);
+                    }
+                } finally {
+                    Files.deleteIfExists(raw);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package sh.harold.blackbox.core.memory;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures {@link HeapHistograms}. A histogram is taken for CRITICAL incidents and for any
+ * incident captured while heap use is at least {@code heapPressurePercent} of the maximum, and is
+ * abandoned if it takes longer than {@code budget}. A zero {@code baselineInterval} turns the
+ * periodic baseline, and with it the diff, off.
+ */
+public record HeapHistogramPolicy(
+    boolean enabled,
+    Duration budget,
+    Duration baselineInterval,
+    int heapPressurePercent,
+    int diffLimit
+) {
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_BASELINE_INTERVAL = Duration.ofMinutes(30);
+    public static final int DEFAULT_HEAP_PRESSURE_PERCENT = 85;
+    public static final int DEFAULT_DIFF_LIMIT = 40;
+
+    public HeapHistogramPolicy {
+        Objects.requireNonNull(budget, "budget");
+        Objects.requireNonNull(baselineInterval, "baselineInterval");
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("budget must be > 0.");
+        }
+        if (baselineInterval.isNegative()) {
+            throw new IllegalArgumentException("baselineInterval must be non-negative.");
+        }
+        if (heapPressurePercent <= 0 || heapPressurePercent > 100) {
+            throw new IllegalArgumentException("heapPressurePercent must be in (0, 100].");
+        }
+        if (diffLimit <= 0) {
+            throw new IllegalArgumentException("diffLimit must be > 0.");
+        }
+    }
+
+    public static HeapHistogramPolicy defaults() {
+        return new HeapHistogramPolicy(
+            true,
+            DEFAULT_BUDGET,
+            DEFAULT_BASELINE_INTERVAL,
+            DEFAULT_HEAP_PRESSURE_PERCENT,
+            DEFAULT_DIFF_LIMIT
+        );
+    }
+
+    public static HeapHistogramPolicy disabled() {
+        return new HeapHistogramPolicy(
+            false,
+            DEFAULT_BUDGET,
+            Duration.ZERO,
+            DEFAULT_HEAP_PRESSURE_PERCENT,
+            DEFAULT_DIFF_LIMIT
+        );
+    }
+}
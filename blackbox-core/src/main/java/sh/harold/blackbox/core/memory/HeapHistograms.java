@@ -0,0 +1,306 @@
+package sh.harold.blackbox.core.memory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.ObjectName;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.incident.Severity;
+
+/**
+ * Class histograms of the heap for memory-related incidents, with the classes that grew most since
+ * a periodic baseline.
+ *
+ * <p>The platform source runs the {@code GC.class_histogram} diagnostic command with {@code -all},
+ * which walks the heap at a safepoint without forcing a full collection first. That pause stops
+ * every world, so the histogram is never taken while a bundle is being captured: it is requested
+ * once the bundle is written, runs on the given executor and is kept next to the bundle as its
+ * {@link BundleSidecars#heapHistogram(Path, String)}. The walk cannot be interrupted, so a
+ * histogram that overruns {@link HeapHistogramPolicy#budget()} is abandoned and no other starts
+ * until it ends.
+ */
+public final class HeapHistograms {
+    private static final Pattern ROW = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+(\\d+)\\s+(.+?)\\s*$");
+
+    private final Clock clock;
+    private final HeapHistogramPolicy policy;
+    private final Source source;
+    private final IntSupplier heapUsedPercent;
+    private final Executor executor;
+    private final System.Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<Snapshot> baseline = new AtomicReference<>();
+
+    public HeapHistograms(
+        Clock clock,
+        HeapHistogramPolicy policy,
+        Source source,
+        IntSupplier heapUsedPercent,
+        Executor executor,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.source = Objects.requireNonNull(source, "source");
+        this.heapUsedPercent = Objects.requireNonNull(heapUsedPercent, "heapUsedPercent");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    public static HeapHistograms platform(
+        Clock clock,
+        HeapHistogramPolicy policy,
+        Executor executor,
+        System.Logger logger
+    ) {
+        return new HeapHistograms(
+            clock,
+            policy,
+            Source.diagnosticCommand(),
+            HeapHistograms::platformHeapUsedPercent,
+            executor,
+            logger
+        );
+    }
+
+    public HeapHistogramPolicy policy() {
+        return policy;
+    }
+
+    public Instant baselineAt() {
+        Snapshot snapshot = baseline.get();
+        return snapshot == null ? null : snapshot.at();
+    }
+
+    /**
+     * Whether an incident of {@code severity} gets a histogram: it is CRITICAL or the heap is under
+     * pressure.
+     */
+    public boolean wanted(Severity severity) {
+        if (!policy.enabled()) {
+            return false;
+        }
+        return severity == Severity.CRITICAL || heapUsedPercent.getAsInt() >= policy.heapPressurePercent();
+    }
+
+    /**
+     * Replaces the baseline. Runs on a background executor every
+     * {@link HeapHistogramPolicy#baselineInterval()}.
+     */
+    public void sampleBaseline() {
+        if (!policy.enabled() || policy.baselineInterval().isZero()) {
+            return;
+        }
+        Taken taken = take();
+        if (taken != null) {
+            baseline.set(new Snapshot(taken.at(), parse(taken.text())));
+        }
+    }
+
+    /**
+     * Starts a histogram for incident {@code id}, whose bundle is already written, if an incident of
+     * {@code severity} is {@link #wanted(Severity)}. The sidecar holds the growth since the baseline,
+     * once one exists, followed by the histogram itself, and is handed to {@code afterWrite} once it
+     * is in place. Returns whether a histogram was started.
+     */
+    public boolean request(Path incidentDir, String id, Severity severity, HeapDumps.AfterDump afterWrite) {
+        Objects.requireNonNull(incidentDir, "incidentDir");
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(afterWrite, "afterWrite");
+        if (!wanted(severity)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> write(BundleSidecars.heapHistogram(incidentDir, id), id, afterWrite));
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void write(Path target, String id, HeapDumps.AfterDump afterWrite) {
+        Taken taken = take();
+        if (taken == null) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(taken.text().length() + 4096);
+        text.append("# takenAt=").append(taken.at()).append(" tookMs=").append(taken.tookMillis()).append('\n');
+        Snapshot base = baseline.get();
+        if (base != null) {
+            text.append(diff(base, new Snapshot(taken.at(), parse(taken.text())), policy.diffLimit())).append('\n');
+        }
+        text.append(taken.text());
+
+        Path staged = target.resolveSibling(target.getFileName() + BundleBuilder.STAGING_SUFFIX);
+        try {
+            Files.writeString(staged, text, StandardCharsets.UTF_8);
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (afterWrite.written(id, target)) {
+                return;
+            }
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to write heap histogram " + target, e);
+        }
+        try {
+            Files.deleteIfExists(staged);
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to delete heap histogram " + target, e);
+        }
+    }
+
+    private Taken take() {
+        if (!running.compareAndSet(false, true)) {
+            logger.log(System.Logger.Level.WARNING, "Skipping heap histogram: an earlier one is still running.");
+            return null;
+        }
+        Instant at = clock.instant();
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            String text = null;
+            Throwable failure = null;
+            try {
+                text = source.histogram();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            // Cleared before the caller is woken, so a histogram right after this one is not skipped.
+            running.set(false);
+            if (failure == null) {
+                result.complete(text);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }, "blackbox-heap-histogram");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            String text = result.get(policy.budget().toMillis(), TimeUnit.MILLISECONDS);
+            return new Taken(at, text, Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+        } catch (TimeoutException e) {
+            logger.log(System.Logger.Level.WARNING, "Heap histogram did not finish within " + policy.budget().toMillis() + "ms; abandoned it.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(System.Logger.Level.WARNING, "Heap histogram failed.", e.getCause());
+        }
+        return null;
+    }
+
+    static Map<String, ClassRow> parse(String text) {
+        Map<String, ClassRow> rows = new HashMap<>();
+        for (String line : text.split("\n")) {
+            Matcher matcher = ROW.matcher(line);
+            if (matcher.matches()) {
+                rows.merge(
+                    matcher.group(3),
+                    new ClassRow(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))),
+                    (a, b) -> new ClassRow(a.instances() + b.instances(), a.bytes() + b.bytes())
+                );
+            }
+        }
+        return rows;
+    }
+
+    static String diff(Snapshot base, Snapshot current, int limit) {
+        Set<String> classes = new HashSet<>(base.rows().keySet());
+        classes.addAll(current.rows().keySet());
+        List<Growth> growth = new ArrayList<>(classes.size());
+        long totalBytes = 0L;
+        long totalInstances = 0L;
+        for (String name : classes) {
+            ClassRow before = base.rows().getOrDefault(name, ClassRow.NONE);
+            ClassRow after = current.rows().getOrDefault(name, ClassRow.NONE);
+            Growth entry = new Growth(name, after, after.bytes() - before.bytes(), after.instances() - before.instances());
+            totalBytes += entry.bytes();
+            totalInstances += entry.instances();
+            if (entry.bytes() > 0) {
+                growth.add(entry);
+            }
+        }
+        growth.sort((a, b) -> Long.compare(b.bytes(), a.bytes()));
+
+        StringBuilder out = new StringBuilder(256 + Math.min(limit, growth.size()) * 96);
+        out.append("# baselineAt=").append(base.at()).append(" takenAt=").append(current.at())
+            .append(" (").append(Duration.between(base.at(), current.at()).toSeconds()).append("s apart)\n");
+        out.append("# classes that grew most, by bytes\n");
+        out.append("deltaBytes\tdeltaInstances\tbytes\tinstances\tclass\n");
+        for (int i = 0; i < growth.size() && i < limit; i++) {
+            Growth entry = growth.get(i);
+            out.append(signed(entry.bytes())).append('\t')
+                .append(signed(entry.instances())).append('\t')
+                .append(entry.now().bytes()).append('\t')
+                .append(entry.now().instances()).append('\t')
+                .append(entry.name()).append('\n');
+        }
+        out.append("total\t").append(signed(totalBytes)).append('\t').append(signed(totalInstances)).append('\n');
+        return out.toString();
+    }
+
+    private static String signed(long value) {
+        return value > 0 ? "+" + value : Long.toString(value);
+    }
+
+    private static int platformHeapUsedPercent() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return max <= 0 ? 0 : (int) (heap.getUsed() * 100L / max);
+    }
+
+    /**
+     * Produces a histogram in the {@code GC.class_histogram} text format.
+     */
+    @FunctionalInterface
+    public interface Source {
+        String histogram() throws Exception;
+
+        static Source diagnosticCommand() {
+            return () -> (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram",
+                new Object[] {new String[] {"-all"}},
+                new String[] {String[].class.getName()}
+            );
+        }
+    }
+
+    record ClassRow(long instances, long bytes) {
+        static final ClassRow NONE = new ClassRow(0L, 0L);
+    }
+
+    record Snapshot(Instant at, Map<String, ClassRow> rows) {
+    }
+
+    private record Taken(Instant at, String text, long tookMillis) {
+    }
+
+    private record Growth(String name, ClassRow now, long bytes, long instances) {
+    }
+}
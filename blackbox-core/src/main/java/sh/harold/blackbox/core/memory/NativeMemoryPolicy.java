@@ -0,0 +1,36 @@
+package sh.harold.blackbox.core.memory;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures {@link NativeMemorySampler}. Process memory is sampled every {@code sampleInterval}
+ * and the last {@code retainedSamples} samples are kept, so the defaults cover the hour before an
+ * incident.
+ */
+public record NativeMemoryPolicy(
+    boolean enabled,
+    Duration sampleInterval,
+    int retainedSamples
+) {
+    public static final Duration DEFAULT_SAMPLE_INTERVAL = Duration.ofSeconds(30);
+    public static final int DEFAULT_RETAINED_SAMPLES = 120;
+
+    public NativeMemoryPolicy {
+        Objects.requireNonNull(sampleInterval, "sampleInterval");
+        if (sampleInterval.isNegative() || sampleInterval.isZero()) {
+            throw new IllegalArgumentException("sampleInterval must be > 0.");
+        }
+        if (retainedSamples <= 0) {
+            throw new IllegalArgumentException("retainedSamples must be > 0.");
+        }
+    }
+
+    public static NativeMemoryPolicy defaults() {
+        return new NativeMemoryPolicy(true, DEFAULT_SAMPLE_INTERVAL, DEFAULT_RETAINED_SAMPLES);
+    }
+
+    public static NativeMemoryPolicy disabled() {
+        return new NativeMemoryPolicy(false, DEFAULT_SAMPLE_INTERVAL, DEFAULT_RETAINED_SAMPLES);
+    }
+}
@@ -0,0 +1,337 @@
+package sh.harold.blackbox.core.memory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.management.ObjectName;
+import sh.harold.blackbox.core.bundle.BundleAttachment;
+
+/**
+ * Keeps a short time series of process memory so bundles show off-heap growth before an incident:
+ * resident set size and its anonymous, file and swapped parts, proportional set size, thread count,
+ * direct and mapped NIO buffers, and committed heap and non-heap memory.
+ *
+ * <p>The platform source reads {@code /proc/self/status} and {@code /proc/self/smaps_rollup}, which
+ * only exist on Linux; elsewhere those columns read {@code -1}. When the JVM runs with
+ * {@code -XX:NativeMemoryTracking}, the first sample takes an NMT baseline and bundles also get the
+ * {@code VM.native_memory summary.diff} against it.
+ */
+public final class NativeMemorySampler {
+    public static final String SERIES_ENTRY = "analysis/native-memory.txt";
+    public static final String NMT_ENTRY = "analysis/native-memory-nmt.txt";
+    public static final long UNKNOWN = -1L;
+
+    private static final String NMT_OFF = "off";
+
+    private final Clock clock;
+    private final NativeMemoryPolicy policy;
+    private final Source source;
+    private final System.Logger logger;
+    private final Sample[] ring;
+    private int next;
+    private int size;
+    private boolean nmtBaselined;
+
+    public NativeMemorySampler(Clock clock, NativeMemoryPolicy policy, Source source, System.Logger logger) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.source = Objects.requireNonNull(source, "source");
+        this.logger = Objects.requireNonNull(logger, "logger");
+        this.ring = new Sample[policy.enabled() ? policy.retainedSamples() : 0];
+    }
+
+    public static NativeMemorySampler platform(Clock clock, NativeMemoryPolicy policy, System.Logger logger) {
+        return new NativeMemorySampler(clock, policy, Source.platform(), logger);
+    }
+
+    public NativeMemoryPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * The NMT level the JVM runs with, {@code off} when it is not tracking native memory.
+     */
+    public String trackingLevel() {
+        try {
+            return source.trackingLevel();
+        } catch (RuntimeException e) {
+            return NMT_OFF;
+        }
+    }
+
+    /**
+     * Reads process memory once and appends it, dropping the oldest sample when full. Runs on a
+     * background executor every {@link NativeMemoryPolicy#sampleInterval()}.
+     */
+    public void sample() {
+        if (!policy.enabled()) {
+            return;
+        }
+        Sample sample;
+        try {
+            sample = source.read(clock.instant());
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.DEBUG, "Failed to sample native memory.", e);
+            return;
+        }
+        boolean baseline;
+        synchronized (this) {
+            ring[next] = sample;
+            next = (next + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+            baseline = !nmtBaselined;
+        }
+        if (baseline && !NMT_OFF.equals(trackingLevel())) {
+            try {
+                source.nativeMemory("baseline");
+                // Only marked once it succeeds, so a failed baseline is retried on the next sample.
+                synchronized (this) {
+                    nmtBaselined = true;
+                }
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to take a native memory tracking baseline.", e);
+            }
+        }
+    }
+
+    /**
+     * Retained samples, oldest first.
+     */
+    public synchronized List<Sample> samples() {
+        List<Sample> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            out.add(ring[(next - size + i + ring.length) % ring.length]);
+        }
+        return out;
+    }
+
+    public Sample latest() {
+        List<Sample> samples = samples();
+        return samples.isEmpty() ? null : samples.get(samples.size() - 1);
+    }
+
+    /**
+     * Takes a fresh sample so the series ends at the incident, then returns the series and, when
+     * NMT is on, its summary.
+     */
+    public List<BundleAttachment> attachments() {
+        if (!policy.enabled()) {
+            return List.of();
+        }
+        sample();
+        List<BundleAttachment> attachments = new ArrayList<>(2);
+        attachments.add(new BundleAttachment(SERIES_ENTRY, render(samples()).getBytes(StandardCharsets.UTF_8)));
+        if (!NMT_OFF.equals(trackingLevel())) {
+            try {
+                String text = source.nativeMemory(nmtBaselined() ? "summary.diff" : "summary");
+                if (text != null && !text.isBlank()) {
+                    attachments.add(new BundleAttachment(NMT_ENTRY, text.getBytes(StandardCharsets.UTF_8)));
+                }
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to read native memory tracking summary.", e);
+            }
+        }
+        return attachments;
+    }
+
+    private synchronized boolean nmtBaselined() {
+        return nmtBaselined;
+    }
+
+    static String render(List<Sample> samples) {
+        StringBuilder out = new StringBuilder(256 + samples.size() * 128);
+        out.append("# process memory, oldest first; bytes, -1 where unavailable\n");
+        if (samples.size() > 1) {
+            Sample first = samples.get(0);
+            Sample last = samples.get(samples.size() - 1);
+            out.append("# over ").append(Duration.between(first.at(), last.at()).toSeconds()).append("s:")
+                .append(" rss ").append(change(first.rssBytes(), last.rssBytes()))
+                .append(" rssOutsideHeap ").append(change(first.rssOutsideHeapBytes(), last.rssOutsideHeapBytes()))
+                .append(" direct ").append(change(first.directBytes(), last.directBytes()))
+                .append(" nonHeapCommitted ").append(change(first.nonHeapCommittedBytes(), last.nonHeapCommittedBytes()))
+                .append(" threads ").append(change(first.threads(), last.threads()))
+                .append('\n');
+        }
+        out.append("at\trss\trssAnon\trssFile\tpss\tswap\tthreads\tdirect\tmapped\theapCommitted\tnonHeapCommitted\n");
+        for (Sample sample : samples) {
+            out.append(sample.at()).append('\t')
+                .append(sample.rssBytes()).append('\t')
+                .append(sample.rssAnonBytes()).append('\t')
+                .append(sample.rssFileBytes()).append('\t')
+                .append(sample.pssBytes()).append('\t')
+                .append(sample.swapBytes()).append('\t')
+                .append(sample.threads()).append('\t')
+                .append(sample.directBytes()).append('\t')
+                .append(sample.mappedBytes()).append('\t')
+                .append(sample.heapCommittedBytes()).append('\t')
+                .append(sample.nonHeapCommittedBytes()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String change(long before, long after) {
+        if (before == UNKNOWN || after == UNKNOWN) {
+            return "unknown";
+        }
+        long delta = after - before;
+        return delta > 0 ? "+" + delta : Long.toString(delta);
+    }
+
+    /**
+     * Parses {@code Key: value [kB]} lines as found in {@code /proc}, in bytes where a unit is
+     * given. Lines that do not have that shape are skipped.
+     */
+    static Map<String, Long> parseProc(String text) {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : text.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String[] parts = line.substring(colon + 1).trim().split("\\s+");
+            if (parts.length == 0 || parts.length > 2) {
+                continue;
+            }
+            try {
+                long value = Long.parseLong(parts[0]);
+                if (parts.length == 2) {
+                    if (!parts[1].equals("kB")) {
+                        continue;
+                    }
+                    value *= 1024L;
+                }
+                values.put(line.substring(0, colon).trim(), value);
+            } catch (NumberFormatException e) {
+                // not a numeric line
+            }
+        }
+        return values;
+    }
+
+    /**
+     * One reading of process memory. Fields are {@link #UNKNOWN} when the source could not read them.
+     */
+    public record Sample(
+        Instant at,
+        long rssBytes,
+        long rssAnonBytes,
+        long rssFileBytes,
+        long pssBytes,
+        long swapBytes,
+        long threads,
+        long directBytes,
+        long mappedBytes,
+        long heapCommittedBytes,
+        long nonHeapCommittedBytes
+    ) {
+        public Sample {
+            Objects.requireNonNull(at, "at");
+        }
+
+        /**
+         * Resident memory not accounted for by the committed heap, an upper bound on off-heap use.
+         */
+        public long rssOutsideHeapBytes() {
+            if (rssBytes == UNKNOWN || heapCommittedBytes == UNKNOWN) {
+                return UNKNOWN;
+            }
+            return rssBytes - heapCommittedBytes;
+        }
+    }
+
+    /**
+     * Reads process memory and, when the JVM tracks it, native memory tracking output.
+     */
+    public interface Source {
+        Sample read(Instant at) throws Exception;
+
+        String trackingLevel();
+
+        /**
+         * Runs {@code VM.native_memory} with {@code command}.
+         */
+        String nativeMemory(String command) throws Exception;
+
+        static Source platform() {
+            return new Source() {
+                private volatile String trackingLevel;
+
+                @Override
+                public Sample read(Instant at) {
+                    Map<String, Long> status = readProc(Path.of("/proc/self/status"));
+                    Map<String, Long> rollup = readProc(Path.of("/proc/self/smaps_rollup"));
+                    long direct = UNKNOWN;
+                    long mapped = UNKNOWN;
+                    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                        if (pool.getName().equals("direct")) {
+                            direct = pool.getMemoryUsed();
+                        } else if (pool.getName().equals("mapped")) {
+                            mapped = pool.getMemoryUsed();
+                        }
+                    }
+                    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+                    return new Sample(
+                        at,
+                        status.getOrDefault("VmRSS", UNKNOWN),
+                        status.getOrDefault("RssAnon", UNKNOWN),
+                        status.getOrDefault("RssFile", UNKNOWN),
+                        rollup.getOrDefault("Pss", UNKNOWN),
+                        status.getOrDefault("VmSwap", UNKNOWN),
+                        status.getOrDefault("Threads", (long) ManagementFactory.getThreadMXBean().getThreadCount()),
+                        direct,
+                        mapped,
+                        memory.getHeapMemoryUsage().getCommitted(),
+                        memory.getNonHeapMemoryUsage().getCommitted()
+                    );
+                }
+
+                @Override
+                public String trackingLevel() {
+                    String level = trackingLevel;
+                    if (level == null) {
+                        try {
+                            level = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                                .getVMOption("NativeMemoryTracking")
+                                .getValue();
+                        } catch (RuntimeException e) {
+                            level = NMT_OFF;
+                        }
+                        trackingLevel = level;
+                    }
+                    return level;
+                }
+
+                @Override
+                public String nativeMemory(String command) throws Exception {
+                    return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                        new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                        "vmNativeMemory",
+                        new Object[] {new String[] {command}},
+                        new String[] {String[].class.getName()}
+                    );
+                }
+            };
+        }
+
+        private static Map<String, Long> readProc(Path path) {
+            try {
+                return parseProc(Files.readString(path, StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                return Map.of();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package sh.harold.blackbox.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear latency histogram with microsecond resolution.
+ *
+ * <p>Buckets follow the HDR layout: 16 linear sub-buckets per power of two, which bounds the
+ * relative error of reported percentiles to roughly 6%. Values above ~71 minutes land in the
+ * last bucket. Recording is lock-free and allocation-free.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 32;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    private static final long MAX_TRACKABLE_MICROS = (1L << MAX_EXPONENT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(Math.max(0L, nanos) / 1_000L);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0L, micros);
+        counts.incrementAndGet(bucketIndex(value));
+        total.incrementAndGet();
+        long currentMax = maxMicros.get();
+        while (value > currentMax && !maxMicros.compareAndSet(currentMax, value)) {
+            currentMax = maxMicros.get();
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given quantile, in microseconds.
+     */
+    public long percentileMicros(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("quantile must be within [0, 1].");
+        }
+        long[] snapshot = new long[BUCKET_COUNT];
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            seen += snapshot[i];
+        }
+        return percentileMicros(snapshot, seen, quantile, maxMicros.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        total.set(0L);
+        maxMicros.set(0L);
+    }
+
+    /**
+     * Adds this histogram's buckets into {@code target}, which must have {@link #BUCKET_COUNT} slots.
+     */
+    long addTo(long[] target) {
+        long added = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            target[i] += count;
+            added += count;
+        }
+        return added;
+    }
+
+    static long percentileMicros(long[] buckets, long total, double quantile, long maxMicros) {
+        if (total <= 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    static int bucketIndex(long micros) {
+        long value = Math.min(micros, MAX_TRACKABLE_MICROS);
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lower = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
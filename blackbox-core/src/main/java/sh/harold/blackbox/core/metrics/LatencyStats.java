@@ -0,0 +1,36 @@
+package sh.harold.blackbox.core.metrics;
+
+/**
+ * Percentile summary of a latency histogram, in microseconds.
+ */
+public record LatencyStats(
+    long count,
+    long p50Micros,
+    long p90Micros,
+    long p99Micros,
+    long p999Micros,
+    long maxMicros
+) {
+    public static final LatencyStats EMPTY = new LatencyStats(0L, 0L, 0L, 0L, 0L, 0L);
+
+    /**
+     * Compact single-line rendering in milliseconds for status output and bundle text files.
+     */
+    public String describeMillis() {
+        if (count == 0L) {
+            return "n=0";
+        }
+        return "n=" + count
+            + " p50=" + millis(p50Micros)
+            + " p90=" + millis(p90Micros)
+            + " p99=" + millis(p99Micros)
+            + " p99.9=" + millis(p999Micros)
+            + " max=" + millis(maxMicros);
+    }
+
+    private static String millis(long micros) {
+        long whole = micros / 1_000L;
+        long fraction = (micros % 1_000L) / 100L;
+        return whole + "." + fraction + "ms";
+    }
+}
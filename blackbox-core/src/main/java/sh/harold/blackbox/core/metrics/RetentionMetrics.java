@@ -0,0 +1,80 @@
+package sh.harold.blackbox.core.metrics;
+
+import java.time.Instant;
+import sh.harold.blackbox.core.retention.RetentionStats;
+
+/**
+ * Running totals over retention passes, plus the most recent pass, for status output.
+ */
+public final class RetentionMetrics {
+    private long runs;
+    private long requests;
+    private long deleted;
+    private long bytesDeleted;
+    private long deleteFailures;
+    private long downsampled;
+    private long bytesReclaimed;
+    private long packed;
+    private long blobBytesSwept;
+    private RetentionStats last;
+    private Instant lastRunAt;
+    private long lastRunNanos;
+
+    /**
+     * Counts a request for a pass; requests arriving while one is already pending are coalesced.
+     */
+    public synchronized void requested() {
+        requests++;
+    }
+
+    public synchronized void record(RetentionStats stats, Instant at, long durationNanos) {
+        runs++;
+        deleted += stats.deleted();
+        bytesDeleted += stats.bytesDeleted();
+        deleteFailures += stats.deleteFailures();
+        downsampled += stats.downsampled();
+        bytesReclaimed += stats.bytesReclaimed();
+        packed += stats.packed();
+        blobBytesSwept += stats.blobBytesSwept();
+        last = stats;
+        lastRunAt = at;
+        lastRunNanos = durationNanos;
+    }
+
+    public synchronized long runs() {
+        return runs;
+    }
+
+    public synchronized long requests() {
+        return requests;
+    }
+
+    /**
+     * Stats of the latest pass, or {@code null} before the first one.
+     */
+    public synchronized RetentionStats last() {
+        return last;
+    }
+
+    public synchronized Instant lastRunAt() {
+        return lastRunAt;
+    }
+
+    /**
+     * Compact single-line rendering for status output.
+     */
+    public synchronized String describe() {
+        if (last == null) {
+            return "runs=0 requests=" + requests;
+        }
+        return "runs=" + runs
+            + " requests=" + requests
+            + " deleted=" + deleted + " (" + bytesDeleted + " bytes)"
+            + " downsampled=" + downsampled + " (" + bytesReclaimed + " bytes)"
+            + " packed=" + packed
+            + " blobsSwept=" + blobBytesSwept + " bytes"
+            + " failures=" + deleteFailures
+            + " last=" + lastRunAt + " in " + lastRunNanos / 1_000_000L + "ms"
+            + " kept=" + last.finalCount() + " (" + last.finalBytes() + " bytes)";
+    }
+}
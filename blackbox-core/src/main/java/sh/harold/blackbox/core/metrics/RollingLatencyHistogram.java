@@ -0,0 +1,73 @@
+package sh.harold.blackbox.core.metrics;
+
+import java.time.Clock;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histogram that rotates once per minute and keeps the last hour of minutes.
+ */
+public final class RollingLatencyHistogram {
+    public static final int RETAINED_MINUTES = 60;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private final Clock clock;
+    private final LatencyHistogram[] slots = new LatencyHistogram[RETAINED_MINUTES];
+    private final AtomicLong[] slotMinutes = new AtomicLong[RETAINED_MINUTES];
+
+    public RollingLatencyHistogram(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        for (int i = 0; i < RETAINED_MINUTES; i++) {
+            slots[i] = new LatencyHistogram();
+            slotMinutes[i] = new AtomicLong(Long.MIN_VALUE);
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        long minute = currentMinute();
+        slotFor(minute).recordNanos(nanos);
+    }
+
+    /**
+     * Summarizes the last {@code minutes} minutes, including the current partial minute.
+     */
+    public LatencyStats snapshot(int minutes) {
+        if (minutes <= 0 || minutes > RETAINED_MINUTES) {
+            throw new IllegalArgumentException("minutes must be within [1, " + RETAINED_MINUTES + "].");
+        }
+        long now = currentMinute();
+        long[] merged = new long[LatencyHistogram.BUCKET_COUNT];
+        long total = 0L;
+        long max = 0L;
+        for (int i = 0; i < RETAINED_MINUTES; i++) {
+            long slotMinute = slotMinutes[i].get();
+            if (slotMinute > now || slotMinute <= now - minutes) {
+                continue;
+            }
+            total += slots[i].addTo(merged);
+            max = Math.max(max, slots[i].maxMicros());
+        }
+        return new LatencyStats(
+            total,
+            LatencyHistogram.percentileMicros(merged, total, 0.50, max),
+            LatencyHistogram.percentileMicros(merged, total, 0.90, max),
+            LatencyHistogram.percentileMicros(merged, total, 0.99, max),
+            LatencyHistogram.percentileMicros(merged, total, 0.999, max),
+            max
+        );
+    }
+
+    private LatencyHistogram slotFor(long minute) {
+        int index = (int) Math.floorMod(minute, (long) RETAINED_MINUTES);
+        AtomicLong slotMinute = slotMinutes[index];
+        long current = slotMinute.get();
+        if (current < minute && slotMinute.compareAndSet(current, minute)) {
+            slots[index].reset();
+        }
+        return slots[index];
+    }
+
+    private long currentMinute() {
+        return Math.floorDiv(clock.millis(), MILLIS_PER_MINUTE);
+    }
+}
@@ -0,0 +1,531 @@
+package sh.harold.blackbox.core.pack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only archive of incident bundles with a side index of entry offsets.
+ *
+ * <p>The pack is a header followed by records, each either a bundle ({@code [op][name length]
+ * [data length][crc32][name][data]}) or a removal of an earlier one. The {@value #INDEX_SUFFIX}
+ * file next to it maps live names to data offsets and records how much of the pack it covers;
+ * records past that point, or all of them if the index is missing or damaged, are re-read from the
+ * pack on open, and a torn last record is cut off. Entries are read with positional
+ * {@link FileChannel} reads, so readers do not share a file position.
+ */
+public final class PackFile implements AutoCloseable {
+    /**
+     * Subdirectory of the incident directory that holds packs.
+     */
+    public static final String DIRECTORY = "packs";
+    public static final String SUFFIX = ".bbpack";
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x4242504b;
+    private static final int INDEX_MAGIC = 0x42425049;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 1 + 4 + 8 + 4;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final Path indexPath;
+    private final Map<String, Slot> entries = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long end;
+    private long liveBytes;
+    private boolean indexDirty;
+
+    private PackFile(Path path) {
+        this.path = path;
+        this.indexPath = path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Opens or creates the pack at {@code path}.
+     */
+    public static PackFile open(Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        PackFile pack = new PackFile(path);
+        pack.load();
+        return pack;
+    }
+
+    /**
+     * Whether {@code bundle} names an entry inside a pack rather than a loose bundle file. Packed
+     * bundles are addressed as {@code <pack>/<bundle file name>}.
+     */
+    public static boolean isPacked(Path bundle) {
+        Path parent = bundle.getParent();
+        return parent != null && parent.getFileName() != null && parent.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Where one bundle's bytes live inside the pack.
+     */
+    public record Slot(long offset, long length, int crc) {
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Live entries by name, in the order they were added.
+     */
+    public synchronized Map<String, Slot> entries() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+
+    public synchronized boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Size of the pack file, including removed entries not yet compacted away.
+     */
+    public synchronized long size() {
+        return end;
+    }
+
+    public synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Appends {@code source} under {@code name}, replacing any live entry with that name.
+     * Call {@link #sync()} before relying on the entry surviving a crash.
+     */
+    public synchronized Slot append(String name, Path source) throws IOException {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(source, "source");
+        requireOpen();
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long length = Files.size(source);
+        long recordStart = end;
+        long dataOffset = recordStart + RECORD_HEADER_BYTES + nameBytes.length;
+
+        CRC32 crc = new CRC32();
+        long position = dataOffset;
+        try (InputStream in = Files.newInputStream(source)) {
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Bundle shrank while packing: " + source);
+                }
+                crc.update(buffer, 0, read);
+                writeFully(ByteBuffer.wrap(buffer, 0, read), position);
+                position += read;
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            channel.truncate(recordStart);
+            throw e;
+        }
+        // The header goes last, so a crash mid-copy leaves a record that fails to parse.
+        writeFully(recordHeader(OP_PUT, nameBytes, length, (int) crc.getValue()), recordStart);
+        end = position;
+        put(name, new Slot(dataOffset, length, (int) crc.getValue()));
+        return entries.get(name);
+    }
+
+    /**
+     * Marks {@code name} as removed; returns whether it was live.
+     */
+    public synchronized boolean remove(String name) throws IOException {
+        requireOpen();
+        if (!entries.containsKey(name)) {
+            return false;
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = recordHeader(OP_REMOVE, nameBytes, 0L, 0);
+        writeFully(record, end);
+        end += record.capacity();
+        Slot removed = entries.remove(name);
+        liveBytes -= removed.length();
+        indexDirty = true;
+        return true;
+    }
+
+    /**
+     * Copies the bytes of {@code name} to {@code out}.
+     */
+    public synchronized void copyTo(String name, OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        requireOpen();
+        Slot slot = entries.get(name);
+        if (slot == null) {
+            throw new IOException("No entry " + name + " in pack " + path);
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = slot.offset();
+        long stop = slot.offset() + slot.length();
+        while (position < stop) {
+            long moved = channel.transferTo(position, stop - position, target);
+            if (moved <= 0) {
+                throw new IOException("Unexpected end of pack " + path);
+            }
+            position += moved;
+        }
+    }
+
+    /**
+     * Streams the bytes of {@code name}; the stream stays valid until the pack is compacted or closed.
+     */
+    public synchronized InputStream open(String name) throws IOException {
+        requireOpen();
+        Slot slot = entries.get(name);
+        if (slot == null) {
+            throw new IOException("No entry " + name + " in pack " + path);
+        }
+        return new SlotInputStream(channel, slot.offset(), slot.offset() + slot.length());
+    }
+
+    /**
+     * Forces appended data to disk, then rewrites the offset index.
+     */
+    public synchronized void sync() throws IOException {
+        requireOpen();
+        channel.force(true);
+        if (indexDirty) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Rewrites the pack with only its live entries, dropping the space of removed ones.
+     */
+    public synchronized void compact() throws IOException {
+        requireOpen();
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        Map<String, Slot> moved = new LinkedHashMap<>();
+        try (FileChannel out = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            out.write(header());
+            long position = HEADER_BYTES;
+            for (Map.Entry<String, Slot> entry : entries.entrySet()) {
+                byte[] nameBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                Slot slot = entry.getValue();
+                ByteBuffer recordHeader = recordHeader(OP_PUT, nameBytes, slot.length(), slot.crc());
+                position += recordHeader.remaining();
+                out.write(recordHeader);
+                long copied = 0;
+                while (copied < slot.length()) {
+                    long count = channel.transferTo(slot.offset() + copied, slot.length() - copied, out);
+                    if (count <= 0) {
+                        throw new IOException("Unexpected end of pack " + path);
+                    }
+                    copied += count;
+                }
+                moved.put(entry.getKey(), new Slot(position, slot.length(), slot.crc()));
+                position += slot.length();
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        channel.close();
+        channel = null;
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+        entries.clear();
+        entries.putAll(moved);
+        writeIndex();
+    }
+
+    /**
+     * Closes the pack, writing the index first if it is out of date.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes and removes the pack and its index.
+     */
+    public synchronized void delete() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.deleteIfExists(indexPath);
+        Files.deleteIfExists(path);
+        entries.clear();
+        liveBytes = 0;
+        end = 0;
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size == 0) {
+            channel.write(header(), 0);
+            end = HEADER_BYTES;
+            indexDirty = true;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException("Not a Blackbox pack: " + path);
+        }
+        long covered = readIndex(size);
+        if (covered < HEADER_BYTES) {
+            entries.clear();
+            liveBytes = 0;
+            covered = HEADER_BYTES;
+        }
+        end = scan(covered, size);
+        if (end < size) {
+            channel.truncate(end);
+        }
+        if (end != covered) {
+            indexDirty = true;
+        }
+    }
+
+    /**
+     * Loads the index if it is intact and describes a prefix of the pack; returns the covered
+     * length, or -1 to rescan the whole pack.
+     */
+    private long readIndex(long packSize) {
+        if (!Files.exists(indexPath)) {
+            return -1;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            if (buffer.remaining() < 4 + 4 + 8 + 4 + 4) {
+                return -1;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+                return -1;
+            }
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION) {
+                return -1;
+            }
+            long covered = buffer.getLong();
+            if (covered > packSize) {
+                return -1;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                put(new String(name, StandardCharsets.UTF_8), new Slot(buffer.getLong(), buffer.getLong(), buffer.getInt()));
+            }
+            return covered;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replays records from {@code from}; returns the offset just past the last complete one.
+     */
+    private long scan(long from, long size) throws IOException {
+        long position = from;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            byte op = recordHeader.get(0);
+            int nameLength = recordHeader.getInt(1);
+            long length = recordHeader.getLong(5);
+            int crc = recordHeader.getInt(13);
+            if ((op != OP_PUT && op != OP_REMOVE) || nameLength <= 0 || length < 0) {
+                break;
+            }
+            long dataOffset = position + RECORD_HEADER_BYTES + nameLength;
+            if (dataOffset + length > size) {
+                break;
+            }
+            ByteBuffer name = ByteBuffer.allocate(nameLength);
+            readFully(name, position + RECORD_HEADER_BYTES);
+            String entryName = new String(name.array(), StandardCharsets.UTF_8);
+            if (op == OP_PUT) {
+                if (crcOf(dataOffset, length) != crc) {
+                    break;
+                }
+                put(entryName, new Slot(dataOffset, length, crc));
+            } else {
+                Slot removed = entries.remove(entryName);
+                if (removed != null) {
+                    liveBytes -= removed.length();
+                }
+            }
+            position = dataOffset + length;
+        }
+        return position;
+    }
+
+    private void put(String name, Slot slot) {
+        Slot previous = entries.remove(name);
+        if (previous != null) {
+            liveBytes -= previous.length();
+        }
+        entries.put(name, slot);
+        liveBytes += slot.length();
+        indexDirty = true;
+    }
+
+    private void writeIndex() throws IOException {
+        int length = 4 + 4 + 8 + 4 + 4;
+        for (String name : entries.keySet()) {
+            length += 4 + name.getBytes(StandardCharsets.UTF_8).length + 8 + 8 + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(end).putInt(entries.size());
+        for (Map.Entry<String, Slot> entry : entries.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(name.length).put(name);
+            buffer.putLong(entry.getValue().offset()).putLong(entry.getValue().length()).putInt(entry.getValue().crc());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexDirty = false;
+    }
+
+    private int crcOf(long offset, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+        long position = offset;
+        long stop = offset + length;
+        while (position < stop) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), stop - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                throw new IOException("Unexpected end of pack " + path);
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+        return (int) crc.getValue();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of pack " + path);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void requireOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("Pack is closed: " + path);
+        }
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static ByteBuffer recordHeader(byte op, byte[] name, long length, int crc) {
+        return ByteBuffer.allocate(RECORD_HEADER_BYTES + name.length)
+            .put(op)
+            .putInt(name.length)
+            .putLong(length)
+            .putInt(crc)
+            .put(name)
+            .flip();
+    }
+
+    private static final class SlotInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long stop;
+
+        private SlotInputStream(FileChannel channel, long position, long stop) {
+            this.channel = channel;
+            this.position = position;
+            this.stop = stop;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= stop) {
+                return -1;
+            }
+            int wanted = (int) Math.min(length, stop - position);
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, wanted), position);
+            if (read < 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package sh.harold.blackbox.core.retention;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Objects;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.pack.PackFile;
+
+/**
+ * Rewrites a bundle to a smaller storage tier for tiered retention.
+ */
+@FunctionalInterface
+public interface BundleDownsampler {
+    Duration DEFAULT_WINDOW_PADDING = Duration.ofSeconds(30);
+
+    /**
+     * Downsamples the bundle behind {@code entry} and returns its updated entry. Returning an
+     * entry still at {@link sh.harold.blackbox.core.index.StorageTier#FULL} means nothing was done.
+     */
+    IncidentEntry downsample(IncidentEntry entry) throws IOException;
+
+    static BundleDownsampler none() {
+        return entry -> entry;
+    }
+
+    /**
+     * Keeps the recording chunks around each stall, plus {@code padding} on both sides. Packed
+     * bundles are left as they are.
+     */
+    static BundleDownsampler using(BundleBuilder bundleBuilder, Duration padding) {
+        Objects.requireNonNull(bundleBuilder, "bundleBuilder");
+        Objects.requireNonNull(padding, "padding");
+        return entry -> PackFile.isPacked(entry.path()) ? entry : IncidentEntry.of(
+            bundleBuilder.downsample(entry.path(), padding),
+            entry.path(),
+            Files.size(entry.path())
+        );
+    }
+}
@@ -0,0 +1,288 @@
+package sh.harold.blackbox.core.retention;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.pack.PackFile;
+
+/**
+ * Moves old bundles out of the incident directory into {@link PackFile packs} and keeps them
+ * reachable by incident id.
+ *
+ * <p>Packed bundles stay in the {@link IncidentIndex} under the path {@code <pack>/<bundle file
+ * name>}, so retention sees and evicts them like loose ones through {@link #deleter(FileDeleter)}.
+ * A pack whose last entry is evicted is deleted outright; one that is mostly removed entries is
+ * compacted.
+ */
+public final class PackStore {
+    public static final long DEFAULT_MAX_PACK_BYTES = 256L * 1024 * 1024;
+
+    private static final String PACK_PREFIX = "pack-";
+
+    private final Path incidentDir;
+    private final Path packDir;
+    private final long maxPackBytes;
+    private final System.Logger logger;
+    private final Map<Path, PackFile> open = new HashMap<>();
+    private boolean recovered;
+
+    public PackStore(Path incidentDir, long maxPackBytes, System.Logger logger) {
+        this.incidentDir = Objects.requireNonNull(incidentDir, "incidentDir");
+        this.packDir = incidentDir.resolve(PackFile.DIRECTORY);
+        if (maxPackBytes <= 0) {
+            throw new IllegalArgumentException("maxPackBytes must be > 0.");
+        }
+        this.maxPackBytes = maxPackBytes;
+        this.logger = Objects.requireNonNull(logger, "logger");
+    }
+
+    /**
+     * Appends every loose bundle created before {@code cutoff} to the newest pack, rolling to a new
+     * pack past the size limit. Bundles are re-pointed in {@code index} and their loose files deleted
+     * only once the pack is on disk. Returns how many bundles were packed.
+     */
+    public synchronized int packOlderThan(IncidentIndex index, Instant cutoff) {
+        Objects.requireNonNull(index, "index");
+        Objects.requireNonNull(cutoff, "cutoff");
+        if (!recovered) {
+            dropDuplicates(index);
+            recovered = true;
+        }
+        List<IncidentEntry> candidates = new ArrayList<>();
+        for (IncidentEntry entry : index.entries()) {
+            if (!entry.createdAt().isBefore(cutoff)) {
+                break;
+            }
+            if (!PackFile.isPacked(entry.path())) {
+                candidates.add(entry);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        int packed = 0;
+        List<IncidentEntry> pending = new ArrayList<>();
+        PackFile pack = null;
+        try {
+            Files.createDirectories(packDir);
+            pack = writablePack();
+            for (IncidentEntry entry : candidates) {
+                long size;
+                try {
+                    size = Files.size(entry.path());
+                } catch (IOException e) {
+                    logger.log(System.Logger.Level.WARNING, "Failed to pack incident " + entry.path(), e);
+                    continue;
+                }
+                if (!pack.isEmpty() && pack.size() + size > maxPackBytes) {
+                    pack.sync();
+                    packed += commit(index, pack, pending);
+                    pack = openPack(packDir.resolve(packName(number(pack.path()) + 1)));
+                }
+                try {
+                    pack.append(entry.path().getFileName().toString(), entry.path());
+                    pending.add(entry);
+                } catch (IOException e) {
+                    logger.log(System.Logger.Level.WARNING, "Failed to pack incident " + entry.path(), e);
+                }
+            }
+            pack.sync();
+            packed += commit(index, pack, pending);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to write incident pack in " + packDir, e);
+        }
+        return packed;
+    }
+
+    /**
+     * Wraps {@code loose} so packed bundles are removed from their pack instead of deleted as files.
+     */
+    public FileDeleter deleter(FileDeleter loose) {
+        Objects.requireNonNull(loose, "loose");
+        return path -> {
+            if (PackFile.isPacked(path)) {
+                removePacked(path);
+            } else {
+                loose.delete(path);
+            }
+        };
+    }
+
+    /**
+     * Copies the bundle of incident {@code id} into {@code targetDir}, wherever it is stored, and
+     * returns the copy.
+     */
+    public synchronized Path extract(IncidentIndex index, String id, Path targetDir) throws IOException {
+        Objects.requireNonNull(index, "index");
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(targetDir, "targetDir");
+        IncidentEntry entry = index.find(id).orElseThrow(() -> new NoSuchFileException("No incident " + id));
+        Files.createDirectories(targetDir);
+        Path target = targetDir.resolve(entry.path().getFileName().toString());
+        if (!PackFile.isPacked(entry.path())) {
+            Files.copy(entry.path(), target, StandardCopyOption.REPLACE_EXISTING);
+            return target;
+        }
+        PackFile pack = openPack(entry.path().getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            pack.copyTo(entry.path().getFileName().toString(), out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Opens the bundle at {@code bundle} for reading, whether it is packed or loose.
+     */
+    public synchronized InputStream open(Path bundle) throws IOException {
+        Objects.requireNonNull(bundle, "bundle");
+        if (!PackFile.isPacked(bundle)) {
+            return Files.newInputStream(bundle);
+        }
+        return openPack(bundle.getParent()).open(bundle.getFileName().toString());
+    }
+
+    /**
+     * Returns the number of pack files on disk.
+     */
+    public synchronized int packCount() {
+        return packPaths().size();
+    }
+
+    public synchronized void close() {
+        for (PackFile pack : open.values()) {
+            try {
+                pack.close();
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to close incident pack " + pack.path(), e);
+            }
+        }
+        open.clear();
+    }
+
+    private synchronized void removePacked(Path bundle) throws IOException {
+        Path packPath = bundle.getParent();
+        if (!Files.exists(packPath)) {
+            return;
+        }
+        PackFile pack = openPack(packPath);
+        pack.remove(bundle.getFileName().toString());
+        if (pack.isEmpty()) {
+            open.remove(packPath);
+            pack.delete();
+        } else if (pack.size() - pack.liveBytes() > pack.liveBytes()) {
+            pack.compact();
+        } else {
+            pack.sync();
+        }
+    }
+
+    /**
+     * Re-points packed bundles in the index and removes their loose files.
+     */
+    private int commit(IncidentIndex index, PackFile pack, List<IncidentEntry> pending) {
+        int committed = pending.size();
+        for (IncidentEntry entry : pending) {
+            index.remove(entry.path());
+            index.put(entry.withPath(pack.path().resolve(entry.path().getFileName().toString())));
+            try {
+                Files.deleteIfExists(entry.path());
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to delete packed incident " + entry.path(), e);
+            }
+        }
+        pending.clear();
+        return committed;
+    }
+
+    /**
+     * A crash between syncing a pack and deleting the loose bundles leaves both copies; the loose
+     * one wins and the packed one is removed.
+     */
+    private void dropDuplicates(IncidentIndex index) {
+        for (IncidentEntry entry : index.entries()) {
+            if (!PackFile.isPacked(entry.path())) {
+                continue;
+            }
+            Path loose = incidentDir.resolve(entry.path().getFileName().toString());
+            if (!Files.exists(loose)) {
+                continue;
+            }
+            try {
+                removePacked(entry.path());
+                index.remove(entry.path());
+                index.put(entry.withPath(loose));
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to drop duplicate packed incident " + entry.path(), e);
+            }
+        }
+    }
+
+    private PackFile writablePack() throws IOException {
+        List<Path> packs = packPaths();
+        if (!packs.isEmpty()) {
+            Path newest = packs.get(packs.size() - 1);
+            if (Files.size(newest) < maxPackBytes) {
+                return openPack(newest);
+            }
+            return openPack(packDir.resolve(packName(number(newest) + 1)));
+        }
+        return openPack(packDir.resolve(packName(1)));
+    }
+
+    private PackFile openPack(Path path) throws IOException {
+        PackFile pack = open.get(path);
+        if (pack == null) {
+            pack = PackFile.open(path);
+            open.put(path, pack);
+        }
+        return pack;
+    }
+
+    private List<Path> packPaths() {
+        if (!Files.isDirectory(packDir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(packDir)) {
+            return stream
+                .filter(path -> path.getFileName().toString().startsWith(PACK_PREFIX))
+                .filter(path -> path.getFileName().toString().endsWith(PackFile.SUFFIX))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to list incident packs in " + packDir, e);
+            return List.of();
+        }
+    }
+
+    private static String packName(long number) {
+        return PACK_PREFIX + String.format("%06d", number) + PackFile.SUFFIX;
+    }
+
+    private static long number(Path pack) {
+        String name = pack.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PACK_PREFIX.length(), name.length() - PackFile.SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return 0L;
+        }
+    }
+}
@@ -1,41 +1,100 @@
 package sh.harold.blackbox.core.retention;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import sh.harold.blackbox.core.bundle.BlobStore;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.index.StorageTier;
 
 /**
  * Enforces on-disk retention for incident bundles.
+ *
+ * <p>Age limits delete oldest first. Count and byte limits evict by score instead: lower
+ * severity first (bundles without a readable report count as INFO), then bundles whose
+ * fingerprint repeats in a newer bundle, then the oldest. The newest bundle is never deleted.
+ * Whatever survives past the policy's {@code packAfter} is moved into the {@link PackStore}, if
+ * there is one; packed bundles are evicted from their pack by the same rules. With a
+ * {@link BlobStore}, passes that removed or rewrote anything end by sweeping blobs no remaining
+ * bundle references. A bundle's {@link BundleSidecars} count towards its size and go with it.
+ * Sidecar sizes are listed from disk once, on the first pass, which also deletes sidecars whose
+ * bundle is gone; sidecars written later are reported through {@link #sidecarWritten}.
+ *
+ * <p>A bundle that a remaining delta capture builds on ({@link IncidentEntry#parent()}) is neither
+ * deleted nor downsampled, so the child's recording can still be reconstructed; it becomes
+ * eligible once its last child is gone. Delta captures themselves are never downsampled.
  */
 public final class RetentionManager {
-    private static final DateTimeFormatter INCIDENT_TIMESTAMP = new DateTimeFormatterBuilder()
-        .appendPattern("yyyyMMdd-HHmmss.SSS")
-        .appendOffset("+HHmm", "Z")
-        .toFormatter(Locale.ROOT);
+    private static final Duration BLOB_GRACE = Duration.ofMinutes(10);
 
     private final Clock clock;
     private final System.Logger logger;
     private final FileDeleter deleter;
+    private final BundleDownsampler downsampler;
+    private final PackStore packs;
+    private final BlobStore blobs;
+    private final Map<IncidentEntry, Set<String>> blobRefsByEntry = new HashMap<>();
+    private final Map<String, Integer> blobRefCounts = new HashMap<>();
+    private final Map<String, Long> sidecarBytes = new ConcurrentHashMap<>();
+    private volatile boolean sidecarsListed;
+    private boolean blobsSwept;
 
     public RetentionManager(Clock clock, System.Logger logger, FileDeleter deleter) {
+        this(clock, logger, deleter, BundleDownsampler.none());
+    }
+
+    public RetentionManager(Clock clock, System.Logger logger, FileDeleter deleter, BundleDownsampler downsampler) {
+        this(clock, logger, deleter, downsampler, null);
+    }
+
+    /**
+     * Creates a manager that also packs old bundles into {@code packs}; {@code deleter} is then
+     * only used for loose bundles.
+     */
+    public RetentionManager(
+        Clock clock,
+        System.Logger logger,
+        FileDeleter deleter,
+        BundleDownsampler downsampler,
+        PackStore packs
+    ) {
+        this(clock, logger, deleter, downsampler, packs, null);
+    }
+
+    /**
+     * Creates a manager that also sweeps unreferenced blobs from {@code blobs}, if not {@code null}.
+     */
+    public RetentionManager(
+        Clock clock,
+        System.Logger logger,
+        FileDeleter deleter,
+        BundleDownsampler downsampler,
+        PackStore packs,
+        BlobStore blobs
+    ) {
         this.clock = Objects.requireNonNull(clock, "clock");
         this.logger = Objects.requireNonNull(logger, "logger");
-        this.deleter = Objects.requireNonNull(deleter, "deleter");
+        Objects.requireNonNull(deleter, "deleter");
+        this.deleter = packs == null ? deleter : packs.deleter(deleter);
+        this.downsampler = Objects.requireNonNull(downsampler, "downsampler");
+        this.packs = packs;
+        this.blobs = blobs;
     }
 
     public RetentionStats enforce(Path incidentDir, RetentionPolicy policy) {
@@ -45,130 +104,374 @@ public final class RetentionManager {
         if (!Files.exists(incidentDir)) {
             return new RetentionStats(0, 0, 0L, 0, 0L, 0);
         }
+        return enforce(IncidentIndex.load(incidentDir, logger), policy);
+    }
 
-        List<IncidentFile> incidents = new ArrayList<>();
-        List<Path> candidates;
-        try (Stream<Path> stream = Files.list(incidentDir)) {
-            candidates = stream
-                .filter(path -> path.getFileName().toString().endsWith(".zip"))
-                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
-                .toList();
-        } catch (IOException e) {
-            logger.log(System.Logger.Level.WARNING, "Failed to list incident directory " + incidentDir, e);
-            return new RetentionStats(0, 0, 0L, 0, 0L, 0);
+    /**
+     * Enforces {@code policy} against the bundles in {@code index}, updating it as bundles are
+     * downsampled or deleted.
+     */
+    public RetentionStats enforce(IncidentIndex index, RetentionPolicy policy) {
+        Objects.requireNonNull(index, "index");
+        Objects.requireNonNull(policy, "policy");
+
+        Run run = new Run(index);
+        if (run.incidents.isEmpty()) {
+            return run.stats();
+        }
+        Instant now = clock.instant();
+
+        if (policy.downsampleAfter() != null) {
+            Instant downsampleCutoff = now.minus(policy.downsampleAfter());
+            Instant deleteCutoff = policy.maxAge() == null ? null : now.minus(policy.maxAge());
+            for (int i = 0; i < run.incidents.size(); i++) {
+                IncidentEntry incident = run.incidents.get(i);
+                if (!incident.createdAt().isBefore(downsampleCutoff)
+                    || (deleteCutoff != null && incident.createdAt().isBefore(deleteCutoff))) {
+                    continue;
+                }
+                run.downsample(i);
+            }
+        }
+
+        if (policy.maxAge() != null) {
+            Instant cutoff = now.minus(policy.maxAge());
+            run.deleteOlderThan(cutoff, null);
+            if (run.currentCount == 1 && run.newest.createdAt().isBefore(cutoff)) {
+                logger.log(System.Logger.Level.WARNING,
+                    "Retention maxAge exceeded but newest incident must be kept.");
+            }
         }
 
-        int scanned = candidates.size();
-        for (Path path : candidates) {
+        for (Map.Entry<Severity, SeverityLimits> entry : policy.bySeverity().entrySet()) {
+            Severity severity = entry.getKey();
+            SeverityLimits limits = entry.getValue();
+            if (limits.maxAge() != null) {
+                run.deleteOlderThan(now.minus(limits.maxAge()), severity);
+            }
+            if (limits.maxCount() > 0) {
+                run.evictWhile(() -> run.count(severity) > limits.maxCount(), severity,
+                    "Retention maxCount for " + severity + " exceeded but no deletable incidents remain.");
+            }
+            if (limits.maxTotalBytes() > 0) {
+                run.evictWhile(() -> run.bytes(severity) > limits.maxTotalBytes(), severity,
+                    "Retention maxTotalBytes for " + severity + " exceeded but no deletable incidents remain.");
+            }
+        }
+
+        if (policy.maxCount() > 0) {
+            run.evictWhile(() -> run.currentCount > policy.maxCount(), null,
+                "Retention maxCount exceeded but no deletable incidents remain.");
+        }
+
+        if (policy.maxTotalBytes() > 0 && policy.downsampleAfter() != null) {
+            for (int i = 0; i < run.incidents.size() && run.currentBytes > policy.maxTotalBytes(); i++) {
+                run.downsample(i);
+            }
+        }
+
+        if (policy.maxTotalBytes() > 0) {
+            run.evictWhile(() -> run.currentBytes > policy.maxTotalBytes(), null,
+                "Retention maxTotalBytes exceeded but no deletable incidents remain.");
+        }
+
+        if (packs != null && policy.packAfter() != null) {
+            run.packed = packs.packOlderThan(index, now.minus(policy.packAfter()));
+        }
+
+        if (blobs != null && (!blobsSwept || run.deleted > 0 || run.downsampled > 0)) {
+            run.blobBytesSwept = sweepBlobs(index, now);
+        }
+
+        return run.stats();
+    }
+
+    /**
+     * Counts a sidecar of {@code bytes} for incident {@code id} from the next pass on.
+     */
+    public void sidecarWritten(String id, long bytes) {
+        Objects.requireNonNull(id, "id");
+        sidecarBytes.merge(id, bytes, Long::sum);
+    }
+
+    /**
+     * Lists sidecar sizes on the first pass and deletes those whose incident is not indexed, such as
+     * a heap dump that finished after its bundle was evicted.
+     */
+    private void listSidecars(IncidentIndex index) {
+        if (sidecarsListed) {
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        for (IncidentEntry incident : index.entries()) {
+            ids.add(incident.id());
+        }
+        for (Map.Entry<String, Long> sidecar : BundleSidecars.sizes(index.incidentDir()).entrySet()) {
+            if (ids.contains(sidecar.getKey())) {
+                sidecarBytes.putIfAbsent(sidecar.getKey(), sidecar.getValue());
+                continue;
+            }
             try {
-                Instant createdAt = resolveCreatedAt(path);
-                long size = Files.size(path);
-                incidents.add(new IncidentFile(path, createdAt, size));
+                BundleSidecars.delete(index.incidentDir(), sidecar.getKey());
+                logger.log(System.Logger.Level.INFO, "Deleted orphaned sidecars of incident " + sidecar.getKey());
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.WARNING, "Failed to delete orphaned sidecars of incident "
+                    + sidecar.getKey(), e);
+            }
+        }
+        sidecarsListed = true;
+    }
+
+    /**
+     * Deletes blobs that no indexed bundle references. Blobs written in the last
+     * {@link #BLOB_GRACE} are kept, as they may belong to a capture not yet indexed, and nothing is
+     * deleted if any bundle could not be read.
+     *
+     * <p>References are counted per index entry across passes: only entries that are new or were
+     * rewritten, moved or removed since the last sweep are read or released, so a pass does not
+     * open every bundle.
+     */
+    private long sweepBlobs(IncidentIndex index, Instant now) {
+        Set<IncidentEntry> current = new HashSet<>(index.entries());
+        var known = blobRefsByEntry.entrySet().iterator();
+        while (known.hasNext()) {
+            Map.Entry<IncidentEntry, Set<String>> entry = known.next();
+            if (!current.contains(entry.getKey())) {
+                for (String hash : entry.getValue()) {
+                    blobRefCounts.computeIfPresent(hash, (ignored, count) -> count > 1 ? count - 1 : null);
+                }
+                known.remove();
+            }
+        }
+        for (IncidentEntry incident : current) {
+            if (blobRefsByEntry.containsKey(incident)) {
+                continue;
+            }
+            Set<String> hashes;
+            try (InputStream in = packs == null ? Files.newInputStream(incident.path()) : packs.open(incident.path())) {
+                hashes = BundleBuilder.blobReferences(in);
             } catch (IOException e) {
                 logger.log(System.Logger.Level.WARNING,
-                    "Failed to read incident bundle metadata for " + path, e);
+                    "Skipping blob sweep; failed to read blob references of " + incident.path(), e);
+                return 0L;
+            }
+            blobRefsByEntry.put(incident, hashes);
+            for (String hash : hashes) {
+                blobRefCounts.merge(hash, 1, Integer::sum);
             }
         }
-        incidents.sort(Comparator.comparing(IncidentFile::createdAt)
-            .thenComparing(file -> file.path().getFileName().toString()));
+        try {
+            long freed = blobs.sweep(blobRefCounts.keySet(), now.minus(BLOB_GRACE));
+            blobsSwept = true;
+            return freed;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to sweep blob store " + blobs.dir(), e);
+            return 0L;
+        }
+    }
+
+    private static Severity severityOf(IncidentEntry incident) {
+        return incident.severity() == null ? Severity.INFO : incident.severity();
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean holds();
+    }
 
-        int deleted = 0;
-        long bytesDeleted = 0;
-        int deleteFailures = 0;
+    /**
+     * Working state for one enforcement pass over a snapshot of the index, oldest first.
+     */
+    private final class Run {
+        private final IncidentIndex index;
+        private final List<IncidentEntry> incidents;
+        private final int scanned;
+        private final IncidentEntry newest;
+        private final Set<Path> failed = new HashSet<>();
+        private final Set<Path> downsampleFailed = new HashSet<>();
+        private final Map<String, IncidentEntry> latestByFingerprint = new HashMap<>();
+        private final Map<String, Integer> liveChildren = new HashMap<>();
+        private final int[] countBySeverity = new int[Severity.values().length];
+        private final long[] bytesBySeverity = new long[Severity.values().length];
+        private final Map<String, Long> sidecarBytes;
+        private long currentBytes;
+        private int currentCount;
+        private int deleted;
+        private long bytesDeleted;
+        private int deleteFailures;
+        private int downsampled;
+        private long bytesReclaimed;
+        private int packed;
+        private long blobBytesSwept;
 
-        long currentBytes = incidents.stream().mapToLong(IncidentFile::size).sum();
-        int currentCount = incidents.size();
+        private Run(IncidentIndex index) {
+            this.index = index;
+            this.incidents = new ArrayList<>(index.entries());
+            this.scanned = incidents.size();
+            this.newest = incidents.isEmpty() ? null : incidents.get(incidents.size() - 1);
+            listSidecars(index);
+            this.sidecarBytes = new HashMap<>(RetentionManager.this.sidecarBytes);
+            this.currentBytes = index.totalBytes();
+            this.currentCount = incidents.size();
+            for (IncidentEntry incident : incidents) {
+                currentBytes += sidecarBytes.getOrDefault(incident.id(), 0L);
+                countBySeverity[severityOf(incident).ordinal()]++;
+                bytesBySeverity[severityOf(incident).ordinal()] += bytesOf(incident);
+                if (incident.fingerprint() != null) {
+                    latestByFingerprint.put(incident.fingerprint(), incident);
+                }
+                if (incident.parent() != null) {
+                    liveChildren.merge(incident.parent(), 1, Integer::sum);
+                }
+            }
+        }
 
-        if (incidents.isEmpty()) {
-            long finalBytes = recalcBytes(incidentDir);
-            int finalCount = recalcCount(incidentDir);
-            return new RetentionStats(scanned, 0, 0L, 0, finalBytes, finalCount);
+        private RetentionStats stats() {
+            return new RetentionStats(
+                scanned,
+                deleted,
+                bytesDeleted,
+                deleteFailures,
+                index.totalBytes(),
+                index.count(),
+                downsampled,
+                bytesReclaimed,
+                packed,
+                blobBytesSwept
+            );
         }
 
-        IncidentFile newest = incidents.get(incidents.size() - 1);
-        Set<Path> failed = new HashSet<>();
+        private int count(Severity severity) {
+            return countBySeverity[severity.ordinal()];
+        }
 
-        if (policy.maxAge() != null) {
-            Instant cutoff = clock.instant().minus(policy.maxAge());
-            for (IncidentFile incident : new ArrayList<>(incidents)) {
-                if (incident.equals(newest)) {
+        private long bytes(Severity severity) {
+            return bytesBySeverity[severity.ordinal()];
+        }
+
+        private void deleteOlderThan(Instant cutoff, Severity severity) {
+            // Newest first, so delta children expiring in this pass release their parents.
+            List<IncidentEntry> snapshot = new ArrayList<>(incidents);
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                IncidentEntry incident = snapshot.get(i);
+                if (incident.equals(newest) || !incident.createdAt().isBefore(cutoff) || isPinned(incident)) {
                     continue;
                 }
-                if (incident.createdAt().isBefore(cutoff)) {
-                    if (attemptDelete(incident, newest, failed)) {
-                        incidents.remove(incident);
-                        deleted++;
-                        bytesDeleted += incident.size();
-                        currentBytes -= incident.size();
-                        currentCount--;
-                    } else {
-                        deleteFailures++;
-                    }
+                if (severity == null || severityOf(incident) == severity) {
+                    delete(incident);
                 }
             }
-            if (currentCount == 1 && newest.createdAt().isBefore(cutoff)) {
-                logger.log(System.Logger.Level.WARNING,
-                    "Retention maxAge exceeded but newest incident must be kept.");
-            }
         }
 
-        if (policy.maxCount() > 0) {
-            while (currentCount > policy.maxCount()) {
-                IncidentFile candidate = oldestCandidate(incidents, newest, failed);
+        private void evictWhile(Condition over, Severity severity, String exhausted) {
+            while (over.holds()) {
+                IncidentEntry candidate = evictionCandidate(severity);
                 if (candidate == null) {
-                    logger.log(System.Logger.Level.WARNING,
-                        "Retention maxCount exceeded but no deletable incidents remain.");
-                    break;
-                }
-                if (attemptDelete(candidate, newest, failed)) {
-                    incidents.remove(candidate);
-                    deleted++;
-                    bytesDeleted += candidate.size();
-                    currentBytes -= candidate.size();
-                    currentCount--;
-                } else {
-                    deleteFailures++;
+                    logger.log(System.Logger.Level.WARNING, exhausted);
+                    return;
                 }
+                delete(candidate);
                 if (currentCount <= 1) {
                     logger.log(System.Logger.Level.WARNING,
                         "Retention would remove newest incident; stopping deletions.");
-                    break;
+                    return;
                 }
             }
         }
 
-        if (policy.maxTotalBytes() > 0) {
-            while (currentBytes > policy.maxTotalBytes()) {
-                IncidentFile candidate = oldestCandidate(incidents, newest, failed);
-                if (candidate == null) {
-                    logger.log(System.Logger.Level.WARNING,
-                        "Retention maxTotalBytes exceeded but no deletable incidents remain.");
-                    break;
+        /**
+         * Picks the lowest-severity bundle, preferring repeats of a newer fingerprint, then the oldest.
+         */
+        private IncidentEntry evictionCandidate(Severity severity) {
+            IncidentEntry best = null;
+            int bestRank = Integer.MAX_VALUE;
+            for (IncidentEntry incident : incidents) {
+                if (incident.equals(newest) || failed.contains(incident.path()) || isPinned(incident)) {
+                    continue;
                 }
-                if (attemptDelete(candidate, newest, failed)) {
-                    incidents.remove(candidate);
-                    deleted++;
-                    bytesDeleted += candidate.size();
-                    currentBytes -= candidate.size();
-                    currentCount--;
-                } else {
-                    deleteFailures++;
+                Severity incidentSeverity = severityOf(incident);
+                if (severity != null && incidentSeverity != severity) {
+                    continue;
                 }
-                if (currentCount <= 1) {
-                    logger.log(System.Logger.Level.WARNING,
-                        "Retention would remove newest incident; stopping deletions.");
-                    break;
+                int rank = incidentSeverity.ordinal() * 2 + (isDuplicate(incident) ? 0 : 1);
+                if (rank < bestRank) {
+                    best = incident;
+                    bestRank = rank;
                 }
             }
+            return best;
+        }
+
+        /**
+         * Whether a remaining delta capture builds on {@code incident}.
+         */
+        private boolean isPinned(IncidentEntry incident) {
+            return liveChildren.getOrDefault(incident.id(), 0) > 0;
         }
 
-        long finalBytes = recalcBytes(incidentDir);
-        int finalCount = recalcCount(incidentDir);
+        private boolean isDuplicate(IncidentEntry incident) {
+            String fingerprint = incident.fingerprint();
+            return fingerprint != null && latestByFingerprint.get(fingerprint) != incident;
+        }
 
-        return new RetentionStats(scanned, deleted, bytesDeleted, deleteFailures, finalBytes, finalCount);
+        private void delete(IncidentEntry incident) {
+            if (attemptDelete(index, incident, newest, failed)) {
+                incidents.remove(incident);
+                deleted++;
+                bytesDeleted += bytesOf(incident);
+                currentBytes -= bytesOf(incident);
+                currentCount--;
+                countBySeverity[severityOf(incident).ordinal()]--;
+                bytesBySeverity[severityOf(incident).ordinal()] -= bytesOf(incident);
+                forgetFingerprint(incident);
+                if (incident.parent() != null) {
+                    liveChildren.computeIfPresent(incident.parent(),
+                        (parent, children) -> children > 1 ? children - 1 : null);
+                }
+            } else {
+                deleteFailures++;
+            }
+        }
+
+        private long bytesOf(IncidentEntry incident) {
+            return incident.sizeBytes() + sidecarBytes.getOrDefault(incident.id(), 0L);
+        }
+
+        private void downsample(int i) {
+            IncidentEntry incident = incidents.get(i);
+            if (incident.equals(newest) || incident.tier() != StorageTier.FULL
+                || incident.parent() != null || isPinned(incident)) {
+                return;
+            }
+            IncidentEntry reduced = attemptDownsample(index, incident, downsampleFailed);
+            if (reduced == null) {
+                return;
+            }
+            incidents.set(i, reduced);
+            if (incident.fingerprint() != null && latestByFingerprint.get(incident.fingerprint()) == incident) {
+                latestByFingerprint.put(incident.fingerprint(), reduced);
+            }
+            downsampled++;
+            bytesReclaimed += incident.sizeBytes() - reduced.sizeBytes();
+            currentBytes -= incident.sizeBytes() - reduced.sizeBytes();
+            bytesBySeverity[severityOf(incident).ordinal()] -= incident.sizeBytes() - reduced.sizeBytes();
+        }
+
+        private void forgetFingerprint(IncidentEntry incident) {
+            String fingerprint = incident.fingerprint();
+            if (fingerprint == null || latestByFingerprint.get(fingerprint) != incident) {
+                return;
+            }
+            latestByFingerprint.remove(fingerprint);
+            for (IncidentEntry remaining : incidents) {
+                if (fingerprint.equals(remaining.fingerprint())) {
+                    latestByFingerprint.put(fingerprint, remaining);
+                }
+            }
+        }
     }
 
-    private boolean attemptDelete(IncidentFile incident, IncidentFile newest, Set<Path> failed) {
+    private boolean attemptDelete(IncidentIndex index, IncidentEntry incident, IncidentEntry newest, Set<Path> failed) {
         if (incident.equals(newest)) {
             return false;
         }
@@ -177,85 +480,37 @@ public final class RetentionManager {
         }
         try {
             deleter.delete(incident.path());
-            return true;
+            index.remove(incident.path());
         } catch (IOException e) {
             failed.add(incident.path());
             logger.log(System.Logger.Level.WARNING, "Failed to delete incident " + incident.path(), e);
             return false;
         }
-    }
-
-    private static IncidentFile oldestCandidate(List<IncidentFile> incidents, IncidentFile newest, Set<Path> failed) {
-        for (IncidentFile incident : incidents) {
-            if (incident.equals(newest)) {
-                continue;
-            }
-            if (failed.contains(incident.path())) {
-                continue;
-            }
-            return incident;
-        }
-        return null;
-    }
-
-    private static long recalcBytes(Path incidentDir) {
-        try (Stream<Path> stream = Files.list(incidentDir)) {
-            return stream
-                .filter(path -> path.getFileName().toString().endsWith(".zip"))
-                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
-                .mapToLong(path -> {
-                    try {
-                        return Files.size(path);
-                    } catch (IOException e) {
-                        return 0L;
-                    }
-                })
-                .sum();
-        } catch (IOException e) {
-            return 0L;
-        }
-    }
-
-    private static int recalcCount(Path incidentDir) {
-        try (Stream<Path> stream = Files.list(incidentDir)) {
-            return (int) stream
-                .filter(path -> path.getFileName().toString().endsWith(".zip"))
-                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
-                .count();
+        try {
+            sidecarBytes.remove(incident.id());
+            BundleSidecars.delete(index.incidentDir(), incident.id());
         } catch (IOException e) {
-            return 0;
-        }
-    }
-
-    private static Instant resolveCreatedAt(Path path) throws IOException {
-        Instant fromId = parseCreatedAtFromName(path.getFileName().toString());
-        if (fromId != null) {
-            return fromId;
+            logger.log(System.Logger.Level.WARNING, "Failed to delete sidecars of incident " + incident.id(), e);
         }
-        return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toInstant();
+        return true;
     }
 
-    private static Instant parseCreatedAtFromName(String fileName) {
-        if (!fileName.endsWith(".zip")) {
-            return null;
-        }
-        String baseName = fileName.substring(0, fileName.length() - ".zip".length());
-        if (baseName.startsWith("incident-")) {
-            baseName = baseName.substring("incident-".length());
-        }
-        int lastDash = baseName.lastIndexOf('-');
-        if (lastDash <= 0) {
+    private IncidentEntry attemptDownsample(IncidentIndex index, IncidentEntry incident, Set<Path> failed) {
+        if (failed.contains(incident.path())) {
             return null;
         }
-        String timestamp = baseName.substring(0, lastDash);
         try {
-            OffsetDateTime parsed = OffsetDateTime.parse(timestamp, INCIDENT_TIMESTAMP);
-            return parsed.toInstant();
-        } catch (DateTimeParseException e) {
+            IncidentEntry reduced = downsampler.downsample(incident);
+            if (reduced.tier() == StorageTier.FULL) {
+                failed.add(incident.path());
+                return null;
+            }
+            index.put(reduced);
+            return reduced;
+        } catch (IOException | RuntimeException e) {
+            failed.add(incident.path());
+            logger.log(System.Logger.Level.WARNING, "Failed to downsample incident " + incident.path(), e);
             return null;
         }
     }
-
-    private record IncidentFile(Path path, Instant createdAt, long size) {
-    }
 }
@@ -1,14 +1,32 @@
 package sh.harold.blackbox.core.retention;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import sh.harold.blackbox.core.incident.Severity;
 
 /**
  * Defines retention limits for stored incident bundles.
+ *
+ * <p>When {@code downsampleAfter} is set, bundles older than it are rewritten without their full
+ * recording, and the same downsampling is tried before deleting anything to get under
+ * {@code maxTotalBytes}. {@code maxAge} is then the horizon for deleting them entirely.
+ *
+ * <p>When {@code packAfter} is set and the manager has a {@link PackStore}, loose bundles older
+ * than it are moved into pack files, which keeps the incident directory small without losing them.
+ *
+ * <p>{@code bySeverity} adds tighter limits for individual severities, e.g. keeping INFO
+ * bundles for a day while CRITICAL ones live until the global limits evict them.
  */
 public record RetentionPolicy(
     int maxCount,
     long maxTotalBytes,
-    Duration maxAge
+    Duration maxAge,
+    Duration downsampleAfter,
+    Map<Severity, SeverityLimits> bySeverity,
+    Duration packAfter
 ) {
     public RetentionPolicy {
         if (maxCount < 0) {
@@ -20,5 +38,39 @@ public record RetentionPolicy(
         if (maxAge != null && maxAge.isNegative()) {
             throw new IllegalArgumentException("maxAge must be non-negative.");
         }
+        if (downsampleAfter != null && downsampleAfter.isNegative()) {
+            throw new IllegalArgumentException("downsampleAfter must be non-negative.");
+        }
+        if (packAfter != null && packAfter.isNegative()) {
+            throw new IllegalArgumentException("packAfter must be non-negative.");
+        }
+        Objects.requireNonNull(bySeverity, "bySeverity");
+        EnumMap<Severity, SeverityLimits> limits = new EnumMap<>(Severity.class);
+        for (Map.Entry<Severity, SeverityLimits> entry : bySeverity.entrySet()) {
+            Objects.requireNonNull(entry.getKey(), "bySeverity key");
+            Objects.requireNonNull(entry.getValue(), "bySeverity value");
+            if (!entry.getValue().isUnlimited()) {
+                limits.put(entry.getKey(), entry.getValue());
+            }
+        }
+        bySeverity = Collections.unmodifiableMap(limits);
+    }
+
+    public RetentionPolicy(
+        int maxCount,
+        long maxTotalBytes,
+        Duration maxAge,
+        Duration downsampleAfter,
+        Map<Severity, SeverityLimits> bySeverity
+    ) {
+        this(maxCount, maxTotalBytes, maxAge, downsampleAfter, bySeverity, null);
+    }
+
+    public RetentionPolicy(int maxCount, long maxTotalBytes, Duration maxAge, Duration downsampleAfter) {
+        this(maxCount, maxTotalBytes, maxAge, downsampleAfter, Map.of());
+    }
+
+    public RetentionPolicy(int maxCount, long maxTotalBytes, Duration maxAge) {
+        this(maxCount, maxTotalBytes, maxAge, null);
     }
 }
@@ -0,0 +1,181 @@
+package sh.harold.blackbox.core.retention;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.metrics.RetentionMetrics;
+
+/**
+ * Runs retention passes off the capture path.
+ *
+ * <p>{@link #request()} schedules a pass on the executor unless one is already pending, and never
+ * sooner than {@code minInterval} after the previous pass started, so a burst of captures costs
+ * one pass whose deletions cover the whole burst. Without an executor passes run inline.
+ */
+public final class RetentionScheduler {
+    private final Clock clock;
+    private final RetentionManager manager;
+    private final IncidentIndex index;
+    private final RetentionPolicy policy;
+    private final Duration minInterval;
+    private final ScheduledExecutorService executor;
+    private final System.Logger logger;
+    private final RetentionMetrics metrics = new RetentionMetrics();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile Instant lastRunAt;
+
+    private RetentionScheduler(
+        Clock clock,
+        RetentionManager manager,
+        IncidentIndex index,
+        RetentionPolicy policy,
+        Duration minInterval,
+        ScheduledExecutorService executor,
+        System.Logger logger
+    ) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.manager = Objects.requireNonNull(manager, "manager");
+        this.index = Objects.requireNonNull(index, "index");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.minInterval = Objects.requireNonNull(minInterval, "minInterval");
+        this.executor = executor;
+        this.logger = Objects.requireNonNull(logger, "logger");
+        if (minInterval.isNegative()) {
+            throw new IllegalArgumentException("minInterval must be non-negative.");
+        }
+    }
+
+    /**
+     * Runs every requested pass immediately on the calling thread.
+     */
+    public static RetentionScheduler inline(
+        Clock clock,
+        RetentionManager manager,
+        IncidentIndex index,
+        RetentionPolicy policy,
+        System.Logger logger
+    ) {
+        return new RetentionScheduler(clock, manager, index, policy, Duration.ZERO, null, logger);
+    }
+
+    /**
+     * Runs requested passes on {@code executor}, at most once per {@code minInterval}.
+     */
+    public static RetentionScheduler background(
+        Clock clock,
+        RetentionManager manager,
+        IncidentIndex index,
+        RetentionPolicy policy,
+        Duration minInterval,
+        ScheduledExecutorService executor,
+        System.Logger logger
+    ) {
+        Objects.requireNonNull(executor, "executor");
+        return new RetentionScheduler(clock, manager, index, policy, minInterval, executor, logger);
+    }
+
+    /**
+     * Asks for a retention pass. Returns immediately unless this scheduler runs inline.
+     */
+    public void request() {
+        metrics.requested();
+        if (executor == null) {
+            runNow();
+            return;
+        }
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+        Instant last = lastRunAt;
+        long delayMillis = last == null
+            ? 0L
+            : Math.max(0L, Duration.between(clock.instant(), last.plus(minInterval)).toMillis());
+        try {
+            executor.schedule(this::runPending, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.set(false);
+            logger.log(System.Logger.Level.DEBUG, "Retention executor is shut down; skipping pass.");
+        }
+    }
+
+    /**
+     * Runs a pass on the calling thread and returns its stats.
+     */
+    public synchronized RetentionStats runNow() {
+        Instant startedAt = clock.instant();
+        lastRunAt = startedAt;
+        long started = System.nanoTime();
+        RetentionStats stats = manager.enforce(index, policy);
+        metrics.record(stats, startedAt, System.nanoTime() - started);
+        return stats;
+    }
+
+    /**
+     * Reports a sidecar written for incident {@code id} and asks for a pass to account for it.
+     * Returns {@code false}, counting nothing, if the incident is no longer indexed; the caller then
+     * deletes the sidecar, as no pass will.
+     */
+    public boolean sidecarWritten(String id, Path sidecar) throws IOException {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(sidecar, "sidecar");
+        synchronized (this) {
+            if (index.find(id).isEmpty()) {
+                return false;
+            }
+            manager.sidecarWritten(id, Files.size(sidecar));
+        }
+        request();
+        return true;
+    }
+
+    /**
+     * Runs {@code rewrite} on the bundle of incident {@code id} while no pass can delete, downsample
+     * or pack it. Returns {@code false}, running nothing, if the incident is no longer indexed or is
+     * no longer a loose bundle file.
+     */
+    public boolean rewrite(String id, BundleRewrite rewrite) throws IOException {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(rewrite, "rewrite");
+        synchronized (this) {
+            Optional<IncidentEntry> entry = index.find(id);
+            if (entry.isEmpty() || !Files.isRegularFile(entry.get().path())) {
+                return false;
+            }
+            rewrite.rewrite(entry.get().path());
+            return true;
+        }
+    }
+
+    public RetentionMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Rewrites one bundle in place; see {@link #rewrite(String, BundleRewrite)}.
+     */
+    @FunctionalInterface
+    public interface BundleRewrite {
+        void rewrite(Path bundle) throws IOException;
+    }
+
+    private void runPending() {
+        // Cleared first so captures during this pass schedule the next one.
+        pending.set(false);
+        try {
+            runNow();
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Retention enforcement failed.", e);
+        }
+    }
+}
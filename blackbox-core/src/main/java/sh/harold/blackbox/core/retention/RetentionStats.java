@@ -9,6 +9,49 @@ public record RetentionStats(
     long bytesDeleted,
     int deleteFailures,
     long finalBytes,
-    int finalCount
+    int finalCount,
+    int downsampled,
+    long bytesReclaimed,
+    int packed,
+    long blobBytesSwept
 ) {
+    public RetentionStats(
+        int scanned,
+        int deleted,
+        long bytesDeleted,
+        int deleteFailures,
+        long finalBytes,
+        int finalCount,
+        int downsampled,
+        long bytesReclaimed,
+        int packed
+    ) {
+        this(scanned, deleted, bytesDeleted, deleteFailures, finalBytes, finalCount, downsampled, bytesReclaimed,
+            packed, 0L);
+    }
+
+    public RetentionStats(
+        int scanned,
+        int deleted,
+        long bytesDeleted,
+        int deleteFailures,
+        long finalBytes,
+        int finalCount,
+        int downsampled,
+        long bytesReclaimed
+    ) {
+        this(scanned, deleted, bytesDeleted, deleteFailures, finalBytes, finalCount, downsampled, bytesReclaimed, 0,
+            0L);
+    }
+
+    public RetentionStats(
+        int scanned,
+        int deleted,
+        long bytesDeleted,
+        int deleteFailures,
+        long finalBytes,
+        int finalCount
+    ) {
+        this(scanned, deleted, bytesDeleted, deleteFailures, finalBytes, finalCount, 0, 0L);
+    }
 }
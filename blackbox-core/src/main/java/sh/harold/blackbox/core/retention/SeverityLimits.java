@@ -0,0 +1,29 @@
+package sh.harold.blackbox.core.retention;
+
+import java.time.Duration;
+
+/**
+ * Retention limits applied to the bundles of a single severity. Zero counts and byte limits,
+ * and a {@code null} age, mean unlimited.
+ */
+public record SeverityLimits(
+    int maxCount,
+    long maxTotalBytes,
+    Duration maxAge
+) {
+    public SeverityLimits {
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("maxCount must be >= 0.");
+        }
+        if (maxTotalBytes < 0) {
+            throw new IllegalArgumentException("maxTotalBytes must be >= 0.");
+        }
+        if (maxAge != null && maxAge.isNegative()) {
+            throw new IllegalArgumentException("maxAge must be non-negative.");
+        }
+    }
+
+    public boolean isUnlimited() {
+        return maxCount == 0 && maxTotalBytes == 0 && maxAge == null;
+    }
+}
@@ -0,0 +1,31 @@
+package sh.harold.blackbox.core.trigger;
+
+/**
+ * Configures per-scope stall thresholds learned from each scope's heartbeat lag.
+ *
+ * <p>The learned threshold is {@code multiplier} times the scope's baseline, clamped between
+ * {@code floorMs} and the fixed critical threshold: it raises the bar for scopes whose normal lag
+ * is high and, when {@code floorMs} is below the fixed degraded threshold, lowers it for quiet
+ * ones. Until {@code minSamples} lag samples have been seen the fixed degraded threshold applies.
+ */
+public record AdaptiveStallPolicy(boolean enabled, long floorMs, double multiplier, int minSamples) {
+    public static final long DEFAULT_FLOOR_MS = 2_000L;
+    public static final double DEFAULT_MULTIPLIER = 4.0;
+    public static final int DEFAULT_MIN_SAMPLES = 1200;
+
+    public AdaptiveStallPolicy {
+        if (floorMs <= 0) {
+            throw new IllegalArgumentException("floorMs must be > 0.");
+        }
+        if (!(multiplier >= 1.0)) {
+            throw new IllegalArgumentException("multiplier must be >= 1.");
+        }
+        if (minSamples <= 0) {
+            throw new IllegalArgumentException("minSamples must be > 0.");
+        }
+    }
+
+    public static AdaptiveStallPolicy disabled() {
+        return new AdaptiveStallPolicy(false, DEFAULT_FLOOR_MS, DEFAULT_MULTIPLIER, DEFAULT_MIN_SAMPLES);
+    }
+}
@@ -0,0 +1,115 @@
+package sh.harold.blackbox.core.trigger;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import sh.harold.blackbox.core.incident.Severity;
+
+/**
+ * Admission control for captures using global, per-kind and per-scope token buckets.
+ *
+ * <p>A capture is admitted only if every enabled bucket can pay for it; if a later bucket
+ * refuses, tokens already taken from earlier ones are refunded. Thread-safe and lock-free.
+ */
+public final class CaptureBudget {
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private final CaptureBudgetPolicy policy;
+    private final TokenBucket perMinute;
+    private final TokenBucket perHour;
+    private final EnumMap<TriggerKind, TokenBucket> perKind = new EnumMap<>(TriggerKind.class);
+    private final ConcurrentHashMap<String, TokenBucket> perScope = new ConcurrentHashMap<>();
+
+    public CaptureBudget(CaptureBudgetPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.perMinute = bucket(policy.perMinute(), MINUTE);
+        this.perHour = bucket(policy.perHour(), HOUR);
+        if (policy.perKindPerHour() > 0) {
+            for (TriggerKind kind : TriggerKind.values()) {
+                perKind.put(kind, new TokenBucket(policy.perKindPerHour(), HOUR));
+            }
+        }
+    }
+
+    /**
+     * Takes tokens for one capture, or returns {@code false} without taking any.
+     */
+    public boolean tryAdmit(TriggerKind kind, String scope, Severity severity, long nowNanos) {
+        long cost = cost(severity);
+        long borrow = severity == Severity.CRITICAL ? policy.criticalBorrow() : 0L;
+        TokenBucket kindBucket = perKind.get(kind);
+        TokenBucket scopeBucket = scopeBucket(scope);
+
+        if (!acquire(scopeBucket, nowNanos, cost, borrow)) {
+            return false;
+        }
+        if (!acquire(kindBucket, nowNanos, cost, borrow)) {
+            refund(scopeBucket, cost);
+            return false;
+        }
+        if (!acquire(perHour, nowNanos, cost, borrow)) {
+            refund(kindBucket, cost);
+            refund(scopeBucket, cost);
+            return false;
+        }
+        if (!acquire(perMinute, nowNanos, cost, borrow)) {
+            refund(perHour, cost);
+            refund(kindBucket, cost);
+            refund(scopeBucket, cost);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tokens taken by a successful {@link #tryAdmit} whose capture was abandoned.
+     */
+    public void refund(TriggerKind kind, String scope, Severity severity) {
+        long cost = cost(severity);
+        refund(perMinute, cost);
+        refund(perHour, cost);
+        refund(perKind.get(kind), cost);
+        refund(perScope.get(scope), cost);
+    }
+
+    /**
+     * Tokens left in the global hourly bucket, or {@code -1} when it is disabled.
+     */
+    public long hourlyRemaining(long nowNanos) {
+        return perHour == null ? -1L : perHour.available(nowNanos);
+    }
+
+    private TokenBucket scopeBucket(String scope) {
+        if (policy.perScopePerHour() <= 0) {
+            return null;
+        }
+        TokenBucket bucket = perScope.get(scope);
+        if (bucket == null) {
+            bucket = perScope.computeIfAbsent(scope, ignored -> new TokenBucket(policy.perScopePerHour(), HOUR));
+        }
+        return bucket;
+    }
+
+    /**
+     * INFO costs one token, DEGRADED two and CRITICAL three.
+     */
+    private static long cost(Severity severity) {
+        return severity.ordinal() + 1L;
+    }
+
+    private static boolean acquire(TokenBucket bucket, long nowNanos, long cost, long borrow) {
+        return bucket == null || bucket.tryAcquire(nowNanos, cost, borrow);
+    }
+
+    private static void refund(TokenBucket bucket, long cost) {
+        if (bucket != null) {
+            bucket.refund(cost);
+        }
+    }
+
+    private static TokenBucket bucket(int capacity, Duration period) {
+        return capacity > 0 ? new TokenBucket(capacity, period) : null;
+    }
+}
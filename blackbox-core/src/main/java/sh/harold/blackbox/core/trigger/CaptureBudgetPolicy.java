@@ -0,0 +1,29 @@
+package sh.harold.blackbox.core.trigger;
+
+/**
+ * Token-bucket limits on how many captures may be taken.
+ *
+ * <p>A limit of {@code 0} disables that bucket. A capture costs one token per severity level,
+ * from one for INFO to three for CRITICAL; CRITICAL captures may take the buckets up to
+ * {@code criticalBorrow} tokens into debt.
+ */
+public record CaptureBudgetPolicy(
+    int perMinute,
+    int perHour,
+    int perKindPerHour,
+    int perScopePerHour,
+    int criticalBorrow
+) {
+    public CaptureBudgetPolicy {
+        if (perMinute < 0 || perHour < 0 || perKindPerHour < 0 || perScopePerHour < 0) {
+            throw new IllegalArgumentException("budget limits must be non-negative.");
+        }
+        if (criticalBorrow < 0) {
+            throw new IllegalArgumentException("criticalBorrow must be non-negative.");
+        }
+    }
+
+    public static CaptureBudgetPolicy unlimited() {
+        return new CaptureBudgetPolicy(0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,70 @@
+package sh.harold.blackbox.core.trigger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as a single theoretical-arrival timestamp.
+ *
+ * <p>The bucket holds {@code capacity} tokens and refills one token every
+ * {@code period / capacity}. Instead of storing a token count and a refill time, it stores the
+ * time at which the bucket would be full again; acquiring moves that time forward and refilling
+ * is implicit, so every operation is one CAS on one long.
+ */
+final class TokenBucket {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final AtomicLong fullAt = new AtomicLong(EMPTY);
+
+    TokenBucket(long capacity, Duration period) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0.");
+        }
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("period must be > 0.");
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1L, period.toNanos() / capacity);
+    }
+
+    /**
+     * Takes {@code tokens} if the bucket can cover them, allowing the balance to go up to
+     * {@code borrow} tokens below zero.
+     */
+    boolean tryAcquire(long nowNanos, long tokens, long borrow) {
+        long limit = (capacity + borrow) * nanosPerToken;
+        long cost = tokens * nanosPerToken;
+        while (true) {
+            long current = fullAt.get();
+            long base = current == EMPTY || current < nowNanos ? nowNanos : current;
+            long next = base + cost;
+            if (next - nowNanos > limit) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns tokens taken by a {@link #tryAcquire} whose admission was later abandoned.
+     */
+    void refund(long tokens) {
+        fullAt.addAndGet(-tokens * nanosPerToken);
+    }
+
+    /**
+     * Tokens currently available, negative while borrowed.
+     */
+    long available(long nowNanos) {
+        long current = fullAt.get();
+        if (current == EMPTY || current <= nowNanos) {
+            return capacity;
+        }
+        long owed = (current - nowNanos + nanosPerToken - 1) / nanosPerToken;
+        return capacity - owed;
+    }
+}
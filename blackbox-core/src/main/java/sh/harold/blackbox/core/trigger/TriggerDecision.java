@@ -6,5 +6,6 @@ package sh.harold.blackbox.core.trigger;
 public enum TriggerDecision {
     ACCEPT,
     COOLDOWN,
-    DEBOUNCE
+    DEBOUNCE,
+    BUDGET
 }
@@ -1,74 +1,225 @@
 package sh.harold.blackbox.core.trigger;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.EnumMap;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.EventType;
 import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.jfr.BlackboxSuppressedEvent;
 
 /**
- * Applies cooldown and debounce policies to trigger events.
+ * Applies cooldown, debounce and capture budget policies to trigger events.
+ *
+ * <p>Safe to call from any thread without locking. Acceptance times are kept per (kind, scope)
+ * in {@link AtomicLong}s and the global cooldown in one more; an event is accepted only if it
+ * wins the CAS on both and the {@link CaptureBudget} admits it. Rejections return shared results,
+ * are counted per decision and are recorded as {@link BlackboxSuppressedEvent}s. A claim that
+ * fails a later check, here or in {@link #abandon(TriggerEvent)}, puts back the timestamps it
+ * replaced and, once admitted, returns its budget tokens, so it does not debounce, cool down or
+ * spend budget for the triggers after it.
  */
 public final class TriggerEngine {
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final EventType SUPPRESSED_EVENT = EventType.getEventType(BlackboxSuppressedEvent.class);
+
+    private static final TriggerResult COOLDOWN_REJECTED =
+        new TriggerResult(TriggerDecision.COOLDOWN, Severity.INFO, "Rejected: cooldown active");
+    private static final TriggerResult DEBOUNCE_REJECTED =
+        new TriggerResult(TriggerDecision.DEBOUNCE, Severity.INFO, "Rejected: debounce active");
+    private static final TriggerResult BUDGET_REJECTED =
+        new TriggerResult(TriggerDecision.BUDGET, Severity.INFO, "Rejected: capture budget exhausted");
+
     private final Clock clock;
     private final TriggerPolicy policy;
-    private final Map<String, Instant> lastAcceptedByKey = new HashMap<>();
-    private Instant lastAcceptedAt;
+    private final long cooldownNanos;
+    private final long debounceNanos;
+    private final EnumMap<TriggerKind, ConcurrentHashMap<String, KeyState>> lastAcceptedByKey =
+        new EnumMap<>(TriggerKind.class);
+    private final AtomicLong lastAcceptedAt = new AtomicLong(NEVER);
+    private final CaptureBudget budget;
+    private final EnumMap<TriggerDecision, LongAdder> rejected = new EnumMap<>(TriggerDecision.class);
 
     public TriggerEngine(Clock clock, TriggerPolicy policy) {
         this.clock = Objects.requireNonNull(clock, "clock");
         this.policy = Objects.requireNonNull(policy, "policy");
+        this.cooldownNanos = saturatedNanos(policy.cooldown());
+        this.debounceNanos = saturatedNanos(policy.debounce());
+        this.budget = new CaptureBudget(policy.budget());
+        for (TriggerKind kind : TriggerKind.values()) {
+            lastAcceptedByKey.put(kind, new ConcurrentHashMap<>());
+        }
+        for (TriggerDecision decision : TriggerDecision.values()) {
+            if (decision != TriggerDecision.ACCEPT) {
+                rejected.put(decision, new LongAdder());
+            }
+        }
     }
 
     public TriggerResult evaluate(TriggerEvent event) {
         Objects.requireNonNull(event, "event");
-        Instant now = event.at() == null ? clock.instant() : event.at();
+        long now = epochNanos(event.at() == null ? clock.instant() : event.at());
+        boolean escalation = isEscalation(event);
+        KeyState state = lastAcceptedByKey.get(event.kind())
+            .computeIfAbsent(event.scope(), ignored -> new KeyState());
+        AtomicLong lastForKey = state.lastAccepted;
+
+        Severity severity = severityOf(event);
 
-        if (lastAcceptedAt != null) {
-            Instant cooldownUntil = lastAcceptedAt.plus(policy.cooldown());
-            if (now.isBefore(cooldownUntil)) {
-                return new TriggerResult(TriggerDecision.COOLDOWN, Severity.INFO,
-                    "Rejected: cooldown active");
+        while (true) {
+            long global = lastAcceptedAt.get();
+            if (!escalation && within(now, global, cooldownNanos)) {
+                return reject(COOLDOWN_REJECTED, event, severity);
             }
+            long keyed = lastForKey.get();
+            if (within(now, keyed, debounceNanos)) {
+                return reject(DEBOUNCE_REJECTED, event, severity);
+            }
+            if (!lastForKey.compareAndSet(keyed, now)) {
+                continue;
+            }
+            if (escalation) {
+                lastAcceptedAt.accumulateAndGet(now, Math::max);
+            } else if (!lastAcceptedAt.compareAndSet(global, now)) {
+                // Another key took the global slot first; undo the key claim and re-evaluate.
+                lastForKey.compareAndSet(now, keyed);
+                continue;
+            }
+            if (!budget.tryAdmit(event.kind(), event.scope(), severity, now)) {
+                lastAcceptedAt.compareAndSet(now, global);
+                lastForKey.compareAndSet(now, keyed);
+                return reject(BUDGET_REJECTED, event, severity);
+            }
+            state.previousAccepted = keyed;
+            state.previousGlobal = global;
+            return decideAccepted(event, severity);
         }
+    }
 
-        String key = event.kind() + "|" + event.scope();
-        Instant lastForKey = lastAcceptedByKey.get(key);
-        if (lastForKey != null) {
-            Instant debounceUntil = lastForKey.plus(policy.debounce());
-            if (now.isBefore(debounceUntil)) {
-                return new TriggerResult(TriggerDecision.DEBOUNCE, Severity.INFO,
-                    "Rejected: debounce active");
-            }
+    /**
+     * Rolls back {@code event}, which was accepted but whose capture was skipped or failed, so the
+     * next trigger for its key is judged as if this one had never been accepted, and refunds the
+     * budget tokens it took. Does nothing if a later trigger has been accepted for the key since.
+     */
+    public void abandon(TriggerEvent event) {
+        Objects.requireNonNull(event, "event");
+        KeyState state = lastAcceptedByKey.get(event.kind()).get(event.scope());
+        if (state == null || event.at() == null) {
+            return;
+        }
+        long now = epochNanos(event.at());
+        long previousGlobal = state.previousGlobal;
+        if (state.lastAccepted.compareAndSet(now, state.previousAccepted)) {
+            lastAcceptedAt.compareAndSet(now, previousGlobal);
+            budget.refund(event.kind(), event.scope(), severityOf(event));
+        }
+    }
+
+    /**
+     * Number of triggers rejected with the given decision since this engine was created.
+     */
+    public long rejectedCount(TriggerDecision decision) {
+        LongAdder counter = rejected.get(decision);
+        return counter == null ? 0L : counter.sum();
+    }
+
+    public long rejectedTotal() {
+        long total = 0L;
+        for (LongAdder counter : rejected.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Tokens left in the global hourly capture budget, or {@code -1} when it is disabled.
+     */
+    public long hourlyBudgetRemaining() {
+        return budget.hourlyRemaining(epochNanos(clock.instant()));
+    }
+
+    private TriggerResult reject(TriggerResult result, TriggerEvent event, Severity severity) {
+        rejected.get(result.decision()).increment();
+        // Checked on the type so a storm of rejections allocates nothing while the event is off.
+        if (SUPPRESSED_EVENT.isEnabled()) {
+            BlackboxSuppressedEvent suppressed = new BlackboxSuppressedEvent();
+            suppressed.kind = event.kind().name();
+            suppressed.scope = event.scope();
+            suppressed.decision = result.decision().name();
+            suppressed.severity = severity.name();
+            suppressed.commit();
         }
+        return result;
+    }
 
-        TriggerResult accepted = decideAccepted(event);
-        lastAcceptedAt = now;
-        lastAcceptedByKey.put(key, now);
-        return accepted;
+    /**
+     * Stalls are graded by length. Heap exhaustion, crashes and shutdowns lose the process or its
+     * state, so they are CRITICAL as in the reports their own capture paths write; a manual
+     * capture is INFO.
+     */
+    private Severity severityOf(TriggerEvent event) {
+        return switch (event.kind()) {
+            case HEARTBEAT_STALL -> stallSeverity(parseLong(event.attrs().get("stallMs")));
+            case OUT_OF_MEMORY, PREVIOUS_CRASH, SHUTDOWN -> Severity.CRITICAL;
+            case MANUAL -> Severity.INFO;
+        };
     }
 
-    private TriggerResult decideAccepted(TriggerEvent event) {
+    private Severity stallSeverity(long stallMs) {
+        if (stallMs >= policy.stallCriticalMs()) {
+            return Severity.CRITICAL;
+        }
+        return stallMs >= policy.stallDegradedMs() ? Severity.DEGRADED : Severity.INFO;
+    }
+
+    private TriggerResult decideAccepted(TriggerEvent event, Severity severity) {
         if (event.kind() == TriggerKind.MANUAL) {
             String reason = event.attrs().get("reason");
             String headline = reason == null || reason.isBlank()
                 ? "Manual capture"
                 : "Manual capture: " + reason;
-            return new TriggerResult(TriggerDecision.ACCEPT, Severity.INFO, headline);
+            return new TriggerResult(TriggerDecision.ACCEPT, severity, headline);
         }
         if (event.kind() == TriggerKind.HEARTBEAT_STALL) {
             long stallMs = parseLong(event.attrs().get("stallMs"));
-            Severity severity = Severity.INFO;
-            if (stallMs >= policy.stallCriticalMs()) {
-                severity = Severity.CRITICAL;
-            } else if (stallMs >= policy.stallDegradedMs()) {
-                severity = Severity.DEGRADED;
-            }
-            String headline = "Heartbeat stalled " + event.scope() + " (" + stallMs + "ms)";
+            String affected = event.attrs().get("affectedScopes");
+            String total = event.attrs().get("totalScopes");
+            String prefix = isEscalation(event) ? "Heartbeat stall escalated" : "Heartbeat stalled";
+            String headline = affected != null && total != null && parseLong(affected) > 1
+                ? prefix + " in " + affected + "/" + total + " worlds (" + stallMs + "ms)"
+                : prefix + " " + event.scope() + " (" + stallMs + "ms)";
             return new TriggerResult(TriggerDecision.ACCEPT, severity, headline);
         }
-        return new TriggerResult(TriggerDecision.ACCEPT, Severity.INFO, "Capture triggered");
+        String headline = "Capture triggered by " + event.kind() + " on " + event.scope();
+        return new TriggerResult(TriggerDecision.ACCEPT, severity, headline);
+    }
+
+    /**
+     * Escalations follow a stall that was already accepted, so the global cooldown does not apply.
+     */
+    private static boolean isEscalation(TriggerEvent event) {
+        return event.kind() == TriggerKind.HEARTBEAT_STALL
+            && "ESCALATED".equals(event.attrs().get("stallPhase"));
+    }
+
+    private static boolean within(long now, long last, long windowNanos) {
+        return last != NEVER && now - last < windowNanos;
+    }
+
+    private static long epochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
     }
 
     private static long parseLong(String value) {
@@ -81,4 +232,13 @@ public final class TriggerEngine {
             return 0L;
         }
     }
+
+    /**
+     * Acceptance time of one (kind, scope) key, and the times its last accepted claim replaced.
+     */
+    private static final class KeyState {
+        private final AtomicLong lastAccepted = new AtomicLong(NEVER);
+        private volatile long previousAccepted = NEVER;
+        private volatile long previousGlobal = NEVER;
+    }
 }
@@ -1,26 +1,35 @@
 package sh.harold.blackbox.core.trigger;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
- * Trigger signal emitted by detectors or manual sources.
+ * Trigger signal emitted by detectors or manual sources. {@code stallIds} names the heartbeat
+ * stalls a stall trigger covers, so their resolutions can be matched to the incident.
  */
 public record TriggerEvent(
     TriggerKind kind,
     String scope,
     Instant at,
-    Map<String, String> attrs
+    Map<String, String> attrs,
+    List<String> stallIds
 ) {
     public TriggerEvent {
         Objects.requireNonNull(kind, "kind");
         Objects.requireNonNull(scope, "scope");
         Objects.requireNonNull(at, "at");
         Objects.requireNonNull(attrs, "attrs");
+        Objects.requireNonNull(stallIds, "stallIds");
         if (scope.isBlank()) {
             throw new IllegalArgumentException("scope must be non-blank.");
         }
         attrs = Map.copyOf(attrs);
+        stallIds = List.copyOf(stallIds);
+    }
+
+    public TriggerEvent(TriggerKind kind, String scope, Instant at, Map<String, String> attrs) {
+        this(kind, scope, at, attrs, List.of());
     }
 }
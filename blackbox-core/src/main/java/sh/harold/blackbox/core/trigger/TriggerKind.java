@@ -5,5 +5,17 @@ package sh.harold.blackbox.core.trigger;
  */
 public enum TriggerKind {
     MANUAL,
-    HEARTBEAT_STALL
+    HEARTBEAT_STALL,
+    /**
+     * Recovered on startup from the JFR repository of a process that did not shut down cleanly.
+     */
+    PREVIOUS_CRASH,
+    /**
+     * The heap ran out, or was about to, and {@code OomCapture} took the recording.
+     */
+    OUT_OF_MEMORY,
+    /**
+     * Taken while the server stopped after a stall, an error burst or a shutdown signal.
+     */
+    SHUTDOWN
 }
@@ -4,17 +4,25 @@ import java.time.Duration;
 import java.util.Objects;
 
 /**
- * Defines trigger cooldowns and stall thresholds.
+ * Defines trigger cooldowns, capture budget and stall thresholds.
  */
 public record TriggerPolicy(
     Duration cooldown,
     Duration debounce,
     long stallDegradedMs,
-    long stallCriticalMs
+    long stallCriticalMs,
+    Duration stallCoalesceWindow,
+    CaptureBudgetPolicy budget,
+    AdaptiveStallPolicy adaptive
 ) {
+    public static final Duration DEFAULT_STALL_COALESCE_WINDOW = Duration.ofSeconds(1);
+
     public TriggerPolicy {
         Objects.requireNonNull(cooldown, "cooldown");
         Objects.requireNonNull(debounce, "debounce");
+        Objects.requireNonNull(stallCoalesceWindow, "stallCoalesceWindow");
+        Objects.requireNonNull(budget, "budget");
+        Objects.requireNonNull(adaptive, "adaptive");
         if (cooldown.isNegative()) {
             throw new IllegalArgumentException("cooldown must be non-negative.");
         }
@@ -27,5 +35,33 @@ public record TriggerPolicy(
         if (stallCriticalMs < stallDegradedMs) {
             throw new IllegalArgumentException("stallCriticalMs must be >= stallDegradedMs.");
         }
+        if (stallCoalesceWindow.isNegative()) {
+            throw new IllegalArgumentException("stallCoalesceWindow must be non-negative.");
+        }
+    }
+
+    public TriggerPolicy(
+        Duration cooldown,
+        Duration debounce,
+        long stallDegradedMs,
+        long stallCriticalMs,
+        Duration stallCoalesceWindow,
+        CaptureBudgetPolicy budget
+    ) {
+        this(cooldown, debounce, stallDegradedMs, stallCriticalMs, stallCoalesceWindow, budget, AdaptiveStallPolicy.disabled());
+    }
+
+    public TriggerPolicy(
+        Duration cooldown,
+        Duration debounce,
+        long stallDegradedMs,
+        long stallCriticalMs,
+        Duration stallCoalesceWindow
+    ) {
+        this(cooldown, debounce, stallDegradedMs, stallCriticalMs, stallCoalesceWindow, CaptureBudgetPolicy.unlimited());
+    }
+
+    public TriggerPolicy(Duration cooldown, Duration debounce, long stallDegradedMs, long stallCriticalMs) {
+        this(cooldown, debounce, stallDegradedMs, stallCriticalMs, DEFAULT_STALL_COALESCE_WINDOW);
     }
 }
@@ -0,0 +1,136 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import sh.harold.blackbox.core.metrics.LatencyStats;
+import sh.harold.blackbox.core.metrics.RollingLatencyHistogram;
+import sh.harold.blackbox.core.trigger.AdaptiveStallPolicy;
+
+/**
+ * Learns a stall threshold per scope from that scope's heartbeat lag.
+ *
+ * <p>Each scope keeps an EWMA of lag and its variance plus a rolling one-hour histogram. The
+ * baseline is the larger of the hour's p99 and {@code mean + 4 * stddev}; the threshold is the
+ * baseline times {@link AdaptiveStallPolicy#multiplier()}, clamped to [{@link #floorMs()},
+ * {@code ceilingMs}]. The floor is {@link AdaptiveStallPolicy#floorMs()}, so a light scope can
+ * capture earlier than the fixed degraded threshold while a heavy one waits longer. Until
+ * enough samples are seen the fixed threshold applies. Once a threshold has been learned,
+ * samples at or above it are ignored, so a regression does not become the new normal.
+ */
+public final class AdaptiveStallThresholds implements StallThresholds {
+    private static final double ALPHA = 0.01;
+    private static final long RECOMPUTE_EVERY = 64L;
+
+    private final Clock clock;
+    private final AdaptiveStallPolicy policy;
+    private final long fixedDegradedMs;
+    private final long floorMs;
+    private final long ceilingMs;
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+
+    public AdaptiveStallThresholds(Clock clock, AdaptiveStallPolicy policy, long fixedDegradedMs, long ceilingMs) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        if (fixedDegradedMs <= 0 || ceilingMs < fixedDegradedMs) {
+            throw new IllegalArgumentException("thresholds must satisfy 0 < fixedDegradedMs <= ceilingMs.");
+        }
+        this.fixedDegradedMs = fixedDegradedMs;
+        this.floorMs = Math.min(ceilingMs, policy.floorMs());
+        this.ceilingMs = ceilingMs;
+    }
+
+    /**
+     * Lowest threshold a scope can learn: the policy floor, capped at the ceiling.
+     */
+    public long floorMs() {
+        return floorMs;
+    }
+
+    /**
+     * Records one heartbeat lag sample. Each scope must be recorded from a single thread; the
+     * threshold itself is recomputed lazily by {@link #degradedMs(String)}.
+     */
+    public void record(String scope, long lagNanos) {
+        Objects.requireNonNull(scope, "scope");
+        Baseline baseline = baselines.get(scope);
+        if (baseline == null) {
+            baseline = baselines.computeIfAbsent(scope, ignored -> new Baseline(clock));
+        }
+        baseline.record(lagNanos / 1_000_000.0, lagNanos, baseline.thresholdMs);
+    }
+
+    @Override
+    public long degradedMs(String scope) {
+        if (!policy.enabled()) {
+            return fixedDegradedMs;
+        }
+        Baseline baseline = baselines.get(scope);
+        return baseline == null ? fixedDegradedMs : learnedOrFixed(baseline);
+    }
+
+    /**
+     * Returns the current threshold per scope, ordered by scope name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> out = new TreeMap<>();
+        for (String scope : baselines.keySet()) {
+            out.put(scope, degradedMs(scope));
+        }
+        return out;
+    }
+
+    public void retainScopes(Collection<String> liveScopes) {
+        Objects.requireNonNull(liveScopes, "liveScopes");
+        baselines.keySet().retainAll(liveScopes);
+    }
+
+    private long learnedOrFixed(Baseline baseline) {
+        if (!policy.enabled() || baseline.samples < policy.minSamples()) {
+            return fixedDegradedMs;
+        }
+        long samples = baseline.samples;
+        if (baseline.thresholdMs == 0L || samples - baseline.computedAtSamples >= RECOMPUTE_EVERY) {
+            LatencyStats hour = baseline.histogram.snapshot(RollingLatencyHistogram.RETAINED_MINUTES);
+            double p99Ms = hour.p99Micros() / 1000.0;
+            double spreadMs = baseline.mean + 4.0 * Math.sqrt(Math.max(0.0, baseline.variance));
+            long learned = (long) Math.ceil(Math.max(p99Ms, spreadMs) * policy.multiplier());
+            baseline.thresholdMs = Math.min(ceilingMs, Math.max(floorMs, learned));
+            baseline.computedAtSamples = samples;
+        }
+        return baseline.thresholdMs;
+    }
+
+    private static final class Baseline {
+        private final RollingLatencyHistogram histogram;
+        private volatile double mean;
+        private volatile double variance;
+        private volatile long samples;
+        private volatile long thresholdMs;
+        private volatile long computedAtSamples;
+
+        private Baseline(Clock clock) {
+            this.histogram = new RollingLatencyHistogram(clock);
+        }
+
+        private void record(double lagMs, long lagNanos, long currentThresholdMs) {
+            if (currentThresholdMs > 0L && lagMs >= currentThresholdMs) {
+                return;
+            }
+            if (samples == 0) {
+                mean = lagMs;
+                variance = 0.0;
+            } else {
+                double delta = lagMs - mean;
+                double nextMean = mean + ALPHA * delta;
+                variance = (1.0 - ALPHA) * (variance + ALPHA * delta * delta);
+                mean = nextMean;
+            }
+            histogram.recordNanos(lagNanos);
+            samples = samples + 1;
+        }
+    }
+}
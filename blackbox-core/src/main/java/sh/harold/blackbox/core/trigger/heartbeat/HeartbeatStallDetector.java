@@ -12,22 +12,50 @@ import sh.harold.blackbox.core.trigger.TriggerEvent;
 import sh.harold.blackbox.core.trigger.TriggerKind;
 
 /**
- * Emits heartbeat stall trigger events on transition into a stalled state.
+ * Tracks heartbeat stalls per scope from start through escalation to resolution.
+ *
+ * <p>{@link #check()} emits a {@code STARTED} event when a scope stops beating for its
+ * {@link StallThresholds degraded threshold} and an {@code ESCALATED} event if the same stall
+ * later reaches {@code criticalMs}. Stalls that ended since the last call are returned by
+ * {@link #drainResolved()}.
  */
 public final class HeartbeatStallDetector {
+    public static final String ATTR_STALL_ID = "stallId";
+    public static final String ATTR_PHASE = "stallPhase";
+    public static final String ATTR_THRESHOLD_MS = "thresholdMs";
+    public static final String PHASE_STARTED = "STARTED";
+    public static final String PHASE_ESCALATED = "ESCALATED";
+
     private final Clock clock;
     private final HeartbeatRegistry registry;
-    private final long degradedMs;
-    private final Map<String, Boolean> inStall = new HashMap<>();
+    private final StallThresholds thresholds;
+    private final long criticalMs;
+    private final Map<String, OpenStall> open = new HashMap<>();
     private final Map<String, Instant> lastSeenBeat = new HashMap<>();
+    private final List<StallEpisode> resolved = new ArrayList<>();
 
     public HeartbeatStallDetector(Clock clock, HeartbeatRegistry registry, long degradedMs) {
+        this(clock, registry, degradedMs, Long.MAX_VALUE);
+    }
+
+    public HeartbeatStallDetector(Clock clock, HeartbeatRegistry registry, long degradedMs, long criticalMs) {
+        this(clock, registry, StallThresholds.fixed(degradedMs), criticalMs);
+        if (criticalMs < degradedMs) {
+            throw new IllegalArgumentException("criticalMs must be >= degradedMs.");
+        }
+    }
+
+    /**
+     * Uses a per-scope degraded threshold, capped at {@code criticalMs}.
+     */
+    public HeartbeatStallDetector(Clock clock, HeartbeatRegistry registry, StallThresholds thresholds, long criticalMs) {
         this.clock = Objects.requireNonNull(clock, "clock");
         this.registry = Objects.requireNonNull(registry, "registry");
-        if (degradedMs <= 0) {
-            throw new IllegalArgumentException("degradedMs must be > 0.");
+        this.thresholds = Objects.requireNonNull(thresholds, "thresholds");
+        if (criticalMs <= 0) {
+            throw new IllegalArgumentException("criticalMs must be > 0.");
         }
-        this.degradedMs = degradedMs;
+        this.criticalMs = criticalMs;
     }
 
     public List<TriggerEvent> check() {
@@ -41,23 +69,78 @@ public final class HeartbeatStallDetector {
             Instant previousBeat = lastSeenBeat.get(scope);
             if (previousBeat == null || last.isAfter(previousBeat)) {
                 lastSeenBeat.put(scope, last);
-                inStall.put(scope, false);
+                OpenStall ended = open.remove(scope);
+                if (ended != null) {
+                    long gapMs = Duration.between(ended.startedAt, last).toMillis();
+                    resolved.add(new StallEpisode(
+                        ended.id,
+                        scope,
+                        ended.startedAt,
+                        last,
+                        Math.max(ended.peakMs, gapMs),
+                        ended.escalated
+                    ));
+                }
             }
             long stallMs = Duration.between(last, now).toMillis();
-            boolean stalled = stallMs >= degradedMs;
-            boolean wasStalled = inStall.getOrDefault(scope, false);
-            if (stalled && !wasStalled) {
-                inStall.put(scope, true);
-                events.add(new TriggerEvent(
-                    TriggerKind.HEARTBEAT_STALL,
-                    scope,
-                    now,
-                    Map.of("stallMs", Long.toString(stallMs))
-                ));
-            } else if (!stalled && wasStalled) {
-                inStall.put(scope, false);
+            OpenStall stall = open.get(scope);
+            if (stall == null) {
+                long thresholdMs = Math.min(thresholds.degradedMs(scope), criticalMs);
+                if (stallMs >= thresholdMs) {
+                    stall = new OpenStall(scope + "@" + last.toEpochMilli(), last, thresholdMs);
+                    stall.peakMs = stallMs;
+                    open.put(scope, stall);
+                    events.add(event(scope, now, stall, stallMs, PHASE_STARTED));
+                }
+                continue;
+            }
+            stall.peakMs = Math.max(stall.peakMs, stallMs);
+            if (!stall.escalated && stallMs >= criticalMs) {
+                stall.escalated = true;
+                events.add(event(scope, now, stall, stallMs, PHASE_ESCALATED));
             }
         }
         return events;
     }
+
+    /**
+     * Returns stalls that ended since the previous call, oldest first.
+     */
+    public List<StallEpisode> drainResolved() {
+        if (resolved.isEmpty()) {
+            return List.of();
+        }
+        List<StallEpisode> drained = List.copyOf(resolved);
+        resolved.clear();
+        return drained;
+    }
+
+    private static TriggerEvent event(String scope, Instant now, OpenStall stall, long stallMs, String phase) {
+        return new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            scope,
+            now,
+            Map.of(
+                "stallMs", Long.toString(stallMs),
+                ATTR_STALL_ID, stall.id,
+                ATTR_PHASE, phase,
+                ATTR_THRESHOLD_MS, Long.toString(stall.thresholdMs)
+            ),
+            List.of(stall.id)
+        );
+    }
+
+    private static final class OpenStall {
+        private final String id;
+        private final Instant startedAt;
+        private final long thresholdMs;
+        private long peakMs;
+        private boolean escalated;
+
+        private OpenStall(String id, Instant startedAt, long thresholdMs) {
+            this.id = id;
+            this.startedAt = startedAt;
+            this.thresholdMs = thresholdMs;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import sh.harold.blackbox.core.metrics.LatencyStats;
+import sh.harold.blackbox.core.metrics.RollingLatencyHistogram;
+
+/**
+ * Tracks how long heartbeat tasks wait in each scope's task queue before running.
+ */
+public final class QueueLatencyRecorder {
+    private final Clock clock;
+    private final Map<String, RollingLatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public QueueLatencyRecorder(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    /**
+     * Records the enqueue-to-run delay of a heartbeat task. Safe to call from the scope's own thread.
+     */
+    public void record(String scope, long delayNanos) {
+        Objects.requireNonNull(scope, "scope");
+        RollingLatencyHistogram histogram = histograms.get(scope);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(scope, ignored -> new RollingLatencyHistogram(clock));
+        }
+        histogram.recordNanos(delayNanos);
+    }
+
+    public LatencyStats stats(String scope, int minutes) {
+        RollingLatencyHistogram histogram = histograms.get(scope);
+        return histogram == null ? LatencyStats.EMPTY : histogram.snapshot(minutes);
+    }
+
+    /**
+     * Returns stats per scope, ordered by scope name.
+     */
+    public Map<String, LatencyStats> snapshot(int minutes) {
+        Map<String, LatencyStats> out = new TreeMap<>();
+        for (Map.Entry<String, RollingLatencyHistogram> entry : histograms.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().snapshot(minutes));
+        }
+        return out;
+    }
+
+    /**
+     * Drops histograms for scopes that no longer exist.
+     */
+    public void retainScopes(Collection<String> liveScopes) {
+        Objects.requireNonNull(liveScopes, "liveScopes");
+        histograms.keySet().retainAll(liveScopes);
+    }
+
+    /**
+     * Renders the last minute and last hour for every scope as plain text.
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(256);
+        out.append("# heartbeat enqueue-to-run delay per scope\n");
+        Map<String, LatencyStats> lastMinute = snapshot(1);
+        Map<String, LatencyStats> lastHour = snapshot(RollingLatencyHistogram.RETAINED_MINUTES);
+        for (Map.Entry<String, LatencyStats> entry : lastHour.entrySet()) {
+            String scope = entry.getKey();
+            out.append(scope).append('\n');
+            out.append("  1m: ").append(lastMinute.getOrDefault(scope, LatencyStats.EMPTY).describeMillis()).append('\n');
+            out.append("  1h: ").append(entry.getValue().describeMillis()).append('\n');
+        }
+        return out.toString();
+    }
+}
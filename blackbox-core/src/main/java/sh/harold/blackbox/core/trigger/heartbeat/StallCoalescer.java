@@ -0,0 +1,217 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+/**
+ * Groups stall transitions that start within a short window into one incident.
+ *
+ * <p>A process-wide pause (full GC, safepoint, host freeze) stalls every world at once and would
+ * otherwise produce one trigger per world. Stalls are held for up to {@code window} after the
+ * first one, or until every known scope has stalled, and then emitted as a single event that
+ * lists the affected scopes and classifies the stall pattern. The merged event carries the stall
+ * ids of all its inputs in {@link TriggerEvent#stallIds()}, and its phase is {@code ESCALATED} if
+ * any input escalated. A stall can end while it is still held here, before an incident exists for
+ * it, so {@link #release(List)} holds such resolutions back until the event carrying the stall has
+ * been emitted. Not thread-safe; callers run it on the same thread as
+ * {@link HeartbeatStallDetector#check()}.
+ */
+public final class StallCoalescer {
+    public static final String PROCESS_SCOPE = "process";
+
+    public static final String ATTR_SCOPES = "scopes";
+    public static final String ATTR_AFFECTED = "affectedScopes";
+    public static final String ATTR_TOTAL = "totalScopes";
+    public static final String ATTR_PATTERN = "stallPattern";
+    public static final String ATTR_LIKELY_CAUSE = "likelyCause";
+
+    private final HeartbeatRegistry registry;
+    private final Duration window;
+    private final List<TriggerEvent> pending = new ArrayList<>();
+    private final List<StallEpisode> heldResolutions = new ArrayList<>();
+    private Instant windowStart;
+
+    public StallCoalescer(HeartbeatRegistry registry, Duration window) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+        this.window = Objects.requireNonNull(window, "window");
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must be non-negative.");
+        }
+    }
+
+    /**
+     * Adds new stall transitions and returns any coalesced events whose window has closed.
+     */
+    public List<TriggerEvent> offer(List<TriggerEvent> stalls, Instant now) {
+        Objects.requireNonNull(stalls, "stalls");
+        Objects.requireNonNull(now, "now");
+        for (TriggerEvent stall : stalls) {
+            if (stall.kind() != TriggerKind.HEARTBEAT_STALL) {
+                continue;
+            }
+            if (pending.isEmpty()) {
+                windowStart = now;
+            }
+            pending.add(stall);
+        }
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+
+        int totalScopes = Math.max(registry.scopes().size(), distinctScopes().size());
+        boolean windowClosed = !now.isBefore(windowStart.plus(window));
+        boolean everyScopeStalled = distinctScopes().size() >= totalScopes;
+        if (!windowClosed && !everyScopeStalled) {
+            return List.of();
+        }
+
+        TriggerEvent merged = merge(now, totalScopes);
+        pending.clear();
+        windowStart = null;
+        return List.of(merged);
+    }
+
+    /**
+     * Returns the given resolutions and any held earlier whose stall is no longer waiting in the
+     * window, oldest first. Call after handling the events returned by {@link #offer(List, Instant)}.
+     */
+    public List<StallEpisode> release(List<StallEpisode> resolved) {
+        Objects.requireNonNull(resolved, "resolved");
+        if (resolved.isEmpty() && heldResolutions.isEmpty()) {
+            return List.of();
+        }
+        heldResolutions.addAll(resolved);
+        Set<String> waiting = new HashSet<>();
+        for (TriggerEvent event : pending) {
+            waiting.addAll(event.stallIds());
+        }
+        List<StallEpisode> released = new ArrayList<>(heldResolutions.size());
+        heldResolutions.removeIf(episode -> {
+            if (waiting.contains(episode.id())) {
+                return false;
+            }
+            released.add(episode);
+            return true;
+        });
+        return released;
+    }
+
+    private TreeSet<String> distinctScopes() {
+        TreeSet<String> scopes = new TreeSet<>();
+        for (TriggerEvent event : pending) {
+            scopes.add(event.scope());
+        }
+        return scopes;
+    }
+
+    private TriggerEvent merge(Instant now, int totalScopes) {
+        TreeSet<String> scopes = distinctScopes();
+        long maxStallMs = 0L;
+        long minThresholdMs = Long.MAX_VALUE;
+        TreeSet<String> stallIds = new TreeSet<>();
+        boolean escalated = false;
+        for (TriggerEvent event : pending) {
+            maxStallMs = Math.max(maxStallMs, parseLong(event.attrs().get("stallMs")));
+            long thresholdMs = parseLong(event.attrs().get(HeartbeatStallDetector.ATTR_THRESHOLD_MS));
+            if (thresholdMs > 0L) {
+                minThresholdMs = Math.min(minThresholdMs, thresholdMs);
+            }
+            stallIds.addAll(event.stallIds());
+            escalated |= HeartbeatStallDetector.PHASE_ESCALATED.equals(event.attrs().get(HeartbeatStallDetector.ATTR_PHASE));
+        }
+
+        StallPattern pattern = StallPattern.classify(scopes.size(), totalScopes);
+        Map<String, String> attrs = new HashMap<>();
+        if (scopes.size() == 1) {
+            attrs.putAll(pending.get(0).attrs());
+        }
+        attrs.put("stallMs", Long.toString(maxStallMs));
+        if (minThresholdMs != Long.MAX_VALUE) {
+            attrs.put(HeartbeatStallDetector.ATTR_THRESHOLD_MS, Long.toString(minThresholdMs));
+        }
+        if (!stallIds.isEmpty()) {
+            attrs.put(HeartbeatStallDetector.ATTR_STALL_ID, String.join(",", stallIds));
+            attrs.put(
+                HeartbeatStallDetector.ATTR_PHASE,
+                escalated ? HeartbeatStallDetector.PHASE_ESCALATED : HeartbeatStallDetector.PHASE_STARTED
+            );
+        }
+        attrs.put(ATTR_SCOPES, String.join(",", scopes));
+        attrs.put(ATTR_AFFECTED, Integer.toString(scopes.size()));
+        attrs.put(ATTR_TOTAL, Integer.toString(totalScopes));
+        attrs.put(ATTR_PATTERN, pattern.name());
+        attrs.put(ATTR_LIKELY_CAUSE, pattern.likelyCause(scopes.size(), totalScopes));
+
+        if (scopes.size() == 1) {
+            TriggerEvent only = pending.get(0);
+            return new TriggerEvent(only.kind(), only.scope(), only.at(), attrs, List.copyOf(stallIds));
+        }
+        return new TriggerEvent(TriggerKind.HEARTBEAT_STALL, PROCESS_SCOPE, now, attrs, List.copyOf(stallIds));
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * How a coalesced stall was spread across scopes.
+     */
+    public enum StallPattern {
+        /**
+         * Every known scope stalled together.
+         */
+        ALL,
+        /**
+         * More than one, but not every, scope stalled together.
+         */
+        SEVERAL,
+        /**
+         * One scope stalled while others kept beating.
+         */
+        ISOLATED,
+        /**
+         * The only known scope stalled, so the pattern is inconclusive.
+         */
+        SOLE;
+
+        static StallPattern classify(int affected, int total) {
+            if (total <= 1) {
+                return SOLE;
+            }
+            if (affected >= total) {
+                return ALL;
+            }
+            return affected > 1 ? SEVERAL : ISOLATED;
+        }
+
+        String likelyCause(int affected, int total) {
+            return switch (this) {
+                case ALL -> "All " + total + " worlds stalled together. A process-wide pause is likely: "
+                    + "a stop-the-world GC, a long safepoint, or the host freezing the JVM (CPU steal, swapping).";
+                case SEVERAL -> affected + " of " + total + " worlds stalled together. Shared contention is likely: "
+                    + "a common lock, blocking I/O, or a shared executor.";
+                case ISOLATED -> "Only this world stalled while " + (total - affected) + " other world(s) kept running. "
+                    + "Work on the world thread is likely: a heavy tick, a blocking call, or chunk generation.";
+                case SOLE -> "The only world stalled, so a world-thread stall cannot be told apart from a "
+                    + "process-wide pause. Check GC and safepoint events in the recording.";
+            };
+        }
+    }
+}
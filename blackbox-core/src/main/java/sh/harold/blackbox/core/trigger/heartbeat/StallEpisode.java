@@ -0,0 +1,31 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * One heartbeat stall from its last healthy beat to the beat that ended it.
+ */
+public record StallEpisode(
+    String id,
+    String scope,
+    Instant startedAt,
+    Instant endedAt,
+    long peakMs,
+    boolean escalated
+) {
+    public StallEpisode {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(scope, "scope");
+        Objects.requireNonNull(startedAt, "startedAt");
+        Objects.requireNonNull(endedAt, "endedAt");
+        if (peakMs < 0) {
+            throw new IllegalArgumentException("peakMs must be non-negative.");
+        }
+    }
+
+    public long durationMs() {
+        return Duration.between(startedAt, endedAt).toMillis();
+    }
+}
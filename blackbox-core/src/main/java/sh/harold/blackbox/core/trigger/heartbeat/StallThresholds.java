@@ -0,0 +1,16 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+/**
+ * Supplies the stall threshold used for a scope.
+ */
+@FunctionalInterface
+public interface StallThresholds {
+    long degradedMs(String scope);
+
+    static StallThresholds fixed(long degradedMs) {
+        if (degradedMs <= 0) {
+            throw new IllegalArgumentException("degradedMs must be > 0.");
+        }
+        return scope -> degradedMs;
+    }
+}
@@ -0,0 +1,29 @@
+package sh.harold.blackbox.core.warmup;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures the grace period applied while the JVM is loading classes and JIT compiling.
+ */
+public record WarmupPolicy(
+    boolean enabled,
+    long classLoadsPerSecond,
+    long compileMillisPerSecond,
+    Duration settleDuration,
+    Duration maxGrace
+) {
+    public WarmupPolicy {
+        Objects.requireNonNull(settleDuration, "settleDuration");
+        Objects.requireNonNull(maxGrace, "maxGrace");
+        if (classLoadsPerSecond <= 0 || compileMillisPerSecond <= 0) {
+            throw new IllegalArgumentException("warmup rate thresholds must be > 0.");
+        }
+        if (settleDuration.isNegative()) {
+            throw new IllegalArgumentException("settleDuration must be non-negative.");
+        }
+        if (maxGrace.isNegative() || maxGrace.isZero()) {
+            throw new IllegalArgumentException("maxGrace must be > 0.");
+        }
+    }
+}
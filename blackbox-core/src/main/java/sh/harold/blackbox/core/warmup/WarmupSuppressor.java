@@ -0,0 +1,177 @@
+package sh.harold.blackbox.core.warmup;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import sh.harold.blackbox.core.jfr.BlackboxSuppressedEvent;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+/**
+ * Holds back stall captures while class loading or JIT compilation is running hot.
+ *
+ * <p>Rates are sampled from the class-loading and compilation MX beans. The JVM starts out warming
+ * up; warm-up ends once both rates stay below their thresholds for {@code settleDuration}, or after
+ * {@code maxGrace}, and starts again if either rate climbs back over its threshold (for example
+ * during a large world load). While warming up, stall triggers that have not escalated are dropped
+ * and remembered so later bundles show what was held back.
+ */
+public final class WarmupSuppressor {
+    private static final long MIN_SAMPLE_MILLIS = 1_000L;
+    private static final int RETAINED_SUPPRESSIONS = 32;
+
+    private final Clock clock;
+    private final WarmupPolicy policy;
+    private final LongSupplier loadedClasses;
+    private final LongSupplier compileMillis;
+    private final Deque<String> suppressed = new ArrayDeque<>();
+
+    private long lastSampleMillis;
+    private long lastLoadedClasses;
+    private long lastCompileMillis;
+    private double classLoadRate;
+    private double compileRate;
+    private boolean warming;
+    private boolean armed = true;
+    private Instant warmingSince;
+    private Instant quietSince;
+    private long suppressedCount;
+
+    public WarmupSuppressor(Clock clock, WarmupPolicy policy, LongSupplier loadedClasses, LongSupplier compileMillis) {
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.loadedClasses = Objects.requireNonNull(loadedClasses, "loadedClasses");
+        this.compileMillis = Objects.requireNonNull(compileMillis, "compileMillis");
+        this.lastSampleMillis = clock.millis();
+        this.lastLoadedClasses = loadedClasses.getAsLong();
+        this.lastCompileMillis = compileMillis.getAsLong();
+        this.warming = policy.enabled();
+        this.warmingSince = clock.instant();
+    }
+
+    /**
+     * Uses the platform class-loading and compilation beans.
+     */
+    public static WarmupSuppressor platform(Clock clock, WarmupPolicy policy) {
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        LongSupplier compileMillis = compilation != null && compilation.isCompilationTimeMonitoringSupported()
+            ? compilation::getTotalCompilationTime
+            : () -> 0L;
+        return new WarmupSuppressor(clock, policy, classLoading::getTotalLoadedClassCount, compileMillis);
+    }
+
+    /**
+     * Updates the rates and the warm-up state. Samples closer together than a second are ignored.
+     */
+    public synchronized void sample() {
+        if (!policy.enabled()) {
+            return;
+        }
+        long nowMillis = clock.millis();
+        long elapsed = nowMillis - lastSampleMillis;
+        if (elapsed < MIN_SAMPLE_MILLIS) {
+            return;
+        }
+        long classes = loadedClasses.getAsLong();
+        long compile = compileMillis.getAsLong();
+        classLoadRate = (classes - lastLoadedClasses) * 1000.0 / elapsed;
+        compileRate = (compile - lastCompileMillis) * 1000.0 / elapsed;
+        lastSampleMillis = nowMillis;
+        lastLoadedClasses = classes;
+        lastCompileMillis = compile;
+
+        Instant now = clock.instant();
+        boolean hot = classLoadRate >= policy.classLoadsPerSecond() || compileRate >= policy.compileMillisPerSecond();
+        if (!warming) {
+            if (!hot) {
+                armed = true;
+            } else if (armed) {
+                warming = true;
+                warmingSince = now;
+                quietSince = null;
+            }
+            return;
+        }
+        if (hot) {
+            quietSince = null;
+        } else if (quietSince == null) {
+            quietSince = now;
+        }
+        boolean settled = quietSince != null && !now.isBefore(quietSince.plus(policy.settleDuration()));
+        boolean expired = !now.isBefore(warmingSince.plus(policy.maxGrace()));
+        if (settled || expired) {
+            warming = false;
+            // After running out the grace period, wait for a quiet sample before warming up again.
+            armed = settled;
+        }
+    }
+
+    public synchronized boolean isWarmingUp() {
+        return warming;
+    }
+
+    /**
+     * Returns {@code true} and records the event if it should be dropped because of warm-up.
+     * Escalated stalls are never dropped.
+     */
+    public synchronized boolean suppress(TriggerEvent event) {
+        Objects.requireNonNull(event, "event");
+        if (!warming || event.kind() != TriggerKind.HEARTBEAT_STALL) {
+            return false;
+        }
+        if ("ESCALATED".equals(event.attrs().get("stallPhase"))) {
+            return false;
+        }
+        suppressedCount++;
+        String line = event.at() + " " + event.scope()
+            + " stallMs=" + event.attrs().getOrDefault("stallMs", "?")
+            + " classLoadsPerSec=" + Math.round(classLoadRate)
+            + " compileMsPerSec=" + Math.round(compileRate);
+        if (suppressed.size() == RETAINED_SUPPRESSIONS) {
+            suppressed.removeFirst();
+        }
+        suppressed.addLast(line);
+
+        BlackboxSuppressedEvent jfrEvent = new BlackboxSuppressedEvent();
+        if (jfrEvent.isEnabled()) {
+            jfrEvent.kind = event.kind().name();
+            jfrEvent.scope = event.scope();
+            jfrEvent.decision = "WARMUP";
+            jfrEvent.severity = "";
+            jfrEvent.commit();
+        }
+        return true;
+    }
+
+    public synchronized long suppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * Renders the current state and recent suppressions as plain text.
+     */
+    public synchronized String render() {
+        StringBuilder out = new StringBuilder(512);
+        out.append("# warm-up grace period\n");
+        out.append("enabled=").append(policy.enabled()).append('\n');
+        out.append("warmingUp=").append(warming).append('\n');
+        if (warming) {
+            out.append("warmingFor=").append(Duration.between(warmingSince, clock.instant()).toSeconds()).append("s\n");
+        }
+        out.append("classLoadsPerSec=").append(Math.round(classLoadRate)).append('\n');
+        out.append("compileMsPerSec=").append(Math.round(compileRate)).append('\n');
+        out.append("suppressed=").append(suppressedCount).append('\n');
+        for (String line : suppressed) {
+            out.append("  ").append(line).append('\n');
+        }
+        return out.toString();
+    }
+}
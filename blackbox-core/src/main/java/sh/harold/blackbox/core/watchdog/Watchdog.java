@@ -0,0 +1,260 @@
+package sh.harold.blackbox.core.watchdog;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Independent stall watchdog running on its own high-priority thread.
+ *
+ * <p>The watchdog shares no executors with the rest of Blackbox. Probes are registered into a
+ * fixed number of preallocated slots and beaten with {@link #beat(int)}; the watchdog thread
+ * walks the slots with a small per-slot state machine and invokes the {@link StallAction} once
+ * per stall, rate limited by a global cooldown. The action runs on the given executor so a slow
+ * emergency dump does not stop the loop from watching the other probes. The polling loop does not
+ * allocate until it fires.
+ *
+ * <p>Each registration bumps its slot's generation. Callers that beat from deferred tasks pass the
+ * generation they registered with, so a task left over from an unregistered probe cannot keep the
+ * probe that reused its slot alive.
+ */
+public final class Watchdog implements AutoCloseable {
+    private static final int INACTIVE = 0;
+    private static final int ACTIVE = 1;
+
+    private static final int HEALTHY = 0;
+    private static final int STALLED = 1;
+
+    private final int capacity;
+    private final long pollNanos;
+    private final long cooldownNanos;
+    private final StallAction action;
+    private final Executor actionExecutor;
+    private final System.Logger logger;
+
+    private final String[] names;
+    private final long[] thresholdNanos;
+    private final AtomicIntegerArray active;
+    private final AtomicIntegerArray generations;
+    private final AtomicLongArray lastBeatNanos;
+    private final int[] states;
+
+    private volatile long lastFiredNanos;
+    private volatile boolean fired;
+    private volatile long firedCount;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * A watchdog that runs its action on the watchdog thread itself.
+     */
+    public Watchdog(int capacity, Duration pollInterval, Duration cooldown, StallAction action, System.Logger logger) {
+        this(capacity, pollInterval, cooldown, action, Runnable::run, logger);
+    }
+
+    public Watchdog(
+        int capacity,
+        Duration pollInterval,
+        Duration cooldown,
+        StallAction action,
+        Executor actionExecutor,
+        System.Logger logger
+    ) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0.");
+        }
+        Objects.requireNonNull(pollInterval, "pollInterval");
+        Objects.requireNonNull(cooldown, "cooldown");
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("pollInterval must be > 0.");
+        }
+        if (cooldown.isNegative()) {
+            throw new IllegalArgumentException("cooldown must be non-negative.");
+        }
+        this.capacity = capacity;
+        this.pollNanos = pollInterval.toNanos();
+        this.cooldownNanos = cooldown.toNanos();
+        this.action = Objects.requireNonNull(action, "action");
+        this.actionExecutor = Objects.requireNonNull(actionExecutor, "actionExecutor");
+        this.logger = Objects.requireNonNull(logger, "logger");
+        this.names = new String[capacity];
+        this.thresholdNanos = new long[capacity];
+        this.active = new AtomicIntegerArray(capacity);
+        this.generations = new AtomicIntegerArray(capacity);
+        this.lastBeatNanos = new AtomicLongArray(capacity);
+        this.states = new int[capacity];
+    }
+
+    /**
+     * Registers a probe and returns its slot, or {@code -1} when all slots are in use.
+     */
+    public synchronized int register(String name, Duration threshold) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(threshold, "threshold");
+        if (threshold.isNegative() || threshold.isZero()) {
+            throw new IllegalArgumentException("threshold must be > 0.");
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            if (active.get(slot) == INACTIVE) {
+                names[slot] = name;
+                thresholdNanos[slot] = threshold.toNanos();
+                lastBeatNanos.set(slot, 0L);
+                generations.incrementAndGet(slot);
+                active.set(slot, ACTIVE);
+                return slot;
+            }
+        }
+        logger.log(System.Logger.Level.WARNING, "Watchdog slots exhausted; not watching " + name);
+        return -1;
+    }
+
+    public void unregister(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            return;
+        }
+        active.set(slot, INACTIVE);
+        lastBeatNanos.set(slot, 0L);
+    }
+
+    /**
+     * The generation of {@code slot}'s current registration, for {@link #beatIfCurrent(int, int)}.
+     */
+    public int generation(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            return -1;
+        }
+        return generations.get(slot);
+    }
+
+    public void beat(int slot) {
+        beat(slot, System.nanoTime());
+    }
+
+    /**
+     * Beats {@code slot} only while it still holds the registration that had {@code generation}.
+     */
+    public void beatIfCurrent(int slot, int generation) {
+        if (slot < 0 || slot >= capacity) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        if (generations.get(slot) != generation || active.get(slot) == INACTIVE) {
+            return;
+        }
+        lastBeatNanos.set(slot, nowNanos);
+        if (generations.get(slot) != generation) {
+            lastBeatNanos.compareAndSet(slot, nowNanos, 0L);
+        }
+    }
+
+    void beat(int slot, long nowNanos) {
+        if (slot < 0 || slot >= capacity) {
+            return;
+        }
+        lastBeatNanos.set(slot, nowNanos);
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        Thread created = new Thread(this::run, "blackbox-watchdog");
+        created.setDaemon(true);
+        created.setPriority(Thread.MAX_PRIORITY);
+        thread = created;
+        created.start();
+    }
+
+    /**
+     * Runs one pass of the state machine. Called by the watchdog thread; exposed for tests.
+     */
+    void check(long nowNanos) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (active.get(slot) == INACTIVE) {
+                states[slot] = HEALTHY;
+                continue;
+            }
+            long last = lastBeatNanos.get(slot);
+            if (last == 0L) {
+                continue;
+            }
+            long stalledNanos = nowNanos - last;
+            boolean stalled = stalledNanos >= thresholdNanos[slot];
+            if (stalled && states[slot] == HEALTHY) {
+                states[slot] = STALLED;
+                fire(slot, stalledNanos, nowNanos);
+            } else if (!stalled && states[slot] == STALLED) {
+                states[slot] = HEALTHY;
+            }
+        }
+    }
+
+    /**
+     * Number of times the stall action has been invoked.
+     */
+    public long firedCount() {
+        return firedCount;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void fire(int slot, long stalledNanos, long nowNanos) {
+        if (fired && nowNanos - lastFiredNanos < cooldownNanos) {
+            return;
+        }
+        fired = true;
+        lastFiredNanos = nowNanos;
+        firedCount++;
+        String probe = names[slot];
+        long stalledMs = stalledNanos / 1_000_000L;
+        try {
+            actionExecutor.execute(() -> {
+                try {
+                    action.onStall(probe, stalledMs);
+                } catch (Throwable t) {
+                    logger.log(System.Logger.Level.WARNING, "Watchdog stall action failed.", t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.log(System.Logger.Level.WARNING, "Watchdog stall action rejected for " + probe + ".", e);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(this, pollNanos);
+            if (!running) {
+                return;
+            }
+            try {
+                check(System.nanoTime());
+            } catch (Throwable t) {
+                logger.log(System.Logger.Level.WARNING, "Watchdog check failed.", t);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    /**
+     * Reaction to a probe that stopped beating.
+     */
+    @FunctionalInterface
+    public interface StallAction {
+        void onStall(String probe, long stalledMs);
+    }
+}
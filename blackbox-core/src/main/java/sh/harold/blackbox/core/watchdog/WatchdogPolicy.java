@@ -0,0 +1,38 @@
+package sh.harold.blackbox.core.watchdog;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configures the independent watchdog thread and its emergency captures.
+ *
+ * <p>{@code workerStallMs} bounds how long the blackbox worker may go without running a probe
+ * task; it covers a whole capture queued ahead of the probe, so it sits well above the others.
+ */
+public record WatchdogPolicy(
+    boolean enabled,
+    Duration pollInterval,
+    long schedulerStallMs,
+    long worldStallMs,
+    long workerStallMs,
+    Duration emergencyCooldown,
+    Duration leanMaxAge
+) {
+    public WatchdogPolicy {
+        Objects.requireNonNull(pollInterval, "pollInterval");
+        Objects.requireNonNull(emergencyCooldown, "emergencyCooldown");
+        Objects.requireNonNull(leanMaxAge, "leanMaxAge");
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("pollInterval must be > 0.");
+        }
+        if (schedulerStallMs <= 0 || worldStallMs <= 0 || workerStallMs <= 0) {
+            throw new IllegalArgumentException("watchdog stall thresholds must be > 0.");
+        }
+        if (emergencyCooldown.isNegative()) {
+            throw new IllegalArgumentException("emergencyCooldown must be non-negative.");
+        }
+        if (leanMaxAge.isNegative() || leanMaxAge.isZero()) {
+            throw new IllegalArgumentException("leanMaxAge must be > 0.");
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package sh.harold.blackbox.core.bundle;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sh.harold.blackbox.core.testutil.JfrChunks.chunk;
+import static sh.harold.blackbox.core.testutil.JfrChunks.concat;
 
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.junit.jupiter.api.Test;
@@ -92,6 +100,58 @@ class BundleBuilderTest {
         }
     }
 
+    @Test
+    void dedup_sharesChunksAcrossBundlesAndMaterializesOnExport(@TempDir Path tempDir) throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2024-05-06T07:08:09.010Z"), ZoneOffset.UTC);
+        BlobStore blobs = new BlobStore(tempDir.resolve("blobs"), clock);
+        BundleBuilder builder = new BundleBuilder(clock, System.getLogger("bundle-test"), blobs, true);
+        byte[] first = chunk(clock.instant().minusSeconds(120), 200);
+        byte[] second = chunk(clock.instant().minusSeconds(60), 300);
+        byte[] third = chunk(clock.instant(), 400);
+        byte[] plugins = new byte[2048];
+        Arrays.fill(plugins, (byte) 'p');
+        List<BundleAttachment> extras = List.of(
+            new BundleAttachment("extras/plugins.txt", plugins),
+            new BundleAttachment("extras/small.txt", "s".getBytes(StandardCharsets.UTF_8))
+        );
+
+        Path recordingA = Files.write(tempDir.resolve("a.jfr"), concat(first, second));
+        Path bundleA = builder.build(simpleReport(clock), recordingA, tempDir.resolve("a.zip"), extras);
+        Path recordingB = Files.write(tempDir.resolve("b.jfr"), concat(second, third));
+        Path bundleB = builder.build(simpleReport(clock), recordingB, tempDir.resolve("b.zip"), extras);
+
+        Set<String> referencedByA;
+        Set<String> referencedByB;
+        try (InputStream in = Files.newInputStream(bundleA)) {
+            referencedByA = BundleBuilder.blobReferences(in);
+        }
+        try (InputStream in = Files.newInputStream(bundleB)) {
+            referencedByB = BundleBuilder.blobReferences(in);
+        }
+        Set<String> shared = new HashSet<>(referencedByA);
+        shared.retainAll(referencedByB);
+        assertTrue(shared.size() >= 2, "chunk two and the plugins list are stored once");
+        try (ZipFile zip = new ZipFile(bundleB.toFile())) {
+            assertNull(zip.getEntry("recording.jfr"));
+            assertNull(zip.getEntry("extras/plugins.txt"));
+            assertNotNull(zip.getEntry("extras/small.txt"));
+            assertNotNull(zip.getEntry(BundleBuilder.BLOB_MANIFEST));
+        }
+
+        blobs.sweep(referencedByB, clock.instant().plusSeconds(1));
+        Path exported = Files.copy(bundleB, tempDir.resolve("export.zip"));
+        builder.materialize(exported);
+        try (ZipFile zip = new ZipFile(exported.toFile())) {
+            assertNull(zip.getEntry(BundleBuilder.BLOB_MANIFEST));
+            assertArrayEquals(concat(second, third), zip.getInputStream(zip.getEntry("recording.jfr")).readAllBytes());
+            assertArrayEquals(plugins, zip.getInputStream(zip.getEntry("extras/plugins.txt")).readAllBytes());
+            assertNotNull(zip.getEntry("env/os.txt"));
+        }
+        for (String hash : referencedByA) {
+            assertEquals(referencedByB.contains(hash), blobs.contains(hash));
+        }
+    }
+
     private static IncidentReport reportWithEscapes(Clock clock) {
         IncidentId id = IncidentIds.next(clock);
         Instant createdAt = clock.instant();
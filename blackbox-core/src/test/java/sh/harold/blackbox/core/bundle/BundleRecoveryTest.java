@@ -0,0 +1,108 @@
+package sh.harold.blackbox.core.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.index.IncidentCatalog;
+import sh.harold.blackbox.core.incident.IncidentIds;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+
+class BundleRecoveryTest {
+
+    @Test
+    void finishesSalvagesAndRemovesWhatACrashLeftBehind(@TempDir Path tempDir) throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path incidentDir = tempDir.resolve("incidents");
+        Path temp = tempDir.resolve("temp");
+        Files.createDirectories(temp);
+        BundleBuilder builder = new BundleBuilder(clock);
+        byte[] noise = new byte[32 * 1024];
+        new Random(7).nextBytes(noise);
+        Path recording = Files.write(temp.resolve("leftover.jfr"), noise);
+
+        Path staged = builder.build(report(clock), recording, incidentDir.resolve("incident-a.zip"), List.of());
+        assertFalse(Files.exists(incidentDir.resolve("incident-a.zip" + BundleBuilder.STAGING_SUFFIX)));
+        Files.move(staged, incidentDir.resolve("incident-a.zip" + BundleBuilder.STAGING_SUFFIX));
+
+        Path truncated = builder.build(report(clock), recording, incidentDir.resolve("incident-b.zip"), List.of());
+        try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 8 * 1024);
+        }
+        Files.write(incidentDir.resolve("incident-b.zip.rewrite"), new byte[] {1, 2, 3});
+        Files.write(incidentDir.resolve("incident-c.zip" + BundleBuilder.STAGING_SUFFIX), new byte[] {4, 5, 6});
+
+        BundleRecovery.Result result = new BundleRecovery(incidentDir, temp, System.getLogger("recovery-test"))
+            .recover(4);
+
+        assertEquals(new BundleRecovery.Result(1, 1, 3), result);
+        try (Stream<Path> files = Files.list(incidentDir)) {
+            assertEquals(
+                List.of("incident-a.zip", "incident-b.zip"),
+                files.map(path -> path.getFileName().toString()).sorted().toList()
+            );
+        }
+        try (ZipFile zip = new ZipFile(incidentDir.resolve("incident-a.zip").toFile())) {
+            assertNotNull(zip.getEntry("recording.jfr"));
+        }
+        try (ZipFile zip = new ZipFile(incidentDir.resolve("incident-b.zip").toFile())) {
+            assertNotNull(zip.getEntry("incident.json"));
+            assertNull(zip.getEntry("recording.jfr"));
+        }
+        assertTrue(Files.notExists(recording));
+    }
+
+    @Test
+    void onlyOpensBundlesWrittenSinceTheCatalog(@TempDir Path tempDir) throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path incidentDir = tempDir.resolve("incidents");
+        BundleBuilder builder = new BundleBuilder(clock);
+        Path cataloged = builder.build(report(clock), null, incidentDir.resolve("incident-a.zip"), List.of());
+        Path fresh = builder.build(report(clock), null, incidentDir.resolve("incident-b.zip"), List.of());
+        for (Path bundle : List.of(cataloged, fresh)) {
+            Files.write(bundle, new byte[] {1, 2, 3});
+        }
+        Path catalog = Files.write(incidentDir.resolve(IncidentCatalog.FILE_NAME), new byte[] {0});
+        Files.setLastModifiedTime(cataloged, FileTime.from(Instant.parse("2026-01-11T00:00:00Z")));
+        Files.setLastModifiedTime(catalog, FileTime.from(Instant.parse("2026-01-11T00:01:00Z")));
+        Files.setLastModifiedTime(fresh, FileTime.from(Instant.parse("2026-01-11T00:02:00Z")));
+
+        BundleRecovery.Result result = new BundleRecovery(incidentDir, tempDir.resolve("temp"),
+            System.getLogger("recovery-test")).recover(2);
+
+        assertEquals(new BundleRecovery.Result(0, 0, 1), result);
+        assertTrue(Files.exists(cataloged));
+        assertTrue(Files.notExists(fresh));
+    }
+
+    private static IncidentReport report(Clock clock) {
+        IncidentMetadata meta = new IncidentMetadata(
+            IncidentIds.next(clock),
+            clock.instant(),
+            Severity.INFO,
+            "manual",
+            null,
+            "Recovered incident"
+        );
+        return new IncidentReport(meta, new IncidentSummary("Unknown", List.of(), List.of()));
+    }
+}
@@ -1,8 +1,15 @@
 package sh.harold.blackbox.core.capture;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sh.harold.blackbox.core.testutil.JfrChunks.chunk;
+import static sh.harold.blackbox.core.testutil.JfrChunks.concat;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -13,13 +20,23 @@ import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.DeltaRecordings;
+import sh.harold.blackbox.core.disk.DiskPressureMonitor;
+import sh.harold.blackbox.core.disk.DiskPressurePolicy;
+import sh.harold.blackbox.core.disk.DiskPressureStage;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.index.StorageTier;
 import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentIds;
 import sh.harold.blackbox.core.retention.FileDeleter;
 import sh.harold.blackbox.core.retention.RetentionManager;
 import sh.harold.blackbox.core.retention.RetentionPolicy;
@@ -28,6 +45,7 @@ import sh.harold.blackbox.core.trigger.TriggerEngine;
 import sh.harold.blackbox.core.trigger.TriggerEvent;
 import sh.harold.blackbox.core.trigger.TriggerKind;
 import sh.harold.blackbox.core.trigger.TriggerPolicy;
+import sh.harold.blackbox.core.trigger.heartbeat.StallEpisode;
 
 class CapturePipelineTest {
 
@@ -39,18 +57,17 @@ class CapturePipelineTest {
 
         TriggerPolicy policy = new TriggerPolicy(Duration.ofSeconds(30), Duration.ZERO, 1000, 5000);
         TriggerEngine engine = new TriggerEngine(clock, policy);
-        CapturePipeline pipeline = new CapturePipeline(
-            clock,
-            engine,
-            new FakeRecordingDumper(new byte[] {1, 2, 3}),
-            new BundleBuilder(clock),
-            new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()),
-            IncidentNotifier.noop(),
-            incidentDir,
-            tempRecordings,
-            new CapturePolicy(new RetentionPolicy(0, 0L, null)),
-            System.getLogger("capture-test")
-        );
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(engine)
+            .dumper(new FakeRecordingDumper(new byte[] {1, 2, 3}))
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(IncidentIndex.load(incidentDir, System.getLogger("capture-test")))
+            .tempDir(tempRecordings)
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
 
         TriggerEvent event = new TriggerEvent(TriggerKind.MANUAL, "world", clock.instant(), Map.of());
         for (int i = 0; i < 100; i++) {
@@ -74,18 +91,17 @@ class CapturePipelineTest {
 
         TriggerPolicy policy = new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000);
         TriggerEngine engine = new TriggerEngine(clock, policy);
-        CapturePipeline pipeline = new CapturePipeline(
-            clock,
-            engine,
-            new FakeRecordingDumper(new byte[] {9, 9, 9}),
-            new BundleBuilder(clock),
-            new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()),
-            IncidentNotifier.noop(),
-            incidentDir,
-            tempRecordings,
-            new CapturePolicy(new RetentionPolicy(0, 0L, null)),
-            System.getLogger("capture-test")
-        );
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(engine)
+            .dumper(new FakeRecordingDumper(new byte[] {9, 9, 9}))
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(IncidentIndex.load(incidentDir, System.getLogger("capture-test")))
+            .tempDir(tempRecordings)
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
 
         Optional<IncidentId> degradedId = pipeline.handle(new TriggerEvent(
             TriggerKind.HEARTBEAT_STALL,
@@ -108,6 +124,167 @@ class CapturePipelineTest {
         assertTrue(readSeverity(incidentDir, criticalId.get()).contains("\"severity\":\"CRITICAL\""));
     }
 
+    @Test
+    void escalationBypassesCooldownAndResolutionIsWrittenBack(@TempDir Path tempDir) throws Exception {
+        Path incidentDir = tempDir.resolve("incidents");
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+
+        TriggerPolicy policy = new TriggerPolicy(Duration.ofSeconds(30), Duration.ZERO, 2000, 6000);
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, policy))
+            .dumper(new FakeRecordingDumper(new byte[] {4, 2}))
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(IncidentIndex.load(incidentDir, System.getLogger("capture-test")))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
+
+        Instant startedAt = clock.instant();
+        clock.advance(Duration.ofMillis(2100));
+        Optional<IncidentId> started = pipeline.handle(new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "world",
+            clock.instant(),
+            Map.of("stallMs", "2100", "stallId", "world@1", "stallPhase", "STARTED")
+        ));
+        clock.advance(Duration.ofMillis(4000));
+        Optional<IncidentId> escalated = pipeline.handle(new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "world",
+            clock.instant(),
+            Map.of("stallMs", "6100", "stallId", "world@1", "stallPhase", "ESCALATED")
+        ));
+
+        assertTrue(started.isPresent());
+        assertTrue(escalated.isPresent());
+
+        int updated = pipeline.resolveStall(new StallEpisode(
+            "world@1",
+            "world",
+            startedAt,
+            startedAt.plusMillis(7500),
+            7500,
+            true
+        ));
+
+        assertEquals(2, updated);
+        String json = readSeverity(incidentDir, started.get());
+        assertTrue(json.contains("\"severity\":\"CRITICAL\""));
+        assertTrue(json.contains("\"stall.world.durationMs\":\"7500\""));
+        assertTrue(json.contains("resolved after 7500ms"));
+        assertEquals(0, pipeline.resolveStall(new StallEpisode(
+            "world@1",
+            "world",
+            startedAt,
+            startedAt.plusMillis(7500),
+            7500,
+            true
+        )));
+    }
+
+    @Test
+    void diskPressureDropsRecordingThenSkipsCaptures(@TempDir Path tempDir) throws Exception {
+        Path incidentDir = tempDir.resolve("incidents");
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AtomicLong usable = new AtomicLong(1_500L);
+        DiskPressureMonitor monitor = new DiskPressureMonitor(
+            clock,
+            new DiskPressurePolicy(true, 4_000L, 2_000L, 1_000L, Duration.ofMinutes(2)),
+            List.of(incidentDir),
+            path -> usable.get(),
+            System.getLogger("capture-test")
+        );
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000)))
+            .dumper(new FakeRecordingDumper(new byte[] {1, 2, 3}))
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(new IncidentIndex(incidentDir))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .diskPressure(monitor)
+            .logger(System.getLogger("capture-test"))
+            .build();
+
+        IncidentId stripped = pipeline.handle(new TriggerEvent(TriggerKind.MANUAL, "world", clock.instant(), Map.of()))
+            .orElseThrow();
+        try (ZipFile zip = new ZipFile(incidentDir.resolve("incident-" + stripped.value() + ".zip").toFile())) {
+            assertNull(zip.getEntry("recording.jfr"));
+        }
+        assertTrue(readSeverity(incidentDir, stripped).contains("\"diskPressure.stage\":\"DROP_RECORDING\""));
+        Path recovered = Files.write(Files.createDirectories(tempDir.resolve("recovered")).resolve("crash.jfr"),
+            new byte[] {4, 5, 6});
+        Path recorded = pipeline.record(FinalCapture.report(IncidentIds.next(clock), clock.instant(), "test"),
+            recovered, List.of());
+        try (ZipFile zip = new ZipFile(recorded.toFile())) {
+            assertNull(zip.getEntry("recording.jfr"));
+        }
+
+        usable.set(500L);
+        assertFalse(pipeline.handle(new TriggerEvent(TriggerKind.MANUAL, "world", clock.instant(), Map.of())).isPresent());
+        assertEquals(DiskPressureStage.SKIP_CAPTURE, monitor.stage());
+        assertThrows(IOException.class, () -> pipeline.record(
+            FinalCapture.report(IncidentIds.next(clock), clock.instant(), "test"), recovered, List.of()));
+        assertEquals(2, monitor.skippedCaptures());
+        assertEquals(2, countZips(incidentDir));
+        assertTrue(monitor.render().contains("DROP_RECORDING -> SKIP_CAPTURE"));
+    }
+
+    @Test
+    void quickSuccessionStoresDeltaThatReconstructsFullRecording(@TempDir Path tempDir) throws Exception {
+        Path incidentDir = tempDir.resolve("incidents");
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        byte[] first = chunk(clock.instant().minusSeconds(60), 200);
+        byte[] second = chunk(clock.instant().minusSeconds(30), 300);
+        byte[] third = chunk(clock.instant(), 400);
+        byte[] fourth = chunk(clock.instant().plusSeconds(30), 500);
+        AtomicReference<byte[]> recording = new AtomicReference<>(concat(first, second));
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000)))
+            .dumper(target -> {
+                Files.createDirectories(target.getParent());
+                return Files.write(target, recording.get());
+            })
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(new IncidentIndex(incidentDir))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null), DiskPressurePolicy.disabled(), false, Duration.ofMinutes(5)))
+            .diskPressure(DiskPressureMonitor.disabled(clock))
+            .logger(System.getLogger("capture-test"))
+            .build();
+
+        IncidentId parent = pipeline.handle(new TriggerEvent(TriggerKind.MANUAL, "world", clock.instant(), Map.of()))
+            .orElseThrow();
+        clock.advance(Duration.ofSeconds(40));
+        recording.set(concat(concat(second, third), fourth));
+        IncidentId child = pipeline.handle(new TriggerEvent(TriggerKind.MANUAL, "world", clock.instant(), Map.of()))
+            .orElseThrow();
+
+        Path childZip = incidentDir.resolve("incident-" + child.value() + ".zip");
+        assertTrue(DeltaRecordings.isDelta(childZip));
+        try (ZipFile zip = new ZipFile(childZip.toFile())) {
+            assertNull(zip.getEntry("recording.jfr"));
+            assertEquals(third.length + fourth.length, zip.getEntry(BundleBuilder.DELTA_RECORDING).getSize());
+        }
+        assertTrue(readSeverity(incidentDir, child).contains("\"recording.parent\":\"" + parent.value() + "\""));
+
+        DeltaRecordings.Reconstruction rebuilt = DeltaRecordings.reconstruct(
+            pipeline.index(),
+            child.value(),
+            DeltaRecordings.BundleSource.files(),
+            tempDir.resolve("full.jfr")
+        );
+        assertTrue(rebuilt.complete());
+        assertEquals(List.of(child.value(), parent.value()), rebuilt.chain());
+        assertArrayEquals(concat(concat(second, third), fourth), Files.readAllBytes(rebuilt.recording()));
+    }
+
     private static int countZips(Path incidentDir) throws Exception {
         if (!Files.exists(incidentDir)) {
             return 0;
@@ -117,6 +294,58 @@ class CapturePipelineTest {
         }
     }
 
+    @Test
+    void resolutionKeepsTheTierOfABundleDownsampledSinceCapture(@TempDir Path tempDir) throws Exception {
+        Path incidentDir = tempDir.resolve("incidents");
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-12T00:00:00Z"), ZoneOffset.UTC);
+        BundleBuilder bundleBuilder = new BundleBuilder(clock);
+        IncidentIndex index = IncidentIndex.load(incidentDir, System.getLogger("capture-test"));
+
+        TriggerPolicy policy = new TriggerPolicy(Duration.ofSeconds(30), Duration.ZERO, 2000, 6000);
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, policy))
+            .dumper(new FakeRecordingDumper(concat(
+                chunk(clock.instant().minusSeconds(600), 64),
+                chunk(clock.instant().minusSeconds(20), 64)
+            )))
+            .bundleBuilder(bundleBuilder)
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(index)
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
+
+        Instant startedAt = clock.instant();
+        clock.advance(Duration.ofMillis(2100));
+        Optional<IncidentId> started = pipeline.handle(new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "world",
+            clock.instant(),
+            Map.of("stallMs", "2100", "stallId", "world@2", "stallPhase", "STARTED")
+        ));
+        assertTrue(started.isPresent());
+
+        // What a retention pass does to the bundle while the stall is still open.
+        Path bundle = incidentDir.resolve("incident-" + started.get().value() + ".zip");
+        index.put(IncidentEntry.of(bundleBuilder.downsample(bundle, Duration.ofSeconds(30)), bundle, Files.size(bundle)));
+
+        assertEquals(1, pipeline.resolveStall(new StallEpisode(
+            "world@2",
+            "world",
+            startedAt,
+            startedAt.plusMillis(3000),
+            3000,
+            false
+        )));
+
+        String json = readSeverity(incidentDir, started.get());
+        assertTrue(json.contains("\"storageTier\":\"DOWNSAMPLED\""));
+        assertTrue(json.contains("\"stall.world.durationMs\":\"3000\""));
+        assertEquals(StorageTier.DOWNSAMPLED, index.find(started.get().value()).orElseThrow().tier());
+    }
+
     private static String readSeverity(Path incidentDir, IncidentId id) throws Exception {
         Path zipPath = incidentDir.resolve("incident-" + id.value() + ".zip");
         try (ZipFile zip = new ZipFile(zipPath.toFile())) {
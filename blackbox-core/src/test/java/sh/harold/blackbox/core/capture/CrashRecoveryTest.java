@@ -0,0 +1,85 @@
+package sh.harold.blackbox.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sh.harold.blackbox.core.testutil.JfrChunks.chunk;
+import static sh.harold.blackbox.core.testutil.JfrChunks.concat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.retention.FileDeleter;
+import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionPolicy;
+import sh.harold.blackbox.core.trigger.TriggerEngine;
+import sh.harold.blackbox.core.trigger.TriggerPolicy;
+
+class CrashRecoveryTest {
+
+    @Test
+    void bundlesLeftoverChunksAndErrorLogOfPreviousProcess(@TempDir Path tempDir) throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path repositoryRoot = tempDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY);
+        Path leftover = Files.createDirectories(repositoryRoot.resolve("2026_01_10_23_00_00_4242"));
+        Path current = Files.createDirectories(repositoryRoot.resolve("2026_01_11_00_00_00_99"));
+        byte[] first = chunk(clock.instant().minusSeconds(90), 200);
+        byte[] second = chunk(clock.instant().minusSeconds(60), 300);
+        Files.write(leftover.resolve("2026_01_10_23_58_30.jfr"), first);
+        Files.write(leftover.resolve("2026_01_10_23_59_00.jfr"), concat(second, new byte[] {0x46, 0x4c}));
+        Files.write(current.resolve("2026_01_11_00_00_00.jfr"), chunk(clock.instant(), 100));
+        Path errorLogDir = Files.createDirectories(tempDir.resolve("cwd"));
+        Files.writeString(errorLogDir.resolve("hs_err_pid4242.log"), "# A fatal error has been detected");
+
+        Path incidentDir = tempDir.resolve("incidents");
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000)))
+            .dumper(target -> target)
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(new IncidentIndex(incidentDir))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
+
+        List<IncidentId> recovered = new CrashRecovery(
+            clock,
+            repositoryRoot,
+            List.of(errorLogDir),
+            pipeline,
+            tempDir.resolve("temp"),
+            System.getLogger("recovery-test")
+        ).recover(current);
+
+        assertEquals(1, recovered.size());
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(current));
+        IncidentEntry entry = pipeline.index().find(recovered.get(0).value()).orElseThrow();
+        assertEquals("PREVIOUS_CRASH", entry.trigger());
+        try (ZipFile zip = new ZipFile(entry.path().toFile())) {
+            assertArrayEquals(concat(first, second), zip.getInputStream(zip.getEntry("recording.jfr")).readAllBytes());
+            String errorLog = new String(
+                zip.getInputStream(zip.getEntry("crash/hs_err_pid4242.log")).readAllBytes(),
+                StandardCharsets.UTF_8
+            );
+            assertTrue(errorLog.startsWith("# A fatal error"));
+            String json = new String(zip.getInputStream(zip.getEntry("incident.json")).readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"crash.pid\":\"4242\""));
+        }
+    }
+}
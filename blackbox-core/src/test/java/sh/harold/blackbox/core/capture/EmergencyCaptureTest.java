@@ -0,0 +1,77 @@
+package sh.harold.blackbox.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class EmergencyCaptureTest {
+
+    @Test
+    void capturesRotateThroughFixedSlots(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-13T00:00:00Z"), ZoneOffset.UTC);
+        EmergencyCapture capture = new EmergencyCapture(
+            clock,
+            tempDir.resolve("emergency"),
+            target -> Files.write(target, new byte[] {7}),
+            2,
+            System.getLogger("emergency-test")
+        );
+
+        Path first = capture.capture("watchdog stall", "world:default", 21_000L);
+        clock.advance(Duration.ofSeconds(1));
+        Path second = capture.capture("watchdog stall", "blackbox-worker", 61_000L);
+        clock.advance(Duration.ofSeconds(1));
+        Path third = capture.capture("watchdog stall", "blackbox-scheduler", 5_000L);
+
+        assertEquals(first, third);
+        assertNotEquals(first, second);
+        assertEquals(4, count(tempDir.resolve("emergency")));
+        String note = Files.readString(tempDir.resolve("emergency").resolve("emergency-0.txt"), StandardCharsets.US_ASCII);
+        assertTrue(note.contains("probe=blackbox-scheduler\n"));
+        assertTrue(note.contains("epochMillis=" + clock.millis() + "\n"));
+    }
+
+    @Test
+    void failedDumpLeavesNoStaleRecordingInItsSlot(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-13T00:00:00Z"), ZoneOffset.UTC);
+        boolean[] fail = {false};
+        EmergencyCapture capture = new EmergencyCapture(
+            clock,
+            tempDir.resolve("emergency"),
+            target -> {
+                if (fail[0]) {
+                    throw new IOException("dump failed");
+                }
+                return Files.write(target, new byte[] {7});
+            },
+            1,
+            System.getLogger("emergency-test")
+        );
+
+        Path recording = capture.capture("watchdog stall", "world:default", 21_000L);
+        fail[0] = true;
+
+        assertNull(capture.capture("watchdog stall", "world:default", 42_000L));
+        assertFalse(Files.exists(recording));
+    }
+
+    private static long count(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
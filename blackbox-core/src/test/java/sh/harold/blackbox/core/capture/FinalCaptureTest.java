@@ -0,0 +1,220 @@
+package sh.harold.blackbox.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sh.harold.blackbox.core.testutil.JfrChunks.chunk;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.retention.FileDeleter;
+import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionPolicy;
+import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.TriggerEngine;
+import sh.harold.blackbox.core.trigger.TriggerPolicy;
+
+class FinalCaptureTest {
+
+    @Test
+    void abnormalReasonCoversStallsErrorBurstsAndSignals() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        ShutdownSignals signals = new ShutdownSignals(
+            clock,
+            new ShutdownPolicy(true, Duration.ofMinutes(2), 3, Duration.ofSeconds(3))
+        );
+
+        signals.stall();
+        assertTrue(signals.abnormalReason().orElseThrow().startsWith("stall"));
+        clock.advance(Duration.ofMinutes(3));
+        assertEquals(Optional.empty(), signals.abnormalReason());
+
+        signals.error();
+        signals.error();
+        assertEquals(Optional.empty(), signals.abnormalReason());
+        signals.error();
+        assertTrue(signals.abnormalReason().orElseThrow().startsWith("3 errors"));
+        clock.advance(Duration.ofMinutes(3));
+        assertEquals(Optional.empty(), signals.abnormalReason());
+
+        signals.signal();
+        assertTrue(signals.abnormalReason().orElseThrow().startsWith("shutdown signal"));
+    }
+
+    @Test
+    void capturesWithinBudget(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        byte[] recording = chunk(clock.instant(), 100);
+        CapturePipeline pipeline = pipeline(clock, tempDir);
+
+        FinalCapture.Outcome outcome = new FinalCapture(
+            clock,
+            pipeline,
+            target -> Files.write(target, recording),
+            tempDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY),
+            tempDir.resolve("temp"),
+            System.getLogger("final-test")
+        ).run("stall within the last 120s", Duration.ofSeconds(10), null);
+
+        assertEquals(FinalCapture.Outcome.CAPTURED, outcome);
+        IncidentEntry entry = pipeline.index().entries().get(0);
+        assertEquals("SHUTDOWN", entry.trigger());
+        try (ZipFile zip = new ZipFile(entry.path().toFile())) {
+            assertArrayEquals(recording, zip.getInputStream(zip.getEntry("recording.jfr")).readAllBytes());
+        }
+    }
+
+    @Test
+    void keepsRawChunksWhenBudgetRunsOutAndRecoversThemOnNextStartup(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path repositoryRoot = tempDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY);
+        Path current = Files.createDirectories(repositoryRoot.resolve("2026_01_10_23_00_00_4242"));
+        byte[] chunk = chunk(clock.instant().minusSeconds(30), 200);
+        Files.write(current.resolve("2026_01_10_23_59_30.jfr"), chunk);
+        CapturePipeline pipeline = pipeline(clock, tempDir);
+        CountDownLatch release = new CountDownLatch(1);
+
+        FinalCapture.Outcome outcome;
+        try {
+            outcome = new FinalCapture(
+                clock,
+                pipeline,
+                target -> {
+                    release.await();
+                    return target;
+                },
+                repositoryRoot,
+                tempDir.resolve("temp"),
+                System.getLogger("final-test")
+            ).run("shutdown signal before the server stopped", Duration.ofMillis(50), current);
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(FinalCapture.Outcome.RAW_CHUNKS, outcome);
+        assertEquals(0, pipeline.index().count());
+
+        List<IncidentId> recovered = new CrashRecovery(
+            clock,
+            repositoryRoot,
+            List.of(),
+            pipeline,
+            tempDir.resolve("temp"),
+            System.getLogger("recovery-test")
+        ).recover(current);
+
+        assertEquals(1, recovered.size());
+        IncidentEntry entry = pipeline.index().find(recovered.get(0).value()).orElseThrow();
+        assertEquals("SHUTDOWN", entry.trigger());
+        try (ZipFile zip = new ZipFile(entry.path().toFile())) {
+            assertArrayEquals(chunk, zip.getInputStream(zip.getEntry("recording.jfr")).readAllBytes());
+            String json = new String(zip.getInputStream(zip.getEntry("incident.json")).readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"shutdown.reason\":\"shutdown signal before the server stopped\""));
+        }
+    }
+
+    @Test
+    void bundleStillBeingWrittenGetsTheBudgetOnceMore(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path repositoryRoot = tempDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY);
+        Path current = Files.createDirectories(repositoryRoot.resolve("2026_01_10_23_00_00_4242"));
+        Files.write(current.resolve("2026_01_10_23_59_30.jfr"), chunk(clock.instant().minusSeconds(30), 200));
+        CapturePipeline pipeline = pipeline(clock, tempDir, (report, zip) -> {
+            try {
+                Thread.sleep(1_300L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        FinalCapture.Outcome outcome = new FinalCapture(
+            clock,
+            pipeline,
+            target -> Files.write(target, chunk(clock.instant(), 100)),
+            repositoryRoot,
+            tempDir.resolve("temp"),
+            System.getLogger("final-test")
+        ).run("shutdown signal before the server stopped", Duration.ofSeconds(1), current);
+
+        assertEquals(FinalCapture.Outcome.CAPTURED, outcome);
+        assertEquals(1, pipeline.index().count());
+        try (Stream<Path> kept = Files.list(repositoryRoot)) {
+            assertEquals(List.of(current), kept.toList());
+        }
+    }
+
+    @Test
+    void bundleStillWritingPastTheExtensionFallsBackToRawChunks(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        Path repositoryRoot = tempDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY);
+        Path current = Files.createDirectories(repositoryRoot.resolve("2026_01_10_23_00_00_4242"));
+        Files.write(current.resolve("2026_01_10_23_59_30.jfr"), chunk(clock.instant().minusSeconds(30), 200));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch notified = new CountDownLatch(1);
+        CapturePipeline pipeline = pipeline(clock, tempDir, (report, zip) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            notified.countDown();
+        });
+
+        FinalCapture.Outcome outcome;
+        try {
+            outcome = new FinalCapture(
+                clock,
+                pipeline,
+                target -> Files.write(target, chunk(clock.instant(), 100)),
+                repositoryRoot,
+                tempDir.resolve("temp"),
+                System.getLogger("final-test")
+            ).run("shutdown signal before the server stopped", Duration.ofMillis(200), current);
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(FinalCapture.Outcome.RAW_CHUNKS, outcome);
+        try (Stream<Path> kept = Files.list(repositoryRoot)) {
+            List<Path> dirs = kept.filter(path -> !path.equals(current)).toList();
+            assertEquals(1, dirs.size());
+            assertTrue(Files.exists(dirs.get(0).resolve(FinalCapture.SHUTDOWN_NOTE)));
+        }
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+    }
+
+    private static CapturePipeline pipeline(MutableClock clock, Path tempDir) {
+        return pipeline(clock, tempDir, IncidentNotifier.noop());
+    }
+
+    private static CapturePipeline pipeline(MutableClock clock, Path tempDir, IncidentNotifier notifier) {
+        return CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000)))
+            .dumper(target -> target)
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .notifier(notifier)
+            .index(new IncidentIndex(tempDir.resolve("incidents")))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
+    }
+}
@@ -0,0 +1,143 @@
+package sh.harold.blackbox.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.retention.FileDeleter;
+import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionPolicy;
+import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.TriggerEngine;
+import sh.harold.blackbox.core.trigger.TriggerPolicy;
+
+class OomCaptureTest {
+
+    @Test
+    void capturesOncePerCooldownAndBundlesLater(@TempDir Path tempDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        byte[] recording = {1, 2, 3, 4};
+        AtomicBoolean recovered = new AtomicBoolean(false);
+        OomCapture capture = new OomCapture(
+            clock,
+            tempDir.resolve(OomCapture.DIRECTORY),
+            target -> Files.write(target, recording),
+            new OomPolicy(true, 1024L, 90, Duration.ofMinutes(5)),
+            recovered::get,
+            System.getLogger("oom-test")
+        );
+        capture.install(() -> { });
+        try {
+            assertTrue(capture.armed());
+            assertNotNull(capture.capture("test exhaustion"));
+            assertFalse(capture.armed());
+            clock.advance(Duration.ofMinutes(1));
+            assertNull(capture.capture("again"));
+        } finally {
+            capture.uninstall();
+        }
+
+        Path incidentDir = tempDir.resolve("incidents");
+        CapturePipeline pipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 2000, 6000)))
+            .dumper(target -> target)
+            .bundleBuilder(new BundleBuilder(clock))
+            .retention(new RetentionManager(clock, System.getLogger("retention-test"), FileDeleter.defaultDeleter()))
+            .index(new IncidentIndex(incidentDir))
+            .tempDir(tempDir.resolve("temp"))
+            .policy(new CapturePolicy(new RetentionPolicy(0, 0L, null)))
+            .logger(System.getLogger("capture-test"))
+            .build();
+        assertEquals(List.of(), capture.bundlePending(pipeline));
+        try (Stream<Path> left = Files.list(capture.directory())) {
+            assertEquals(2L, left.count());
+        }
+
+        recovered.set(true);
+        List<IncidentId> bundled = capture.bundlePending(pipeline);
+
+        assertEquals(1, bundled.size());
+        try (Stream<Path> left = Files.list(capture.directory())) {
+            assertEquals(0L, left.count());
+        }
+        IncidentEntry entry = pipeline.index().find(bundled.get(0).value()).orElseThrow();
+        assertEquals("OUT_OF_MEMORY", entry.trigger());
+        assertEquals(Instant.parse("2026-01-11T00:00:00Z"), entry.createdAt());
+        try (ZipFile zip = new ZipFile(entry.path().toFile())) {
+            assertArrayEquals(recording, zip.getInputStream(zip.getEntry("recording.jfr")).readAllBytes());
+            String pools = new String(
+                zip.getInputStream(zip.getEntry("oom/heap-pools.txt")).readAllBytes(),
+                StandardCharsets.US_ASCII
+            );
+            assertTrue(pools.contains("reason=test exhaustion\n"));
+            assertTrue(pools.contains("heap.used="));
+        }
+    }
+
+    @Test
+    void uninstallRestoresThresholdsAndLeavesLaterHandlersInPlace(@TempDir Path tempDir) throws Exception {
+        MemoryPoolMXBean pool = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(candidate -> candidate.getType() == MemoryType.HEAP)
+            .filter(MemoryPoolMXBean::isCollectionUsageThresholdSupported)
+            .filter(candidate -> candidate.getUsage().getMax() > 4096L)
+            .findFirst()
+            .orElse(null);
+        long originalThreshold = pool == null ? 0L : pool.getCollectionUsageThreshold();
+        Thread.UncaughtExceptionHandler original = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.UncaughtExceptionHandler later = (thread, error) -> { };
+        OomCapture capture = new OomCapture(
+            new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC),
+            tempDir.resolve(OomCapture.DIRECTORY),
+            target -> Files.write(target, new byte[] {1}),
+            new OomPolicy(true, 0L, 90, Duration.ofMinutes(5)),
+            System.getLogger("oom-test")
+        );
+        try {
+            if (pool != null) {
+                pool.setCollectionUsageThreshold(4096L);
+            }
+            capture.install(() -> { });
+            assertNotEquals(original, Thread.getDefaultUncaughtExceptionHandler());
+            capture.uninstall();
+            assertSame(original, Thread.getDefaultUncaughtExceptionHandler());
+            if (pool != null) {
+                assertEquals(4096L, pool.getCollectionUsageThreshold());
+            }
+
+            capture.install(() -> { });
+            Thread.setDefaultUncaughtExceptionHandler(later);
+            capture.uninstall();
+            assertSame(later, Thread.getDefaultUncaughtExceptionHandler());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(original);
+            if (pool != null) {
+                pool.setCollectionUsageThreshold(originalThreshold);
+            }
+        }
+    }
+}
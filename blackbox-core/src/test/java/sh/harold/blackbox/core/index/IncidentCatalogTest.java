@@ -0,0 +1,100 @@
+package sh.harold.blackbox.core.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+
+class IncidentCatalogTest {
+    private static final System.Logger LOGGER = System.getLogger("catalog-test");
+
+    @Test
+    void rebuildsFromBundlesThenServesFromCatalog(@TempDir Path tempDir) throws IOException {
+        Path incidentDir = tempDir.resolve("incidents");
+        Files.createDirectories(incidentDir);
+        Path first = bundle(tempDir, incidentDir, "20260111-010000.000+0000-000001", "lobby,arena");
+        Path second = bundle(tempDir, incidentDir, "20260111-010100.000+0000-000002", "lobby");
+
+        IncidentIndex rebuilt = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals(2, rebuilt.count());
+        IncidentEntry entry = rebuilt.find("20260111-010000.000+0000-000001").orElseThrow();
+        assertEquals("Heartbeat stalled in 2/2 worlds", entry.headline());
+        assertEquals(List.of("lobby", "arena"), entry.scopes());
+        assertEquals(2500, entry.stallMs());
+        assertEquals(Severity.DEGRADED, entry.severity());
+        rebuilt.remove(second);
+        Files.delete(second);
+        rebuilt.close();
+
+        // Same size, unreadable content: only the catalog can still supply the headline.
+        Files.write(first, new byte[(int) Files.size(first)]);
+        IncidentIndex reopened = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals(1, reopened.count());
+        assertEquals(entry, reopened.find("20260111-010000.000+0000-000001").orElseThrow());
+        reopened.close();
+    }
+
+    @Test
+    void tornTailAndUnknownBundlesAreRecovered(@TempDir Path tempDir) throws IOException {
+        Path incidentDir = tempDir.resolve("incidents");
+        Files.createDirectories(incidentDir);
+        bundle(tempDir, incidentDir, "20260111-010000.000+0000-000001", "lobby");
+        IncidentCatalog.open(incidentDir, LOGGER).close();
+
+        Files.write(incidentDir.resolve(IncidentCatalog.FILE_NAME), new byte[] {0, 0, 1, 0, 7},
+            StandardOpenOption.APPEND);
+        bundle(tempDir, incidentDir, "20260111-010100.000+0000-000002", "arena");
+        Files.write(incidentDir.resolve("incident-20260111-010200.000Z-000003.zip"), new byte[] {1, 2, 3});
+
+        IncidentIndex index = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals(3, index.count());
+        assertEquals(List.of("arena"), index.find("20260111-010100.000+0000-000002").orElseThrow().scopes());
+        IncidentEntry unreadable = index.find("20260111-010200.000Z-000003").orElseThrow();
+        assertNull(unreadable.headline());
+        assertEquals(Instant.parse("2026-01-11T01:02:00Z"), unreadable.createdAt());
+        index.close();
+
+        IncidentIndex again = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals(3, again.count());
+        assertFalse(Files.exists(incidentDir.resolve(IncidentCatalog.FILE_NAME + ".tmp")));
+        assertTrue(again.totalBytes() > 0);
+        again.close();
+    }
+
+    private static Path bundle(Path tempDir, Path incidentDir, String id, String scopes) throws IOException {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T01:00:00Z"), ZoneOffset.UTC);
+        Path recording = tempDir.resolve(id + ".jfr");
+        Files.write(recording, new byte[] {1, 2, 3});
+        IncidentReport report = new IncidentReport(
+            new IncidentMetadata(
+                new IncidentId(id),
+                clock.instant(),
+                Severity.DEGRADED,
+                "HEARTBEAT_STALL",
+                "process",
+                "Heartbeat stalled in 2/2 worlds"
+            ),
+            new IncidentSummary("Unknown", List.of("Triggered by HEARTBEAT_STALL"), List.of()),
+            Map.of("scopes", scopes, "stallMs", "2500")
+        );
+        return new BundleBuilder(clock).build(report, recording, incidentDir.resolve("incident-" + id + ".zip"), List.of());
+    }
+}
@@ -0,0 +1,95 @@
+package sh.harold.blackbox.core.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.retention.FileDeleter;
+import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionPolicy;
+import sh.harold.blackbox.core.retention.RetentionStats;
+
+class IncidentIndexTest {
+
+    @Test
+    void loadOrdersByTimestampAndTracksAdds(@TempDir Path tempDir) throws IOException {
+        write(tempDir, "incident-20260111-010002.000Z-000003.zip", 30);
+        write(tempDir, "incident-20260111-010000.000Z-000001.zip", 10);
+        write(tempDir, "notes.txt", 99);
+
+        IncidentIndex index = IncidentIndex.load(tempDir, System.getLogger("index-test"));
+        assertEquals(2, index.count());
+        assertEquals(40, index.totalBytes());
+        assertEquals("20260111-010000.000Z-000001", index.entries().get(0).id());
+
+        Path bundle = write(tempDir, "incident-20260111-010005.000+0000-000004.zip", 5);
+        IncidentEntry added = index.add(report("20260111-010005.000+0000-000004"), bundle);
+
+        List<IncidentEntry> newest = index.newest(2);
+        assertEquals(added, newest.get(0));
+        assertEquals("Stall in world", newest.get(0).headline());
+        assertEquals(Severity.CRITICAL, newest.get(0).severity());
+        assertEquals(45, index.totalBytes());
+
+        Files.write(bundle, new byte[50]);
+        index.refreshSize(bundle);
+        assertEquals(90, index.totalBytes());
+        assertTrue(index.find("20260111-010005.000+0000-000004").isPresent());
+    }
+
+    @Test
+    void retentionRemovesDeletedBundlesFromIndex(@TempDir Path tempDir) throws IOException {
+        write(tempDir, "incident-20260111-010000.000Z-000001.zip", 10);
+        write(tempDir, "incident-20260111-010001.000Z-000002.zip", 10);
+        write(tempDir, "incident-20260111-010002.000Z-000003.zip", 10);
+        IncidentIndex index = IncidentIndex.load(tempDir, System.getLogger("index-test"));
+
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter()
+        );
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(1, 0L, null));
+
+        assertEquals(2, stats.deleted());
+        assertEquals(1, stats.finalCount());
+        assertEquals(10, stats.finalBytes());
+        assertEquals(1, index.count());
+        assertFalse(index.find("20260111-010000.000Z-000001").isPresent());
+        assertTrue(index.find("20260111-010002.000Z-000003").isPresent());
+    }
+
+    private static IncidentReport report(String id) {
+        return new IncidentReport(
+            new IncidentMetadata(
+                new IncidentId(id),
+                Instant.parse("2026-01-11T01:00:05Z"),
+                Severity.CRITICAL,
+                "HEARTBEAT_STALL",
+                "world",
+                "Stall in world"
+            ),
+            new IncidentSummary("Unknown", List.of(), List.of())
+        );
+    }
+
+    private static Path write(Path dir, String fileName, int bytes) throws IOException {
+        Path path = dir.resolve(fileName);
+        Files.write(path, new byte[bytes]);
+        return path;
+    }
+}
@@ -0,0 +1,72 @@
+package sh.harold.blackbox.core.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.incident.Severity;
+
+class IncidentQueryTest {
+    private static final Path DIR = Path.of("incidents");
+
+    @Test
+    void filtersByScopeSeverityAndRangeWithPaging() {
+        IncidentIndex index = sampleIndex();
+        IncidentQuery query = new IncidentQuery(
+            Set.of(Severity.CRITICAL),
+            Set.of("HEARTBEAT_STALL"),
+            "lobby",
+            Instant.parse("2026-01-11T01:00:00Z"),
+            Instant.parse("2026-01-11T03:00:00Z"),
+            IncidentQuery.Sort.LONGEST_STALL,
+            0,
+            2
+        );
+
+        QueryPage first = index.query(query);
+        assertEquals(3, first.total());
+        assertEquals(2, first.pages());
+        assertEquals(List.of("e", "c"), first.entries().stream().map(IncidentEntry::id).toList());
+
+        QueryPage second = index.query(new IncidentQuery(query.severities(), query.triggers(), query.scope(),
+            query.from(), query.to(), query.sort(), 1, 2));
+        assertEquals(List.of("b"), second.entries().stream().map(IncidentEntry::id).toList());
+
+        assertEquals(6, index.query(IncidentQuery.all()).total());
+        assertEquals(0, index.query(new IncidentQuery(Set.of(), Set.of(), "nowhere", null, null,
+            IncidentQuery.Sort.NEWEST, 0, 10)).total());
+    }
+
+    @Test
+    void aggregatesStallTimePerScopePerHour() {
+        IncidentIndex index = sampleIndex();
+        List<ScopeHourStats> stats = index.stallTimeByScopeHour(new IncidentQuery(
+            Set.of(), Set.of("HEARTBEAT_STALL"), null, null, null, IncidentQuery.Sort.NEWEST, 0, 1));
+
+        assertEquals(List.of(
+            new ScopeHourStats("lobby", Instant.parse("2026-01-11T00:00:00Z"), 1, 9000),
+            new ScopeHourStats("lobby", Instant.parse("2026-01-11T01:00:00Z"), 2, 3000),
+            new ScopeHourStats("arena", Instant.parse("2026-01-11T02:00:00Z"), 1, 4000),
+            new ScopeHourStats("lobby", Instant.parse("2026-01-11T02:00:00Z"), 2, 9000)
+        ), stats);
+    }
+
+    private static IncidentIndex sampleIndex() {
+        IncidentIndex index = new IncidentIndex(DIR);
+        index.put(entry("a", "2026-01-11T00:30:00Z", Severity.CRITICAL, "HEARTBEAT_STALL", List.of("lobby"), 9000));
+        index.put(entry("b", "2026-01-11T01:10:00Z", Severity.CRITICAL, "HEARTBEAT_STALL", List.of("lobby"), 1000));
+        index.put(entry("c", "2026-01-11T01:50:00Z", Severity.CRITICAL, "HEARTBEAT_STALL", List.of("lobby"), 2000));
+        index.put(entry("d", "2026-01-11T02:05:00Z", Severity.DEGRADED, "HEARTBEAT_STALL", List.of("lobby"), 5000));
+        index.put(entry("e", "2026-01-11T02:20:00Z", Severity.CRITICAL, "HEARTBEAT_STALL", List.of("lobby", "arena"), 4000));
+        index.put(entry("f", "2026-01-11T02:30:00Z", Severity.INFO, "MANUAL", List.of("server"), 0));
+        return index;
+    }
+
+    private static IncidentEntry entry(String id, String at, Severity severity, String trigger, List<String> scopes, long stallMs) {
+        return new IncidentEntry(id, DIR.resolve("incident-" + id + ".zip"), Instant.parse(at), 100, severity,
+            trigger, scopes.get(0), "headline " + id, scopes, stallMs, null);
+    }
+}
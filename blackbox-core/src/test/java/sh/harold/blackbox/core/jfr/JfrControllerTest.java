@@ -71,4 +71,20 @@ class JfrControllerTest {
 
         assertTrue(foundMarker, "Expected at least one marker event in the recording.");
     }
+
+    @Test
+    void dumpsLeanRecording(@TempDir Path tempDir) throws Exception {
+        assertTrue(FlightRecorder.isAvailable(), "JFR is not available in this runtime.");
+        Path dumpPath = tempDir.resolve("lean.jfr");
+
+        try (JfrController controller = new JfrController(Duration.ofSeconds(60), 16L * 1024L * 1024L,
+            "blackbox-test")) {
+            controller.start();
+            controller.startLean(Duration.ofSeconds(30));
+            controller.dumpLean(dumpPath);
+        }
+
+        assertTrue(Files.exists(dumpPath), "Expected lean JFR dump to exist.");
+        assertTrue(Files.size(dumpPath) > 0, "Expected lean JFR dump to be non-empty.");
+    }
 }
@@ -0,0 +1,106 @@
+package sh.harold.blackbox.core.memory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class HeapDumpsTest {
+    private static final long GIB = 1024L * 1024 * 1024;
+
+    @Test
+    void dumpsUnderPressureWithinTheGatesAndCoolsDown(@TempDir Path incidentDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AtomicReference<MemoryUsage> heap = new AtomicReference<>(new MemoryUsage(0L, 5 * GIB, 10 * GIB, 10 * GIB));
+        AtomicLong usable = new AtomicLong(20 * GIB);
+        AtomicInteger finished = new AtomicInteger();
+        byte[] dump = {0x1f, (byte) 0x8b, 8, 0};
+        HeapDumps dumps = new HeapDumps(
+            clock,
+            new HeapDumpPolicy(true, 90, 12 * GIB, 2 * GIB, Duration.ofHours(1)),
+            target -> Files.write(target, dump),
+            heap::get,
+            path -> usable.get(),
+            Runnable::run,
+            System.getLogger("heap-dump-test")
+        );
+
+        assertFalse(dumps.request(incidentDir, "a", (id, path) -> finished.incrementAndGet() > 0));
+
+        heap.set(new MemoryUsage(0L, 9_800_000_000L, 10 * GIB, 10 * GIB));
+        usable.set(10 * GIB);
+        assertFalse(dumps.request(incidentDir, "b", (id, path) -> finished.incrementAndGet() > 0));
+
+        usable.set(20 * GIB);
+        assertTrue(dumps.request(incidentDir, "c", (id, path) -> finished.incrementAndGet() > 0));
+        assertArrayEquals(dump, Files.readAllBytes(BundleSidecars.heapDump(incidentDir, "c")));
+        assertEquals(1, finished.get());
+        try (var files = Files.list(incidentDir)) {
+            assertEquals(1L, files.count());
+        }
+
+        clock.advance(Duration.ofMinutes(30));
+        assertFalse(dumps.request(incidentDir, "d", (id, path) -> finished.incrementAndGet() > 0));
+        clock.advance(Duration.ofMinutes(31));
+        heap.set(new MemoryUsage(0L, 13 * GIB, 14 * GIB, 14 * GIB));
+        assertFalse(dumps.request(incidentDir, "e", (id, path) -> finished.incrementAndGet() > 0));
+    }
+
+    @Test
+    void failedDumpLeavesNothingBehind(@TempDir Path incidentDir) {
+        HeapDumps dumps = new HeapDumps(
+            new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC),
+            new HeapDumpPolicy(true, 50, 12 * GIB, 0L, Duration.ZERO),
+            target -> {
+                Files.write(target, new byte[] {1, 2});
+                throw new IllegalStateException("dump failed");
+            },
+            () -> new MemoryUsage(0L, 9 * GIB, 10 * GIB, 10 * GIB),
+            path -> 100 * GIB,
+            Runnable::run,
+            System.getLogger("heap-dump-test")
+        );
+
+        assertTrue(dumps.request(incidentDir, "a", (id, path) -> true));
+
+        assertFalse(Files.exists(BundleSidecars.heapDump(incidentDir, "a")));
+        try (var files = Files.list(incidentDir)) {
+            assertEquals(0L, files.count());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void dumpOfAnIncidentRemovedMeanwhileIsDeleted(@TempDir Path incidentDir) throws Exception {
+        HeapDumps dumps = new HeapDumps(
+            new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC),
+            new HeapDumpPolicy(true, 50, 12 * GIB, 0L, Duration.ZERO),
+            target -> Files.write(target, new byte[] {1, 2}),
+            () -> new MemoryUsage(0L, 9 * GIB, 10 * GIB, 10 * GIB),
+            path -> 100 * GIB,
+            Runnable::run,
+            System.getLogger("heap-dump-test")
+        );
+
+        assertTrue(dumps.request(incidentDir, "a", (id, path) -> false));
+
+        try (var files = Files.list(incidentDir)) {
+            assertEquals(0L, files.count());
+        }
+    }
+}
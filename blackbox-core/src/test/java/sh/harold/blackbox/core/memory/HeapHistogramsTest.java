@@ -0,0 +1,127 @@
+package sh.harold.blackbox.core.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class HeapHistogramsTest {
+    private static final String BASELINE = """
+         num     #instances         #bytes  class name (module)
+        -------------------------------------------------------
+           1:          1000          64000  [B (java.base@17)
+           2:           500          12000  java.lang.String (java.base@17)
+           3:            10            320  com.example.Cache$Entry
+        Total          1510          76320
+        """;
+    private static final String GROWN = """
+         num     #instances         #bytes  class name (module)
+        -------------------------------------------------------
+           1:         90000        5760000  com.example.Cache$Entry
+           2:          1200          80000  [B (java.base@17)
+           3:           400           9600  java.lang.String (java.base@17)
+        Total         91600        5849600
+        """;
+
+    @Test
+    void writesHistogramAndGrowthSinceBaselineNextToCriticalIncidents(@TempDir Path incidentDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AtomicReference<String> next = new AtomicReference<>(BASELINE);
+        List<String> written = new ArrayList<>();
+        HeapHistograms histograms = new HeapHistograms(
+            clock,
+            HeapHistogramPolicy.defaults(),
+            next::get,
+            () -> 40,
+            Runnable::run,
+            System.getLogger("histo-test")
+        );
+
+        assertFalse(histograms.request(incidentDir, "a", Severity.DEGRADED, (id, path) -> written.add(id)));
+        histograms.sampleBaseline();
+        clock.advance(Duration.ofMinutes(10));
+        next.set(GROWN);
+
+        assertTrue(histograms.request(incidentDir, "b", Severity.CRITICAL, (id, path) -> written.add(id)));
+
+        assertEquals(List.of("b"), written);
+        List<String> lines = Files.readAllLines(BundleSidecars.heapHistogram(incidentDir, "b"));
+        assertTrue(lines.get(0).startsWith("# takenAt=2026-01-11T00:10:00Z"));
+        assertTrue(lines.get(1).contains("(600s apart)"));
+        assertEquals("+5759680\t+89990\t5760000\t90000\tcom.example.Cache$Entry", lines.get(4));
+        assertEquals("+16000\t+200\t80000\t1200\t[B (java.base@17)", lines.get(5));
+        assertEquals("total\t+5773280\t+90090", lines.get(6));
+        assertTrue(lines.contains("   1:         90000        5760000  com.example.Cache$Entry"));
+        try (var files = Files.list(incidentDir)) {
+            assertEquals(1L, files.count());
+        }
+    }
+
+    @Test
+    void histogramOfADeletedIncidentIsDeleted(@TempDir Path incidentDir) {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeapHistograms histograms = new HeapHistograms(
+            clock,
+            HeapHistogramPolicy.defaults(),
+            () -> BASELINE,
+            () -> 40,
+            Runnable::run,
+            System.getLogger("histo-test")
+        );
+
+        assertTrue(histograms.request(incidentDir, "gone", Severity.CRITICAL, (id, path) -> false));
+
+        assertFalse(Files.exists(BundleSidecars.heapHistogram(incidentDir, "gone")));
+    }
+
+    @Test
+    void heapPressureQualifiesAndSlowHistogramsAreAbandoned(@TempDir Path incidentDir) throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        CountDownLatch release = new CountDownLatch(1);
+        HeapHistograms histograms = new HeapHistograms(
+            clock,
+            new HeapHistogramPolicy(true, Duration.ofMillis(50), Duration.ZERO, 85, 10),
+            () -> {
+                release.await();
+                return BASELINE;
+            },
+            () -> 90,
+            Runnable::run,
+            System.getLogger("histo-test")
+        );
+
+        assertTrue(histograms.wanted(Severity.INFO));
+        try {
+            assertTrue(histograms.request(incidentDir, "a", Severity.INFO, (id, path) -> true));
+            assertTrue(histograms.request(incidentDir, "b", Severity.INFO, (id, path) -> true));
+            try (var files = Files.list(incidentDir)) {
+                assertEquals(0L, files.count());
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void parseMergesDuplicateClassNames() {
+        Map<String, HeapHistograms.ClassRow> rows = HeapHistograms.parse(BASELINE + "   4:   5   100  [B (java.base@17)\n");
+
+        assertEquals(3, rows.size());
+        assertEquals(new HeapHistograms.ClassRow(1005L, 64100L), rows.get("[B (java.base@17)"));
+    }
+}
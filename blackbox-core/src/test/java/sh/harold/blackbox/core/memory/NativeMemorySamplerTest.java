@@ -0,0 +1,146 @@
+package sh.harold.blackbox.core.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.bundle.BundleAttachment;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class NativeMemorySamplerTest {
+    private static final long MIB = 1024L * 1024;
+
+    @Test
+    void keepsTheNewestSamplesAndAttachesGrowthAndNmtDiff() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        List<String> commands = new ArrayList<>();
+        long[] rss = {100 * MIB};
+        NativeMemorySampler.Source source = new NativeMemorySampler.Source() {
+            @Override
+            public NativeMemorySampler.Sample read(Instant at) {
+                rss[0] += 50 * MIB;
+                return new NativeMemorySampler.Sample(
+                    at, rss[0], rss[0] - 10 * MIB, 10 * MIB, rss[0], 0L, 40L, rss[0] / 2, 0L, 64 * MIB, 32 * MIB
+                );
+            }
+
+            @Override
+            public String trackingLevel() {
+                return "summary";
+            }
+
+            @Override
+            public String nativeMemory(String command) {
+                commands.add(command);
+                return "Native Memory Tracking:\n(" + command + ")\n";
+            }
+        };
+        NativeMemorySampler sampler = new NativeMemorySampler(
+            clock,
+            new NativeMemoryPolicy(true, Duration.ofSeconds(30), 3),
+            source,
+            System.getLogger("native-memory-test")
+        );
+
+        for (int i = 0; i < 4; i++) {
+            sampler.sample();
+            clock.advance(Duration.ofSeconds(30));
+        }
+        List<BundleAttachment> attachments = sampler.attachments();
+
+        List<NativeMemorySampler.Sample> samples = sampler.samples();
+        assertEquals(3, samples.size());
+        assertEquals(Instant.parse("2026-01-11T00:01:00Z"), samples.get(0).at());
+        assertEquals(350 * MIB, sampler.latest().rssBytes());
+        assertEquals(List.of("baseline", "summary.diff"), commands);
+
+        assertEquals(2, attachments.size());
+        assertEquals(NativeMemorySampler.SERIES_ENTRY, attachments.get(0).pathInZip());
+        List<String> lines = text(attachments.get(0)).lines().toList();
+        assertEquals("# over 60s: rss +" + 100 * MIB + " rssOutsideHeap +" + 100 * MIB + " direct +" + 50 * MIB
+            + " nonHeapCommitted 0 threads 0", lines.get(1));
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(5).startsWith("2026-01-11T00:02:00Z\t" + 350 * MIB + "\t"));
+        assertEquals(NativeMemorySampler.NMT_ENTRY, attachments.get(1).pathInZip());
+        assertTrue(text(attachments.get(1)).contains("(summary.diff)"));
+    }
+
+    @Test
+    void failedBaselineIsRetriedOnTheNextSample() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        List<String> commands = new ArrayList<>();
+        NativeMemorySampler.Source source = new NativeMemorySampler.Source() {
+            @Override
+            public NativeMemorySampler.Sample read(Instant at) {
+                return new NativeMemorySampler.Sample(at, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L);
+            }
+
+            @Override
+            public String trackingLevel() {
+                return "summary";
+            }
+
+            @Override
+            public String nativeMemory(String command) {
+                commands.add(command);
+                if (commands.size() == 1) {
+                    throw new IllegalStateException("diagnostic command busy");
+                }
+                return "";
+            }
+        };
+        NativeMemorySampler sampler = new NativeMemorySampler(
+            clock,
+            new NativeMemoryPolicy(true, Duration.ofSeconds(30), 3),
+            source,
+            System.getLogger("native-memory-test")
+        );
+
+        for (int i = 0; i < 3; i++) {
+            sampler.sample();
+            clock.advance(Duration.ofSeconds(30));
+        }
+
+        assertEquals(List.of("baseline", "baseline"), commands);
+    }
+
+    @Test
+    void disabledSamplerKeepsNothing() {
+        NativeMemorySampler sampler = new NativeMemorySampler(
+            new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC),
+            NativeMemoryPolicy.disabled(),
+            NativeMemorySampler.Source.platform(),
+            System.getLogger("native-memory-test")
+        );
+
+        sampler.sample();
+
+        assertEquals(List.of(), sampler.samples());
+        assertEquals(List.of(), sampler.attachments());
+    }
+
+    @Test
+    void parseProcConvertsKilobytesAndSkipsOtherLines() {
+        Map<String, Long> values = NativeMemorySampler.parseProc("""
+            55d4c0a00000-7ffd1c9fe000 ---p 00000000 00:00 0                          [rollup]
+            Name:\tjava
+            VmRSS:\t  204800 kB
+            Threads:\t42
+            Pss:                1024 kB
+            Cpus_allowed_list:\t0-7
+            """);
+
+        assertEquals(Map.of("VmRSS", 204800L * 1024, "Threads", 42L, "Pss", 1024L * 1024), values);
+    }
+
+    private static String text(BundleAttachment attachment) {
+        return new String(attachment.data(), StandardCharsets.UTF_8);
+    }
+}
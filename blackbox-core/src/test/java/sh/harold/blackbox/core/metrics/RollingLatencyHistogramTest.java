@@ -0,0 +1,55 @@
+package sh.harold.blackbox.core.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class RollingLatencyHistogramTest {
+
+    @Test
+    void percentilesStayWithinBucketError() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(clock);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1_000_000L);
+        }
+
+        LatencyStats stats = histogram.snapshot(1);
+        assertEquals(1000, stats.count());
+        assertWithin(500_000L, stats.p50Micros());
+        assertWithin(990_000L, stats.p99Micros());
+        assertEquals(1_000_000L, stats.maxMicros());
+    }
+
+    @Test
+    void rotatesPerMinuteAndExpiresAfterAnHour() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(clock);
+
+        histogram.recordNanos(50_000_000L);
+        clock.advance(Duration.ofMinutes(1));
+        histogram.recordNanos(1_000_000L);
+
+        assertEquals(1, histogram.snapshot(1).count());
+        assertEquals(2, histogram.snapshot(60).count());
+        assertEquals(50_000L, histogram.snapshot(60).maxMicros());
+
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(1, histogram.snapshot(60).count());
+
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(0, histogram.snapshot(60).count());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        long tolerance = expected / 16 + 1;
+        assertTrue(Math.abs(expected - actual) <= tolerance,
+            "Expected ~" + expected + " but was " + actual);
+    }
+}
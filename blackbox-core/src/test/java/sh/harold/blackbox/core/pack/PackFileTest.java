@@ -0,0 +1,57 @@
+package sh.harold.blackbox.core.pack;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PackFileTest {
+
+    @Test
+    void tornTailAndRemovalsSurviveReopenWithoutIndex(@TempDir Path tempDir) throws IOException {
+        Path packPath = tempDir.resolve("pack-000001" + PackFile.SUFFIX);
+        try (PackFile pack = PackFile.open(packPath)) {
+            pack.append("a.zip", file(tempDir, "a", 10));
+            pack.append("b.zip", file(tempDir, "b", 20));
+            pack.append("c.zip", file(tempDir, "c", 30));
+            pack.remove("b.zip");
+            pack.sync();
+            pack.append("d.zip", file(tempDir, "d", 40));
+        }
+        try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        Files.delete(packPath.resolveSibling(packPath.getFileName() + PackFile.INDEX_SUFFIX));
+
+        try (PackFile pack = PackFile.open(packPath)) {
+            assertEquals(List.of("a.zip", "c.zip"), List.copyOf(pack.entries().keySet()));
+            assertFalse(pack.contains("d.zip"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pack.copyTo("c.zip", out);
+            assertArrayEquals(Files.readAllBytes(tempDir.resolve("c")), out.toByteArray());
+
+            pack.compact();
+            assertEquals(40, pack.liveBytes());
+            out.reset();
+            pack.copyTo("a.zip", out);
+            assertArrayEquals(Files.readAllBytes(tempDir.resolve("a")), out.toByteArray());
+        }
+    }
+
+    private static Path file(Path dir, String name, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (name.charAt(0) + i);
+        }
+        return Files.write(dir.resolve(name), bytes);
+    }
+}
@@ -0,0 +1,123 @@
+package sh.harold.blackbox.core.retention;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.index.IncidentCatalog;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.pack.PackFile;
+
+class PackStoreTest {
+    private static final System.Logger LOGGER = System.getLogger("pack-test");
+    private static final Clock NOW = Clock.fixed(Instant.parse("2026-01-20T00:00:00Z"), ZoneOffset.UTC);
+    private static final String OLD_1 = "20260110-010000.000+0000-000001";
+    private static final String OLD_2 = "20260111-010000.000+0000-000002";
+    private static final String RECENT = "20260119-010000.000+0000-000003";
+
+    @Test
+    void packsOldBundlesAndExtractsThemAfterReopen(@TempDir Path tempDir) throws IOException {
+        Path incidentDir = tempDir.resolve("incidents");
+        Files.createDirectories(incidentDir);
+        Path first = bundle(tempDir, incidentDir, OLD_1, Instant.parse("2026-01-10T01:00:00Z"));
+        byte[] original = Files.readAllBytes(first);
+        bundle(tempDir, incidentDir, OLD_2, Instant.parse("2026-01-11T01:00:00Z"));
+        Path recent = bundle(tempDir, incidentDir, RECENT, Instant.parse("2026-01-19T01:00:00Z"));
+
+        IncidentIndex index = IncidentCatalog.open(incidentDir, LOGGER);
+        PackStore packs = new PackStore(incidentDir, PackStore.DEFAULT_MAX_PACK_BYTES, LOGGER);
+        RetentionStats stats = manager(packs).enforce(index, packAfter(Duration.ofDays(3), 0));
+
+        assertEquals(2, stats.packed());
+        assertEquals(0, stats.deleted());
+        assertFalse(Files.exists(first));
+        assertTrue(Files.exists(recent));
+        assertEquals(1, packs.packCount());
+        IncidentEntry packed = index.find(OLD_1).orElseThrow();
+        assertTrue(PackFile.isPacked(packed.path()));
+        assertArrayEquals(original, Files.readAllBytes(packs.extract(index, OLD_1, tempDir.resolve("out"))));
+        index.close();
+        packs.close();
+
+        IncidentIndex reopened = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals(3, reopened.count());
+        assertEquals(packed, reopened.find(OLD_1).orElseThrow());
+        reopened.close();
+
+        Files.delete(incidentDir.resolve(IncidentCatalog.FILE_NAME));
+        IncidentIndex rebuilt = IncidentCatalog.open(incidentDir, LOGGER);
+        assertEquals("Heartbeat stalled", rebuilt.find(OLD_2).orElseThrow().headline());
+        assertEquals(packed.path(), rebuilt.find(OLD_1).orElseThrow().path());
+        PackStore again = new PackStore(incidentDir, PackStore.DEFAULT_MAX_PACK_BYTES, LOGGER);
+        assertArrayEquals(original, Files.readAllBytes(again.extract(rebuilt, OLD_1, tempDir.resolve("again"))));
+        again.close();
+        rebuilt.close();
+    }
+
+    @Test
+    void evictingEveryPackedBundleDeletesThePack(@TempDir Path tempDir) throws IOException {
+        Path incidentDir = tempDir.resolve("incidents");
+        Files.createDirectories(incidentDir);
+        bundle(tempDir, incidentDir, OLD_1, Instant.parse("2026-01-10T01:00:00Z"));
+        bundle(tempDir, incidentDir, OLD_2, Instant.parse("2026-01-11T01:00:00Z"));
+        bundle(tempDir, incidentDir, RECENT, Instant.parse("2026-01-19T01:00:00Z"));
+
+        IncidentIndex index = IncidentCatalog.open(incidentDir, LOGGER);
+        PackStore packs = new PackStore(incidentDir, PackStore.DEFAULT_MAX_PACK_BYTES, LOGGER);
+        RetentionManager manager = manager(packs);
+        manager.enforce(index, packAfter(Duration.ofDays(3), 0));
+        assertEquals(1, packs.packCount());
+
+        RetentionStats stats = manager.enforce(index, packAfter(Duration.ofDays(3), 2));
+        assertEquals(1, stats.deleted());
+        assertTrue(index.find(OLD_1).isEmpty());
+        assertEquals(1, packs.packCount());
+
+        stats = manager.enforce(index, packAfter(Duration.ofDays(3), 1));
+        assertEquals(1, stats.deleted());
+        assertEquals(List.of(RECENT), index.entries().stream().map(IncidentEntry::id).toList());
+        assertEquals(0, packs.packCount());
+        packs.close();
+        index.close();
+    }
+
+    private static RetentionManager manager(PackStore packs) {
+        return new RetentionManager(NOW, LOGGER, FileDeleter.defaultDeleter(), BundleDownsampler.none(), packs);
+    }
+
+    private static RetentionPolicy packAfter(Duration packAfter, int maxCount) {
+        return new RetentionPolicy(maxCount, 0L, null, null, Map.of(), packAfter);
+    }
+
+    private static Path bundle(Path tempDir, Path incidentDir, String id, Instant createdAt) throws IOException {
+        Clock clock = Clock.fixed(createdAt, ZoneOffset.UTC);
+        Path recording = tempDir.resolve(id + ".jfr");
+        Files.write(recording, new byte[] {1, 2, 3});
+        IncidentReport report = new IncidentReport(
+            new IncidentMetadata(new IncidentId(id), createdAt, Severity.DEGRADED, "HEARTBEAT_STALL", "lobby",
+                "Heartbeat stalled"),
+            new IncidentSummary("Unknown", List.of("Triggered by HEARTBEAT_STALL"), List.of()),
+            Map.of()
+        );
+        return new BundleBuilder(clock).build(report, recording, incidentDir.resolve("incident-" + id + ".zip"), List.of());
+    }
+}
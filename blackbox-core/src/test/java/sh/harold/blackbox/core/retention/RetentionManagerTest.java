@@ -1,17 +1,38 @@
 package sh.harold.blackbox.core.retention;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static sh.harold.blackbox.core.testutil.JfrChunks.chunk;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.bundle.BlobStore;
+import sh.harold.blackbox.core.bundle.BundleAttachment;
+import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.BundleSidecars;
+import sh.harold.blackbox.core.bundle.DeltaRecordings;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.IncidentMetadata;
+import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.incident.IncidentSummary;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.index.StorageTier;
 
 class RetentionManagerTest {
 
@@ -89,6 +110,56 @@ class RetentionManagerTest {
         assertTrue(stats.finalBytes() <= 250L);
     }
 
+    @Test
+    void enforce_maxTotalBytes_countsAndDeletesSidecarsWithTheirBundle(@TempDir Path tempDir) throws IOException {
+        createIncidentZip(tempDir, "incident-20260111-010000.000Z-000001.zip", 100);
+        createIncidentZip(tempDir, "incident-20260111-010001.000Z-000002.zip", 100);
+        createIncidentZip(tempDir, "incident-20260111-010002.000Z-000003.zip", 100);
+        Path heapDump = BundleSidecars.heapDump(tempDir, "20260111-010001.000Z-000002");
+        Files.write(heapDump, new byte[200]);
+
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter()
+        );
+
+        RetentionStats stats = manager.enforce(tempDir, new RetentionPolicy(0, 250L, null));
+
+        assertEquals(2, stats.deleted());
+        assertEquals(400L, stats.bytesDeleted());
+        assertTrue(!Files.exists(heapDump));
+        assertTrue(Files.exists(tempDir.resolve("incident-20260111-010002.000Z-000003.zip")));
+    }
+
+    @Test
+    void sidecars_areListedOnceAndOrphansDeleted(@TempDir Path tempDir) throws IOException {
+        createIncidentZip(tempDir, "incident-20260111-010000.000Z-000001.zip", 100);
+        createIncidentZip(tempDir, "incident-20260111-010001.000Z-000002.zip", 100);
+        Path orphan = BundleSidecars.heapDump(tempDir, "20260111-005959.000Z-000000");
+        Files.write(orphan, new byte[50]);
+        IncidentIndex index = IncidentIndex.load(tempDir, System.getLogger("retention-test"));
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter()
+        );
+
+        assertEquals(0, manager.enforce(index, new RetentionPolicy(0, 250L, null)).deleted());
+        assertTrue(!Files.exists(orphan));
+
+        // Later sidecars count once reported, not by listing the directory again.
+        Path heapDump = BundleSidecars.heapDump(tempDir, "20260111-010000.000Z-000001");
+        Files.write(heapDump, new byte[100]);
+        assertEquals(0, manager.enforce(index, new RetentionPolicy(0, 250L, null)).deleted());
+        manager.sidecarWritten("20260111-010000.000Z-000001", 100L);
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(0, 250L, null));
+
+        assertEquals(1, stats.deleted());
+        assertEquals(200L, stats.bytesDeleted());
+        assertTrue(!Files.exists(heapDump));
+    }
+
     @Test
     void partialFailure_doesNotDeleteNewest(@TempDir Path tempDir) {
         Path oldest = createIncidentZip(tempDir, "incident-20260111-010000.000Z-000001.zip", 10);
@@ -118,6 +189,255 @@ class RetentionManagerTest {
         assertTrue(stats.deleteFailures() > 0);
     }
 
+    @Test
+    void downsample_keepsOnlyChunksAroundTheStall(@TempDir Path tempDir) throws IOException {
+        Instant createdAt = Instant.parse("2026-01-09T01:00:00Z");
+        Path recording = tempDir.resolve("recording.jfr");
+        try (var out = Files.newOutputStream(recording)) {
+            out.write(chunk(createdAt.minusSeconds(300), 100));
+            out.write(chunk(createdAt.minusSeconds(60), 200));
+            out.write(chunk(createdAt.minusSeconds(5), 300));
+        }
+        Path incidentDir = tempDir.resolve("incidents");
+        String id = "20260109-010000.000+0000-000001";
+        IncidentReport report = new IncidentReport(
+            new IncidentMetadata(new IncidentId(id), createdAt, Severity.DEGRADED, "HEARTBEAT_STALL", "lobby", "Stall"),
+            new IncidentSummary("Unknown", List.of(), List.of()),
+            Map.of("stallMs", "20000")
+        );
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC);
+        BundleBuilder builder = new BundleBuilder(clock);
+        Path bundle = builder.build(report, recording, incidentDir.resolve("incident-" + id + ".zip"), List.of());
+        createIncidentZip(incidentDir, "incident-20260111-015900.000Z-000002.zip", 10);
+        IncidentIndex index = IncidentIndex.load(incidentDir, System.getLogger("retention-test"));
+        long before = index.totalBytes();
+
+        RetentionManager manager = new RetentionManager(
+            clock,
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter(),
+            BundleDownsampler.using(builder, Duration.ofSeconds(10))
+        );
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(0, 0L, Duration.ofDays(7), Duration.ofDays(1)));
+
+        assertEquals(1, stats.downsampled());
+        assertEquals(before - stats.bytesReclaimed(), index.totalBytes());
+        assertEquals(StorageTier.DOWNSAMPLED, index.find(id).orElseThrow().tier());
+        try (ZipFile zip = new ZipFile(bundle.toFile())) {
+            assertNull(zip.getEntry("recording.jfr"));
+            byte[] window = zip.getInputStream(zip.getEntry("recording-window.jfr")).readAllBytes();
+            assertEquals(500, window.length);
+            assertTrue(new String(zip.getInputStream(zip.getEntry("incident.json")).readAllBytes(), StandardCharsets.UTF_8)
+                .contains("\"storageTier\":\"DOWNSAMPLED\""));
+        }
+        assertEquals(0, manager.enforce(index, new RetentionPolicy(0, 0L, null, Duration.ofDays(1))).downsampled());
+    }
+
+    @Test
+    void downsample_leavesDeltaCapturesFull(@TempDir Path tempDir) throws IOException {
+        Instant createdAt = Instant.parse("2026-01-09T01:00:00Z");
+        Path recording = tempDir.resolve("recording.jfr");
+        try (var out = Files.newOutputStream(recording)) {
+            out.write(chunk(createdAt.minusSeconds(300), 100));
+            out.write(chunk(createdAt.minusSeconds(5), 300));
+        }
+        Path incidentDir = tempDir.resolve("incidents");
+        String id = "20260109-010000.000+0000-000002";
+        IncidentReport report = new IncidentReport(
+            new IncidentMetadata(new IncidentId(id), createdAt, Severity.DEGRADED, "HEARTBEAT_STALL", "lobby", "Stall"),
+            new IncidentSummary("Unknown", List.of(), List.of()),
+            Map.of(
+                "stallMs", "20000",
+                DeltaRecordings.PARENT_ATTR, "20260109-005500.000+0000-000001",
+                DeltaRecordings.FROM_ATTR, createdAt.minusSeconds(600).toString()
+            )
+        );
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC);
+        BundleBuilder builder = new BundleBuilder(clock);
+        Path bundle = builder.build(report, recording, incidentDir.resolve("incident-" + id + ".zip"), List.of());
+        createIncidentZip(incidentDir, "incident-20260111-015900.000Z-000003.zip", 10);
+        IncidentIndex index = IncidentIndex.load(incidentDir, System.getLogger("retention-test"));
+
+        RetentionManager manager = new RetentionManager(
+            clock,
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter(),
+            BundleDownsampler.using(builder, Duration.ofSeconds(10))
+        );
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(0, 0L, Duration.ofDays(7), Duration.ofDays(1)));
+
+        assertEquals(0, stats.downsampled());
+        assertEquals(StorageTier.FULL, index.find(id).orElseThrow().tier());
+        try (ZipFile zip = new ZipFile(bundle.toFile())) {
+            assertEquals(400, zip.getInputStream(zip.getEntry(BundleBuilder.DELTA_RECORDING)).readAllBytes().length);
+            assertNull(zip.getEntry("recording-window.jfr"));
+            assertTrue(!new String(zip.getInputStream(zip.getEntry("incident.json")).readAllBytes(), StandardCharsets.UTF_8)
+                .contains("storageTier"));
+        }
+    }
+
+    @Test
+    void eviction_keepsDeltaParentsUntilTheirChildrenAreGone(@TempDir Path tempDir) throws IOException {
+        Instant at = Instant.parse("2026-01-09T01:00:00Z");
+        Path incidentDir = tempDir.resolve("incidents");
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC);
+        BundleBuilder builder = new BundleBuilder(clock);
+        IncidentIndex index = new IncidentIndex(incidentDir);
+
+        Path parentRecording = tempDir.resolve("parent.jfr");
+        try (var out = Files.newOutputStream(parentRecording)) {
+            out.write(chunk(at.minusSeconds(300), 100));
+            out.write(chunk(at.minusSeconds(60), 200));
+        }
+        Path deltaRecording = tempDir.resolve("delta.jfr");
+        Files.write(deltaRecording, chunk(at.plusSeconds(90), 300));
+        String parent = addBundle(index, builder, incidentDir, 1, Severity.INFO, Map.of(), parentRecording);
+        addBundle(index, builder, incidentDir, 2, Severity.DEGRADED, Map.of(), null);
+        String child = addBundle(index, builder, incidentDir, 3, Severity.CRITICAL, Map.of(
+            DeltaRecordings.PARENT_ATTR, parent,
+            DeltaRecordings.FROM_ATTR, at.minusSeconds(300).toString()
+        ), deltaRecording);
+        addBundle(index, builder, incidentDir, 4, Severity.CRITICAL, Map.of(), null);
+        RetentionManager manager = new RetentionManager(
+            clock,
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter()
+        );
+
+        assertEquals(1, manager.enforce(index, new RetentionPolicy(3, 0L, null)).deleted());
+        assertTrue(index.find(parent).isPresent());
+        DeltaRecordings.Reconstruction rebuilt = DeltaRecordings.reconstruct(
+            index, child, DeltaRecordings.BundleSource.files(), tempDir.resolve("rebuilt.jfr"));
+        assertTrue(rebuilt.complete());
+        assertEquals(List.of(child, parent), rebuilt.chain());
+        assertEquals(600L, Files.size(rebuilt.recording()));
+
+        manager.enforce(index, new RetentionPolicy(2, 0L, null));
+        assertTrue(index.find(child).isEmpty());
+        assertTrue(index.find(parent).isPresent());
+
+        manager.enforce(index, new RetentionPolicy(1, 0L, null));
+        assertTrue(index.find(parent).isEmpty());
+    }
+
+    @Test
+    void blobSweep_onlyReadsBundlesThatChangedSinceTheLastPass(@TempDir Path tempDir) throws IOException {
+        Path incidentDir = tempDir.resolve("incidents");
+        BlobStore blobs = new BlobStore(tempDir.resolve("blobs"), Clock.fixed(Instant.parse("2026-01-09T00:00:00Z"),
+            ZoneOffset.UTC));
+        BundleBuilder builder = new BundleBuilder(Clock.systemUTC(), System.getLogger("retention-test"), blobs, true);
+        IncidentIndex index = new IncidentIndex(incidentDir);
+        List<String> hashes = new ArrayList<>();
+        for (int seq = 1; seq <= 3; seq++) {
+            byte[] extra = new byte[2048];
+            Arrays.fill(extra, (byte) seq);
+            hashes.add(blobs.put(extra));
+            String id = String.format("20260109-01%02d00.000+0000-%06d", seq, seq);
+            IncidentReport report = new IncidentReport(
+                new IncidentMetadata(new IncidentId(id), Instant.parse("2026-01-09T01:00:00Z").plusSeconds(60L * seq),
+                    Severity.INFO, "MANUAL", "lobby", "Manual " + seq),
+                new IncidentSummary("Unknown", List.of(), List.of()),
+                Map.of()
+            );
+            Path bundle = builder.build(report, null, incidentDir.resolve("incident-" + id + ".zip"),
+                List.of(new BundleAttachment("extras/data.bin", extra)));
+            index.add(report, bundle);
+        }
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            FileDeleter.defaultDeleter(),
+            BundleDownsampler.none(),
+            null,
+            blobs
+        );
+        assertEquals(0L, manager.enforce(index, new RetentionPolicy(0, 0L, null)).blobBytesSwept());
+
+        // A bundle that has not changed since the last pass is not read again.
+        Path untouched = index.entries().get(1).path();
+        Files.write(untouched, new byte[(int) Files.size(untouched)]);
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(2, 0L, null));
+
+        assertEquals(1, stats.deleted());
+        assertEquals(2048L, stats.blobBytesSwept());
+        assertTrue(!blobs.contains(hashes.get(0)));
+        assertTrue(blobs.contains(hashes.get(1)));
+        assertTrue(blobs.contains(hashes.get(2)));
+    }
+
+    @Test
+    void maxCount_evictsLowSeverityAndRepeatsBeforeOlderCriticals(@TempDir Path tempDir) {
+        IncidentIndex index = new IncidentIndex(tempDir);
+        index.put(entry(tempDir, 1, Severity.CRITICAL, "a"));
+        index.put(entry(tempDir, 2, Severity.INFO, "b"));
+        index.put(entry(tempDir, 3, Severity.DEGRADED, "c"));
+        index.put(entry(tempDir, 4, Severity.INFO, "b"));
+        index.put(entry(tempDir, 5, Severity.DEGRADED, "c"));
+        index.put(entry(tempDir, 6, Severity.CRITICAL, "d"));
+        List<Integer> deleted = new ArrayList<>();
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            path -> deleted.add(Integer.parseInt(path.getFileName().toString().substring(30, 36)))
+        );
+
+        RetentionStats stats = manager.enforce(index, new RetentionPolicy(3, 0L, null));
+
+        assertEquals(List.of(2, 4, 3), deleted);
+        assertEquals(3, stats.finalCount());
+    }
+
+    @Test
+    void severityLimits_applyOnlyToTheirSeverity(@TempDir Path tempDir) {
+        IncidentIndex index = new IncidentIndex(tempDir);
+        index.put(entry(tempDir, 1, Severity.CRITICAL, "a"));
+        index.put(entry(tempDir, 2, Severity.INFO, "b"));
+        index.put(entry(tempDir, 3, Severity.INFO, "c"));
+        index.put(entry(tempDir, 4, Severity.INFO, "d"));
+        index.put(entry(tempDir, 5, Severity.DEGRADED, "e"));
+        List<Integer> deleted = new ArrayList<>();
+        RetentionManager manager = new RetentionManager(
+            Clock.fixed(Instant.parse("2026-01-11T01:05:00Z"), ZoneOffset.UTC),
+            System.getLogger("retention-test"),
+            path -> deleted.add(Integer.parseInt(path.getFileName().toString().substring(30, 36)))
+        );
+        RetentionPolicy policy = new RetentionPolicy(0, 0L, null, null, Map.of(
+            Severity.INFO, new SeverityLimits(1, 0L, null),
+            Severity.CRITICAL, new SeverityLimits(0, 0L, Duration.ofMinutes(1))
+        ));
+
+        manager.enforce(index, policy);
+
+        assertEquals(List.of(2, 3, 1), deleted);
+        assertEquals(2, index.count());
+    }
+
+    private static String addBundle(
+        IncidentIndex index,
+        BundleBuilder builder,
+        Path dir,
+        int seq,
+        Severity severity,
+        Map<String, String> attrs,
+        Path recording
+    ) throws IOException {
+        String id = String.format("20260109-01%02d00.000+0000-%06d", seq, seq);
+        IncidentReport report = new IncidentReport(
+            new IncidentMetadata(new IncidentId(id), Instant.parse("2026-01-09T01:00:00Z").plusSeconds(60L * (seq - 1)),
+                severity, "HEARTBEAT_STALL", "lobby", "Stall " + seq),
+            new IncidentSummary("Unknown", List.of(), List.of()),
+            attrs
+        );
+        index.add(report, builder.build(report, recording, dir.resolve("incident-" + id + ".zip"), List.of()));
+        return id;
+    }
+
+    private static IncidentEntry entry(Path dir, int seq, Severity severity, String fingerprint) {
+        String id = String.format("20260111-0100%02d.000Z-%06d", seq, seq);
+        return new IncidentEntry(id, dir.resolve("incident-" + id + ".zip"), Instant.parse("2026-01-11T01:00:00Z").plusSeconds(seq),
+            100L, severity, "HEARTBEAT_STALL", "lobby", "Stall", List.of("lobby"), 0L, fingerprint);
+    }
+
     private static Path createIncidentZip(Path dir, String fileName, int bytes) {
         try {
             Path path = dir.resolve(fileName);
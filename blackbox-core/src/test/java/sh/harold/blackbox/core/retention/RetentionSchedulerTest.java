@@ -0,0 +1,74 @@
+package sh.harold.blackbox.core.retention;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+
+class RetentionSchedulerTest {
+
+    @Test
+    void burstOfRequestsRunsOnePassThenWaitsForTheInterval(@TempDir Path tempDir) throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-11T02:00:00Z"), ZoneOffset.UTC);
+        IncidentIndex index = new IncidentIndex(tempDir);
+        for (int i = 1; i <= 4; i++) {
+            String id = "20260111-01000" + i + ".000Z-00000" + i;
+            index.put(new IncidentEntry(id, tempDir.resolve("incident-" + id + ".zip"),
+                Instant.parse("2026-01-11T01:00:00Z").plusSeconds(i), 10L, Severity.INFO, "MANUAL", "world", "x"));
+        }
+        AtomicInteger deletes = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // Holds the executor so every request below arrives while the first pass is still pending.
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        RetentionScheduler scheduler = RetentionScheduler.background(
+            clock,
+            new RetentionManager(clock, System.getLogger("retention-test"), path -> deletes.incrementAndGet()),
+            index,
+            new RetentionPolicy(1, 0L, null),
+            Duration.ofHours(1),
+            executor,
+            System.getLogger("retention-test")
+        );
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.request();
+        }
+        release.countDown();
+        while (scheduler.metrics().runs() == 0) {
+            Thread.sleep(5L);
+        }
+
+        assertEquals(5, scheduler.metrics().requests());
+        assertEquals(1, scheduler.metrics().runs());
+        assertEquals(3, deletes.get());
+        assertEquals(1, index.count());
+
+        scheduler.request();
+        List<Delayed> queued = executor.getQueue().stream().map(task -> (Delayed) task).toList();
+        assertEquals(1, queued.size());
+        assertTrue(queued.get(0).getDelay(TimeUnit.MINUTES) >= 59);
+        executor.shutdownNow();
+    }
+}
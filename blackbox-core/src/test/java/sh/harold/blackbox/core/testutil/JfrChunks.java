@@ -0,0 +1,30 @@
+package sh.harold.blackbox.core.testutil;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Minimal JFR chunks for tests: a header with the chunk size, start time and a 30s duration,
+ * padded with zeros.
+ */
+public final class JfrChunks {
+    private JfrChunks() {
+    }
+
+    public static byte[] chunk(Instant start, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(0x464c5200).putShort((short) 2).putShort((short) 0);
+        buffer.putLong(size).putLong(0L).putLong(0L);
+        buffer.putLong(start.getEpochSecond() * 1_000_000_000L);
+        buffer.putLong(Duration.ofSeconds(30).toNanos());
+        return buffer.array();
+    }
+
+    public static byte[] concat(byte[] first, byte[] second) {
+        byte[] out = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, out, first.length, second.length);
+        return out;
+    }
+}
@@ -0,0 +1,82 @@
+package sh.harold.blackbox.core.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.testutil.MutableClock;
+
+class CaptureBudgetTest {
+    private static final long MINUTE_NANOS = Duration.ofMinutes(1).toNanos();
+
+    @Test
+    void noisyScopeDoesNotStarveOtherScopes() {
+        CaptureBudget budget = new CaptureBudget(new CaptureBudgetPolicy(0, 10, 0, 4, 0));
+
+        assertTrue(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "noisy", Severity.DEGRADED, 0L));
+        assertTrue(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "noisy", Severity.DEGRADED, 0L));
+        assertFalse(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "noisy", Severity.DEGRADED, 0L));
+
+        assertTrue(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "quiet", Severity.DEGRADED, 0L));
+        assertEquals(4, budget.hourlyRemaining(0L));
+    }
+
+    @Test
+    void costFallsWithSeverityAndCriticalBorrows() {
+        CaptureBudget budget = new CaptureBudget(new CaptureBudgetPolicy(4, 0, 0, 0, 2));
+
+        assertTrue(budget.tryAdmit(TriggerKind.MANUAL, "server", Severity.INFO, 0L));
+        assertTrue(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "world", Severity.DEGRADED, 0L));
+        assertFalse(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "world", Severity.DEGRADED, 0L));
+        assertTrue(budget.tryAdmit(TriggerKind.OUT_OF_MEMORY, "server", Severity.CRITICAL, 0L));
+        assertFalse(budget.tryAdmit(TriggerKind.OUT_OF_MEMORY, "server", Severity.CRITICAL, 0L));
+
+        assertTrue(budget.tryAdmit(TriggerKind.HEARTBEAT_STALL, "world", Severity.DEGRADED, 2 * MINUTE_NANOS));
+    }
+
+    @Test
+    void outOfMemoryTriggersAreCriticalAndNamedInTheHeadline() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        TriggerEngine engine = new TriggerEngine(clock, new TriggerPolicy(Duration.ZERO, Duration.ZERO, 1000, 5000));
+
+        TriggerResult result = engine.evaluate(
+            new TriggerEvent(TriggerKind.OUT_OF_MEMORY, "server", clock.instant(), Map.of())
+        );
+
+        assertEquals(TriggerDecision.ACCEPT, result.decision());
+        assertEquals(Severity.CRITICAL, result.severity());
+        assertEquals("Capture triggered by OUT_OF_MEMORY on server", result.headline());
+    }
+
+    @Test
+    void engineCountsBudgetRejections() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        TriggerPolicy policy = new TriggerPolicy(
+            Duration.ZERO,
+            Duration.ZERO,
+            1000,
+            5000,
+            Duration.ZERO,
+            new CaptureBudgetPolicy(0, 4, 0, 0, 0)
+        );
+        TriggerEngine engine = new TriggerEngine(clock, policy);
+        TriggerEvent stall = new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "world",
+            clock.instant(),
+            Map.of("stallMs", "1500")
+        );
+
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(stall).decision());
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(stall).decision());
+        assertEquals(TriggerDecision.BUDGET, engine.evaluate(stall).decision());
+        assertEquals(1, engine.rejectedCount(TriggerDecision.BUDGET));
+        assertEquals(1, engine.rejectedTotal());
+    }
+}
@@ -1,11 +1,20 @@
 package sh.harold.blackbox.core.trigger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import sh.harold.blackbox.core.testutil.MutableClock;
 
@@ -34,4 +43,99 @@ class TriggerEngineTest {
         TriggerResult fourth = engine.evaluate(finalEvent);
         assertEquals(TriggerDecision.ACCEPT, fourth.decision());
     }
+
+    @Test
+    void concurrentEvaluationsAcceptExactlyOnce() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        TriggerPolicy policy = new TriggerPolicy(Duration.ofSeconds(30), Duration.ofSeconds(2), 1000, 5000);
+        TriggerEngine engine = new TriggerEngine(clock, policy);
+        Instant at = clock.instant();
+
+        int threads = 8;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String scope = "world-" + (t % 3);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1_000; i++) {
+                        TriggerEvent event = new TriggerEvent(TriggerKind.HEARTBEAT_STALL, scope, at, Map.of());
+                        if (engine.evaluate(event).decision() == TriggerDecision.ACCEPT) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, accepted.get());
+        TriggerEvent rejected = new TriggerEvent(TriggerKind.HEARTBEAT_STALL, "world-0", at, Map.of());
+        assertSame(engine.evaluate(rejected), engine.evaluate(rejected));
+    }
+
+    @Test
+    void rolledBackClaimsDoNotDebounceTheNextTrigger() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        TriggerPolicy policy = new TriggerPolicy(
+            Duration.ZERO,
+            Duration.ofMinutes(5),
+            1000,
+            5000,
+            Duration.ZERO,
+            new CaptureBudgetPolicy(1, 0, 0, 0, 0)
+        );
+        TriggerEngine engine = new TriggerEngine(clock, policy);
+
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(manual("alpha", clock.instant())).decision());
+        assertEquals(TriggerDecision.BUDGET, engine.evaluate(manual("beta", clock.instant())).decision());
+
+        clock.advance(Duration.ofSeconds(61));
+        TriggerEvent abandoned = manual("beta", clock.instant());
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(abandoned).decision());
+        engine.abandon(abandoned);
+
+        clock.advance(Duration.ofSeconds(61));
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(manual("beta", clock.instant())).decision());
+        assertEquals(TriggerDecision.DEBOUNCE, engine.evaluate(manual("beta", clock.instant())).decision());
+    }
+
+    @Test
+    void abandonedCapturesRefundTheirBudget() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        TriggerPolicy policy = new TriggerPolicy(
+            Duration.ZERO,
+            Duration.ofMinutes(5),
+            1000,
+            5000,
+            Duration.ZERO,
+            new CaptureBudgetPolicy(0, 1, 0, 0, 0)
+        );
+        TriggerEngine engine = new TriggerEngine(clock, policy);
+
+        TriggerEvent abandoned = manual("alpha", clock.instant());
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(abandoned).decision());
+        assertEquals(0L, engine.hourlyBudgetRemaining());
+        engine.abandon(abandoned);
+        assertEquals(1L, engine.hourlyBudgetRemaining());
+
+        assertEquals(TriggerDecision.ACCEPT, engine.evaluate(manual("beta", clock.instant())).decision());
+        assertEquals(TriggerDecision.BUDGET, engine.evaluate(manual("gamma", clock.instant())).decision());
+
+        engine.abandon(abandoned);
+        assertEquals(0L, engine.hourlyBudgetRemaining());
+    }
+
+    private static TriggerEvent manual(String scope, Instant at) {
+        return new TriggerEvent(TriggerKind.MANUAL, scope, at, Map.of());
+    }
 }
@@ -0,0 +1,109 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.AdaptiveStallPolicy;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
+
+class AdaptiveStallThresholdsTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void learnsSeparateThresholdsClampedBetweenPolicyFloorAndCeiling() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AdaptiveStallThresholds thresholds = new AdaptiveStallThresholds(
+            clock,
+            new AdaptiveStallPolicy(true, 500, 4.0, 100),
+            2000,
+            10_000
+        );
+
+        assertEquals(2000, thresholds.degradedMs("lobby"));
+        for (int i = 0; i < 200; i++) {
+            thresholds.record("lobby", 2 * MS);
+            thresholds.record("minigame", (700 + (i % 5) * 20) * MS);
+            thresholds.record("broken", 4_000 * MS);
+        }
+
+        assertEquals(500, thresholds.degradedMs("lobby"));
+        long heavy = thresholds.degradedMs("minigame");
+        assertTrue(heavy > 2000 && heavy < 10_000, "heavy world threshold " + heavy);
+        assertEquals(10_000, thresholds.degradedMs("broken"));
+    }
+
+    @Test
+    void regressionsAboveThresholdAreNotLearned() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AdaptiveStallThresholds thresholds = new AdaptiveStallThresholds(
+            clock,
+            new AdaptiveStallPolicy(true, 100, 4.0, 100),
+            100,
+            10_000
+        );
+        for (int i = 0; i < 200; i++) {
+            thresholds.record("minigame", 200 * MS);
+        }
+        long learned = thresholds.degradedMs("minigame");
+        assertTrue(learned >= 800 && learned < 900, "learned threshold " + learned);
+
+        for (int i = 0; i < 500; i++) {
+            thresholds.record("minigame", 900 * MS);
+        }
+        assertEquals(learned, thresholds.degradedMs("minigame"));
+    }
+
+    @Test
+    void policyFloorAppliesBelowTheFixedThresholdAndIsCappedAtTheCeiling() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AdaptiveStallThresholds thresholds = new AdaptiveStallThresholds(
+            clock,
+            new AdaptiveStallPolicy(true, 500, 4.0, 10),
+            2000,
+            10_000
+        );
+
+        assertEquals(500, thresholds.floorMs());
+        assertEquals(10_000, new AdaptiveStallThresholds(
+            clock,
+            new AdaptiveStallPolicy(true, 12_000, 4.0, 10),
+            2000,
+            10_000
+        ).floorMs());
+    }
+
+    @Test
+    void detectorWaitsLongerOnHeavyWorldsAndLessOnQuietOnes() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        AdaptiveStallThresholds thresholds = new AdaptiveStallThresholds(
+            clock,
+            new AdaptiveStallPolicy(true, 500, 4.0, 10),
+            2000,
+            10_000
+        );
+        for (int i = 0; i < 20; i++) {
+            thresholds.record("lobby", MS);
+            thresholds.record("minigame", 1_000 * MS);
+        }
+        HeartbeatStallDetector detector = new HeartbeatStallDetector(clock, registry, thresholds, 10_000);
+
+        registry.beat("lobby");
+        registry.beat("minigame");
+        clock.advance(Duration.ofMillis(400));
+        assertEquals(List.of(), detector.check());
+
+        clock.advance(Duration.ofMillis(2_100));
+        List<TriggerEvent> events = detector.check();
+
+        assertEquals(1, events.size());
+        assertEquals("lobby", events.get(0).scope());
+        assertEquals("500", events.get(0).attrs().get(HeartbeatStallDetector.ATTR_THRESHOLD_MS));
+    }
+}
@@ -1,12 +1,15 @@
 package sh.harold.blackbox.core.trigger.heartbeat;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
 
 class HeartbeatStallDetectorTest {
 
@@ -30,4 +33,39 @@ class HeartbeatStallDetectorTest {
         clock.advance(Duration.ofMillis(1200));
         assertEquals(1, detector.check().size());
     }
+
+    @Test
+    void tracksStallThroughEscalationToResolution() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        HeartbeatStallDetector detector = new HeartbeatStallDetector(clock, registry, 1000, 5000);
+
+        registry.beat("world");
+        clock.advance(Duration.ofMillis(1200));
+        List<TriggerEvent> started = detector.check();
+        assertEquals(1, started.size());
+        assertEquals("STARTED", started.get(0).attrs().get(HeartbeatStallDetector.ATTR_PHASE));
+
+        clock.advance(Duration.ofMillis(4000));
+        List<TriggerEvent> escalated = detector.check();
+        assertEquals(1, escalated.size());
+        assertEquals("ESCALATED", escalated.get(0).attrs().get(HeartbeatStallDetector.ATTR_PHASE));
+        assertEquals(
+            started.get(0).attrs().get(HeartbeatStallDetector.ATTR_STALL_ID),
+            escalated.get(0).attrs().get(HeartbeatStallDetector.ATTR_STALL_ID)
+        );
+        assertEquals(0, detector.check().size());
+        assertTrue(detector.drainResolved().isEmpty());
+
+        clock.advance(Duration.ofMillis(800));
+        registry.beat("world");
+        assertEquals(0, detector.check().size());
+
+        List<StallEpisode> resolved = detector.drainResolved();
+        assertEquals(1, resolved.size());
+        assertEquals(6000, resolved.get(0).durationMs());
+        assertEquals(6000, resolved.get(0).peakMs());
+        assertTrue(resolved.get(0).escalated());
+        assertTrue(detector.drainResolved().isEmpty());
+    }
 }
@@ -0,0 +1,123 @@
+package sh.harold.blackbox.core.trigger.heartbeat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+class StallCoalescerTest {
+
+    @Test
+    void mergesStallsAcrossAllWorldsIntoOneEvent() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        registry.beat("alpha");
+        registry.beat("beta");
+        registry.beat("gamma");
+        StallCoalescer coalescer = new StallCoalescer(registry, Duration.ofSeconds(1));
+
+        assertEquals(0, coalescer.offer(List.of(stall("alpha", 2100), stall("beta", 2050)), clock.instant()).size());
+
+        clock.advance(Duration.ofMillis(250));
+        List<TriggerEvent> merged = coalescer.offer(List.of(stall("gamma", 2300)), clock.instant());
+
+        assertEquals(1, merged.size());
+        TriggerEvent event = merged.get(0);
+        assertEquals(StallCoalescer.PROCESS_SCOPE, event.scope());
+        assertEquals("2300", event.attrs().get("stallMs"));
+        assertEquals("alpha,beta,gamma", event.attrs().get(StallCoalescer.ATTR_SCOPES));
+        assertEquals("3", event.attrs().get(StallCoalescer.ATTR_AFFECTED));
+        assertEquals("ALL", event.attrs().get(StallCoalescer.ATTR_PATTERN));
+    }
+
+    @Test
+    void emitsIsolatedStallOnceWindowCloses() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        registry.beat("alpha");
+        registry.beat("beta");
+        StallCoalescer coalescer = new StallCoalescer(registry, Duration.ofSeconds(1));
+
+        assertEquals(0, coalescer.offer(List.of(stall("alpha", 2100)), clock.instant()).size());
+        clock.advance(Duration.ofMillis(500));
+        assertEquals(0, coalescer.offer(List.of(), clock.instant()).size());
+        clock.advance(Duration.ofMillis(500));
+        List<TriggerEvent> flushed = coalescer.offer(List.of(), clock.instant());
+
+        assertEquals(1, flushed.size());
+        assertEquals("alpha", flushed.get(0).scope());
+        assertEquals("ISOLATED", flushed.get(0).attrs().get(StallCoalescer.ATTR_PATTERN));
+        assertEquals("2", flushed.get(0).attrs().get(StallCoalescer.ATTR_TOTAL));
+    }
+
+    @Test
+    void zeroWindowPassesSingleWorldThroughImmediately() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        registry.beat("alpha");
+        StallCoalescer coalescer = new StallCoalescer(registry, Duration.ZERO);
+
+        List<TriggerEvent> events = coalescer.offer(List.of(stall("alpha", 1500)), clock.instant());
+
+        assertEquals(1, events.size());
+        assertEquals("SOLE", events.get(0).attrs().get(StallCoalescer.ATTR_PATTERN));
+        assertEquals(0, coalescer.offer(List.of(), clock.instant()).size());
+    }
+
+    @Test
+    void holdsResolutionsUntilTheirStallIsEmittedAndKeepsIdsWhole() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        HeartbeatRegistry registry = new HeartbeatRegistry(clock);
+        registry.beat("north, east");
+        registry.beat("south");
+        StallCoalescer coalescer = new StallCoalescer(registry, Duration.ofSeconds(1));
+        TriggerEvent first = new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "north, east",
+            clock.instant(),
+            Map.of("stallMs", "2100"),
+            List.of("north, east@1")
+        );
+        StallEpisode ended = new StallEpisode(
+            "north, east@1",
+            "north, east",
+            clock.instant(),
+            clock.instant().plusMillis(2200),
+            2200,
+            false
+        );
+
+        assertEquals(0, coalescer.offer(List.of(first), clock.instant()).size());
+        assertEquals(List.of(), coalescer.release(List.of(ended)));
+
+        clock.advance(Duration.ofMillis(200));
+        List<TriggerEvent> merged = coalescer.offer(List.of(new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "south",
+            clock.instant(),
+            Map.of("stallMs", "2000"),
+            List.of("south@1")
+        )), clock.instant());
+
+        assertEquals(1, merged.size());
+        assertEquals(List.of("north, east@1", "south@1"), merged.get(0).stallIds());
+        assertEquals(List.of(ended), coalescer.release(List.of()));
+        assertEquals(List.of(), coalescer.release(List.of()));
+    }
+
+    private static TriggerEvent stall(String scope, long stallMs) {
+        return new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            scope,
+            Instant.parse("2026-01-11T00:00:00Z"),
+            Map.of("stallMs", Long.toString(stallMs))
+        );
+    }
+}
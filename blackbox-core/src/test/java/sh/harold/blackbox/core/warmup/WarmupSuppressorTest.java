@@ -0,0 +1,80 @@
+package sh.harold.blackbox.core.warmup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import sh.harold.blackbox.core.testutil.MutableClock;
+import sh.harold.blackbox.core.trigger.TriggerEvent;
+import sh.harold.blackbox.core.trigger.TriggerKind;
+
+class WarmupSuppressorTest {
+
+    @Test
+    void suppressesUntilRatesSettleAndRearmsOnWorldLoad() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AtomicLong classes = new AtomicLong();
+        AtomicLong compileMs = new AtomicLong();
+        WarmupSuppressor warmup = new WarmupSuppressor(
+            clock,
+            new WarmupPolicy(true, 100, 100, Duration.ofSeconds(5), Duration.ofMinutes(5)),
+            classes::get,
+            compileMs::get
+        );
+
+        assertTrue(warmup.isWarmingUp());
+        assertTrue(warmup.suppress(stall("STARTED")));
+        assertFalse(warmup.suppress(stall("ESCALATED")));
+
+        for (int i = 0; i < 6; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            classes.addAndGet(10);
+            warmup.sample();
+        }
+        assertFalse(warmup.isWarmingUp());
+        assertFalse(warmup.suppress(stall("STARTED")));
+
+        clock.advance(Duration.ofSeconds(1));
+        classes.addAndGet(5_000);
+        warmup.sample();
+        assertTrue(warmup.isWarmingUp());
+        assertTrue(warmup.suppress(stall("STARTED")));
+        assertEquals(2, warmup.suppressedCount());
+        assertTrue(warmup.render().contains("suppressed=2"));
+    }
+
+    @Test
+    void maxGraceEndsWarmupEvenWhileRatesStayHigh() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-11T00:00:00Z"), ZoneOffset.UTC);
+        AtomicLong compileMs = new AtomicLong();
+        WarmupSuppressor warmup = new WarmupSuppressor(
+            clock,
+            new WarmupPolicy(true, 100, 100, Duration.ofSeconds(5), Duration.ofSeconds(10)),
+            () -> 0L,
+            compileMs::get
+        );
+
+        for (int i = 0; i < 12; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            compileMs.addAndGet(500);
+            warmup.sample();
+        }
+
+        assertFalse(warmup.isWarmingUp());
+    }
+
+    private static TriggerEvent stall(String phase) {
+        return new TriggerEvent(
+            TriggerKind.HEARTBEAT_STALL,
+            "world",
+            Instant.parse("2026-01-11T00:00:00Z"),
+            Map.of("stallMs", "2500", "stallPhase", phase)
+        );
+    }
+}
@@ -0,0 +1,109 @@
+package sh.harold.blackbox.core.watchdog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WatchdogTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void firesOncePerStallAndRearmsAfterRecovery() {
+        List<String> fired = new ArrayList<>();
+        Watchdog watchdog = new Watchdog(4, Duration.ofMillis(100), Duration.ZERO,
+            (probe, stalledMs) -> fired.add(probe + ":" + stalledMs), System.getLogger("watchdog-test"));
+
+        int slot = watchdog.register("world:alpha", Duration.ofMillis(1000));
+        watchdog.beat(slot, 1_000 * MS);
+
+        watchdog.check(1_500 * MS);
+        assertEquals(0, fired.size());
+
+        watchdog.check(2_100 * MS);
+        watchdog.check(3_000 * MS);
+        assertEquals(List.of("world:alpha:1100"), fired);
+
+        watchdog.beat(slot, 3_100 * MS);
+        watchdog.check(3_200 * MS);
+        watchdog.check(4_200 * MS);
+        assertEquals(2, fired.size());
+    }
+
+    @Test
+    void cooldownIsSharedAcrossProbes() {
+        List<String> fired = new ArrayList<>();
+        Watchdog watchdog = new Watchdog(4, Duration.ofMillis(100), Duration.ofSeconds(10),
+            (probe, stalledMs) -> fired.add(probe), System.getLogger("watchdog-test"));
+
+        int scheduler = watchdog.register("blackbox-scheduler", Duration.ofMillis(500));
+        int world = watchdog.register("world:alpha", Duration.ofMillis(500));
+        watchdog.beat(scheduler, 1_000 * MS);
+        watchdog.beat(world, 1_000 * MS);
+
+        watchdog.check(2_000 * MS);
+        assertEquals(List.of("blackbox-scheduler"), fired);
+        assertEquals(1, watchdog.firedCount());
+    }
+
+    @Test
+    void unregisteredAndNeverBeatenSlotsAreIgnored() {
+        List<String> fired = new ArrayList<>();
+        Watchdog watchdog = new Watchdog(2, Duration.ofMillis(100), Duration.ZERO,
+            (probe, stalledMs) -> fired.add(probe), System.getLogger("watchdog-test"));
+
+        int idle = watchdog.register("idle", Duration.ofMillis(10));
+        int gone = watchdog.register("gone", Duration.ofMillis(10));
+        watchdog.beat(gone, 1 * MS);
+        watchdog.unregister(gone);
+
+        watchdog.check(10_000 * MS);
+        assertEquals(0, fired.size());
+        assertEquals(gone, watchdog.register("third", Duration.ofMillis(10)));
+        assertEquals(-1, watchdog.register("fourth", Duration.ofMillis(10)));
+        assertEquals(0, idle);
+    }
+
+    @Test
+    void actionRunsOnTheGivenExecutorWithoutBlockingTheLoop() {
+        List<String> fired = new ArrayList<>();
+        List<Runnable> queued = new ArrayList<>();
+        Watchdog watchdog = new Watchdog(4, Duration.ofMillis(100), Duration.ZERO,
+            (probe, stalledMs) -> fired.add(probe), queued::add, System.getLogger("watchdog-test"));
+
+        int alpha = watchdog.register("world:alpha", Duration.ofMillis(500));
+        int beta = watchdog.register("world:beta", Duration.ofMillis(500));
+        watchdog.beat(alpha, 1_000 * MS);
+        watchdog.beat(beta, 1_000 * MS);
+
+        watchdog.check(2_000 * MS);
+        assertEquals(2, queued.size());
+        assertEquals(0, fired.size());
+
+        queued.forEach(Runnable::run);
+        assertEquals(List.of("world:alpha", "world:beta"), fired);
+    }
+
+    @Test
+    void staleGenerationBeatsDoNotKeepAReusedSlotAlive() {
+        List<String> fired = new ArrayList<>();
+        Watchdog watchdog = new Watchdog(1, Duration.ofMillis(100), Duration.ZERO,
+            (probe, stalledMs) -> fired.add(probe), System.getLogger("watchdog-test"));
+
+        int old = watchdog.register("world:old", Duration.ofMillis(500));
+        int oldGeneration = watchdog.generation(old);
+        watchdog.unregister(old);
+        int reused = watchdog.register("world:new", Duration.ofMillis(500));
+        assertEquals(old, reused);
+
+        watchdog.beatIfCurrent(reused, oldGeneration);
+        watchdog.check(System.nanoTime() + 10_000 * MS);
+        assertEquals(0, fired.size());
+
+        watchdog.beatIfCurrent(reused, watchdog.generation(reused));
+        watchdog.check(System.nanoTime() + 10_000 * MS);
+        assertEquals(List.of("world:new"), fired);
+    }
+}
@@ -2,32 +2,41 @@ package sh.harold.blackbox.hytale;
 
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.OptionalArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import sh.harold.blackbox.core.incident.Severity;
+import sh.harold.blackbox.core.index.IncidentEntry;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.index.IncidentQuery;
+import sh.harold.blackbox.core.index.QueryPage;
+import sh.harold.blackbox.core.index.ScopeHourStats;
+import sh.harold.blackbox.core.memory.NativeMemorySampler;
+import sh.harold.blackbox.core.metrics.LatencyStats;
+import sh.harold.blackbox.core.metrics.RollingLatencyHistogram;
+import sh.harold.blackbox.core.pack.PackFile;
+import sh.harold.blackbox.core.trigger.TriggerDecision;
+import sh.harold.blackbox.core.trigger.TriggerKind;
 
 final class BlackboxCommand extends CommandBase {
-    private static final DateTimeFormatter INCIDENT_TIMESTAMP =
-        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss.SSSZ").withLocale(Locale.ROOT);
-
     private final BlackboxRuntime runtime;
 
     BlackboxCommand(BlackboxRuntime runtime) {
@@ -38,11 +47,12 @@ final class BlackboxCommand extends CommandBase {
         addSubCommand(new StatusCommand(runtime));
         addSubCommand(new ListCommand(runtime));
         addSubCommand(new OpenCommand(runtime));
+        addSubCommand(new ExtractCommand(runtime));
     }
 
     @Override
     protected void executeSync(CommandContext context) {
-        context.sendMessage(Message.raw("Usage: /blackbox dump|status|list|open"));
+        context.sendMessage(Message.raw("Usage: /blackbox dump|status|list|open|extract"));
     }
 
     private abstract static class RuntimeAsyncCommand extends AbstractAsyncCommand {
@@ -88,16 +98,16 @@ final class BlackboxCommand extends CommandBase {
             return runAsync(context, () -> {
                 Path incidentDir = runtime.incidentDir();
 
-                int count = countIncidents(incidentDir);
-                Optional<IncidentFile> latest = findLatestIncident(incidentDir);
+                IncidentIndex index = runtime.incidentIndex();
+                int count = index.count();
+                List<IncidentEntry> latest = index.newest(1);
 
                 context.sendMessage(Message.raw("Blackbox status"));
                 context.sendMessage(Message.raw("Config: " + runtime.configPath()));
-                context.sendMessage(Message.raw("Incidents: " + incidentDir + " (" + count + ")"));
-                if (latest.isPresent()) {
-                    IncidentFile file = latest.get();
-                    String when = file.createdAt().map(Instant::toString).orElse("unknown");
-                    context.sendMessage(Message.raw("Last incident: " + file.id() + " @ " + when));
+                context.sendMessage(Message.raw("Incidents: " + incidentDir + " (" + count + ", " + index.totalBytes() + " bytes)"));
+                if (!latest.isEmpty()) {
+                    IncidentEntry entry = latest.get(0);
+                    context.sendMessage(Message.raw("Last incident: " + entry.id() + " @ " + entry.createdAt()));
                 } else {
                     context.sendMessage(Message.raw("Last incident: none"));
                 }
@@ -105,13 +115,93 @@ final class BlackboxCommand extends CommandBase {
                 var retention = runtime.config().capturePolicy().retention();
                 context.sendMessage(Message.raw("Retention: maxCount=" + retention.maxCount()
                     + ", maxTotalBytes=" + retention.maxTotalBytes()
-                    + ", maxAge=" + (retention.maxAge() == null ? "none" : retention.maxAge())));
+                    + ", maxAge=" + (retention.maxAge() == null ? "none" : retention.maxAge())
+                    + ", downsampleAfter=" + (retention.downsampleAfter() == null ? "never" : retention.downsampleAfter())
+                    + ", packAfter=" + (retention.packAfter() == null ? "never" : retention.packAfter())));
+                retention.bySeverity().forEach((severity, limits) ->
+                    context.sendMessage(Message.raw("Retention " + severity + ": maxCount=" + limits.maxCount()
+                        + ", maxTotalBytes=" + limits.maxTotalBytes()
+                        + ", maxAge=" + (limits.maxAge() == null ? "none" : limits.maxAge()))));
+                context.sendMessage(Message.raw("Retention passes: " + runtime.retentionMetrics().describe()));
+                long packed = index.entries().stream().filter(entry -> PackFile.isPacked(entry.path())).count();
+                context.sendMessage(Message.raw("Packs: " + runtime.packStore().packCount() + " files, "
+                    + packed + " incidents packed"));
+                context.sendMessage(Message.raw("Storage: dedup="
+                    + (runtime.config().capturePolicy().dedupBlobs() ? "on" : "off")
+                    + ", deltaWithin=" + (runtime.config().capturePolicy().deltaWithin() == null
+                        ? "off" : runtime.config().capturePolicy().deltaWithin())));
+                var oom = runtime.config().oom();
+                context.sendMessage(Message.raw("OOM capture: " + (oom.enabled()
+                    ? "on (reserve=" + oom.reserveBytes() + " bytes, heapThreshold=" + oom.heapThresholdPercent() + "%)"
+                    : "off")));
+                var shutdown = runtime.config().shutdown();
+                context.sendMessage(Message.raw("Shutdown capture: " + (shutdown.enabled()
+                    ? "on (budget=" + shutdown.budget().toMillis() + "ms, lookback=" + shutdown.lookback().toSeconds() + "s)"
+                    : "off")));
+                var heapHistogram = runtime.config().heapHistogram();
+                Instant baselineAt = runtime.heapHistograms().baselineAt();
+                context.sendMessage(Message.raw("Heap histogram: " + (heapHistogram.enabled()
+                    ? "on (budget=" + heapHistogram.budget().toMillis() + "ms, baseline="
+                        + (baselineAt == null ? "none" : baselineAt) + ")"
+                    : "off")));
+                var heapDump = runtime.config().heapDump();
+                context.sendMessage(Message.raw("Heap dump: " + (heapDump.enabled()
+                    ? "on (heapPressure=" + heapDump.heapPressurePercent() + "%, maxHeap=" + heapDump.maxHeapBytes()
+                        + " bytes, cooldown=" + heapDump.cooldown() + ")"
+                    : "off")));
+                var nativeMemory = runtime.nativeMemory();
+                var nativeSample = nativeMemory.latest();
+                context.sendMessage(Message.raw("Native memory: " + (nativeMemory.policy().enabled()
+                    ? "on (rss=" + (nativeSample == null || nativeSample.rssBytes() == NativeMemorySampler.UNKNOWN
+                        ? "unknown" : nativeSample.rssBytes() + " bytes")
+                        + ", samples=" + nativeMemory.samples().size() + "/" + nativeMemory.policy().retainedSamples()
+                        + ", nmt=" + nativeMemory.trackingLevel() + ")"
+                    : "off")));
+                var diskPressure = runtime.diskPressure();
+                diskPressure.sample();
+                context.sendMessage(Message.raw("Disk pressure: " + diskPressure.stage()
+                    + " (" + (diskPressure.usableBytes() == Long.MAX_VALUE ? "unknown" : diskPressure.usableBytes() + " bytes")
+                    + " usable, " + diskPressure.skippedCaptures() + " captures skipped)"));
+
+                Map<String, LatencyStats> queueLastMinute = runtime.queueLatency().snapshot(1);
+                Map<String, LatencyStats> queueLastHour = runtime.queueLatency()
+                    .snapshot(RollingLatencyHistogram.RETAINED_MINUTES);
+                if (queueLastHour.isEmpty()) {
+                    context.sendMessage(Message.raw("Queue latency: no samples yet"));
+                }
+                for (Map.Entry<String, LatencyStats> entry : queueLastHour.entrySet()) {
+                    LatencyStats minute = queueLastMinute.getOrDefault(entry.getKey(), LatencyStats.EMPTY);
+                    context.sendMessage(Message.raw("Queue latency " + entry.getKey()
+                        + ": 1m " + minute.describeMillis()
+                        + " | 1h " + entry.getValue().describeMillis()));
+                }
 
                 var triggers = runtime.config().triggerPolicy();
                 context.sendMessage(Message.raw("Triggers: cooldown=" + triggers.cooldown()
                     + ", debounce=" + triggers.debounce()
                     + ", stallDegradedMs=" + triggers.stallDegradedMs()
                     + ", stallCriticalMs=" + triggers.stallCriticalMs()));
+                var adaptive = triggers.adaptive();
+                if (adaptive.enabled()) {
+                    Map<String, Long> thresholds = runtime.stallThresholds().snapshot();
+                    context.sendMessage(Message.raw("Stall thresholds (adaptive, floor=" + runtime.stallThresholds().floorMs()
+                        + "ms, x" + adaptive.multiplier() + "): "
+                        + (thresholds.isEmpty() ? "learning" : thresholds.toString())));
+                }
+                var warmup = runtime.warmup();
+                context.sendMessage(Message.raw("Warm-up: " + (warmup.isWarmingUp() ? "active" : "settled")
+                    + " (stalls suppressed: " + warmup.suppressedCount() + ")"));
+                var engine = runtime.triggerEngine();
+                long hourlyRemaining = engine.hourlyBudgetRemaining();
+                context.sendMessage(Message.raw("Capture budget: "
+                    + (hourlyRemaining < 0 ? "unlimited" : hourlyRemaining + "/" + triggers.budget().perHour() + " left this hour")
+                    + " (suppressed: cooldown=" + engine.rejectedCount(TriggerDecision.COOLDOWN)
+                    + ", debounce=" + engine.rejectedCount(TriggerDecision.DEBOUNCE)
+                    + ", budget=" + engine.rejectedCount(TriggerDecision.BUDGET) + ")"));
+
+                var watchdog = runtime.watchdog();
+                context.sendMessage(Message.raw("Watchdog: " + (watchdog.isRunning() ? "running" : "disabled")
+                    + " (emergency captures: " + watchdog.firedCount() + ")"));
 
                 boolean discordEnabled = !runtime.config().discordWebhook().webhookUrl().isBlank();
                 context.sendMessage(Message.raw("Discord webhook: " + (discordEnabled ? "enabled" : "disabled")));
@@ -122,211 +212,205 @@ final class BlackboxCommand extends CommandBase {
     }
 
     private static final class ListCommand extends RuntimeAsyncCommand {
+        private static final Duration MAX_RELATIVE = Duration.ofDays(3650);
+
+        private final OptionalArg<String> severity;
+        private final OptionalArg<String> trigger;
+        private final OptionalArg<String> scope;
+        private final OptionalArg<String> since;
+        private final OptionalArg<String> until;
+        private final OptionalArg<String> sort;
+        private final OptionalArg<Integer> page;
+        private final OptionalArg<String> by;
+
         private ListCommand(BlackboxRuntime runtime) {
-            super("list", "List recent incidents", runtime);
+            super("list", "List, filter and aggregate incidents", runtime);
+            this.severity = withOptionalArg("severity", "Severities, e.g. CRITICAL,DEGRADED", ArgTypes.STRING);
+            this.trigger = withOptionalArg("trigger", "Trigger kinds, e.g. HEARTBEAT_STALL", ArgTypes.STRING);
+            this.scope = withOptionalArg("scope", "World or other scope", ArgTypes.STRING);
+            this.since = withOptionalArg("since", "Start: age like 30m/24h/7d, or an ISO instant", ArgTypes.STRING);
+            this.until = withOptionalArg("until", "End: age like 1h, or an ISO instant", ArgTypes.STRING);
+            this.sort = withOptionalArg("sort", "newest|oldest|stall|size", ArgTypes.STRING);
+            this.page = withOptionalArg("page", "Page number, starting at 1", ArgTypes.INTEGER);
+            this.by = withOptionalArg("by", "Aggregate instead of listing: hour", ArgTypes.STRING);
         }
 
         @Override
         protected CompletableFuture<Void> executeAsync(CommandContext context) {
             return runAsync(context, () -> {
-                List<IncidentFile> recent = listIncidents(runtime.incidentDir(), 10);
-                if (recent.isEmpty()) {
-                    context.sendMessage(Message.raw("No incidents found."));
+                IncidentQuery query;
+                try {
+                    query = parseQuery(context);
+                } catch (IllegalArgumentException e) {
+                    context.sendMessage(Message.raw("Invalid list options: " + e.getMessage()));
                     return;
                 }
 
-                context.sendMessage(Message.raw("Recent incidents:"));
-                for (IncidentFile file : recent) {
-                    String headline = readHeadline(file.path()).orElse("<headline unavailable>");
-                    context.sendMessage(Message.raw(file.id() + " - " + headline));
-                    context.sendMessage(Message.raw("  " + file.path()));
+                IncidentIndex index = runtime.incidentIndex();
+                if (context.provided(by)) {
+                    if (!"hour".equalsIgnoreCase(context.get(by).trim())) {
+                        context.sendMessage(Message.raw("Invalid list options: --by supports only 'hour'."));
+                        return;
+                    }
+                    sendHourly(context, index.stallTimeByScopeHour(query));
+                    return;
                 }
-            }, executor());
-        }
-    }
 
-    private static final class OpenCommand extends RuntimeAsyncCommand {
-        private OpenCommand(BlackboxRuntime runtime) {
-            super("open", "Show incident directory path", runtime);
-        }
+                QueryPage result = index.query(query);
+                if (result.total() == 0) {
+                    context.sendMessage(Message.raw("No incidents found."));
+                    return;
+                }
+                if (result.entries().isEmpty()) {
+                    context.sendMessage(Message.raw("No incidents on page " + (result.page() + 1)
+                        + " (" + result.pages() + " pages)."));
+                    return;
+                }
 
-        @Override
-        protected CompletableFuture<Void> executeAsync(CommandContext context) {
-            return runAsync(context, () -> {
-                context.sendMessage(Message.raw("Incidents dir: " + runtime.incidentDir()));
-                context.sendMessage(Message.raw("Config: " + runtime.configPath()));
-                if (runtime.config().webEnabled()) {
-                    context.sendMessage(Message.raw("Web UI is enabled in config, but not implemented yet."));
+                context.sendMessage(Message.raw("Incidents (" + result.total() + " matching, page "
+                    + (result.page() + 1) + "/" + result.pages() + "):"));
+                for (IncidentEntry entry : result.entries()) {
+                    String headline = entry.headline() != null ? entry.headline() : "<headline unavailable>";
+                    String severityName = entry.severity() != null ? entry.severity().name() : "UNKNOWN";
+                    context.sendMessage(Message.raw(entry.id() + " [" + severityName + "] - " + headline));
+                    context.sendMessage(Message.raw("  " + entry.path()));
                 }
             }, executor());
         }
-    }
 
-    private static int countIncidents(Path incidentDir) {
-        try {
-            if (!Files.exists(incidentDir)) {
-                return 0;
+        private IncidentQuery parseQuery(CommandContext context) {
+            Instant now = runtime.clock().instant();
+            Set<Severity> severities = EnumSet.noneOf(Severity.class);
+            for (String value : csv(context, severity)) {
+                severities.add(Severity.valueOf(value.toUpperCase(Locale.ROOT)));
             }
-            try (var stream = Files.list(incidentDir)) {
-                return (int) stream
-                    .filter(path -> path.getFileName().toString().endsWith(".zip"))
-                    .count();
+            Set<String> triggers = new HashSet<>();
+            for (String value : csv(context, trigger)) {
+                triggers.add(TriggerKind.valueOf(value.toUpperCase(Locale.ROOT)).name());
             }
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
-    private static Optional<IncidentFile> findLatestIncident(Path incidentDir) {
-        List<IncidentFile> listed = listIncidents(incidentDir, 1);
-        if (listed.isEmpty()) {
-            return Optional.empty();
-        }
-        return Optional.of(listed.get(0));
-    }
-
-    private static List<IncidentFile> listIncidents(Path incidentDir, int limit) {
-        if (limit <= 0) {
-            return List.of();
+            IncidentQuery.Sort order = IncidentQuery.Sort.NEWEST;
+            if (context.provided(sort)) {
+                order = switch (context.get(sort).trim().toLowerCase(Locale.ROOT)) {
+                    case "newest" -> IncidentQuery.Sort.NEWEST;
+                    case "oldest" -> IncidentQuery.Sort.OLDEST;
+                    case "stall" -> IncidentQuery.Sort.LONGEST_STALL;
+                    case "size" -> IncidentQuery.Sort.LARGEST;
+                    default -> throw new IllegalArgumentException("--sort must be newest, oldest, stall or size.");
+                };
+            }
+            int pageNumber = context.provided(page) ? context.get(page) : 1;
+            if (pageNumber < 1) {
+                throw new IllegalArgumentException("--page must be >= 1.");
+            }
+            return new IncidentQuery(
+                severities,
+                triggers,
+                context.provided(scope) ? context.get(scope).trim() : null,
+                context.provided(since) ? parseTime(context.get(since), now) : null,
+                context.provided(until) ? parseTime(context.get(until), now) : null,
+                order,
+                pageNumber - 1,
+                IncidentQuery.DEFAULT_PAGE_SIZE
+            );
         }
 
-        List<Path> zips;
-        try {
-            if (!Files.exists(incidentDir)) {
+        private static List<String> csv(CommandContext context, OptionalArg<String> arg) {
+            if (!context.provided(arg)) {
                 return List.of();
             }
-            try (var stream = Files.list(incidentDir)) {
-                zips = stream
-                    .filter(path -> path.getFileName().toString().endsWith(".zip"))
-                    .toList();
+            List<String> values = new ArrayList<>();
+            for (String value : context.get(arg).split(",")) {
+                if (!value.isBlank()) {
+                    values.add(value.trim());
+                }
             }
-        } catch (Exception e) {
-            return List.of();
+            return values;
         }
 
-        List<IncidentFile> incidents = new ArrayList<>(zips.size());
-        for (Path zip : zips) {
-            String id = parseIncidentId(zip.getFileName().toString());
-            if (id == null) {
-                continue;
+        private static Instant parseTime(String value, Instant now) {
+            String trimmed = value.trim();
+            try {
+                return Instant.parse(trimmed);
+            } catch (DateTimeParseException ignored) {
+                // Fall through to a relative age.
             }
-            incidents.add(new IncidentFile(id, zip, parseCreatedAtFromId(id)));
-        }
-
-        incidents.sort(Comparator
-            .comparing((IncidentFile f) -> f.createdAt().orElse(Instant.EPOCH))
-            .thenComparing(f -> f.path().getFileName().toString()));
-
-        int from = Math.max(0, incidents.size() - limit);
-        List<IncidentFile> slice = incidents.subList(from, incidents.size());
-        slice = new ArrayList<>(slice);
-        slice.sort(Comparator.comparing(IncidentFile::id).reversed());
-        return slice;
-    }
-
-    private static String parseIncidentId(String fileName) {
-        if (!fileName.endsWith(".zip")) {
-            return null;
-        }
-        String base = fileName.substring(0, fileName.length() - ".zip".length());
-        if (base.startsWith("incident-")) {
-            return base.substring("incident-".length());
-        }
-        return base;
-    }
-
-    private static Optional<Instant> parseCreatedAtFromId(String id) {
-        int lastDash = id.lastIndexOf('-');
-        if (lastDash <= 0) {
-            return Optional.empty();
-        }
-        String timestamp = id.substring(0, lastDash);
-        try {
-            return Optional.of(OffsetDateTime.parse(timestamp, INCIDENT_TIMESTAMP).toInstant());
-        } catch (DateTimeParseException e) {
-            return Optional.empty();
+            if (trimmed.length() < 2) {
+                throw new IllegalArgumentException("Unrecognised time '" + value + "'.");
+            }
+            long amount;
+            try {
+                amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unrecognised time '" + value + "'.");
+            }
+            Duration age = switch (Character.toLowerCase(trimmed.charAt(trimmed.length() - 1))) {
+                case 'm' -> Duration.ofMinutes(amount);
+                case 'h' -> Duration.ofHours(amount);
+                case 'd' -> Duration.ofDays(amount);
+                default -> throw new IllegalArgumentException("Unrecognised time '" + value + "'.");
+            };
+            if (age.isNegative() || age.compareTo(MAX_RELATIVE) > 0) {
+                throw new IllegalArgumentException("Unrecognised time '" + value + "'.");
+            }
+            return now.minus(age);
         }
-    }
 
-    private static Optional<String> readHeadline(Path incidentZip) {
-        try (ZipFile zip = new ZipFile(incidentZip.toFile())) {
-            ZipEntry entry = zip.getEntry("incident.json");
-            if (entry == null) {
-                return Optional.empty();
+        private static void sendHourly(CommandContext context, List<ScopeHourStats> stats) {
+            if (stats.isEmpty()) {
+                context.sendMessage(Message.raw("No incidents found."));
+                return;
+            }
+            context.sendMessage(Message.raw("Incidents and stall time per scope per hour (UTC):"));
+            for (ScopeHourStats stat : stats) {
+                context.sendMessage(Message.raw(stat.hour() + " " + stat.scope() + ": "
+                    + stat.incidents() + " incidents, " + stat.stallMs() + "ms stalled"));
             }
-            byte[] bytes = zip.getInputStream(entry).readAllBytes();
-            String json = new String(bytes, StandardCharsets.UTF_8);
-            return Optional.ofNullable(extractJsonString(json, "\"headline\":"));
-        } catch (Exception e) {
-            return Optional.empty();
         }
     }
 
-    private static String extractJsonString(String json, String keyWithColon) throws IOException {
-        int keyIndex = json.indexOf(keyWithColon);
-        if (keyIndex < 0) {
-            return null;
-        }
-        int i = keyIndex + keyWithColon.length();
-        if (i >= json.length() || json.charAt(i) != '\"') {
-            return null;
+    private static final class OpenCommand extends RuntimeAsyncCommand {
+        private OpenCommand(BlackboxRuntime runtime) {
+            super("open", "Show incident directory path", runtime);
         }
-        return readJsonStringLiteral(json, i);
-    }
 
-    private static String readJsonStringLiteral(String json, int openingQuoteIndex) throws IOException {
-        if (openingQuoteIndex >= json.length() || json.charAt(openingQuoteIndex) != '\"') {
-            return null;
-        }
-        StringBuilder out = new StringBuilder(64);
-        for (int i = openingQuoteIndex + 1; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '\"') {
-                return out.toString();
-            }
-            if (c != '\\') {
-                out.append(c);
-                continue;
-            }
-            if (i + 1 >= json.length()) {
-                return null;
-            }
-            char esc = json.charAt(++i);
-            switch (esc) {
-                case '\"' -> out.append('\"');
-                case '\\' -> out.append('\\');
-                case 'n' -> out.append('\n');
-                case 'r' -> out.append('\r');
-                case 't' -> out.append('\t');
-                case 'u' -> {
-                    if (i + 4 >= json.length()) {
-                        return null;
-                    }
-                    int codePoint = parseHex(json, i + 1, i + 5);
-                    if (codePoint < 0) {
-                        return null;
-                    }
-                    out.append((char) codePoint);
-                    i += 4;
+        @Override
+        protected CompletableFuture<Void> executeAsync(CommandContext context) {
+            return runAsync(context, () -> {
+                context.sendMessage(Message.raw("Incidents dir: " + runtime.incidentDir()));
+                context.sendMessage(Message.raw("Config: " + runtime.configPath()));
+                if (runtime.config().webEnabled()) {
+                    context.sendMessage(Message.raw("Web UI is enabled in config, but not implemented yet."));
                 }
-                default -> out.append(esc);
-            }
+            }, executor());
         }
-        return null;
     }
 
-    private static int parseHex(String value, int startInclusive, int endExclusive) {
-        int codePoint = 0;
-        for (int i = startInclusive; i < endExclusive; i++) {
-            int digit = Character.digit(value.charAt(i), 16);
-            if (digit < 0) {
-                return -1;
-            }
-            codePoint = (codePoint << 4) | digit;
+    private static final class ExtractCommand extends RuntimeAsyncCommand {
+        private final OptionalArg<String> id;
+
+        private ExtractCommand(BlackboxRuntime runtime) {
+            super("extract", "Export an incident as a self-contained bundle in the exports directory", runtime);
+            this.id = withOptionalArg("id", "Incident id, as shown by /blackbox list", ArgTypes.STRING);
         }
-        return codePoint;
-    }
 
-    private record IncidentFile(String id, Path path, Optional<Instant> createdAt) {
+        @Override
+        protected CompletableFuture<Void> executeAsync(CommandContext context) {
+            return runAsync(context, () -> {
+                if (!context.provided(id) || context.get(id).isBlank()) {
+                    context.sendMessage(Message.raw("Usage: /blackbox extract --id <incident id>"));
+                    return;
+                }
+                String incidentId = context.get(id).trim();
+                try {
+                    Path bundle = runtime.exportIncident(incidentId);
+                    context.sendMessage(Message.raw("Extracted incident " + incidentId));
+                    context.sendMessage(Message.raw("Bundle: " + bundle));
+                } catch (NoSuchFileException e) {
+                    context.sendMessage(Message.raw("No incident " + incidentId + "."));
+                } catch (IOException e) {
+                    context.sendMessage(Message.raw("Failed to extract incident " + incidentId + ": " + e.getMessage()));
+                }
+            }, runtime.exportExecutor());
+        }
     }
 }
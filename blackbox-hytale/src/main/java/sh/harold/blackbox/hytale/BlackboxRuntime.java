@@ -2,39 +2,81 @@ package sh.harold.blackbox.hytale;
 
 import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import sh.harold.blackbox.core.bundle.BlobStore;
 import sh.harold.blackbox.core.bundle.BundleBuilder;
+import sh.harold.blackbox.core.bundle.BundleRecovery;
+import sh.harold.blackbox.core.bundle.DeltaRecordings;
 import sh.harold.blackbox.core.capture.BundleExtrasProvider;
 import sh.harold.blackbox.core.capture.CapturePipeline;
+import sh.harold.blackbox.core.capture.CrashRecovery;
+import sh.harold.blackbox.core.capture.EmergencyCapture;
+import sh.harold.blackbox.core.capture.FinalCapture;
 import sh.harold.blackbox.core.capture.IncidentNotifier;
+import sh.harold.blackbox.core.capture.OomCapture;
 import sh.harold.blackbox.core.capture.RecordingDumper;
+import sh.harold.blackbox.core.capture.ShutdownSignals;
 import sh.harold.blackbox.core.config.BlackboxConfig;
+import sh.harold.blackbox.core.disk.DiskPressureMonitor;
+import sh.harold.blackbox.core.incident.IncidentId;
+import sh.harold.blackbox.core.incident.Severity;
 import sh.harold.blackbox.core.jfr.JfrController;
+import sh.harold.blackbox.core.memory.HeapDumps;
+import sh.harold.blackbox.core.memory.HeapHistograms;
+import sh.harold.blackbox.core.memory.NativeMemorySampler;
+import sh.harold.blackbox.core.metrics.RetentionMetrics;
 import sh.harold.blackbox.core.notify.discord.DiscordWebhookNotifier;
 import sh.harold.blackbox.core.notify.discord.HttpClientWebhookTransport;
+import sh.harold.blackbox.core.index.IncidentCatalog;
+import sh.harold.blackbox.core.index.IncidentIndex;
+import sh.harold.blackbox.core.retention.BundleDownsampler;
 import sh.harold.blackbox.core.retention.FileDeleter;
+import sh.harold.blackbox.core.retention.PackStore;
 import sh.harold.blackbox.core.retention.RetentionManager;
+import sh.harold.blackbox.core.retention.RetentionScheduler;
 import sh.harold.blackbox.core.trigger.TriggerEvent;
 import sh.harold.blackbox.core.trigger.TriggerKind;
 import sh.harold.blackbox.core.trigger.TriggerEngine;
+import sh.harold.blackbox.core.trigger.heartbeat.AdaptiveStallThresholds;
 import sh.harold.blackbox.core.trigger.heartbeat.HeartbeatRegistry;
 import sh.harold.blackbox.core.trigger.heartbeat.HeartbeatStallDetector;
+import sh.harold.blackbox.core.trigger.heartbeat.QueueLatencyRecorder;
+import sh.harold.blackbox.core.trigger.heartbeat.StallCoalescer;
+import sh.harold.blackbox.core.trigger.heartbeat.StallEpisode;
+import sh.harold.blackbox.core.warmup.WarmupSuppressor;
+import sh.harold.blackbox.core.watchdog.Watchdog;
+import sh.harold.blackbox.core.watchdog.WatchdogPolicy;
 
 final class BlackboxRuntime implements AutoCloseable {
+    private static final int WATCHDOG_CAPACITY = 64;
+    private static final int MAX_EMERGENCY_CAPTURES = 10;
+    private static final Duration RETENTION_SWEEP_INTERVAL = Duration.ofMinutes(10);
+    private static final Duration RETENTION_MIN_INTERVAL = Duration.ofSeconds(30);
+    private static final int RECOVERY_PARALLELISM = 4;
+    private static final Duration HEAP_BASELINE_INITIAL_DELAY = Duration.ofMinutes(2);
+
     private final BlackboxPlugin plugin;
     private final Clock clock;
     private final System.Logger logger;
@@ -45,15 +87,40 @@ final class BlackboxRuntime implements AutoCloseable {
 
     private final ScheduledExecutorService scheduler;
     private final ExecutorService worker;
+    private final ScheduledExecutorService retentionExecutor;
+    private final ExecutorService emergencyExecutor;
 
     private final JfrController jfr;
     private final HeartbeatRegistry heartbeatRegistry;
     private final HeartbeatStallDetector stallDetector;
+    private final StallCoalescer stallCoalescer;
+    private final AdaptiveStallThresholds stallThresholds;
+    private final WarmupSuppressor warmup;
+    private final QueueLatencyRecorder queueLatency;
     private final TriggerEngine triggerEngine;
     private final CapturePipeline capturePipeline;
+    private final PackStore packStore;
+    private final BundleBuilder bundleBuilder;
+    private final Watchdog watchdog;
+    private final OomCapture oomCapture;
+    private final ShutdownSignals shutdownSignals;
+    private final HeapHistograms heapHistograms;
+    private final HeapDumps heapDumps;
+    private final NativeMemorySampler nativeMemory;
+    private final ExecutorService heapDumpExecutor;
+    private final ScheduledExecutorService diagnosticsExecutor;
+    private final ExecutorService exportExecutor;
+    private final FinalCapture finalCapture;
+    private final int schedulerWatchdogSlot;
+    private final int workerWatchdogSlot;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Handler errorCounter;
+    private final Thread shutdownHook;
 
     private final AtomicBoolean stallCheckRunning = new AtomicBoolean(false);
     private final Map<String, AtomicBoolean> heartbeatPending = new ConcurrentHashMap<>();
+    private final Map<String, Integer> worldWatchdogSlots = new ConcurrentHashMap<>();
+    private final AtomicBoolean workerProbePending = new AtomicBoolean();
     private int heartbeatSweepCounter;
     private final AtomicReference<Instant> lastIncidentAt = new AtomicReference<>();
     private final AtomicReference<String> lastIncidentId = new AtomicReference<>();
@@ -70,18 +137,53 @@ final class BlackboxRuntime implements AutoCloseable {
             new NamedThreadFactory("blackbox-scheduler")
         );
         ExecutorService worker = Executors.newSingleThreadExecutor(new NamedThreadFactory("blackbox-worker"));
+        ScheduledExecutorService retentionExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("blackbox-retention")
+        );
+        ExecutorService emergencyExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("blackbox-emergency"));
 
         Clock clock = Clock.systemUTC();
 
-        JfrController jfr = new JfrController(config.jfrMaxAge(), config.jfrMaxSizeBytes(), config.jfrRecordingName());
+        JfrController jfr = new JfrController(
+            config.jfrMaxAge(),
+            config.jfrMaxSizeBytes(),
+            config.jfrRecordingName(),
+            dataDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY)
+        );
         jfr.start();
 
+        WatchdogPolicy watchdogPolicy = config.watchdog();
+        ShutdownSignals shutdownSignals = new ShutdownSignals(clock, config.shutdown());
+        Watchdog watchdog = buildWatchdog(clock, watchdogPolicy, jfr, dataDir, shutdownSignals, emergencyExecutor, logger);
+        if (config.oom().enabled()) {
+            jfr.startLean(watchdogPolicy.leanMaxAge());
+        }
+        OomCapture oomCapture = new OomCapture(
+            clock,
+            dataDir.resolve(OomCapture.DIRECTORY),
+            target -> {
+                jfr.dumpLean(target);
+                return target;
+            },
+            config.oom(),
+            logger
+        );
+
         HeartbeatRegistry heartbeatRegistry = new HeartbeatRegistry(clock);
+        AdaptiveStallThresholds stallThresholds = new AdaptiveStallThresholds(
+            clock,
+            config.triggerPolicy().adaptive(),
+            config.triggerPolicy().stallDegradedMs(),
+            config.triggerPolicy().stallCriticalMs()
+        );
         HeartbeatStallDetector stallDetector = new HeartbeatStallDetector(
             clock,
             heartbeatRegistry,
-            config.triggerPolicy().stallDegradedMs()
+            stallThresholds,
+            config.triggerPolicy().stallCriticalMs()
         );
+        QueueLatencyRecorder queueLatency = new QueueLatencyRecorder(clock);
+        WarmupSuppressor warmup = WarmupSuppressor.platform(clock, config.warmup());
 
         TriggerEngine triggerEngine = new TriggerEngine(clock, config.triggerPolicy());
 
@@ -94,20 +196,51 @@ final class BlackboxRuntime implements AutoCloseable {
 
         Path incidentDir = dataDir.resolve("incidents");
         Path tempDir = dataDir.resolve("temp");
-
-        CapturePipeline capturePipeline = new CapturePipeline(
+        new BundleRecovery(incidentDir, tempDir, logger).recover(RECOVERY_PARALLELISM);
+        IncidentIndex incidentIndex = IncidentCatalog.open(incidentDir, logger);
+        DiskPressureMonitor diskPressure = DiskPressureMonitor.fileStores(
             clock,
-            triggerEngine,
-            dumper,
-            new BundleBuilder(clock, logger),
-            new RetentionManager(clock, logger, FileDeleter.defaultDeleter()),
-            notifier,
-            new HytaleBundleExtrasProvider(logger),
-            incidentDir,
-            tempDir,
-            config.capturePolicy(),
+            config.capturePolicy().diskPressure(),
+            diskPressurePaths(incidentDir, tempDir),
             logger
         );
+        diskPressure.sample();
+
+        NativeMemorySampler nativeMemory = NativeMemorySampler.platform(clock, config.nativeMemory(), logger);
+        BlobStore blobStore = new BlobStore(incidentDir.resolve(BlobStore.DIRECTORY), clock);
+        BundleBuilder bundleBuilder = new BundleBuilder(clock, logger, blobStore, config.capturePolicy().dedupBlobs());
+        PackStore packStore = new PackStore(incidentDir, PackStore.DEFAULT_MAX_PACK_BYTES, logger);
+        CapturePipeline capturePipeline = CapturePipeline.builder()
+            .clock(clock)
+            .triggerEngine(triggerEngine)
+            .dumper(dumper)
+            .bundleBuilder(bundleBuilder)
+            .retention(RetentionScheduler.background(
+                clock,
+                new RetentionManager(
+                    clock,
+                    logger,
+                    FileDeleter.defaultDeleter(),
+                    BundleDownsampler.using(bundleBuilder, BundleDownsampler.DEFAULT_WINDOW_PADDING),
+                    packStore,
+                    blobStore
+                ),
+                incidentIndex,
+                config.capturePolicy().retention(),
+                RETENTION_MIN_INTERVAL,
+                retentionExecutor,
+                logger
+            ))
+            .notifier(notifier)
+            .extrasProvider(
+                new HytaleBundleExtrasProvider(logger, queueLatency, warmup, diskPressure, nativeMemory)
+            )
+            .index(incidentIndex)
+            .tempDir(tempDir)
+            .policy(config.capturePolicy())
+            .diskPressure(diskPressure)
+            .logger(logger)
+            .build();
 
         BlackboxRuntime runtime = new BlackboxRuntime(
             plugin,
@@ -119,18 +252,52 @@ final class BlackboxRuntime implements AutoCloseable {
             incidentDir,
             scheduler,
             worker,
+            retentionExecutor,
+            emergencyExecutor,
             jfr,
             heartbeatRegistry,
             stallDetector,
+            stallThresholds,
+            warmup,
+            queueLatency,
             triggerEngine,
-            capturePipeline
+            capturePipeline,
+            packStore,
+            bundleBuilder,
+            watchdog,
+            oomCapture,
+            shutdownSignals,
+            nativeMemory
         );
+        if (watchdogPolicy.enabled()) {
+            watchdog.start();
+        }
         runtime.startScheduledWork();
         runtime.registerCommands();
         runtime.logStartup();
+        if (config.oom().enabled()) {
+            oomCapture.install(() -> worker.execute(runtime::bundleOomCaptures));
+        }
+        if (config.shutdown().enabled()) {
+            runtime.watchForAbnormalShutdown();
+        }
+        runtime.recoverPreviousCrash();
         return runtime;
     }
 
+    /**
+     * The incident and temp directories plus the JFR repository, which JFR publishes as a system
+     * property once the first recording starts.
+     */
+    private static List<Path> diskPressurePaths(Path incidentDir, Path tempDir) {
+        List<Path> paths = new ArrayList<>(List.of(incidentDir, tempDir));
+        String repository = System.getProperty("jdk.jfr.repository");
+        if (repository != null && !repository.isBlank()) {
+            paths.add(Path.of(repository));
+        }
+        return paths;
+    }
+
     private static IncidentNotifier buildNotifier(
         Clock clock,
         BlackboxConfig config,
@@ -149,6 +316,47 @@ final class BlackboxRuntime implements AutoCloseable {
         );
     }
 
+    private static Watchdog buildWatchdog(
+        Clock clock,
+        WatchdogPolicy policy,
+        JfrController jfr,
+        Path dataDir,
+        ShutdownSignals shutdownSignals,
+        ExecutorService emergencyExecutor,
+        System.Logger logger
+    ) throws Exception {
+        EmergencyCapture emergency = null;
+        if (policy.enabled()) {
+            jfr.startLean(policy.leanMaxAge());
+            emergency = new EmergencyCapture(
+                clock,
+                dataDir.resolve("emergency"),
+                target -> {
+                    jfr.dumpLean(target);
+                    return target;
+                },
+                MAX_EMERGENCY_CAPTURES,
+                logger
+            );
+        }
+        EmergencyCapture capture = emergency;
+        return new Watchdog(
+            WATCHDOG_CAPACITY,
+            policy.pollInterval(),
+            policy.emergencyCooldown(),
+            (probe, stalledMs) -> {
+                shutdownSignals.stall();
+                logger.log(System.Logger.Level.WARNING,
+                    "Watchdog: " + probe + " has not progressed for " + stalledMs + "ms; taking emergency capture.");
+                if (capture != null) {
+                    capture.capture("watchdog stall", probe, stalledMs);
+                }
+            },
+            emergencyExecutor,
+            logger
+        );
+    }
+
     private BlackboxRuntime(
         BlackboxPlugin plugin,
         Clock clock,
@@ -159,11 +367,22 @@ final class BlackboxRuntime implements AutoCloseable {
         Path incidentDir,
         ScheduledExecutorService scheduler,
         ExecutorService worker,
+        ScheduledExecutorService retentionExecutor,
+        ExecutorService emergencyExecutor,
         JfrController jfr,
         HeartbeatRegistry heartbeatRegistry,
         HeartbeatStallDetector stallDetector,
+        AdaptiveStallThresholds stallThresholds,
+        WarmupSuppressor warmup,
+        QueueLatencyRecorder queueLatency,
         TriggerEngine triggerEngine,
-        CapturePipeline capturePipeline
+        CapturePipeline capturePipeline,
+        PackStore packStore,
+        BundleBuilder bundleBuilder,
+        Watchdog watchdog,
+        OomCapture oomCapture,
+        ShutdownSignals shutdownSignals,
+        NativeMemorySampler nativeMemory
     ) {
         this.plugin = plugin;
         this.clock = clock;
@@ -174,11 +393,71 @@ final class BlackboxRuntime implements AutoCloseable {
         this.incidentDir = incidentDir;
         this.scheduler = scheduler;
         this.worker = worker;
+        this.retentionExecutor = retentionExecutor;
+        this.emergencyExecutor = emergencyExecutor;
         this.jfr = jfr;
         this.heartbeatRegistry = heartbeatRegistry;
         this.stallDetector = stallDetector;
+        this.stallThresholds = stallThresholds;
+        this.warmup = warmup;
+        this.stallCoalescer = new StallCoalescer(heartbeatRegistry, config.triggerPolicy().stallCoalesceWindow());
+        this.queueLatency = queueLatency;
         this.triggerEngine = triggerEngine;
         this.capturePipeline = capturePipeline;
+        this.packStore = packStore;
+        this.bundleBuilder = bundleBuilder;
+        this.watchdog = watchdog;
+        this.oomCapture = oomCapture;
+        this.shutdownSignals = shutdownSignals;
+        this.nativeMemory = nativeMemory;
+        // Histograms and dumps both walk the heap at a safepoint, so they share one thread.
+        this.heapDumpExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("blackbox-heap-dump"));
+        this.heapHistograms = HeapHistograms.platform(clock, config.heapHistogram(), heapDumpExecutor, logger);
+        this.diagnosticsExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("blackbox-diagnostics")
+        );
+        // Exports copy and rebuild whole bundles, so they stay out of the worker's capture queue.
+        this.exportExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("blackbox-export"));
+        this.heapDumps = HeapDumps.platform(clock, config.heapDump(), dataDir.resolve("temp"), heapDumpExecutor, logger);
+        this.finalCapture = new FinalCapture(
+            clock,
+            capturePipeline,
+            target -> {
+                jfr.dump(target);
+                return target;
+            },
+            dataDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY),
+            dataDir.resolve("temp"),
+            logger
+        );
+        this.errorCounter = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record != null && record.getLevel().intValue() >= Level.SEVERE.intValue()) {
+                    shutdownSignals.error();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        this.shutdownHook = new Thread(() -> {
+            shutdownSignals.signal();
+            close();
+        }, "blackbox-shutdown");
+        this.schedulerWatchdogSlot = watchdog.register(
+            "blackbox-scheduler",
+            Duration.ofMillis(config.watchdog().schedulerStallMs())
+        );
+        this.workerWatchdogSlot = watchdog.register(
+            "blackbox-worker",
+            Duration.ofMillis(config.watchdog().workerStallMs())
+        );
     }
 
     void registerCommands() {
@@ -197,6 +476,9 @@ final class BlackboxRuntime implements AutoCloseable {
     }
 
     Optional<String> capture(TriggerEvent event) {
+        if (event.kind() == TriggerKind.HEARTBEAT_STALL) {
+            shutdownSignals.stall();
+        }
         Optional<String> id;
         try {
             id = capturePipeline.handle(event).map(incidentId -> incidentId.value());
@@ -208,14 +490,38 @@ final class BlackboxRuntime implements AutoCloseable {
         if (id.isPresent()) {
             lastIncidentAt.set(event.at());
             lastIncidentId.set(id.get());
+            capturePipeline.index().find(id.get()).ifPresent(entry -> heapHistograms.request(
+                incidentDir,
+                entry.id(),
+                entry.severity(),
+                capturePipeline.retention()::sidecarWritten
+            ));
+            heapDumps.request(incidentDir, id.get(), capturePipeline.retention()::sidecarWritten);
         }
         return id;
     }
 
+    /**
+     * Bundles pending out-of-memory captures, then takes their histograms now that the heap is back.
+     */
+    private void bundleOomCaptures() {
+        for (IncidentId id : oomCapture.bundlePending(capturePipeline)) {
+            heapHistograms.request(incidentDir, id.value(), Severity.CRITICAL, capturePipeline.retention()::sidecarWritten);
+        }
+    }
+
     Path incidentDir() {
         return incidentDir;
     }
 
+    Clock clock() {
+        return clock;
+    }
+
+    IncidentIndex incidentIndex() {
+        return capturePipeline.index();
+    }
+
     Path dataDir() {
         return dataDir;
     }
@@ -232,6 +538,80 @@ final class BlackboxRuntime implements AutoCloseable {
         return worker;
     }
 
+    ExecutorService exportExecutor() {
+        return exportExecutor;
+    }
+
+    Watchdog watchdog() {
+        return watchdog;
+    }
+
+    AdaptiveStallThresholds stallThresholds() {
+        return stallThresholds;
+    }
+
+    WarmupSuppressor warmup() {
+        return warmup;
+    }
+
+    TriggerEngine triggerEngine() {
+        return triggerEngine;
+    }
+
+    DiskPressureMonitor diskPressure() {
+        return capturePipeline.diskPressure();
+    }
+
+    RetentionMetrics retentionMetrics() {
+        return capturePipeline.retention().metrics();
+    }
+
+    HeapHistograms heapHistograms() {
+        return heapHistograms;
+    }
+
+    HeapDumps heapDumps() {
+        return heapDumps;
+    }
+
+    NativeMemorySampler nativeMemory() {
+        return nativeMemory;
+    }
+
+    PackStore packStore() {
+        return packStore;
+    }
+
+    /**
+     * Copies the bundle of incident {@code id} into the exports directory as a self-contained zip,
+     * whether it is packed, references shared blobs or holds only a delta recording.
+     */
+    Path exportIncident(String id) throws IOException {
+        IncidentIndex index = capturePipeline.index();
+        Path exported = bundleBuilder.materialize(packStore.extract(index, id, dataDir.resolve("exports")));
+        if (!DeltaRecordings.isDelta(exported)) {
+            return exported;
+        }
+        Path recording = exported.resolveSibling(id + ".full.jfr");
+        try {
+            DeltaRecordings.Reconstruction rebuilt = DeltaRecordings.reconstruct(index, id, packStore::open, recording);
+            if (!rebuilt.complete()) {
+                plugin.getLogger().at(Level.WARNING).log(
+                    "Recording of incident %s is partial: its parent chain %s no longer ends in a full capture.",
+                    id,
+                    rebuilt.chain()
+                );
+            }
+            return bundleBuilder.replaceRecording(exported, recording);
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+    }
+
+    QueueLatencyRecorder queueLatency() {
+        return queueLatency;
+    }
+
     Optional<String> lastIncidentId() {
         return Optional.ofNullable(lastIncidentId.get());
     }
@@ -249,7 +629,89 @@ final class BlackboxRuntime implements AutoCloseable {
         }
     }
 
+    /**
+     * Bundles the JFR chunks of a previous process that died without shutting down, and any OOM
+     * captures it left unbundled, on the worker so server start never waits for it.
+     */
+    private void recoverPreviousCrash() {
+        CrashRecovery recovery = new CrashRecovery(
+            clock,
+            dataDir.resolve(CrashRecovery.REPOSITORY_DIRECTORY),
+            List.of(Path.of("").toAbsolutePath(), dataDir, Path.of(System.getProperty("java.io.tmpdir"))),
+            capturePipeline,
+            dataDir.resolve("temp"),
+            logger
+        );
+        Path current = jfr.currentRepository().orElse(null);
+        worker.execute(() -> {
+            try {
+                recovery.recover(current);
+                bundleOomCaptures();
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, "Crash recovery failed.", e);
+            }
+        });
+    }
+
+    /**
+     * Counts SEVERE log records towards the error rate, and treats the JVM shutting down while the
+     * plugin is still running as a signal: the server's own stop path shuts plugins down first, and
+     * {@link #close()} unregisters the hook.
+     */
+    private void watchForAbnormalShutdown() {
+        Logger.getLogger("").addHandler(errorCounter);
+        try {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            logger.log(System.Logger.Level.WARNING, "JVM is already shutting down; not watching for signals.", e);
+        }
+    }
+
+    /**
+     * Takes the final capture if the stop looks abnormal, within the configured budget, while the
+     * executors and JFR are still running.
+     */
+    private void captureIfAbnormal() {
+        if (!config.shutdown().enabled()) {
+            return;
+        }
+        Optional<String> reason = shutdownSignals.abnormalReason();
+        if (reason.isEmpty()) {
+            return;
+        }
+        try {
+            finalCapture.run(reason.get(), config.shutdown().budget(), jfr.currentRepository().orElse(null));
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Final capture failed.", e);
+        }
+    }
+
     private void startScheduledWork() {
+        retentionExecutor.scheduleAtFixedRate(
+            this::sweepRetention,
+            RETENTION_SWEEP_INTERVAL.toMillis(),
+            RETENTION_SWEEP_INTERVAL.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+        Duration baselineInterval = config.heapHistogram().baselineInterval();
+        if (config.heapHistogram().enabled() && !baselineInterval.isZero()) {
+            // Kept off the retention thread so a slow heap walk never delays sweeps, and vice versa.
+            diagnosticsExecutor.scheduleAtFixedRate(
+                this::sampleHeapBaseline,
+                HEAP_BASELINE_INITIAL_DELAY.toMillis(),
+                baselineInterval.toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+        if (config.nativeMemory().enabled()) {
+            diagnosticsExecutor.scheduleAtFixedRate(
+                this::sampleNativeMemory,
+                0L,
+                config.nativeMemory().sampleInterval().toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+
         Universe universe;
         try {
             universe = Universe.get();
@@ -275,6 +737,8 @@ final class BlackboxRuntime implements AutoCloseable {
     }
 
     private void tickHeartbeats() {
+        watchdog.beat(schedulerWatchdogSlot);
+        probeWorker();
         try {
             Universe universe = Universe.get();
             Map<String, World> worlds = universe.getWorlds();
@@ -293,8 +757,15 @@ final class BlackboxRuntime implements AutoCloseable {
                     continue;
                 }
 
+                int watchdogSlot = worldWatchdogSlots.computeIfAbsent(scope, this::registerWorldWatchdog);
+                int watchdogGeneration = watchdog.generation(watchdogSlot);
+                long enqueuedAtNanos = System.nanoTime();
                 world.execute(() -> {
                     try {
+                        watchdog.beatIfCurrent(watchdogSlot, watchdogGeneration);
+                        long lagNanos = System.nanoTime() - enqueuedAtNanos;
+                        queueLatency.record(scope, lagNanos);
+                        stallThresholds.record(scope, lagNanos);
                         heartbeatRegistry.beat(scope);
                     } catch (Exception e) {
                         logger.log(System.Logger.Level.WARNING, "Failed to beat heartbeat for " + scope, e);
@@ -308,21 +779,84 @@ final class BlackboxRuntime implements AutoCloseable {
             if (heartbeatSweepCounter >= 100) {
                 heartbeatSweepCounter = 0;
                 heartbeatPending.keySet().removeIf(scope -> !worlds.containsKey(scope));
+                queueLatency.retainScopes(worlds.keySet());
+                stallThresholds.retainScopes(worlds.keySet());
+                worldWatchdogSlots.entrySet().removeIf(entry -> {
+                    if (worlds.containsKey(entry.getKey())) {
+                        return false;
+                    }
+                    watchdog.unregister(entry.getValue());
+                    return true;
+                });
             }
         } catch (Exception e) {
             logger.log(System.Logger.Level.WARNING, "Heartbeat tick failed.", e);
         }
     }
 
+    /**
+     * Queues a beat for the worker's watchdog slot unless the previous one has not run yet, so a
+     * wedged worker stops beating instead of collecting probes.
+     */
+    private void probeWorker() {
+        if (!workerProbePending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                workerProbePending.set(false);
+                watchdog.beat(workerWatchdogSlot);
+            });
+        } catch (RejectedExecutionException e) {
+            workerProbePending.set(false);
+        }
+    }
+
+    private int registerWorldWatchdog(String scope) {
+        return watchdog.register("world:" + scope, Duration.ofMillis(config.watchdog().worldStallMs()));
+    }
+
+    private void sweepRetention() {
+        try {
+            capturePipeline.diskPressure().sample();
+            capturePipeline.retention().request();
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Retention sweep failed.", e);
+        }
+    }
+
+    private void sampleHeapBaseline() {
+        try {
+            heapHistograms.sampleBaseline();
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Heap histogram baseline failed.", e);
+        }
+    }
+
+    private void sampleNativeMemory() {
+        try {
+            nativeMemory.sample();
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Native memory sample failed.", e);
+        }
+    }
+
     private void scheduleStallCheck() {
         if (!stallCheckRunning.compareAndSet(false, true)) {
             return;
         }
         worker.execute(() -> {
             try {
-                for (TriggerEvent event : stallDetector.check()) {
+                warmup.sample();
+                for (TriggerEvent event : stallCoalescer.offer(stallDetector.check(), clock.instant())) {
+                    if (warmup.suppress(event)) {
+                        continue;
+                    }
                     capture(event);
                 }
+                for (StallEpisode episode : stallCoalescer.release(stallDetector.drainResolved())) {
+                    capturePipeline.resolveStall(episode);
+                }
             } catch (Exception e) {
                 logger.log(System.Logger.Level.WARNING, "Stall check failed.", e);
             } finally {
@@ -333,10 +867,30 @@ final class BlackboxRuntime implements AutoCloseable {
 
     @Override
     public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                shutdownSignals.signal();
+            }
+        }
+        Logger.getLogger("").removeHandler(errorCounter);
+        captureIfAbnormal();
+        watchdog.close();
+        oomCapture.uninstall();
         try {
             scheduler.shutdownNow();
+            retentionExecutor.shutdownNow();
             worker.shutdownNow();
+            heapDumpExecutor.shutdownNow();
+            diagnosticsExecutor.shutdownNow();
+            exportExecutor.shutdownNow();
+            emergencyExecutor.shutdownNow();
             worker.awaitTermination(Duration.ofSeconds(2).toMillis(), TimeUnit.MILLISECONDS);
+            retentionExecutor.awaitTermination(Duration.ofSeconds(2).toMillis(), TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (Exception e) {
@@ -348,5 +902,8 @@ final class BlackboxRuntime implements AutoCloseable {
         } catch (Exception e) {
             logger.log(System.Logger.Level.WARNING, "JFR shutdown failed.", e);
         }
+
+        packStore.close();
+        capturePipeline.index().close();
     }
 }
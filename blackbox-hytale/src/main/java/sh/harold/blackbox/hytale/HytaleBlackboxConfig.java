@@ -7,12 +7,26 @@ import com.hypixel.hytale.server.core.util.Config;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 import sh.harold.blackbox.core.capture.CapturePolicy;
+import sh.harold.blackbox.core.capture.OomPolicy;
+import sh.harold.blackbox.core.capture.ShutdownPolicy;
+import sh.harold.blackbox.core.memory.HeapDumpPolicy;
+import sh.harold.blackbox.core.memory.HeapHistogramPolicy;
+import sh.harold.blackbox.core.memory.NativeMemoryPolicy;
 import sh.harold.blackbox.core.config.BlackboxConfig;
+import sh.harold.blackbox.core.disk.DiskPressurePolicy;
+import sh.harold.blackbox.core.incident.Severity;
 import sh.harold.blackbox.core.notify.discord.DiscordWebhookConfig;
 import sh.harold.blackbox.core.retention.RetentionPolicy;
+import sh.harold.blackbox.core.retention.SeverityLimits;
+import sh.harold.blackbox.core.trigger.AdaptiveStallPolicy;
+import sh.harold.blackbox.core.trigger.CaptureBudgetPolicy;
 import sh.harold.blackbox.core.trigger.TriggerPolicy;
+import sh.harold.blackbox.core.warmup.WarmupPolicy;
+import sh.harold.blackbox.core.watchdog.WatchdogPolicy;
 
 /**
  * Loads {@link BlackboxConfig} via Hytale's built-in {@link Config} system.
@@ -26,22 +40,85 @@ final class HytaleBlackboxConfig {
     private static final long DEFAULT_JFR_MAX_SIZE_BYTES = 256L * 1024L * 1024L;
     private static final String DEFAULT_JFR_RECORDING_NAME = "blackbox";
 
-    private static final Duration DEFAULT_TRIGGER_COOLDOWN = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_TRIGGER_COOLDOWN = Duration.ZERO;
     private static final Duration DEFAULT_TRIGGER_DEBOUNCE = Duration.ofSeconds(2);
     private static final long DEFAULT_STALL_DEGRADED_MS = 2_000L;
     private static final long DEFAULT_STALL_CRITICAL_MS = 10_000L;
+    private static final Duration DEFAULT_STALL_COALESCE_WINDOW = TriggerPolicy.DEFAULT_STALL_COALESCE_WINDOW;
+    private static final boolean DEFAULT_ADAPTIVE_ENABLED = true;
+    private static final long DEFAULT_ADAPTIVE_FLOOR_MS = AdaptiveStallPolicy.DEFAULT_FLOOR_MS;
+    private static final int DEFAULT_ADAPTIVE_MULTIPLIER = (int) AdaptiveStallPolicy.DEFAULT_MULTIPLIER;
+    private static final int DEFAULT_ADAPTIVE_MIN_SAMPLES = AdaptiveStallPolicy.DEFAULT_MIN_SAMPLES;
+
+    private static final int DEFAULT_BUDGET_PER_MINUTE = 6;
+    private static final int DEFAULT_BUDGET_PER_HOUR = 40;
+    private static final int DEFAULT_BUDGET_PER_KIND_PER_HOUR = 30;
+    private static final int DEFAULT_BUDGET_PER_SCOPE_PER_HOUR = 12;
+    private static final int DEFAULT_BUDGET_CRITICAL_BORROW = 6;
 
     private static final int DEFAULT_RETENTION_MAX_COUNT = 25;
     private static final long DEFAULT_RETENTION_MAX_TOTAL_BYTES = 1024L * 1024L * 1024L;
     private static final Duration DEFAULT_RETENTION_MAX_AGE = Duration.ofDays(7);
+    private static final Duration DEFAULT_RETENTION_DOWNSAMPLE_AFTER = Duration.ofDays(1);
+    private static final Duration DEFAULT_RETENTION_PACK_AFTER = Duration.ofDays(3);
+    private static final int DEFAULT_RETENTION_INFO_MAX_COUNT = 10;
+    private static final Duration DEFAULT_RETENTION_INFO_MAX_AGE = Duration.ofDays(1);
 
     private static final String DEFAULT_DISCORD_WEBHOOK_URL = "";
     private static final Duration DEFAULT_DISCORD_COOLDOWN = Duration.ofMinutes(1);
     private static final Duration DEFAULT_DISCORD_REQUEST_TIMEOUT = Duration.ofSeconds(10);
     private static final String DEFAULT_DISCORD_USERNAME = "Blackbox";
 
+    private static final boolean DEFAULT_WATCHDOG_ENABLED = true;
+    private static final Duration DEFAULT_WATCHDOG_POLL_INTERVAL = Duration.ofMillis(500);
+    private static final long DEFAULT_WATCHDOG_SCHEDULER_STALL_MS = 5_000L;
+    private static final long DEFAULT_WATCHDOG_WORLD_STALL_MS = 20_000L;
+    private static final long DEFAULT_WATCHDOG_WORKER_STALL_MS = 60_000L;
+    private static final Duration DEFAULT_WATCHDOG_EMERGENCY_COOLDOWN = Duration.ofMinutes(2);
+    private static final Duration DEFAULT_WATCHDOG_LEAN_MAX_AGE = Duration.ofMinutes(2);
+
+    private static final boolean DEFAULT_WARMUP_ENABLED = true;
+    private static final long DEFAULT_WARMUP_CLASS_LOADS_PER_SECOND = 200L;
+    private static final long DEFAULT_WARMUP_COMPILE_MS_PER_SECOND = 250L;
+    private static final Duration DEFAULT_WARMUP_SETTLE_DURATION = Duration.ofSeconds(15);
+    private static final Duration DEFAULT_WARMUP_MAX_GRACE = Duration.ofMinutes(5);
+
+    private static final boolean DEFAULT_DISK_PRESSURE_ENABLED = true;
+    private static final long DEFAULT_DISK_PRESSURE_SHRINK_WINDOW_BELOW_BYTES =
+        DiskPressurePolicy.DEFAULT_SHRINK_WINDOW_BELOW_BYTES;
+    private static final long DEFAULT_DISK_PRESSURE_DROP_RECORDING_BELOW_BYTES =
+        DiskPressurePolicy.DEFAULT_DROP_RECORDING_BELOW_BYTES;
+    private static final long DEFAULT_DISK_PRESSURE_SKIP_CAPTURE_BELOW_BYTES =
+        DiskPressurePolicy.DEFAULT_SKIP_CAPTURE_BELOW_BYTES;
+    private static final Duration DEFAULT_DISK_PRESSURE_SHRUNK_WINDOW = DiskPressurePolicy.DEFAULT_SHRUNK_WINDOW;
+
+    private static final boolean DEFAULT_STORAGE_DEDUP = false;
+    private static final Duration DEFAULT_STORAGE_DELTA_WITHIN = null;
+
     private static final boolean DEFAULT_WEB_ENABLED = false;
 
+    private static final boolean DEFAULT_OOM_ENABLED = true;
+    private static final long DEFAULT_OOM_RESERVE_BYTES = OomPolicy.DEFAULT_RESERVE_BYTES;
+    private static final int DEFAULT_OOM_HEAP_THRESHOLD_PERCENT = OomPolicy.DEFAULT_HEAP_THRESHOLD_PERCENT;
+    private static final Duration DEFAULT_OOM_COOLDOWN = OomPolicy.DEFAULT_COOLDOWN;
+    private static final boolean DEFAULT_SHUTDOWN_ENABLED = true;
+    private static final Duration DEFAULT_SHUTDOWN_LOOKBACK = ShutdownPolicy.DEFAULT_LOOKBACK;
+    private static final int DEFAULT_SHUTDOWN_ERROR_THRESHOLD = ShutdownPolicy.DEFAULT_ERROR_THRESHOLD;
+    private static final Duration DEFAULT_SHUTDOWN_BUDGET = ShutdownPolicy.DEFAULT_BUDGET;
+    private static final boolean DEFAULT_HEAP_HISTOGRAM_ENABLED = true;
+    private static final Duration DEFAULT_HEAP_HISTOGRAM_BUDGET = HeapHistogramPolicy.DEFAULT_BUDGET;
+    private static final Duration DEFAULT_HEAP_HISTOGRAM_BASELINE_INTERVAL = HeapHistogramPolicy.DEFAULT_BASELINE_INTERVAL;
+    private static final int DEFAULT_HEAP_HISTOGRAM_PRESSURE_PERCENT = HeapHistogramPolicy.DEFAULT_HEAP_PRESSURE_PERCENT;
+    private static final int DEFAULT_HEAP_HISTOGRAM_DIFF_LIMIT = HeapHistogramPolicy.DEFAULT_DIFF_LIMIT;
+    private static final boolean DEFAULT_HEAP_DUMP_ENABLED = false;
+    private static final int DEFAULT_HEAP_DUMP_PRESSURE_PERCENT = HeapDumpPolicy.DEFAULT_HEAP_PRESSURE_PERCENT;
+    private static final long DEFAULT_HEAP_DUMP_MAX_HEAP_BYTES = HeapDumpPolicy.DEFAULT_MAX_HEAP_BYTES;
+    private static final long DEFAULT_HEAP_DUMP_MIN_FREE_BYTES = HeapDumpPolicy.DEFAULT_MIN_FREE_BYTES;
+    private static final Duration DEFAULT_HEAP_DUMP_COOLDOWN = HeapDumpPolicy.DEFAULT_COOLDOWN;
+    private static final boolean DEFAULT_NATIVE_MEMORY_ENABLED = true;
+    private static final Duration DEFAULT_NATIVE_MEMORY_SAMPLE_INTERVAL = NativeMemoryPolicy.DEFAULT_SAMPLE_INTERVAL;
+    private static final int DEFAULT_NATIVE_MEMORY_RETAINED_SAMPLES = NativeMemoryPolicy.DEFAULT_RETAINED_SAMPLES;
+
     private HytaleBlackboxConfig() {
     }
 
@@ -92,20 +169,58 @@ final class HytaleBlackboxConfig {
             DEFAULT_TRIGGER_COOLDOWN,
             DEFAULT_TRIGGER_DEBOUNCE,
             DEFAULT_STALL_DEGRADED_MS,
-            DEFAULT_STALL_CRITICAL_MS
+            DEFAULT_STALL_CRITICAL_MS,
+            DEFAULT_STALL_COALESCE_WINDOW,
+            new CaptureBudgetPolicy(
+                DEFAULT_BUDGET_PER_MINUTE,
+                DEFAULT_BUDGET_PER_HOUR,
+                DEFAULT_BUDGET_PER_KIND_PER_HOUR,
+                DEFAULT_BUDGET_PER_SCOPE_PER_HOUR,
+                DEFAULT_BUDGET_CRITICAL_BORROW
+            ),
+            new AdaptiveStallPolicy(
+                DEFAULT_ADAPTIVE_ENABLED,
+                DEFAULT_ADAPTIVE_FLOOR_MS,
+                DEFAULT_ADAPTIVE_MULTIPLIER,
+                DEFAULT_ADAPTIVE_MIN_SAMPLES
+            )
         );
         RetentionPolicy retentionPolicy = new RetentionPolicy(
             DEFAULT_RETENTION_MAX_COUNT,
             DEFAULT_RETENTION_MAX_TOTAL_BYTES,
-            DEFAULT_RETENTION_MAX_AGE
+            DEFAULT_RETENTION_MAX_AGE,
+            DEFAULT_RETENTION_DOWNSAMPLE_AFTER,
+            Map.of(Severity.INFO, new SeverityLimits(DEFAULT_RETENTION_INFO_MAX_COUNT, 0L, DEFAULT_RETENTION_INFO_MAX_AGE)),
+            DEFAULT_RETENTION_PACK_AFTER
+        );
+        CapturePolicy capturePolicy = new CapturePolicy(
+            retentionPolicy,
+            DiskPressurePolicy.defaults(),
+            DEFAULT_STORAGE_DEDUP,
+            DEFAULT_STORAGE_DELTA_WITHIN
         );
-        CapturePolicy capturePolicy = new CapturePolicy(retentionPolicy);
         DiscordWebhookConfig discord = new DiscordWebhookConfig(
             DEFAULT_DISCORD_WEBHOOK_URL,
             DEFAULT_DISCORD_COOLDOWN,
             DEFAULT_DISCORD_REQUEST_TIMEOUT,
             DEFAULT_DISCORD_USERNAME
         );
+        WatchdogPolicy watchdog = new WatchdogPolicy(
+            DEFAULT_WATCHDOG_ENABLED,
+            DEFAULT_WATCHDOG_POLL_INTERVAL,
+            DEFAULT_WATCHDOG_SCHEDULER_STALL_MS,
+            DEFAULT_WATCHDOG_WORLD_STALL_MS,
+            DEFAULT_WATCHDOG_WORKER_STALL_MS,
+            DEFAULT_WATCHDOG_EMERGENCY_COOLDOWN,
+            DEFAULT_WATCHDOG_LEAN_MAX_AGE
+        );
+        WarmupPolicy warmup = new WarmupPolicy(
+            DEFAULT_WARMUP_ENABLED,
+            DEFAULT_WARMUP_CLASS_LOADS_PER_SECOND,
+            DEFAULT_WARMUP_COMPILE_MS_PER_SECOND,
+            DEFAULT_WARMUP_SETTLE_DURATION,
+            DEFAULT_WARMUP_MAX_GRACE
+        );
         return new BlackboxConfig(
             DEFAULT_JFR_MAX_AGE,
             DEFAULT_JFR_MAX_SIZE_BYTES,
@@ -113,7 +228,40 @@ final class HytaleBlackboxConfig {
             triggerPolicy,
             capturePolicy,
             discord,
-            DEFAULT_WEB_ENABLED
+            watchdog,
+            warmup,
+            DEFAULT_WEB_ENABLED,
+            new OomPolicy(
+                DEFAULT_OOM_ENABLED,
+                DEFAULT_OOM_RESERVE_BYTES,
+                DEFAULT_OOM_HEAP_THRESHOLD_PERCENT,
+                DEFAULT_OOM_COOLDOWN
+            ),
+            new ShutdownPolicy(
+                DEFAULT_SHUTDOWN_ENABLED,
+                DEFAULT_SHUTDOWN_LOOKBACK,
+                DEFAULT_SHUTDOWN_ERROR_THRESHOLD,
+                DEFAULT_SHUTDOWN_BUDGET
+            ),
+            new HeapHistogramPolicy(
+                DEFAULT_HEAP_HISTOGRAM_ENABLED,
+                DEFAULT_HEAP_HISTOGRAM_BUDGET,
+                DEFAULT_HEAP_HISTOGRAM_BASELINE_INTERVAL,
+                DEFAULT_HEAP_HISTOGRAM_PRESSURE_PERCENT,
+                DEFAULT_HEAP_HISTOGRAM_DIFF_LIMIT
+            ),
+            new HeapDumpPolicy(
+                DEFAULT_HEAP_DUMP_ENABLED,
+                DEFAULT_HEAP_DUMP_PRESSURE_PERCENT,
+                DEFAULT_HEAP_DUMP_MAX_HEAP_BYTES,
+                DEFAULT_HEAP_DUMP_MIN_FREE_BYTES,
+                DEFAULT_HEAP_DUMP_COOLDOWN
+            ),
+            new NativeMemoryPolicy(
+                DEFAULT_NATIVE_MEMORY_ENABLED,
+                DEFAULT_NATIVE_MEMORY_SAMPLE_INTERVAL,
+                DEFAULT_NATIVE_MEMORY_RETAINED_SAMPLES
+            )
         );
     }
 
@@ -121,9 +269,19 @@ final class HytaleBlackboxConfig {
         public int version = 1;
         public Jfr jfr = new Jfr();
         public Trigger trigger = new Trigger();
+        public Budget budget = new Budget();
         public Retention retention = new Retention();
         public Discord discord = new Discord();
+        public Watchdog watchdog = new Watchdog();
+        public Warmup warmup = new Warmup();
+        public DiskPressure diskPressure = new DiskPressure();
+        public Storage storage = new Storage();
         public Web web = new Web();
+        public Oom oom = new Oom();
+        public Shutdown shutdown = new Shutdown();
+        public HeapHistogram heapHistogram = new HeapHistogram();
+        public HeapDump heapDump = new HeapDump();
+        public NativeMemory nativeMemory = new NativeMemory();
 
         static final BuilderCodec<FileConfig> CODEC = BuilderCodec
             .builder(FileConfig.class, FileConfig::new)
@@ -142,6 +300,11 @@ final class HytaleBlackboxConfig {
                     c.trigger = v;
                 }
             }, c -> c.trigger)
+            .addField(new KeyedCodec<>("Budget", Budget.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.budget = v;
+                }
+            }, c -> c.budget)
             .addField(new KeyedCodec<>("Retention", Retention.CODEC), (c, v) -> {
                 if (v != null) {
                     c.retention = v;
@@ -152,11 +315,56 @@ final class HytaleBlackboxConfig {
                     c.discord = v;
                 }
             }, c -> c.discord)
+            .addField(new KeyedCodec<>("Watchdog", Watchdog.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.watchdog = v;
+                }
+            }, c -> c.watchdog)
+            .addField(new KeyedCodec<>("Warmup", Warmup.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.warmup = v;
+                }
+            }, c -> c.warmup)
+            .addField(new KeyedCodec<>("DiskPressure", DiskPressure.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.diskPressure = v;
+                }
+            }, c -> c.diskPressure)
+            .addField(new KeyedCodec<>("Storage", Storage.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.storage = v;
+                }
+            }, c -> c.storage)
             .addField(new KeyedCodec<>("Web", Web.CODEC), (c, v) -> {
                 if (v != null) {
                     c.web = v;
                 }
             }, c -> c.web)
+            .addField(new KeyedCodec<>("Oom", Oom.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.oom = v;
+                }
+            }, c -> c.oom)
+            .addField(new KeyedCodec<>("Shutdown", Shutdown.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.shutdown = v;
+                }
+            }, c -> c.shutdown)
+            .addField(new KeyedCodec<>("HeapHistogram", HeapHistogram.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.heapHistogram = v;
+                }
+            }, c -> c.heapHistogram)
+            .addField(new KeyedCodec<>("HeapDump", HeapDump.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.heapDump = v;
+                }
+            }, c -> c.heapDump)
+            .addField(new KeyedCodec<>("NativeMemory", NativeMemory.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.nativeMemory = v;
+                }
+            }, c -> c.nativeMemory)
             .build();
 
         BlackboxConfig toCoreConfig(System.Logger logger) {
@@ -164,9 +372,19 @@ final class HytaleBlackboxConfig {
 
             Jfr jfr = this.jfr == null ? new Jfr() : this.jfr;
             Trigger trigger = this.trigger == null ? new Trigger() : this.trigger;
+            Budget budget = this.budget == null ? new Budget() : this.budget;
             Retention retention = this.retention == null ? new Retention() : this.retention;
             Discord discord = this.discord == null ? new Discord() : this.discord;
+            Watchdog watchdog = this.watchdog == null ? new Watchdog() : this.watchdog;
+            Warmup warmup = this.warmup == null ? new Warmup() : this.warmup;
+            DiskPressure diskPressure = this.diskPressure == null ? new DiskPressure() : this.diskPressure;
+            Storage storage = this.storage == null ? new Storage() : this.storage;
             Web web = this.web == null ? new Web() : this.web;
+            Oom oom = this.oom == null ? new Oom() : this.oom;
+            Shutdown shutdown = this.shutdown == null ? new Shutdown() : this.shutdown;
+            HeapHistogram heapHistogram = this.heapHistogram == null ? new HeapHistogram() : this.heapHistogram;
+            HeapDump heapDump = this.heapDump == null ? new HeapDump() : this.heapDump;
+            NativeMemory nativeMemory = this.nativeMemory == null ? new NativeMemory() : this.nativeMemory;
 
             Duration jfrMaxAge = positiveDuration(jfr.maxAge, DEFAULT_JFR_MAX_AGE, "Jfr.MaxAge", logger);
             long jfrMaxSizeBytes = positiveLong(jfr.maxSizeBytes, DEFAULT_JFR_MAX_SIZE_BYTES, "Jfr.MaxSizeBytes", logger);
@@ -209,6 +427,35 @@ final class HytaleBlackboxConfig {
                 );
                 stallCriticalMs = stallDegradedMs;
             }
+            Duration stallCoalesceWindow = nonNegativeDuration(
+                trigger.stallCoalesceWindow,
+                DEFAULT_STALL_COALESCE_WINDOW,
+                "Trigger.StallCoalesceWindow",
+                logger
+            );
+            AdaptiveStallPolicy adaptivePolicy = new AdaptiveStallPolicy(
+                trigger.adaptiveEnabled,
+                positiveLong(trigger.adaptiveFloorMs, DEFAULT_ADAPTIVE_FLOOR_MS, "Trigger.AdaptiveFloorMs", logger),
+                Math.max(1, nonNegativeInt(
+                    trigger.adaptiveMultiplier,
+                    DEFAULT_ADAPTIVE_MULTIPLIER,
+                    "Trigger.AdaptiveMultiplier",
+                    logger
+                )),
+                Math.max(1, nonNegativeInt(
+                    trigger.adaptiveMinSamples,
+                    DEFAULT_ADAPTIVE_MIN_SAMPLES,
+                    "Trigger.AdaptiveMinSamples",
+                    logger
+                ))
+            );
+            CaptureBudgetPolicy budgetPolicy = new CaptureBudgetPolicy(
+                nonNegativeInt(budget.perMinute, DEFAULT_BUDGET_PER_MINUTE, "Budget.PerMinute", logger),
+                nonNegativeInt(budget.perHour, DEFAULT_BUDGET_PER_HOUR, "Budget.PerHour", logger),
+                nonNegativeInt(budget.perKindPerHour, DEFAULT_BUDGET_PER_KIND_PER_HOUR, "Budget.PerKindPerHour", logger),
+                nonNegativeInt(budget.perScopePerHour, DEFAULT_BUDGET_PER_SCOPE_PER_HOUR, "Budget.PerScopePerHour", logger),
+                nonNegativeInt(budget.criticalBorrow, DEFAULT_BUDGET_CRITICAL_BORROW, "Budget.CriticalBorrow", logger)
+            );
 
             int maxCount = nonNegativeInt(retention.maxCount, DEFAULT_RETENTION_MAX_COUNT, "Retention.MaxCount", logger);
             long maxTotalBytes = nonNegativeLong(
@@ -225,6 +472,37 @@ final class HytaleBlackboxConfig {
                 );
                 maxAge = DEFAULT_RETENTION_MAX_AGE;
             }
+            Duration downsampleAfter = retention.downsampleAfter;
+            if (downsampleAfter != null && downsampleAfter.isNegative()) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Retention.DownsampleAfter is negative; using default "
+                        + DEFAULT_RETENTION_DOWNSAMPLE_AFTER + "."
+                );
+                downsampleAfter = DEFAULT_RETENTION_DOWNSAMPLE_AFTER;
+            }
+            Duration packAfter = retention.packAfter;
+            if (packAfter != null && packAfter.isNegative()) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Retention.PackAfter is negative; using default " + DEFAULT_RETENTION_PACK_AFTER + "."
+                );
+                packAfter = DEFAULT_RETENTION_PACK_AFTER;
+            }
+            Duration deltaWithin = storage.deltaWithin;
+            if (deltaWithin != null && deltaWithin.isNegative()) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Storage.DeltaWithin is negative; delta captures disabled."
+                );
+                deltaWithin = null;
+            } else if (deltaWithin != null && deltaWithin.isZero()) {
+                deltaWithin = null;
+            }
+            Map<Severity, SeverityLimits> bySeverity = new EnumMap<>(Severity.class);
+            bySeverity.put(Severity.INFO, severityLimits(retention.info, "Retention.Info", logger));
+            bySeverity.put(Severity.DEGRADED, severityLimits(retention.degraded, "Retention.Degraded", logger));
+            bySeverity.put(Severity.CRITICAL, severityLimits(retention.critical, "Retention.Critical", logger));
 
             String webhookUrl = discord.webhookUrl == null ? DEFAULT_DISCORD_WEBHOOK_URL : discord.webhookUrl;
             Duration webhookCooldown = nonNegativeDuration(
@@ -241,15 +519,271 @@ final class HytaleBlackboxConfig {
             );
             String username = nonBlankString(discord.username, DEFAULT_DISCORD_USERNAME, "Discord.Username", logger);
 
+            Duration watchdogPollInterval = positiveDuration(
+                watchdog.pollInterval,
+                DEFAULT_WATCHDOG_POLL_INTERVAL,
+                "Watchdog.PollInterval",
+                logger
+            );
+            long watchdogSchedulerStallMs = positiveLong(
+                watchdog.schedulerStallMs,
+                DEFAULT_WATCHDOG_SCHEDULER_STALL_MS,
+                "Watchdog.SchedulerStallMs",
+                logger
+            );
+            long watchdogWorldStallMs = positiveLong(
+                watchdog.worldStallMs,
+                DEFAULT_WATCHDOG_WORLD_STALL_MS,
+                "Watchdog.WorldStallMs",
+                logger
+            );
+            long watchdogWorkerStallMs = positiveLong(
+                watchdog.workerStallMs,
+                DEFAULT_WATCHDOG_WORKER_STALL_MS,
+                "Watchdog.WorkerStallMs",
+                logger
+            );
+            Duration watchdogCooldown = nonNegativeDuration(
+                watchdog.emergencyCooldown,
+                DEFAULT_WATCHDOG_EMERGENCY_COOLDOWN,
+                "Watchdog.EmergencyCooldown",
+                logger
+            );
+            Duration watchdogLeanMaxAge = positiveDuration(
+                watchdog.leanMaxAge,
+                DEFAULT_WATCHDOG_LEAN_MAX_AGE,
+                "Watchdog.LeanMaxAge",
+                logger
+            );
+
+            long oomReserveBytes = nonNegativeLong(
+                oom.reserveBytes,
+                DEFAULT_OOM_RESERVE_BYTES,
+                "Oom.ReserveBytes",
+                logger
+            );
+            if (oomReserveBytes > Integer.MAX_VALUE - 8) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Oom.ReserveBytes must fit in one array; using default " + DEFAULT_OOM_RESERVE_BYTES + "."
+                );
+                oomReserveBytes = DEFAULT_OOM_RESERVE_BYTES;
+            }
+            int oomHeapThresholdPercent = oom.heapThresholdPercent;
+            if (oomHeapThresholdPercent <= 0 || oomHeapThresholdPercent > 100) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Oom.HeapThresholdPercent must be in 1..100; using default "
+                        + DEFAULT_OOM_HEAP_THRESHOLD_PERCENT + "."
+                );
+                oomHeapThresholdPercent = DEFAULT_OOM_HEAP_THRESHOLD_PERCENT;
+            }
+            Duration oomCooldown = nonNegativeDuration(oom.cooldown, DEFAULT_OOM_COOLDOWN, "Oom.Cooldown", logger);
+            Duration shutdownLookback = positiveDuration(
+                shutdown.lookback,
+                DEFAULT_SHUTDOWN_LOOKBACK,
+                "Shutdown.Lookback",
+                logger
+            );
+            int shutdownErrorThreshold = shutdown.errorThreshold;
+            if (shutdownErrorThreshold <= 0) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config Shutdown.ErrorThreshold must be > 0; using default " + DEFAULT_SHUTDOWN_ERROR_THRESHOLD + "."
+                );
+                shutdownErrorThreshold = DEFAULT_SHUTDOWN_ERROR_THRESHOLD;
+            }
+            Duration shutdownBudget = positiveDuration(shutdown.budget, DEFAULT_SHUTDOWN_BUDGET, "Shutdown.Budget", logger);
+            Duration heapHistogramBudget = positiveDuration(
+                heapHistogram.budget,
+                DEFAULT_HEAP_HISTOGRAM_BUDGET,
+                "HeapHistogram.Budget",
+                logger
+            );
+            Duration heapHistogramBaselineInterval = nonNegativeDuration(
+                heapHistogram.baselineInterval,
+                DEFAULT_HEAP_HISTOGRAM_BASELINE_INTERVAL,
+                "HeapHistogram.BaselineInterval",
+                logger
+            );
+            int heapHistogramPressurePercent = heapHistogram.heapPressurePercent;
+            if (heapHistogramPressurePercent <= 0 || heapHistogramPressurePercent > 100) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config HeapHistogram.HeapPressurePercent must be in 1..100; using default "
+                        + DEFAULT_HEAP_HISTOGRAM_PRESSURE_PERCENT + "."
+                );
+                heapHistogramPressurePercent = DEFAULT_HEAP_HISTOGRAM_PRESSURE_PERCENT;
+            }
+            int heapHistogramDiffLimit = heapHistogram.diffLimit;
+            if (heapHistogramDiffLimit <= 0) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config HeapHistogram.DiffLimit must be > 0; using default " + DEFAULT_HEAP_HISTOGRAM_DIFF_LIMIT + "."
+                );
+                heapHistogramDiffLimit = DEFAULT_HEAP_HISTOGRAM_DIFF_LIMIT;
+            }
+            int heapDumpPressurePercent = heapDump.heapPressurePercent;
+            if (heapDumpPressurePercent <= 0 || heapDumpPressurePercent > 100) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config HeapDump.HeapPressurePercent must be in 1..100; using default "
+                        + DEFAULT_HEAP_DUMP_PRESSURE_PERCENT + "."
+                );
+                heapDumpPressurePercent = DEFAULT_HEAP_DUMP_PRESSURE_PERCENT;
+            }
+            long heapDumpMaxHeapBytes = positiveLong(
+                heapDump.maxHeapBytes,
+                DEFAULT_HEAP_DUMP_MAX_HEAP_BYTES,
+                "HeapDump.MaxHeapBytes",
+                logger
+            );
+            long heapDumpMinFreeBytes = nonNegativeLong(
+                heapDump.minFreeBytes,
+                DEFAULT_HEAP_DUMP_MIN_FREE_BYTES,
+                "HeapDump.MinFreeBytes",
+                logger
+            );
+            Duration heapDumpCooldown = nonNegativeDuration(
+                heapDump.cooldown,
+                DEFAULT_HEAP_DUMP_COOLDOWN,
+                "HeapDump.Cooldown",
+                logger
+            );
+            Duration nativeMemorySampleInterval = positiveDuration(
+                nativeMemory.sampleInterval,
+                DEFAULT_NATIVE_MEMORY_SAMPLE_INTERVAL,
+                "NativeMemory.SampleInterval",
+                logger
+            );
+            int nativeMemoryRetainedSamples = nativeMemory.retainedSamples;
+            if (nativeMemoryRetainedSamples <= 0) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config NativeMemory.RetainedSamples must be > 0; using default "
+                        + DEFAULT_NATIVE_MEMORY_RETAINED_SAMPLES + "."
+                );
+                nativeMemoryRetainedSamples = DEFAULT_NATIVE_MEMORY_RETAINED_SAMPLES;
+            }
+
+            long warmupClassLoads = positiveLong(
+                warmup.classLoadsPerSecond,
+                DEFAULT_WARMUP_CLASS_LOADS_PER_SECOND,
+                "Warmup.ClassLoadsPerSecond",
+                logger
+            );
+            long warmupCompileMs = positiveLong(
+                warmup.compileMsPerSecond,
+                DEFAULT_WARMUP_COMPILE_MS_PER_SECOND,
+                "Warmup.CompileMsPerSecond",
+                logger
+            );
+            Duration warmupSettle = nonNegativeDuration(
+                warmup.settleDuration,
+                DEFAULT_WARMUP_SETTLE_DURATION,
+                "Warmup.SettleDuration",
+                logger
+            );
+            Duration warmupMaxGrace = positiveDuration(
+                warmup.maxGrace,
+                DEFAULT_WARMUP_MAX_GRACE,
+                "Warmup.MaxGrace",
+                logger
+            );
+
+            DiskPressurePolicy diskPressurePolicy;
+            try {
+                diskPressurePolicy = new DiskPressurePolicy(
+                    diskPressure.enabled,
+                    nonNegativeLong(
+                        diskPressure.shrinkWindowBelowBytes,
+                        DEFAULT_DISK_PRESSURE_SHRINK_WINDOW_BELOW_BYTES,
+                        "DiskPressure.ShrinkWindowBelowBytes",
+                        logger
+                    ),
+                    nonNegativeLong(
+                        diskPressure.dropRecordingBelowBytes,
+                        DEFAULT_DISK_PRESSURE_DROP_RECORDING_BELOW_BYTES,
+                        "DiskPressure.DropRecordingBelowBytes",
+                        logger
+                    ),
+                    nonNegativeLong(
+                        diskPressure.skipCaptureBelowBytes,
+                        DEFAULT_DISK_PRESSURE_SKIP_CAPTURE_BELOW_BYTES,
+                        "DiskPressure.SkipCaptureBelowBytes",
+                        logger
+                    ),
+                    positiveDuration(
+                        diskPressure.shrunkWindow,
+                        DEFAULT_DISK_PRESSURE_SHRUNK_WINDOW,
+                        "DiskPressure.ShrunkWindow",
+                        logger
+                    )
+                );
+            } catch (IllegalArgumentException e) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "Config DiskPressure thresholds must not increase from ShrinkWindow to SkipCapture; using defaults.",
+                    e
+                );
+                diskPressurePolicy = DiskPressurePolicy.defaults();
+            }
+
             try {
                 return new BlackboxConfig(
                     jfrMaxAge,
                     jfrMaxSizeBytes,
                     recordingName,
-                    new TriggerPolicy(cooldown, debounce, stallDegradedMs, stallCriticalMs),
-                    new CapturePolicy(new RetentionPolicy(maxCount, maxTotalBytes, maxAge)),
+                    new TriggerPolicy(
+                        cooldown,
+                        debounce,
+                        stallDegradedMs,
+                        stallCriticalMs,
+                        stallCoalesceWindow,
+                        budgetPolicy,
+                        adaptivePolicy
+                    ),
+                    new CapturePolicy(
+                        new RetentionPolicy(maxCount, maxTotalBytes, maxAge, downsampleAfter, bySeverity, packAfter),
+                        diskPressurePolicy,
+                        storage.dedup,
+                        deltaWithin
+                    ),
                     new DiscordWebhookConfig(webhookUrl, webhookCooldown, requestTimeout, username),
-                    web.enabled
+                    new WatchdogPolicy(
+                        watchdog.enabled,
+                        watchdogPollInterval,
+                        watchdogSchedulerStallMs,
+                        watchdogWorldStallMs,
+                        watchdogWorkerStallMs,
+                        watchdogCooldown,
+                        watchdogLeanMaxAge
+                    ),
+                    new WarmupPolicy(
+                        warmup.enabled,
+                        warmupClassLoads,
+                        warmupCompileMs,
+                        warmupSettle,
+                        warmupMaxGrace
+                    ),
+                    web.enabled,
+                    new OomPolicy(oom.enabled, oomReserveBytes, oomHeapThresholdPercent, oomCooldown),
+                    new ShutdownPolicy(shutdown.enabled, shutdownLookback, shutdownErrorThreshold, shutdownBudget),
+                    new HeapHistogramPolicy(
+                        heapHistogram.enabled,
+                        heapHistogramBudget,
+                        heapHistogramBaselineInterval,
+                        heapHistogramPressurePercent,
+                        heapHistogramDiffLimit
+                    ),
+                    new HeapDumpPolicy(
+                        heapDump.enabled,
+                        heapDumpPressurePercent,
+                        heapDumpMaxHeapBytes,
+                        heapDumpMinFreeBytes,
+                        heapDumpCooldown
+                    ),
+                    new NativeMemoryPolicy(nativeMemory.enabled, nativeMemorySampleInterval, nativeMemoryRetainedSamples)
                 );
             } catch (RuntimeException e) {
                 logger.log(System.Logger.Level.WARNING, "Invalid Blackbox config; falling back to defaults.", e);
@@ -257,6 +791,22 @@ final class HytaleBlackboxConfig {
             }
         }
 
+        private static SeverityLimits severityLimits(SeverityRetention section, String key, System.Logger logger) {
+            if (section == null) {
+                return new SeverityLimits(0, 0L, null);
+            }
+            Duration maxAge = section.maxAge;
+            if (maxAge != null && maxAge.isNegative()) {
+                logger.log(System.Logger.Level.WARNING, "Config " + key + ".MaxAge is negative; ignoring it.");
+                maxAge = null;
+            }
+            return new SeverityLimits(
+                nonNegativeInt(section.maxCount, 0, key + ".MaxCount", logger),
+                nonNegativeLong(section.maxTotalBytes, 0L, key + ".MaxTotalBytes", logger),
+                maxAge
+            );
+        }
+
         private static Duration positiveDuration(
             Duration value,
             Duration defaultValue,
@@ -349,6 +899,11 @@ final class HytaleBlackboxConfig {
         public Duration debounce = DEFAULT_TRIGGER_DEBOUNCE;
         public long stallDegradedMs = DEFAULT_STALL_DEGRADED_MS;
         public long stallCriticalMs = DEFAULT_STALL_CRITICAL_MS;
+        public Duration stallCoalesceWindow = DEFAULT_STALL_COALESCE_WINDOW;
+        public boolean adaptiveEnabled = DEFAULT_ADAPTIVE_ENABLED;
+        public long adaptiveFloorMs = DEFAULT_ADAPTIVE_FLOOR_MS;
+        public int adaptiveMultiplier = DEFAULT_ADAPTIVE_MULTIPLIER;
+        public int adaptiveMinSamples = DEFAULT_ADAPTIVE_MIN_SAMPLES;
 
         static final BuilderCodec<Trigger> CODEC = BuilderCodec
             .builder(Trigger.class, Trigger::new)
@@ -372,6 +927,68 @@ final class HytaleBlackboxConfig {
                     c.stallCriticalMs = v;
                 }
             }, c -> c.stallCriticalMs)
+            .addField(new KeyedCodec<>("StallCoalesceWindow", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.stallCoalesceWindow = v;
+                }
+            }, c -> c.stallCoalesceWindow)
+            .addField(new KeyedCodec<>("AdaptiveEnabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.adaptiveEnabled = v;
+                }
+            }, c -> c.adaptiveEnabled)
+            .addField(new KeyedCodec<>("AdaptiveFloorMs", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.adaptiveFloorMs = v;
+                }
+            }, c -> c.adaptiveFloorMs)
+            .addField(new KeyedCodec<>("AdaptiveMultiplier", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.adaptiveMultiplier = v;
+                }
+            }, c -> c.adaptiveMultiplier)
+            .addField(new KeyedCodec<>("AdaptiveMinSamples", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.adaptiveMinSamples = v;
+                }
+            }, c -> c.adaptiveMinSamples)
+            .build();
+    }
+
+    private static final class Budget {
+        public int perMinute = DEFAULT_BUDGET_PER_MINUTE;
+        public int perHour = DEFAULT_BUDGET_PER_HOUR;
+        public int perKindPerHour = DEFAULT_BUDGET_PER_KIND_PER_HOUR;
+        public int perScopePerHour = DEFAULT_BUDGET_PER_SCOPE_PER_HOUR;
+        public int criticalBorrow = DEFAULT_BUDGET_CRITICAL_BORROW;
+
+        static final BuilderCodec<Budget> CODEC = BuilderCodec
+            .builder(Budget.class, Budget::new)
+            .addField(new KeyedCodec<>("PerMinute", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.perMinute = v;
+                }
+            }, c -> c.perMinute)
+            .addField(new KeyedCodec<>("PerHour", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.perHour = v;
+                }
+            }, c -> c.perHour)
+            .addField(new KeyedCodec<>("PerKindPerHour", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.perKindPerHour = v;
+                }
+            }, c -> c.perKindPerHour)
+            .addField(new KeyedCodec<>("PerScopePerHour", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.perScopePerHour = v;
+                }
+            }, c -> c.perScopePerHour)
+            .addField(new KeyedCodec<>("CriticalBorrow", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.criticalBorrow = v;
+                }
+            }, c -> c.criticalBorrow)
             .build();
     }
 
@@ -379,6 +996,11 @@ final class HytaleBlackboxConfig {
         public int maxCount = DEFAULT_RETENTION_MAX_COUNT;
         public long maxTotalBytes = DEFAULT_RETENTION_MAX_TOTAL_BYTES;
         public Duration maxAge = DEFAULT_RETENTION_MAX_AGE;
+        public Duration downsampleAfter = DEFAULT_RETENTION_DOWNSAMPLE_AFTER;
+        public Duration packAfter = DEFAULT_RETENTION_PACK_AFTER;
+        public SeverityRetention info = SeverityRetention.info();
+        public SeverityRetention degraded = new SeverityRetention();
+        public SeverityRetention critical = new SeverityRetention();
 
         static final BuilderCodec<Retention> CODEC = BuilderCodec
             .builder(Retention.class, Retention::new)
@@ -393,6 +1015,58 @@ final class HytaleBlackboxConfig {
                 }
             }, c -> c.maxTotalBytes)
             .addField(new KeyedCodec<>("MaxAge", Codec.DURATION), (c, v) -> c.maxAge = v, c -> c.maxAge)
+            .addField(
+                new KeyedCodec<>("DownsampleAfter", Codec.DURATION),
+                (c, v) -> c.downsampleAfter = v,
+                c -> c.downsampleAfter
+            )
+            .addField(new KeyedCodec<>("PackAfter", Codec.DURATION), (c, v) -> c.packAfter = v, c -> c.packAfter)
+            .addField(new KeyedCodec<>("Info", SeverityRetention.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.info = v;
+                }
+            }, c -> c.info)
+            .addField(new KeyedCodec<>("Degraded", SeverityRetention.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.degraded = v;
+                }
+            }, c -> c.degraded)
+            .addField(new KeyedCodec<>("Critical", SeverityRetention.CODEC), (c, v) -> {
+                if (v != null) {
+                    c.critical = v;
+                }
+            }, c -> c.critical)
+            .build();
+    }
+
+    /**
+     * Extra retention limits for one severity; 0 and an absent MaxAge mean unlimited.
+     */
+    private static final class SeverityRetention {
+        public int maxCount;
+        public long maxTotalBytes;
+        public Duration maxAge;
+
+        static SeverityRetention info() {
+            SeverityRetention info = new SeverityRetention();
+            info.maxCount = DEFAULT_RETENTION_INFO_MAX_COUNT;
+            info.maxAge = DEFAULT_RETENTION_INFO_MAX_AGE;
+            return info;
+        }
+
+        static final BuilderCodec<SeverityRetention> CODEC = BuilderCodec
+            .builder(SeverityRetention.class, SeverityRetention::new)
+            .addField(new KeyedCodec<>("MaxCount", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.maxCount = v;
+                }
+            }, c -> c.maxCount)
+            .addField(new KeyedCodec<>("MaxTotalBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.maxTotalBytes = v;
+                }
+            }, c -> c.maxTotalBytes)
+            .addField(new KeyedCodec<>("MaxAge", Codec.DURATION), (c, v) -> c.maxAge = v, c -> c.maxAge)
             .build();
     }
 
@@ -427,6 +1101,305 @@ final class HytaleBlackboxConfig {
             .build();
     }
 
+    private static final class Watchdog {
+        public boolean enabled = DEFAULT_WATCHDOG_ENABLED;
+        public Duration pollInterval = DEFAULT_WATCHDOG_POLL_INTERVAL;
+        public long schedulerStallMs = DEFAULT_WATCHDOG_SCHEDULER_STALL_MS;
+        public long worldStallMs = DEFAULT_WATCHDOG_WORLD_STALL_MS;
+        public long workerStallMs = DEFAULT_WATCHDOG_WORKER_STALL_MS;
+        public Duration emergencyCooldown = DEFAULT_WATCHDOG_EMERGENCY_COOLDOWN;
+        public Duration leanMaxAge = DEFAULT_WATCHDOG_LEAN_MAX_AGE;
+
+        static final BuilderCodec<Watchdog> CODEC = BuilderCodec
+            .builder(Watchdog.class, Watchdog::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("PollInterval", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.pollInterval = v;
+                }
+            }, c -> c.pollInterval)
+            .addField(new KeyedCodec<>("SchedulerStallMs", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.schedulerStallMs = v;
+                }
+            }, c -> c.schedulerStallMs)
+            .addField(new KeyedCodec<>("WorldStallMs", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.worldStallMs = v;
+                }
+            }, c -> c.worldStallMs)
+            .addField(new KeyedCodec<>("WorkerStallMs", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.workerStallMs = v;
+                }
+            }, c -> c.workerStallMs)
+            .addField(new KeyedCodec<>("EmergencyCooldown", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.emergencyCooldown = v;
+                }
+            }, c -> c.emergencyCooldown)
+            .addField(new KeyedCodec<>("LeanMaxAge", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.leanMaxAge = v;
+                }
+            }, c -> c.leanMaxAge)
+            .build();
+    }
+
+    private static final class Warmup {
+        public boolean enabled = DEFAULT_WARMUP_ENABLED;
+        public long classLoadsPerSecond = DEFAULT_WARMUP_CLASS_LOADS_PER_SECOND;
+        public long compileMsPerSecond = DEFAULT_WARMUP_COMPILE_MS_PER_SECOND;
+        public Duration settleDuration = DEFAULT_WARMUP_SETTLE_DURATION;
+        public Duration maxGrace = DEFAULT_WARMUP_MAX_GRACE;
+
+        static final BuilderCodec<Warmup> CODEC = BuilderCodec
+            .builder(Warmup.class, Warmup::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("ClassLoadsPerSecond", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.classLoadsPerSecond = v;
+                }
+            }, c -> c.classLoadsPerSecond)
+            .addField(new KeyedCodec<>("CompileMsPerSecond", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.compileMsPerSecond = v;
+                }
+            }, c -> c.compileMsPerSecond)
+            .addField(new KeyedCodec<>("SettleDuration", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.settleDuration = v;
+                }
+            }, c -> c.settleDuration)
+            .addField(new KeyedCodec<>("MaxGrace", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.maxGrace = v;
+                }
+            }, c -> c.maxGrace)
+            .build();
+    }
+
+    private static final class DiskPressure {
+        public boolean enabled = DEFAULT_DISK_PRESSURE_ENABLED;
+        public long shrinkWindowBelowBytes = DEFAULT_DISK_PRESSURE_SHRINK_WINDOW_BELOW_BYTES;
+        public long dropRecordingBelowBytes = DEFAULT_DISK_PRESSURE_DROP_RECORDING_BELOW_BYTES;
+        public long skipCaptureBelowBytes = DEFAULT_DISK_PRESSURE_SKIP_CAPTURE_BELOW_BYTES;
+        public Duration shrunkWindow = DEFAULT_DISK_PRESSURE_SHRUNK_WINDOW;
+
+        static final BuilderCodec<DiskPressure> CODEC = BuilderCodec
+            .builder(DiskPressure.class, DiskPressure::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("ShrinkWindowBelowBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.shrinkWindowBelowBytes = v;
+                }
+            }, c -> c.shrinkWindowBelowBytes)
+            .addField(new KeyedCodec<>("DropRecordingBelowBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.dropRecordingBelowBytes = v;
+                }
+            }, c -> c.dropRecordingBelowBytes)
+            .addField(new KeyedCodec<>("SkipCaptureBelowBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.skipCaptureBelowBytes = v;
+                }
+            }, c -> c.skipCaptureBelowBytes)
+            .addField(new KeyedCodec<>("ShrunkWindow", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.shrunkWindow = v;
+                }
+            }, c -> c.shrunkWindow)
+            .build();
+    }
+
+    private static final class Storage {
+        public boolean dedup = DEFAULT_STORAGE_DEDUP;
+        public Duration deltaWithin = DEFAULT_STORAGE_DELTA_WITHIN;
+
+        static final BuilderCodec<Storage> CODEC = BuilderCodec
+            .builder(Storage.class, Storage::new)
+            .addField(new KeyedCodec<>("Dedup", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.dedup = v;
+                }
+            }, c -> c.dedup)
+            .addField(new KeyedCodec<>("DeltaWithin", Codec.DURATION), (c, v) -> c.deltaWithin = v, c -> c.deltaWithin)
+            .build();
+    }
+
+    private static final class Oom {
+        public boolean enabled = DEFAULT_OOM_ENABLED;
+        public long reserveBytes = DEFAULT_OOM_RESERVE_BYTES;
+        public int heapThresholdPercent = DEFAULT_OOM_HEAP_THRESHOLD_PERCENT;
+        public Duration cooldown = DEFAULT_OOM_COOLDOWN;
+
+        static final BuilderCodec<Oom> CODEC = BuilderCodec
+            .builder(Oom.class, Oom::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("ReserveBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.reserveBytes = v;
+                }
+            }, c -> c.reserveBytes)
+            .addField(new KeyedCodec<>("HeapThresholdPercent", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.heapThresholdPercent = v;
+                }
+            }, c -> c.heapThresholdPercent)
+            .addField(new KeyedCodec<>("Cooldown", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.cooldown = v;
+                }
+            }, c -> c.cooldown)
+            .build();
+    }
+
+    private static final class Shutdown {
+        public boolean enabled = DEFAULT_SHUTDOWN_ENABLED;
+        public Duration lookback = DEFAULT_SHUTDOWN_LOOKBACK;
+        public int errorThreshold = DEFAULT_SHUTDOWN_ERROR_THRESHOLD;
+        public Duration budget = DEFAULT_SHUTDOWN_BUDGET;
+
+        static final BuilderCodec<Shutdown> CODEC = BuilderCodec
+            .builder(Shutdown.class, Shutdown::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("Lookback", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.lookback = v;
+                }
+            }, c -> c.lookback)
+            .addField(new KeyedCodec<>("ErrorThreshold", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.errorThreshold = v;
+                }
+            }, c -> c.errorThreshold)
+            .addField(new KeyedCodec<>("Budget", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.budget = v;
+                }
+            }, c -> c.budget)
+            .build();
+    }
+
+    private static final class HeapHistogram {
+        public boolean enabled = DEFAULT_HEAP_HISTOGRAM_ENABLED;
+        public Duration budget = DEFAULT_HEAP_HISTOGRAM_BUDGET;
+        public Duration baselineInterval = DEFAULT_HEAP_HISTOGRAM_BASELINE_INTERVAL;
+        public int heapPressurePercent = DEFAULT_HEAP_HISTOGRAM_PRESSURE_PERCENT;
+        public int diffLimit = DEFAULT_HEAP_HISTOGRAM_DIFF_LIMIT;
+
+        static final BuilderCodec<HeapHistogram> CODEC = BuilderCodec
+            .builder(HeapHistogram.class, HeapHistogram::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("Budget", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.budget = v;
+                }
+            }, c -> c.budget)
+            .addField(new KeyedCodec<>("BaselineInterval", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.baselineInterval = v;
+                }
+            }, c -> c.baselineInterval)
+            .addField(new KeyedCodec<>("HeapPressurePercent", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.heapPressurePercent = v;
+                }
+            }, c -> c.heapPressurePercent)
+            .addField(new KeyedCodec<>("DiffLimit", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.diffLimit = v;
+                }
+            }, c -> c.diffLimit)
+            .build();
+    }
+
+    private static final class HeapDump {
+        public boolean enabled = DEFAULT_HEAP_DUMP_ENABLED;
+        public int heapPressurePercent = DEFAULT_HEAP_DUMP_PRESSURE_PERCENT;
+        public long maxHeapBytes = DEFAULT_HEAP_DUMP_MAX_HEAP_BYTES;
+        public long minFreeBytes = DEFAULT_HEAP_DUMP_MIN_FREE_BYTES;
+        public Duration cooldown = DEFAULT_HEAP_DUMP_COOLDOWN;
+
+        static final BuilderCodec<HeapDump> CODEC = BuilderCodec
+            .builder(HeapDump.class, HeapDump::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("HeapPressurePercent", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.heapPressurePercent = v;
+                }
+            }, c -> c.heapPressurePercent)
+            .addField(new KeyedCodec<>("MaxHeapBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.maxHeapBytes = v;
+                }
+            }, c -> c.maxHeapBytes)
+            .addField(new KeyedCodec<>("MinFreeBytes", Codec.LONG), (c, v) -> {
+                if (v != null) {
+                    c.minFreeBytes = v;
+                }
+            }, c -> c.minFreeBytes)
+            .addField(new KeyedCodec<>("Cooldown", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.cooldown = v;
+                }
+            }, c -> c.cooldown)
+            .build();
+    }
+
+    private static final class NativeMemory {
+        public boolean enabled = DEFAULT_NATIVE_MEMORY_ENABLED;
+        public Duration sampleInterval = DEFAULT_NATIVE_MEMORY_SAMPLE_INTERVAL;
+        public int retainedSamples = DEFAULT_NATIVE_MEMORY_RETAINED_SAMPLES;
+
+        static final BuilderCodec<NativeMemory> CODEC = BuilderCodec
+            .builder(NativeMemory.class, NativeMemory::new)
+            .addField(new KeyedCodec<>("Enabled", Codec.BOOLEAN), (c, v) -> {
+                if (v != null) {
+                    c.enabled = v;
+                }
+            }, c -> c.enabled)
+            .addField(new KeyedCodec<>("SampleInterval", Codec.DURATION), (c, v) -> {
+                if (v != null) {
+                    c.sampleInterval = v;
+                }
+            }, c -> c.sampleInterval)
+            .addField(new KeyedCodec<>("RetainedSamples", Codec.INTEGER), (c, v) -> {
+                if (v != null) {
+                    c.retainedSamples = v;
+                }
+            }, c -> c.retainedSamples)
+            .build();
+    }
+
     private static final class Web {
         public boolean enabled = DEFAULT_WEB_ENABLED;
 
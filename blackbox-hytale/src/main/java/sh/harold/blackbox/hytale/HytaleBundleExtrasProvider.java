@@ -14,14 +14,32 @@ import java.util.Map;
 import java.util.Objects;
 import sh.harold.blackbox.core.bundle.BundleAttachment;
 import sh.harold.blackbox.core.capture.BundleExtrasProvider;
+import sh.harold.blackbox.core.disk.DiskPressureMonitor;
 import sh.harold.blackbox.core.incident.IncidentReport;
+import sh.harold.blackbox.core.memory.NativeMemorySampler;
 import sh.harold.blackbox.core.trigger.TriggerEvent;
+import sh.harold.blackbox.core.trigger.heartbeat.QueueLatencyRecorder;
+import sh.harold.blackbox.core.warmup.WarmupSuppressor;
 
 final class HytaleBundleExtrasProvider implements BundleExtrasProvider {
     private final System.Logger logger;
-
-    HytaleBundleExtrasProvider(System.Logger logger) {
+    private final QueueLatencyRecorder queueLatency;
+    private final WarmupSuppressor warmup;
+    private final DiskPressureMonitor diskPressure;
+    private final NativeMemorySampler nativeMemory;
+
+    HytaleBundleExtrasProvider(
+        System.Logger logger,
+        QueueLatencyRecorder queueLatency,
+        WarmupSuppressor warmup,
+        DiskPressureMonitor diskPressure,
+        NativeMemorySampler nativeMemory
+    ) {
         this.logger = Objects.requireNonNull(logger, "logger");
+        this.queueLatency = Objects.requireNonNull(queueLatency, "queueLatency");
+        this.warmup = Objects.requireNonNull(warmup, "warmup");
+        this.diskPressure = Objects.requireNonNull(diskPressure, "diskPressure");
+        this.nativeMemory = Objects.requireNonNull(nativeMemory, "nativeMemory");
     }
 
     @Override
@@ -31,6 +49,14 @@ final class HytaleBundleExtrasProvider implements BundleExtrasProvider {
         addText(extras, "extras/server.txt", this::buildServerText);
         addText(extras, "extras/plugins.txt", this::buildPluginsText);
         addText(extras, "extras/worlds.txt", this::buildWorldsText);
+        addText(extras, "extras/queue-latency.txt", queueLatency::render);
+        addText(extras, "extras/warmup.txt", warmup::render);
+        addText(extras, "extras/disk-pressure.txt", diskPressure::render);
+        try {
+            extras.addAll(nativeMemory.attachments());
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to attach native memory samples.", e);
+        }
 
         return extras;
     }